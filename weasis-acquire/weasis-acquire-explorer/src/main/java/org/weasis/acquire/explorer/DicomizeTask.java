@@ -13,18 +13,24 @@
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.swing.SwingWorker;
 import org.dcm4che3.util.UIDUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.acquire.explorer.dicom.Transform2Dicom;
 import org.weasis.core.api.gui.util.AppProperties;
+import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.core.util.FileUtil;
 
 /**
- * Do the process of convert to JPEG and dicomize given image collection to a temporary folder. All
- * the job is done outside the EDT instead of setting AcquireImageStatus change. But, full process
- * progression can still be listened with propertyChange notification of this workerTask.
+ * Do the process of convert to JPEG and dicomize given image collection to a temporary folder. The
+ * images are dicomized concurrently. All the job is done outside the EDT instead of setting
+ * AcquireImageStatus change. But, full process progression can still be listened with
+ * propertyChange notification of this workerTask.
  *
  * @version $Rev$ $Date$
  */
@@ -32,6 +38,10 @@ public class DicomizeTask extends SwingWorker<File, AcquireImageInfo> {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DicomizeTask.class);
 
+  // Each thread holds a decoded image, limit the memory used by a large set of photos
+  private static final int MAX_THREADS =
+      Math.min(4, Math.max(1, Runtime.getRuntime().availableProcessors()));
+
   private final Collection<AcquireImageInfo> toDicomize;
 
   public DicomizeTask(Collection<AcquireImageInfo> toDicomize) {
@@ -44,38 +54,61 @@ protected File doInBackground() {
     File exportDirDicom =
         FileUtil.createTempDir(
             AppProperties.buildAccessibleTempDirectory("tmp", "dicomize", "dcm")); // NON-NLS
-    File exportDirImage =
-        FileUtil.createTempDir(
-            AppProperties.buildAccessibleTempDirectory("tmp", "dicomize", "img")); // NON-NLS
 
     final int nbImageToProcess = toDicomize.size();
     int nbImageProcessed = 0;
 
+    ExecutorService executor =
+        ThreadUtil.buildNewFixedThreadExecutor(
+            Math.max(1, Math.min(nbImageToProcess, MAX_THREADS)), "Dicomizer"); // NON-NLS
     try {
       Transform2Dicom.buildStudySeriesDate(toDicomize, AcquireManager.GLOBAL);
 
       String seriesInstanceUID = UIDUtils.createUID(); // Global series for all PR
 
+      CompletionService<AcquireImageInfo> service = new ExecutorCompletionService<>(executor);
       for (AcquireImageInfo imageInfo : toDicomize) {
-        if (!Transform2Dicom.dicomize(
-            imageInfo, exportDirDicom, exportDirImage, seriesInstanceUID)) {
-          FileUtil.recursiveDelete(exportDirDicom);
+        service.submit(
+            () ->
+                Transform2Dicom.dicomize(imageInfo, exportDirDicom, seriesInstanceUID)
+                    ? imageInfo
+                    : null);
+      }
+      while (nbImageProcessed < nbImageToProcess) {
+        AcquireImageInfo imageInfo = service.take().get();
+        if (imageInfo == null) {
+          cancel(executor, exportDirDicom);
           return null;
         }
         setProgress(++nbImageProcessed * 100 / nbImageToProcess);
         publish(imageInfo);
       }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      cancel(executor, exportDirDicom);
+      return null;
     } catch (Exception ex) {
       LOGGER.error("Dicomize process", ex);
-      FileUtil.recursiveDelete(exportDirDicom);
+      cancel(executor, exportDirDicom);
       return null;
     } finally {
-      FileUtil.recursiveDelete(exportDirImage);
+      executor.shutdownNow();
     }
 
     return exportDirDicom;
   }
 
+  private static void cancel(ExecutorService executor, File exportDirDicom) {
+    executor.shutdownNow();
+    try {
+      // Do not delete the folder while the other images are written
+      executor.awaitTermination(30, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    FileUtil.recursiveDelete(exportDirDicom);
+  }
+
   @Override
   protected void process(List<AcquireImageInfo> chunks) {
     chunks.stream().forEach(AcquireImageInfo.changeStatus(AcquireImageStatus.SUBMITTED));
@@ -13,13 +13,19 @@
 import java.awt.geom.Point2D;
 import java.io.File;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Objects;
 import java.util.Optional;
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Fragments;
 import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
 import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomOutputStream;
 import org.dcm4che3.util.UIDUtils;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
 import org.opencv.core.MatOfInt;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.slf4j.Logger;
@@ -43,7 +49,6 @@
 import org.weasis.dicom.ref.AnatomicRegion;
 import org.weasis.dicom.tool.Dicomizer;
 import org.weasis.opencv.data.PlanarImage;
-import org.weasis.opencv.op.ImageProcessor;
 
 public final class Transform2Dicom {
 
@@ -54,28 +59,43 @@ private Transform2Dicom() {}
   /**
    * Do the encoding of the given image in a standard lossy JPEG format with optionally doing some
    * pre-processing operations (like resize, flip, crop, zoom, contrast ...) if any
-   * postProcessOperation have been set in the AcquireImageInfo. The temporary image file is then
+   * postProcessOperation have been set in the AcquireImageInfo. The image is encoded in memory and
    * encapsulated in a standard DICOM format according to the proper Dicom attributes set in the
-   * AcquireImageInfo. This Dicom is written in the exportDirDicom with its sopInstanceUID as
-   * filename.
+   * AcquireImageInfo. An original JPEG file without any operation is encapsulated directly. This
+   * Dicom is written in the exportDirDicom with its sopInstanceUID as filename.
+   *
+   * <p>Note: the images can be dicomized concurrently, the global and series attributes must not
+   * be modified during the process.
    *
    * @param imageInfo the AcquireImageInfo value
    * @param exportDirDicom the folder to save DICOM files
-   * @param exportDirImage the folder to save image files
    * @param seriesInstanceUID Global series for all PR
    * @return true when the operation is successful
    */
   public static boolean dicomize(
-      AcquireImageInfo imageInfo,
-      File exportDirDicom,
-      File exportDirImage,
-      String seriesInstanceUID) {
+      AcquireImageInfo imageInfo, File exportDirDicom, String seriesInstanceUID) {
 
     ImageElement imageElement = imageInfo.getImage();
     String sopInstanceUID =
         Objects.requireNonNull((String) imageElement.getTagValue(TagD.getUID(Level.INSTANCE)));
 
-    // Transform to JPEG
+    Attributes attrs = imageInfo.getAttributes();
+    DicomMediaUtils.fillAttributes(AcquireManager.GLOBAL.getTagEntrySetIterator(), attrs);
+    DicomMediaUtils.fillAttributes(imageInfo.getSeries().getTagEntrySetIterator(), attrs);
+    DicomMediaUtils.fillAttributes(imageElement.getTagEntrySetIterator(), attrs);
+    // Spatial calibration
+    if (Unit.PIXEL != imageElement.getPixelSpacingUnit()) {
+      attrs.setString(Tag.PixelSpacingCalibrationDescription, VR.LO, "Used fiducial"); // NON-NLS
+      double unitRatio =
+          imageElement.getPixelSize()
+              * Unit.MILLIMETER.getConversionRatio(
+                  imageElement.getPixelSpacingUnit().getConvFactor());
+      attrs.setDouble(Tag.PixelSpacing, VR.DS, unitRatio, unitRatio);
+    }
+
+    AnatomicRegion.write(attrs, (AnatomicRegion) imageElement.getTagValue(TagW.AnatomicRegion));
+
+    File dcmFile = new File(exportDirDicom, sopInstanceUID);
     Integer orientation =
         StringUtil.getInteger((String) imageElement.getTagValue(TagW.ExifOrientation));
     File imgFile = imageElement.getFileCache().getOriginalFile().orElse(null);
@@ -83,79 +103,122 @@ public static boolean dicomize(
         || !imageElement.getMimeType().contains("jpeg")
         || !imageInfo.getCurrentValues().equals(imageInfo.getDefaultValues())
         || (orientation != null && orientation > 0)) {
-
-      imgFile = new File(exportDirImage, sopInstanceUID + ".jpg");
+      // Transform to JPEG in memory
       SimpleOpManager opManager = imageInfo.getPostProcessOpManager();
       PlanarImage transformedImage = imageElement.getImage(opManager, false);
-
-      MatOfInt map = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 80);
-      if (!ImageProcessor.writeImage(transformedImage.toImageCV(), imgFile, map)) {
+      if (transformedImage == null
+          || !writeJpegDicom(attrs, transformedImage.toImageCV(), dcmFile, sopInstanceUID)) {
         // out of memory ??
-        FileUtil.delete(imgFile);
+        FileUtil.delete(dcmFile);
         LOGGER.error("Cannot Transform to jpeg {}", imageElement.getName());
         return false;
       }
+    } else if (imgFile.canRead()) {
+      try {
+        Dicomizer.jpeg(attrs, imgFile, dcmFile, false);
+      } catch (Exception e) {
+        LOGGER.error("Cannot Dicomize {}", imageElement.getName(), e);
+        return false;
+      }
+    } else {
+      LOGGER.error("Cannot read JPEG image {}", imageElement.getName());
+      return false;
     }
 
-    // Dicomize
-    if (imgFile.canRead()) {
-      Attributes attrs = imageInfo.getAttributes();
-      DicomMediaUtils.fillAttributes(AcquireManager.GLOBAL.getTagEntrySetIterator(), attrs);
-      DicomMediaUtils.fillAttributes(imageInfo.getSeries().getTagEntrySetIterator(), attrs);
-      DicomMediaUtils.fillAttributes(imageElement.getTagEntrySetIterator(), attrs);
-      // Spatial calibration
-      if (Unit.PIXEL != imageElement.getPixelSpacingUnit()) {
-        attrs.setString(Tag.PixelSpacingCalibrationDescription, VR.LO, "Used fiducial"); // NON-NLS
-        double unitRatio =
-            imageElement.getPixelSize()
-                * Unit.MILLIMETER.getConversionRatio(
-                    imageElement.getPixelSpacingUnit().getConvFactor());
-        attrs.setDouble(Tag.PixelSpacing, VR.DS, unitRatio, unitRatio);
+    // Presentation State
+    GraphicModel grModel = (GraphicModel) imageElement.getTagValue(TagW.PresentationModel);
+    if (grModel != null && grModel.hasSerializableGraphics()) {
+      Point2D offset = null;
+      Rectangle crop =
+          (Rectangle)
+              imageInfo.getPostProcessOpManager().getParamValue(CropOp.OP_NAME, CropOp.P_AREA);
+      if (crop != null) {
+        int rotationAngle =
+            Optional.ofNullable(
+                    (Integer)
+                        imageInfo
+                            .getPostProcessOpManager()
+                            .getParamValue(RotationOp.OP_NAME, RotationOp.P_ROTATE))
+                .orElse(0);
+        rotationAngle = rotationAngle % 360;
+        if (rotationAngle == 0 || rotationAngle == 180) {
+          offset = new Point2D.Double(crop.getX(), crop.getY());
+        } else {
+          double factor = 2.0; // work only with 90 and 270 degrees
+          offset = new Point2D.Double(crop.getX() * factor, crop.getY() * factor);
+        }
       }
+      String prUid = UIDUtils.createUID();
+      File outputFile = new File(exportDirDicom, prUid);
+      DicomPrSerializer.writePresentation(
+          grModel, attrs, outputFile, seriesInstanceUID, prUid, offset);
+    }
 
-      AnatomicRegion.write(attrs, (AnatomicRegion) imageElement.getTagValue(TagW.AnatomicRegion));
+    return true;
+  }
 
-      try {
-        Dicomizer.jpeg(attrs, imgFile, new File(exportDirDicom, sopInstanceUID), false);
-      } catch (Exception e) {
-        LOGGER.error("Cannot Dicomize {}", imageElement.getName(), e);
+  /**
+   * Encode the image in JPEG in memory and write the DICOM file with the encapsulated pixel data,
+   * without any intermediate image file.
+   *
+   * @return true when the DICOM file has been written
+   */
+  private static boolean writeJpegDicom(
+      Attributes attrs, Mat image, File dcmFile, String sopInstanceUID) {
+    MatOfByte buf = new MatOfByte();
+    try {
+      MatOfInt params = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 80);
+      if (!Imgcodecs.imencode(".jpg", image, buf, params)) { // NON-NLS
         return false;
       }
+      byte[] jpeg = buf.toArray();
+      boolean color = image.channels() > 1;
+      // A compressed image is always 8-bit
+      long rawSize = (long) image.rows() * image.cols() * (color ? 3 : 1);
 
-      // Presentation State
-      GraphicModel grModel = (GraphicModel) imageElement.getTagValue(TagW.PresentationModel);
-      if (grModel != null && grModel.hasSerializableGraphics()) {
-        Point2D offset = null;
-        Rectangle crop =
-            (Rectangle)
-                imageInfo.getPostProcessOpManager().getParamValue(CropOp.OP_NAME, CropOp.P_AREA);
-        if (crop != null) {
-          int rotationAngle =
-              Optional.ofNullable(
-                      (Integer)
-                          imageInfo
-                              .getPostProcessOpManager()
-                              .getParamValue(RotationOp.OP_NAME, RotationOp.P_ROTATE))
-                  .orElse(0);
-          rotationAngle = rotationAngle % 360;
-          if (rotationAngle == 0 || rotationAngle == 180) {
-            offset = new Point2D.Double(crop.getX(), crop.getY());
-          } else {
-            double factor = 2.0; // work only with 90 and 270 degrees
-            offset = new Point2D.Double(crop.getX() * factor, crop.getY() * factor);
-          }
-        }
-        String prUid = UIDUtils.createUID();
-        File outputFile = new File(exportDirDicom, prUid);
-        DicomPrSerializer.writePresentation(
-            grModel, attrs, outputFile, seriesInstanceUID, prUid, offset);
+      Attributes dcm = new Attributes(attrs);
+      supplementMissingValue(dcm, Tag.SOPClassUID, UID.VLPhotographicImageStorage);
+      supplementMissingValue(dcm, Tag.SOPInstanceUID, sopInstanceUID);
+      supplementMissingValue(dcm, Tag.StudyInstanceUID, UIDUtils.createUID());
+      supplementMissingValue(dcm, Tag.SeriesInstanceUID, UIDUtils.createUID());
+      dcm.setInt(Tag.SamplesPerPixel, VR.US, color ? 3 : 1);
+      dcm.setString(
+          Tag.PhotometricInterpretation, VR.CS, color ? "YBR_FULL_422" : "MONOCHROME2"); // NON-NLS
+      if (color) {
+        dcm.setInt(Tag.PlanarConfiguration, VR.US, 0);
       }
-    } else {
-      LOGGER.error("Cannot read JPEG image {}", imageElement.getName());
+      dcm.setInt(Tag.Rows, VR.US, image.rows());
+      dcm.setInt(Tag.Columns, VR.US, image.cols());
+      dcm.setInt(Tag.BitsAllocated, VR.US, 8);
+      dcm.setInt(Tag.BitsStored, VR.US, 8);
+      dcm.setInt(Tag.HighBit, VR.US, 7);
+      dcm.setInt(Tag.PixelRepresentation, VR.US, 0);
+      dcm.setString(Tag.LossyImageCompression, VR.CS, "01");
+      dcm.setString(Tag.LossyImageCompressionMethod, VR.CS, "ISO_10918_1"); // NON-NLS
+      dcm.setDouble(Tag.LossyImageCompressionRatio, VR.DS, (double) rawSize / jpeg.length);
+
+      Fragments fragments = dcm.newFragments(Tag.PixelData, VR.OB, 2);
+      // Empty basic offset table
+      fragments.add(new byte[0]);
+      // A fragment must have an even length
+      fragments.add(jpeg.length % 2 == 0 ? jpeg : Arrays.copyOf(jpeg, jpeg.length + 1));
+
+      try (DicomOutputStream out = new DicomOutputStream(dcmFile)) {
+        out.writeDataset(dcm.createFileMetaInformation(UID.JPEGBaseline8Bit), dcm);
+      }
+      return true;
+    } catch (Exception e) {
+      LOGGER.error("Cannot write the DICOM file {}", dcmFile, e);
       return false;
+    } finally {
+      buf.release();
     }
+  }
 
-    return true;
+  private static void supplementMissingValue(Attributes attrs, int tag, String value) {
+    if (!attrs.containsValue(tag)) {
+      attrs.setString(tag, VR.UI, value);
+    }
   }
 
   /**
@@ -134,6 +134,7 @@ public PublishDicomTask publishStow(
       }
     }
 
+    DicomProgress dicomProgress = new DicomProgress();
     Supplier<DicomState> publish =
         () -> {
           try (StowRS stowRS =
@@ -145,7 +146,10 @@ public PublishDicomTask publishStow(
 
             DicomState state =
                 stowRS.uploadDicom(
-                    Collections.singletonList(exportDirDicom.getAbsolutePath()), true, authMethod);
+                    Collections.singletonList(exportDirDicom.getAbsolutePath()),
+                    true,
+                    authMethod,
+                    dicomProgress);
             if (state.getStatus() == Status.Success) {
               toPublish.forEach(
                   i -> {
@@ -162,7 +166,7 @@ public PublishDicomTask publishStow(
             FileUtil.recursiveDelete(exportDirDicom);
           }
         };
-    return new PublishDicomTask(publish, new DicomProgress());
+    return new PublishDicomTask(publish, dicomProgress);
   }
 
   private void publishChanged(PropertyChangeEvent evt) {
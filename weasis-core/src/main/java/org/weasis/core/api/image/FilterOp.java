@@ -38,6 +38,15 @@ public FilterOp copy() {
     return new FilterOp(this);
   }
 
+  @Override
+  public int getRegionMargin() {
+    KernelData kernel = (KernelData) params.get(P_KERNEL_DATA);
+    if (kernel == null || kernel.equals(KernelData.NONE)) {
+      return 0;
+    }
+    return Math.max(kernel.getWidth(), kernel.getHeight()) / 2 + 1;
+  }
+
   @Override
   public void process() throws Exception {
     PlanarImage source = (PlanarImage) params.get(Param.INPUT_IMG);
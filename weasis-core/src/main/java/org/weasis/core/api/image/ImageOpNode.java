@@ -49,4 +49,15 @@ private Param() {}
   void clearIOCache();
 
   void handleImageOpEvent(ImageOpEvent event);
+
+  /**
+   * Get the number of pixels around a region of the input image required to compute the same region
+   * of the output image. It allows processing only the visible part of a large image.
+   *
+   * @return the margin in pixels, or -1 if the output depends on the position of the pixels or on
+   *     the whole image
+   */
+  default int getRegionMargin() {
+    return -1;
+  }
 }
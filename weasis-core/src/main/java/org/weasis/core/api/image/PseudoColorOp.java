@@ -48,6 +48,11 @@ public PseudoColorOp copy() {
     return new PseudoColorOp(this);
   }
 
+  @Override
+  public int getRegionMargin() {
+    return 0;
+  }
+
   @Override
   public void process() throws Exception {
     PlanarImage source = (PlanarImage) params.get(Param.INPUT_IMG);
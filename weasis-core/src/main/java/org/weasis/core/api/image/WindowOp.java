@@ -42,6 +42,12 @@ public WindowOp copy() {
     return new WindowOp(this);
   }
 
+  @Override
+  public int getRegionMargin() {
+    // Lookup table applied to each pixel
+    return 0;
+  }
+
   @Override
   public void handleImageOpEvent(ImageOpEvent event) {
     OpEvent type = event.getEventType();
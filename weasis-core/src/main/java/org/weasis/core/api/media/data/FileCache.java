@@ -13,6 +13,7 @@
 import java.nio.file.Paths;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.util.FileUtil;
@@ -24,6 +25,8 @@ public class FileCache {
   private File originalTempFile;
   private File transformedFile;
   private boolean requireTransformation;
+  private Callable<File> fileProvider;
+  private long providedLength;
 
   public FileCache(MediaReader reader) {
     this.reader = Objects.requireNonNull(reader);
@@ -48,10 +51,53 @@ public Optional<File> getOriginalFile() {
       } catch (Exception e) {
         LOGGER.error("Cannot convert uri to file: {}", reader.getUri(), e);
       }
+    } else {
+      originalFile = provideFile();
     }
     return Optional.ofNullable(originalFile);
   }
 
+  /**
+   * Set the provider of the local file when the media cannot be read directly (e.g. an entry of an
+   * archive). The provider is called at the first access to the original file, which is then
+   * handled like a temporary file. A provider implementing {@link AutoCloseable} is closed once the
+   * file is provided or when the cache is disposed.
+   *
+   * @param fileProvider the provider of the local file
+   * @param length the length of the file, returned by {@link #getLength()} before the first access
+   */
+  public synchronized void setFileProvider(Callable<File> fileProvider, long length) {
+    this.fileProvider = fileProvider;
+    this.providedLength = length;
+  }
+
+  public synchronized boolean hasFileProvider() {
+    return fileProvider != null;
+  }
+
+  private synchronized File provideFile() {
+    if (originalTempFile == null && fileProvider != null) {
+      try {
+        originalTempFile = fileProvider.call();
+        releaseFileProvider();
+      } catch (Exception e) {
+        LOGGER.error("Cannot get the file of {}", reader.getUri(), e);
+      }
+    }
+    return originalTempFile;
+  }
+
+  private synchronized void releaseFileProvider() {
+    if (fileProvider instanceof AutoCloseable closeable) {
+      try {
+        closeable.close();
+      } catch (Exception e) {
+        LOGGER.error("Cannot release the file provider of {}", reader.getUri(), e);
+      }
+    }
+    fileProvider = null;
+  }
+
   public File getFinalFile() {
     if (transformedFile != null) {
       return transformedFile;
@@ -84,16 +130,24 @@ public synchronized void setRequireTransformation(boolean requireTransformation)
   }
 
   public long getLength() {
+    if (hasFileProvider()) {
+      // Do not request the file only for its length
+      return providedLength;
+    }
     Optional<File> f = getOriginalFile();
     return f.map(File::length).orElse(0L);
   }
 
   public long getLastModified() {
+    if (hasFileProvider()) {
+      return 0L;
+    }
     Optional<File> f = getOriginalFile();
     return f.map(File::lastModified).orElse(0L);
   }
 
   public void dispose() {
+    releaseFileProvider();
     FileUtil.delete(originalTempFile);
     FileUtil.delete(transformedFile);
   }
@@ -15,8 +15,8 @@
 import java.awt.image.RenderedImage;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import org.opencv.core.Core.MinMaxLocResult;
 import org.opencv.core.CvType;
@@ -30,7 +30,7 @@
 import org.weasis.core.api.image.cv.CvUtil;
 import org.weasis.core.api.image.measure.MeasurementsAdapter;
 import org.weasis.core.api.image.util.Unit;
-import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.core.api.media.data.ImageLoader.Priority;
 import org.weasis.core.util.MathUtil;
 import org.weasis.opencv.data.ImageCV;
 import org.weasis.opencv.data.LookupTableCV;
@@ -45,8 +45,8 @@
 public class ImageElement extends MediaElement {
   private static final Logger LOGGER = LoggerFactory.getLogger(ImageElement.class);
 
-  public static final ExecutorService IMAGE_LOADER =
-      ThreadUtil.buildNewSingleThreadExecutor("Image Loader"); // NON-NLS
+  public static final ImageLoader IMAGE_LOADER =
+      new ImageLoader(ImageLoader.getDefaultPoolSize(), "Image Loader"); // NON-NLS
 
   private static final NativeCache<ImageElement, PlanarImage> mCache =
       new NativeCache<>(Runtime.getRuntime().maxMemory() / 2) {
@@ -67,7 +67,20 @@ protected void afterEntryRemove(ImageElement key, PlanarImage img) {
         }
       };
 
-  protected boolean readable = true;
+  static {
+    // Keep the images of the series displayed in a viewer with the PINNED eviction policy
+    mCache.setPinnedFilter(Series::isInOpenSeries);
+    String eviction = System.getProperty("weasis.cache.eviction"); // NON-NLS
+    if (eviction != null) {
+      try {
+        mCache.setEviction(NativeCache.Eviction.valueOf(eviction.trim().toUpperCase()));
+      } catch (IllegalArgumentException e) {
+        LOGGER.warn("Unknown cache eviction policy: {}", eviction);
+      }
+    }
+  }
+
+  protected volatile boolean readable = true;
 
   protected double pixelSizeX = 1.0;
   protected double pixelSizeY = 1.0;
@@ -86,6 +99,14 @@ public static int getNumberOfImagesInCache() {
     return mCache.size();
   }
 
+  /**
+   * @return the cache of the decoded images. Use it for configuring the eviction policy or for
+   *     getting statistics.
+   */
+  public static NativeCache<ImageElement, PlanarImage> getImageCache() {
+    return mCache;
+  }
+
   protected void findMinMaxValues(PlanarImage img, boolean exclude8bitImage)
       throws OutOfMemoryError {
     // This function can be called several times from the inner class Load.
@@ -422,16 +443,12 @@ private PlanarImage startImageLoading() throws OutOfMemoryError {
     PlanarImage cacheImage;
     if ((cacheImage = mCache.get(this)) == null && readable && setAsLoading()) {
       LOGGER.debug("Asking for reading image: {}", this);
-      Load ref = new Load();
-      Future<PlanarImage> future = IMAGE_LOADER.submit(ref);
       PlanarImage img = null;
       try {
-        img = future.get();
+        img = getLoadingResult();
       } catch (InterruptedException e) {
         // Re-assert the thread's interrupted status
         Thread.currentThread().interrupt();
-        // We don't need the result, so cancel the task too
-        future.cancel(true);
       } catch (ExecutionException e) {
         if (e.getCause() instanceof OutOfMemoryError memoryError) {
           setAsLoaded();
@@ -454,15 +471,62 @@ private PlanarImage startImageLoading() throws OutOfMemoryError {
     return cacheImage;
   }
 
+  private PlanarImage getLoadingResult() throws InterruptedException, ExecutionException {
+    while (true) {
+      // Coalesced with a pending request (e.g. preloading) of the same image
+      Future<PlanarImage> future = IMAGE_LOADER.submit(this, Priority.VISIBLE, new Load());
+      try {
+        return future.get();
+      } catch (CancellationException e) {
+        // The coalesced request has been cancelled, submit a new one
+        if (Thread.currentThread().isInterrupted()) {
+          throw new InterruptedException();
+        }
+      } catch (InterruptedException e) {
+        // We don't need the result, the task is cancelled only if no other request shares it
+        IMAGE_LOADER.withdraw(future);
+        throw e;
+      }
+    }
+  }
+
   public boolean isReadable() {
     return readable;
   }
 
+  /**
+   * Loads asynchronously the image into the cache without blocking the caller.
+   *
+   * @param priority the loading priority
+   * @return the future of the loading task or null when the image is already in the cache or
+   *     cannot be read
+   */
+  public Future<PlanarImage> preloadImage(Priority priority) {
+    if (!readable || isLoading() || mCache.containsKey(this)) {
+      return null;
+    }
+    return IMAGE_LOADER.submit(this, priority, new Load(true));
+  }
+
   class Load implements Callable<PlanarImage> {
+    private final boolean putInCache;
+
+    Load() {
+      this(false);
+    }
+
+    Load(boolean putInCache) {
+      this.putInCache = putInCache;
+    }
 
     @Override
     public PlanarImage call() throws Exception {
-      return loadImage();
+      PlanarImage img = loadImage();
+      if (putInCache && img != null && img.width() > 0) {
+        mCache.put(ImageElement.this, img);
+        setTag(TagW.ImageCache, true);
+      }
+      return img;
     }
   }
 }
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.media.data;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.opencv.data.PlanarImage;
+
+/**
+ * Bounded pool decoding images by priority. Requests for the same {@link ImageElement} which are
+ * still pending or running are coalesced into a single task.
+ */
+public class ImageLoader extends ThreadPoolExecutor {
+
+  public enum Priority {
+    /** Image displayed in a view */
+    VISIBLE,
+    /** Image close to the displayed one in the scrolling direction */
+    NEIGHBOR,
+    /** Any other loading (thumbnails, processing...) */
+    BACKGROUND
+  }
+
+  private static final AtomicLong SEQUENCE = new AtomicLong();
+
+  private final Map<ImageElement, PriorityTask<PlanarImage>> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder decodeCount = new LongAdder();
+  private final LongAdder decodeTime = new LongAdder();
+  private final LongAdder coalescedCount = new LongAdder();
+
+  public ImageLoader(int nThreads, String name) {
+    super(
+        nThreads,
+        nThreads,
+        30L,
+        TimeUnit.SECONDS,
+        new PriorityBlockingQueue<>(),
+        ThreadUtil.getThreadFactory(name));
+    allowCoreThreadTimeOut(true);
+  }
+
+  public static int getDefaultPoolSize() {
+    return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 16));
+  }
+
+  /**
+   * Submit the loading task of an image. If a task for the same image is already pending or
+   * running, its future is returned and its priority is raised when required.
+   *
+   * @param image the image to load
+   * @param priority the priority of the request
+   * @param task the task reading the image
+   * @return the future of the loading task
+   */
+  public Future<PlanarImage> submit(
+      ImageElement image, Priority priority, Callable<PlanarImage> task) {
+    Objects.requireNonNull(image);
+    Objects.requireNonNull(task);
+    Priority p = priority == null ? Priority.BACKGROUND : priority;
+    while (true) {
+      PriorityTask<PlanarImage> newTask = new PriorityTask<>(task, p, image);
+      PriorityTask<PlanarImage> current = inFlight.putIfAbsent(image, newTask);
+      if (current == null) {
+        execute(newTask);
+        return newTask;
+      }
+      if (!current.isDone()) {
+        coalescedCount.increment();
+        current.requests.incrementAndGet();
+        if (p.compareTo(current.priority) < 0 && getQueue().remove(current)) {
+          // Re-submit the pending task with the higher priority. Use execute() rather than offering
+          // it to the queue, which would not start a worker when all of them have timed out.
+          current.priority = p;
+          execute(current);
+        }
+        return current;
+      }
+      // Completed task not yet removed from the map
+      inFlight.remove(image, current);
+    }
+  }
+
+  /**
+   * Withdraws a request returned by {@link #submit(ImageElement, Priority, Callable)} whose result
+   * is not needed anymore. As the task can be shared by coalesced requests, it is cancelled only
+   * when no other request is still sharing it.
+   *
+   * @param future the future returned by the submission
+   * @return true if the task has been cancelled
+   */
+  public boolean withdraw(Future<?> future) {
+    if (future instanceof PriorityTask<?> t && t.requests.decrementAndGet() <= 0) {
+      getQueue().remove(t);
+      return t.cancel(true);
+    }
+    return false;
+  }
+
+  public boolean isLoading(ImageElement image) {
+    return image != null && inFlight.containsKey(image);
+  }
+
+  /** Cancels the pending tasks having the given priority or a lower one. */
+  public void cancelPending(Priority priority) {
+    for (Runnable r : getQueue()) {
+      if (r instanceof PriorityTask<?> t
+          && t.priority.compareTo(priority) >= 0
+          && getQueue().remove(t)) {
+        t.cancel(false);
+      }
+    }
+  }
+
+  public int getQueueDepth() {
+    return getQueue().size();
+  }
+
+  public long getDecodeCount() {
+    return decodeCount.sum();
+  }
+
+  public long getCoalescedCount() {
+    return coalescedCount.sum();
+  }
+
+  /**
+   * @return the average decoding time in milliseconds
+   */
+  public double getAverageDecodeTime() {
+    long count = decodeCount.sum();
+    return count == 0 ? 0.0 : decodeTime.sum() / (count * 1_000_000.0);
+  }
+
+  @Override
+  protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+    return new PriorityTask<>(callable, Priority.BACKGROUND, null);
+  }
+
+  @Override
+  protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+    return new PriorityTask<>(runnable, value, Priority.BACKGROUND);
+  }
+
+  private final class PriorityTask<T> extends FutureTask<T>
+      implements Comparable<PriorityTask<?>> {
+    private final long sequence = SEQUENCE.getAndIncrement();
+    private final ImageElement image;
+    // Number of requests sharing this task
+    private final AtomicInteger requests = new AtomicInteger(1);
+    private volatile Priority priority;
+
+    PriorityTask(Callable<T> callable, Priority priority, ImageElement image) {
+      super(callable);
+      this.priority = priority;
+      this.image = image;
+    }
+
+    PriorityTask(Runnable runnable, T result, Priority priority) {
+      super(runnable, result);
+      this.priority = priority;
+      this.image = null;
+    }
+
+    @Override
+    public void run() {
+      long start = System.nanoTime();
+      try {
+        super.run();
+      } finally {
+        decodeTime.add(System.nanoTime() - start);
+        decodeCount.increment();
+      }
+    }
+
+    @Override
+    protected void done() {
+      if (image != null) {
+        inFlight.remove(image, this);
+      }
+    }
+
+    @Override
+    public int compareTo(PriorityTask<?> o) {
+      int rep = priority.compareTo(o.priority);
+      if (rep != 0) {
+        return rep;
+      }
+      return Long.compare(sequence, o.sequence);
+    }
+  }
+}
@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.media.data;
+
+import org.weasis.opencv.data.PlanarImage;
+
+/**
+ * Image whose pixel data is a memory-mapped region of a file. Its pages are managed by the page
+ * cache of the operating system, so {@link NativeCache} accounts for them separately from the
+ * decoded images.
+ */
+public interface MappedImage extends PlanarImage {}
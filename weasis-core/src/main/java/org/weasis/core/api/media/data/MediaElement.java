@@ -135,6 +135,21 @@ public long getLastModified() {
     return mediaIO.getFileCache().getLastModified();
   }
 
+  /**
+   * Get a key identifying the content of this media between the sessions, for instance to store a
+   * derived data like the thumbnail.
+   *
+   * @return the key or null if the content cannot be identified (e.g. an image in memory)
+   */
+  public String getContentKey() {
+    Optional<File> file = mediaIO.getFileCache().getOriginalFile();
+    if (file.isPresent() && file.get().canRead()) {
+      File f = file.get();
+      return f.getAbsolutePath() + "|" + f.length() + "|" + f.lastModified() + "|" + key;
+    }
+    return null;
+  }
+
   public String getMimeType() {
     return mediaIO.getMediaFragmentMimeType();
   }
@@ -151,7 +166,8 @@ protected final synchronized void setAsLoaded() {
     loading = false;
   }
 
-  public final synchronized boolean isLoading() {
+  public final boolean isLoading() {
+    // Volatile read, do not wait for the monitor held during the loading
     return loading;
   }
 }
@@ -10,61 +10,218 @@
 package org.weasis.core.api.media.data;
 
 import java.util.AbstractMap;
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
 import org.weasis.opencv.data.PlanarImage;
 
+/**
+ * Cache of native images limited by the physical size of the values. Reads are lock-free, only the
+ * insertion, the removal and the eviction of entries are serialized.
+ *
+ * <p>The entries are kept in access lists where a read only records the access time. The eviction
+ * gives a second chance to the entries read since they have been queued (CLOCK approximation of
+ * LRU), so it does not need to sort all the entries.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of native images
+ */
 public abstract class NativeCache<K, V extends PlanarImage> extends AbstractMap<K, V> {
 
-  protected final Map<K, V> hash;
+  public enum Eviction {
+    /** Least recently used entries are removed first */
+    LRU,
+    /**
+     * W-TinyLFU: the new entries go into a small LRU admission window. An entry leaving the window
+     * enters the main LRU region only when its frequency (estimated with a TinyLFU sketch) is
+     * higher than the one of the main region victim.
+     */
+    TINY_LFU,
+    /** Like LRU, but the pinned entries are removed only when nothing else can be freed */
+    PINNED
+  }
+
+  // Size of the admission window of W-TinyLFU, in percent of the maximum memory
+  private static final int WINDOW_PERCENT = 1;
+
+  protected final Map<K, Node<K, V>> hash;
   private final long maxNativeMemory;
   private final AtomicLong useNativeMemory;
+  private final long maxMappedMemory;
+  private final AtomicLong useMappedMemory;
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final FrequencySketch sketch = new FrequencySketch(4096);
+  // Guarded by evictionLock
+  private final Region nativeRegion;
+  private final Region mappedRegion;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+
+  private volatile Eviction eviction = Eviction.LRU;
+  private volatile Predicate<? super K> pinnedFilter = k -> false;
 
   protected NativeCache(long maxNativeMemory) {
+    this(maxNativeMemory, maxNativeMemory);
+  }
+
+  /**
+   * @param maxNativeMemory the maximum size of the decoded images
+   * @param maxMappedMemory the maximum size of the memory-mapped images (see {@link MappedImage})
+   */
+  protected NativeCache(long maxNativeMemory, long maxMappedMemory) {
     this.maxNativeMemory = maxNativeMemory;
     this.useNativeMemory = new AtomicLong(0);
-    this.hash = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true));
+    this.maxMappedMemory = maxMappedMemory;
+    this.useMappedMemory = new AtomicLong(0);
+    this.hash = new ConcurrentHashMap<>(64, 0.75f);
+    this.nativeRegion = new Region(maxNativeMemory * WINDOW_PERCENT / 100);
+    this.mappedRegion = new Region(maxMappedMemory * WINDOW_PERCENT / 100);
   }
 
   @Override
   public V get(Object key) {
-    return hash.get(key);
+    Node<K, V> node = key == null ? null : hash.get(key);
+    if (node == null) {
+      missCount.increment();
+      return null;
+    }
+    node.touch();
+    sketch.increment(key);
+    hitCount.increment();
+    return node.value;
+  }
+
+  /**
+   * Same as {@link #get(Object)}, but without recording the access: the recency, the frequency and
+   * the statistics of the entry are not updated.
+   *
+   * @param key the key
+   * @return the value or null
+   */
+  public V peek(Object key) {
+    Node<K, V> node = key == null ? null : hash.get(key);
+    return node == null ? null : node.value;
   }
 
   public boolean isMemoryAvailable() {
     return useNativeMemory.get() < maxNativeMemory;
   }
 
+  public long getMaxNativeMemory() {
+    return maxNativeMemory;
+  }
+
+  public long getUsedNativeMemory() {
+    return useNativeMemory.get();
+  }
+
+  public long getAvailableNativeMemory() {
+    return Math.max(0, maxNativeMemory - useNativeMemory.get());
+  }
+
+  public boolean isMappedMemoryAvailable() {
+    return useMappedMemory.get() < maxMappedMemory;
+  }
+
+  public long getUsedMappedMemory() {
+    return useMappedMemory.get();
+  }
+
+  public Eviction getEviction() {
+    return eviction;
+  }
+
+  public void setEviction(Eviction eviction) {
+    this.eviction = Objects.requireNonNull(eviction);
+  }
+
+  /**
+   * @param pinnedFilter the filter of the entries to keep in the cache with the {@link
+   *     Eviction#PINNED} policy
+   */
+  public void setPinnedFilter(Predicate<? super K> pinnedFilter) {
+    this.pinnedFilter = pinnedFilter == null ? k -> false : pinnedFilter;
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
   public void expungeStaleEntries() {
-    if (!isMemoryAvailable()) {
-      synchronized (hash) {
-        List<K> remKeys = new ArrayList<>();
-        // 5% of max memory + diff
-        long maxfreeSize = maxNativeMemory / 20 + (useNativeMemory.get() - maxNativeMemory);
-        long freeSize = 0;
-
-        for (Map.Entry<K, V> e : hash.entrySet()) {
-          freeSize += physicalBytes(e.getValue());
-          if (freeSize > maxfreeSize) {
-            break;
-          }
-          remKeys.add(e.getKey());
+    if (!isMemoryAvailable() || !isMappedMemoryAvailable()) {
+      evictionLock.lock();
+      try {
+        // Memory may have been freed by another thread
+        if (!isMemoryAvailable()) {
+          // 5% of max memory + diff
+          evict(nativeRegion, maxNativeMemory / 20 + (useNativeMemory.get() - maxNativeMemory));
+        }
+        if (!isMappedMemoryAvailable()) {
+          evict(mappedRegion, maxMappedMemory / 20 + (useMappedMemory.get() - maxMappedMemory));
         }
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
 
-        for (K key : remKeys) {
-          V val = hash.remove(key);
-          useNativeMemory.addAndGet(-physicalBytes(val));
-          afterEntryRemove(key, val);
+  private void evict(Region region, long maxfreeSize) {
+    Eviction policy = eviction;
+    if (policy != Eviction.TINY_LFU) {
+      // Entries queued with the previous policy
+      region.window.drainTo(region.main);
+    }
+    long freeSize = 0;
+    boolean skipPinned = policy == Eviction.PINNED;
+    while (true) {
+      Node<K, V> victim =
+          policy == Eviction.TINY_LFU
+              ? region.selectTinyLfuVictim()
+              : region.main.peek(skipPinned ? pinnedFilter : null);
+      if (victim == null) {
+        if (skipPinned) {
+          // Nothing else can be freed
+          skipPinned = false;
+          continue;
         }
+        break;
+      }
+      freeSize += victim.size;
+      if (freeSize > maxfreeSize) {
+        break;
+      }
+      victim.unlink();
+      if (hash.remove(victim.key, victim)) {
+        removeMemory(victim.value);
+        evictionCount.increment();
+        afterEntryRemove(victim.key, victim.value);
       }
     }
   }
 
+  private Region getRegion(V val) {
+    return val instanceof MappedImage ? mappedRegion : nativeRegion;
+  }
+
   private long physicalBytes(V val) {
     if (val != null) {
       return val.physicalBytes();
@@ -72,30 +229,74 @@ private long physicalBytes(V val) {
     return 0;
   }
 
+  private void addMemory(V val) {
+    AtomicLong counter = val instanceof MappedImage ? useMappedMemory : useNativeMemory;
+    counter.addAndGet(physicalBytes(val));
+  }
+
+  private void removeMemory(V val) {
+    AtomicLong counter = val instanceof MappedImage ? useMappedMemory : useNativeMemory;
+    counter.addAndGet(-physicalBytes(val));
+  }
+
   protected abstract void afterEntryRemove(K key, V val);
 
   @Override
   public V put(K key, V value) {
     expungeStaleEntries();
-    V result = hash.put(key, value);
-    useNativeMemory.addAndGet(physicalBytes(value));
-    useNativeMemory.addAndGet(-physicalBytes(result));
-    return result;
+    Node<K, V> node = new Node<>(key, value, physicalBytes(value));
+    Node<K, V> result;
+    evictionLock.lock();
+    try {
+      result = hash.put(key, node);
+      if (result != null) {
+        result.unlink();
+      }
+      Region region = getRegion(value);
+      (eviction == Eviction.TINY_LFU ? region.window : region.main).addLast(node);
+    } finally {
+      evictionLock.unlock();
+    }
+    sketch.increment(key);
+    V old = result == null ? null : result.value;
+    addMemory(value);
+    removeMemory(old);
+    return old;
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public V remove(Object key) {
-    V val = hash.remove(key);
-    useNativeMemory.addAndGet(-physicalBytes(val));
+    Node<K, V> node = null;
+    if (key != null) {
+      evictionLock.lock();
+      try {
+        node = hash.remove(key);
+        if (node != null) {
+          node.unlink();
+        }
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+    V val = node == null ? null : node.value;
+    removeMemory(val);
     afterEntryRemove((K) key, val);
     return val;
   }
 
   @Override
   public void clear() {
-    hash.clear();
-    useNativeMemory.set(0);
+    evictionLock.lock();
+    try {
+      hash.clear();
+      nativeRegion.clear();
+      mappedRegion.clear();
+      useNativeMemory.set(0);
+      useMappedMemory.set(0);
+    } finally {
+      evictionLock.unlock();
+    }
   }
 
   @Override
@@ -103,33 +304,228 @@ public int size() {
     return hash.size();
   }
 
+  /**
+   * @return a snapshot of the entries
+   */
   @Override
   public Set<Entry<K, V>> entrySet() {
-    return hash.entrySet();
+    Map<K, V> map = new HashMap<>(hash.size());
+    hash.forEach((k, n) -> map.put(k, n.value));
+    return Collections.unmodifiableMap(map).entrySet();
   }
 
   @Override
   public boolean containsKey(Object key) {
-    return hash.containsKey(key);
+    return key != null && hash.containsKey(key);
   }
 
   @Override
   public boolean containsValue(Object value) {
-    return hash.containsValue(value);
+    for (Node<K, V> node : hash.values()) {
+      if (Objects.equals(node.value, value)) {
+        return true;
+      }
+    }
+    return false;
   }
 
-  @Override
-  public int hashCode() {
-    return hash.hashCode();
+  /** Admission window and main region of one kind of memory, guarded by the eviction lock. */
+  private final class Region {
+    private final long maxWindowSize;
+    private final NodeList<K, V> window = new NodeList<>();
+    private final NodeList<K, V> main = new NodeList<>();
+
+    Region(long maxWindowSize) {
+      this.maxWindowSize = maxWindowSize;
+    }
+
+    Node<K, V> selectTinyLfuVictim() {
+      while (window.size > maxWindowSize) {
+        Node<K, V> candidate = window.peek(null);
+        Node<K, V> victim = main.peek(null);
+        if (victim == null || sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+          // Admit the candidate into the main region
+          candidate.unlink();
+          main.addLast(candidate);
+          if (victim != null) {
+            return victim;
+          }
+        } else {
+          return candidate;
+        }
+      }
+      Node<K, V> victim = main.peek(null);
+      return victim == null ? window.peek(null) : victim;
+    }
+
+    void clear() {
+      window.clear();
+      main.clear();
+    }
   }
 
-  @Override
-  public boolean equals(Object obj) {
-    if (this == obj) return true;
-    if (!super.equals(obj)) return false;
-    if (getClass() != obj.getClass()) return false;
-    @SuppressWarnings("rawtypes")
-    NativeCache other = (NativeCache) obj;
-    return hash.equals(other.hash);
+  /** Doubly-linked list of the nodes in queuing order, guarded by the eviction lock. */
+  static final class NodeList<K, V> {
+    private Node<K, V> head;
+    private Node<K, V> tail;
+    private int count;
+    // Sum of the physical size of the nodes
+    private long size;
+
+    void addLast(Node<K, V> node) {
+      node.list = this;
+      node.prev = tail;
+      node.next = null;
+      node.queuedAt = System.nanoTime();
+      if (tail == null) {
+        head = node;
+      } else {
+        tail.next = node;
+      }
+      tail = node;
+      count++;
+      size += node.size;
+    }
+
+    void remove(Node<K, V> node) {
+      if (node.prev == null) {
+        head = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        tail = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = null;
+      node.next = null;
+      node.list = null;
+      count--;
+      size -= node.size;
+    }
+
+    /**
+     * @param pinned the filter of the nodes which must not be returned, or null
+     * @return the least recently used node, after having moved to the end the nodes read since
+     *     they have been queued (second chance)
+     */
+    Node<K, V> peek(Predicate<? super K> pinned) {
+      // Each node gets at most one second chance per call
+      for (int budget = count; head != null && budget > 0; budget--) {
+        Node<K, V> node = head;
+        if (node.lastAccess > node.queuedAt || (pinned != null && pinned.test(node.key))) {
+          remove(node);
+          addLast(node);
+        } else {
+          return node;
+        }
+      }
+      return pinned == null ? head : null;
+    }
+
+    void drainTo(NodeList<K, V> other) {
+      while (head != null) {
+        Node<K, V> node = head;
+        remove(node);
+        other.addLast(node);
+      }
+    }
+
+    void clear() {
+      while (head != null) {
+        remove(head);
+      }
+    }
+  }
+
+  protected static final class Node<K, V> {
+    private final K key;
+    private final V value;
+    private final long size;
+    private volatile long lastAccess;
+    // Fields guarded by the eviction lock of the cache
+    private long queuedAt;
+    private Node<K, V> prev;
+    private Node<K, V> next;
+    private NodeList<K, V> list;
+
+    Node(K key, V value, long size) {
+      this.key = key;
+      this.value = value;
+      this.size = size;
+      this.lastAccess = System.nanoTime();
+    }
+
+    void touch() {
+      lastAccess = System.nanoTime();
+    }
+
+    void unlink() {
+      if (list != null) {
+        list.remove(this);
+      }
+    }
+
+    public V getValue() {
+      return value;
+    }
+  }
+
+  /** Count-Min sketch of 4-bit counters, halved periodically to age the frequencies. */
+  static final class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private final AtomicIntegerArray table;
+    private final int width;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    FrequencySketch(int width) {
+      this.width = Integer.highestOneBit(Math.max(16, width));
+      this.table = new AtomicIntegerArray(DEPTH * this.width);
+      this.sampleSize = 10 * this.width;
+    }
+
+    void increment(Object key) {
+      int h = spread(key.hashCode());
+      for (int i = 0; i < DEPTH; i++) {
+        table.getAndUpdate(index(h, i), v -> v < 15 ? v + 1 : v);
+      }
+      if (additions.incrementAndGet() == sampleSize) {
+        reset();
+      }
+    }
+
+    int frequency(Object key) {
+      int h = spread(key.hashCode());
+      int frequency = Integer.MAX_VALUE;
+      for (int i = 0; i < DEPTH; i++) {
+        frequency = Math.min(frequency, table.get(index(h, i)));
+      }
+      return frequency;
+    }
+
+    private void reset() {
+      for (int i = 0; i < table.length(); i++) {
+        table.getAndUpdate(i, v -> v >>> 1);
+      }
+      additions.set(0);
+    }
+
+    private int index(int h, int row) {
+      long hash = (h + SEEDS[row]) * SEEDS[row];
+      hash += hash >>> 32;
+      return row * width + ((int) hash & (width - 1));
+    }
+
+    private static int spread(int x) {
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      x = ((x >>> 16) ^ x) * 0x45d9f3b;
+      return (x >>> 16) ^ x;
+    }
   }
 }
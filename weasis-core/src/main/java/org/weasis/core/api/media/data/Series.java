@@ -20,11 +20,14 @@
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.swing.SwingUtilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,11 +50,15 @@
 
   private static final Random RANDOM = new SecureRandom();
   private static final DataFlavor[] flavors = {sequenceDataFlavor};
+  // Series displayed in a viewer (see setOpen())
+  private static final Set<Series<?>> OPEN_SERIES = ConcurrentHashMap.newKeySet();
 
   private PropertyChangeSupport propertyChange = null;
   protected final List<E> medias;
   protected final Map<Comparator<E>, List<E>> sortedMedias = new HashMap<>(6);
   protected final Comparator<E> mediaOrder;
+  // Values of the tags queried by hasMediaContains(), guarded by this
+  private final Map<TagW, Set<Object>> mediaIndex = new HashMap<>(4);
   protected SeriesImporter seriesLoader;
   private long fileSize;
 
@@ -113,28 +120,51 @@ public List<E> getSortedMedias(Comparator<E> comparator) {
 
   @Override
   public void add(E media) {
-    medias.add(media);
+    synchronized (this) {
+      medias.add(media);
+      indexMedia(media);
+    }
     resetSortedMediasMap();
   }
 
   @Override
   public void add(int index, E media) {
-    medias.add(index, media);
+    synchronized (this) {
+      medias.add(index, media);
+      indexMedia(media);
+    }
     resetSortedMediasMap();
   }
 
   @Override
   public void addAll(Collection<? extends E> c) {
-    medias.addAll(c);
+    synchronized (this) {
+      medias.addAll(c);
+      c.forEach(this::indexMedia);
+    }
     resetSortedMediasMap();
   }
 
   @Override
   public void addAll(int index, Collection<? extends E> c) {
-    medias.addAll(index, c);
+    synchronized (this) {
+      medias.addAll(index, c);
+      c.forEach(this::indexMedia);
+    }
     resetSortedMediasMap();
   }
 
+  private void indexMedia(E media) {
+    if (media != null) {
+      for (Map.Entry<TagW, Set<Object>> entry : mediaIndex.entrySet()) {
+        Object val = media.getTagValue(entry.getKey());
+        if (val != null) {
+          entry.getValue().add(val);
+        }
+      }
+    }
+  }
+
   @Override
   public final E getMedia(MEDIA_POSITION position, Filter<E> filter, Comparator<E> sort) {
     List<E> sortedList = getSortedMedias(sort);
@@ -243,6 +273,7 @@ public final E getMedia(int index, Filter<E> filter, Comparator<E> sort) {
 
   @Override
   public void dispose() {
+    OPEN_SERIES.remove(this);
     // forEach implement synchronized
     medias.forEach(
         m -> {
@@ -253,7 +284,10 @@ public void dispose() {
           m.dispose();
         });
 
-    medias.clear();
+    synchronized (this) {
+      medias.clear();
+      mediaIndex.clear();
+    }
     resetSortedMediasMap();
 
     Optional.ofNullable((Thumbnail) getTagValue(TagW.Thumbnail)).ifPresent(Thumbnail::dispose);
@@ -368,8 +402,31 @@ public void addToolTipsElement(StringBuilder toolTips, String title, TagW tag1,
     toolTips.append(GuiUtils.HTML_BR);
   }
 
+  /**
+   * @param media the media
+   * @return true when the media has the identifier of a series displayed in a viewer
+   */
+  public static boolean isInOpenSeries(MediaElement media) {
+    if (media == null) {
+      return false;
+    }
+    for (Series<?> series : OPEN_SERIES) {
+      TagW tagID = series.getTagID();
+      Object id = series.getTagValue(tagID);
+      if (id != null && id.equals(media.getTagValue(tagID))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public void setOpen(boolean open) {
+    if (open) {
+      OPEN_SERIES.add(this);
+    } else {
+      OPEN_SERIES.remove(this);
+    }
     if (this.isOpen() != open) {
       setTag(TagW.SeriesOpen, open);
       Thumbnail thumb = (Thumbnail) getTagValue(TagW.Thumbnail);
@@ -414,15 +471,30 @@ public void setFocused(boolean focused) {
     }
   }
 
+  /**
+   * Check whether a media of the series has the value of a tag. The values of a tag are indexed at
+   * the first call and then maintained when adding medias, so the check does not depend on the
+   * number of medias.
+   *
+   * @param tag the tag
+   * @param val the value
+   * @return true if one media has the value
+   */
   public boolean hasMediaContains(TagW tag, Object val) {
-    if (val != null) {
+    if (val != null && tag != null) {
       synchronized (this) {
-        for (E media : medias) {
-          Object val2 = media.getTagValue(tag);
-          if (val.equals(val2)) {
-            return true;
+        Set<Object> values = mediaIndex.get(tag);
+        if (values == null) {
+          values = new HashSet<>();
+          for (E media : medias) {
+            Object val2 = media.getTagValue(tag);
+            if (val2 != null) {
+              values.add(val2);
+            }
           }
+          mediaIndex.put(tag, values);
         }
+        return values.contains(val);
       }
     }
     return false;
@@ -57,7 +57,9 @@ public class Thumbnail extends JLabel implements Thumbnailable {
       AppProperties.buildAccessibleTempDirectory(
           AppProperties.FILE_CACHE_DIR.getName(), "thumb"); // NON-NLS
   public static final ExecutorService THUMB_LOADER =
-      ThreadUtil.buildNewSingleThreadExecutor("Thumbnail Loader"); // NON-NLS
+      ThreadUtil.buildNewFixedThreadExecutor(
+          Math.max(2, Runtime.getRuntime().availableProcessors() / 2),
+          "Thumbnail Loader"); // NON-NLS
 
   public static final String KEY_SIZE = "explorer.thumbnail.size";
   public static final int MIN_SIZE = 48;
@@ -278,21 +280,45 @@ private void loadThumbnail(
           }
         }
       }
+      // The thumbnails built with a specific preprocessing are not shared between the sessions
+      String storeKey = null;
+      if (noPath
+          && opManager == null
+          && media instanceof ImageElement
+          && ThumbnailStore.getInstance().isEnabled()) {
+        storeKey = ThumbnailStore.buildKey(media.getContentKey(), MAX_SIZE);
+        File stored = ThumbnailStore.getInstance().get(storeKey);
+        if (stored != null) {
+          file = stored;
+          noPath = false;
+          thumbnailPath = stored;
+          media.setTag(TagW.ThumbnailPath, stored.getPath());
+        }
+      }
       if (noPath) {
         if (media instanceof final ImageElement image) {
           PlanarImage imgPl = image.getImage(opManager);
           if (imgPl != null) {
             PlanarImage img = image.getRenderedImage(imgPl);
             final PlanarImage thumb = createThumbnail(img);
-            if (thumb != null) {
-              try {
-                file =
-                    File.createTempFile("tumb_", ".jpg", Thumbnail.THUMBNAIL_CACHE_DIR); // NON-NLS
-              } catch (IOException e) {
-                LOGGER.error("Cannot create file for thumbnail!", e);
-              }
-            }
             try {
+              if (thumb != null && thumb.width() > 0 && storeKey != null) {
+                file = ThumbnailStore.getInstance().put(storeKey, thumb.toMat());
+                if (file != null) {
+                  image.setTag(TagW.ThumbnailPath, file.getPath());
+                  thumbnailPath = file;
+                  return;
+                }
+              }
+              if (thumb != null) {
+                try {
+                  file =
+                      File.createTempFile(
+                          "tumb_", ".jpg", Thumbnail.THUMBNAIL_CACHE_DIR); // NON-NLS
+                } catch (IOException e) {
+                  LOGGER.error("Cannot create file for thumbnail!", e);
+                }
+              }
               if (thumb != null && file != null && thumb.width() > 0) {
                 MatOfInt map = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 80);
                 if (ImageProcessor.writeImage(thumb.toMat(), file, map)) {
@@ -325,7 +351,7 @@ private void loadThumbnail(
         }
       } else {
         Load ref = new Load(file);
-        // loading images sequentially, only one thread pool
+        // loading images with the shared image decoding pool (background priority)
         Future<PlanarImage> future = ImageElement.IMAGE_LOADER.submit(ref);
         PlanarImage thumb = null;
         try {
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.media.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.gui.util.AppProperties;
+import org.weasis.core.api.gui.util.GuiUtils;
+import org.weasis.core.util.FileUtil;
+
+/**
+ * Persistent store of the thumbnails, shared between the sessions. The files are named by the hash
+ * of the content key of the media (see {@link MediaElement#getContentKey()}) and the thumbnail
+ * size. The index is built from the directory at startup and the least recently used files are
+ * removed when the quota is exceeded.
+ *
+ * <p>The store is disabled by default: it is enabled by setting {@link #STORE_SIZE} in the system
+ * preferences. The directory can be shared by several instances of the application.
+ */
+public final class ThumbnailStore {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ThumbnailStore.class);
+
+  /** The maximum size of the store in MB, 0 (default) to disable the store */
+  public static final String STORE_SIZE = "thumbnail.store.size";
+
+  private static final String EXTENSION = ".jpg"; // NON-NLS
+  private static final String TMP_EXTENSION = ".tmp"; // NON-NLS
+  // Age of an incomplete file which cannot be written anymore by another instance
+  private static final long TMP_EXPIRATION = TimeUnit.DAYS.toMillis(1);
+
+  private final File directory;
+  private final long maxSize;
+  // File name without extension -> length
+  private final Map<String, Long> index = new ConcurrentHashMap<>();
+  private final AtomicLong size = new AtomicLong();
+
+  private ThumbnailStore() {
+    long mb = GuiUtils.getUICore().getSystemPreferences().getLongProperty(STORE_SIZE, 0L);
+    this.maxSize = Math.max(0L, mb) * 1024L * 1024L;
+    this.directory =
+        new File(AppProperties.WEASIS_PATH, "cache" + File.separator + "thumbnails"); // NON-NLS
+    if (maxSize > 0) {
+      loadIndex();
+    }
+  }
+
+  private static final class Holder {
+    private static final ThumbnailStore INSTANCE = new ThumbnailStore();
+  }
+
+  public static ThumbnailStore getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  public boolean isEnabled() {
+    return maxSize > 0;
+  }
+
+  /**
+   * @param contentKey the content key of the media
+   * @param thumbnailSize the maximum size of the thumbnail
+   * @return the key of the thumbnail or null if the content key is null
+   */
+  public static String buildKey(String contentKey, int thumbnailSize) {
+    if (contentKey == null) {
+      return null;
+    }
+    String value = contentKey + "|" + thumbnailSize;
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256"); // NON-NLS
+      return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param key the key of the thumbnail
+   * @return the stored file or null if not available
+   */
+  public File get(String key) {
+    if (!isEnabled() || key == null || !index.containsKey(key)) {
+      return null;
+    }
+    File file = new File(directory, key + EXTENSION);
+    if (!file.canRead()) {
+      remove(key);
+      return null;
+    }
+    // The last modification date is used as the last access for the eviction
+    if (!file.setLastModified(System.currentTimeMillis())) {
+      LOGGER.trace("Cannot update the last access of {}", file);
+    }
+    return file;
+  }
+
+  /**
+   * Write a thumbnail in the store.
+   *
+   * @param key the key of the thumbnail
+   * @param thumbnail the thumbnail image
+   * @return the stored file, or null when the thumbnail cannot be written
+   */
+  public File put(String key, Mat thumbnail) {
+    if (!isEnabled() || key == null || thumbnail == null) {
+      return null;
+    }
+    File target = new File(directory, key + EXTENSION);
+    File tmp = null;
+    try {
+      Files.createDirectories(directory.toPath());
+      // Unique name, another instance can write the same thumbnail
+      tmp = Files.createTempFile(directory.toPath(), key, TMP_EXTENSION).toFile();
+      // Encode in memory, the format cannot be derived from the name of the temporary file
+      MatOfByte buffer = new MatOfByte();
+      MatOfInt map = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, 80);
+      boolean encoded = Imgcodecs.imencode(EXTENSION, thumbnail, buffer, map);
+      byte[] bytes = buffer.toArray();
+      buffer.release();
+      map.release();
+      if (!encoded) {
+        FileUtil.delete(tmp);
+        return null;
+      }
+      Files.write(tmp.toPath(), bytes);
+      Files.move(
+          tmp.toPath(),
+          target.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOGGER.error("Cannot write the thumbnail {}", target, e);
+      if (tmp != null) {
+        FileUtil.delete(tmp);
+      }
+      return null;
+    }
+    long length = target.length();
+    Long old = index.put(key, length);
+    size.addAndGet(length - (old == null ? 0L : old));
+    if (size.get() > maxSize) {
+      evict();
+    }
+    return target;
+  }
+
+  public void remove(String key) {
+    Long length = index.remove(key);
+    if (length != null) {
+      size.addAndGet(-length);
+      FileUtil.delete(new File(directory, key + EXTENSION));
+    }
+  }
+
+  public long getSize() {
+    return size.get();
+  }
+
+  private void loadIndex() {
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        String name = f.getName();
+        if (name.endsWith(EXTENSION)) {
+          long length = f.length();
+          index.put(name.substring(0, name.length() - EXTENSION.length()), length);
+          size.addAndGet(length);
+        } else if (name.endsWith(TMP_EXTENSION)
+            && System.currentTimeMillis() - f.lastModified() > TMP_EXPIRATION) {
+          // Incomplete writing (e.g. after a crash), not a file being written by another instance
+          FileUtil.delete(f);
+        }
+      }
+    }
+    evict();
+    LOGGER.info("Thumbnail store: {} files, {} MB", index.size(), size.get() / (1024 * 1024));
+  }
+
+  private synchronized void evict() {
+    if (size.get() <= maxSize) {
+      return;
+    }
+    List<File> files = new ArrayList<>(index.size());
+    for (String key : index.keySet()) {
+      files.add(new File(directory, key + EXTENSION));
+    }
+    files.sort(Comparator.comparingLong(File::lastModified));
+    // Free 10% more to avoid evicting at each new thumbnail
+    long limit = maxSize - maxSize / 10;
+    for (File f : files) {
+      if (size.get() <= limit) {
+        break;
+      }
+      String name = f.getName();
+      remove(name.substring(0, name.length() - EXTENSION.length()));
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.util;
+
+import java.io.InputStream;
+import java.net.http.HttpClient.Version;
+import java.util.Objects;
+import org.weasis.core.util.FileUtil;
+
+/** Response of the shared {@link java.net.http.HttpClient} (see {@link NetworkUtil}). */
+public class HttpClientResponse implements HttpResponse {
+
+  private final java.net.http.HttpResponse<InputStream> response;
+  private final InputStream body;
+
+  public HttpClientResponse(java.net.http.HttpResponse<InputStream> response) {
+    this(response, 0);
+  }
+
+  /**
+   * @param response the response of the client
+   * @param readTimeout the maximum time in milliseconds to wait for the next bytes of the body, or
+   *     0 for no timeout
+   */
+  public HttpClientResponse(java.net.http.HttpResponse<InputStream> response, int readTimeout) {
+    this.response = Objects.requireNonNull(response);
+    this.body =
+        readTimeout > 0
+            ? new IdleTimeoutInputStream(response.body(), readTimeout)
+            : response.body();
+  }
+
+  /** Closing the stream gives back the connection to the pool of the client. */
+  @Override
+  public void close() {
+    FileUtil.safeClose(body);
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    return body;
+  }
+
+  public java.net.http.HttpResponse<InputStream> getResponse() {
+    return response;
+  }
+
+  public Version getVersion() {
+    return response.version();
+  }
+
+  @Override
+  public int getResponseCode() {
+    return response.statusCode();
+  }
+
+  @Override
+  public String getResponseMessage() {
+    return "http Status " + response.statusCode(); // NON-NLS
+  }
+
+  @Override
+  public String getHeaderField(String key) {
+    return response.headers().firstValue(key).orElse(null);
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.weasis.core.util.FileUtil;
+
+/**
+ * Stream failing with a {@link HttpTimeoutException} when a read is blocked for longer than the
+ * timeout, like the read timeout of {@link java.net.URLConnection}. A watchdog closes the
+ * underlying stream and interrupts the blocked thread.
+ *
+ * <p>Note: the exception is not an {@link java.io.InterruptedIOException}, which the readers
+ * handle as a cancellation of the download.
+ */
+final class IdleTimeoutInputStream extends FilterInputStream {
+
+  private static final ScheduledThreadPoolExecutor WATCHDOG = buildWatchdog();
+
+  private final long timeoutNanos;
+  private final ScheduledFuture<?> check;
+
+  // Guarded by this
+  private Thread reader;
+  private long readStart;
+  private boolean timedOut;
+  // The reader was already interrupted (e.g. cancelled) when the watchdog interrupted it
+  private boolean interruptedBefore;
+
+  IdleTimeoutInputStream(InputStream in, int timeout) {
+    super(in);
+    this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+    long period = Math.max(100L, timeout / 4L);
+    this.check =
+        WATCHDOG.scheduleWithFixedDelay(this::checkTimeout, period, period, TimeUnit.MILLISECONDS);
+  }
+
+  private static ScheduledThreadPoolExecutor buildWatchdog() {
+    ScheduledThreadPoolExecutor executor =
+        new ScheduledThreadPoolExecutor(
+            1, ThreadUtil.getThreadFactory("Http Read Watchdog")); // NON-NLS
+    executor.setRemoveOnCancelPolicy(true);
+    executor.setKeepAliveTime(30L, TimeUnit.SECONDS);
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private synchronized void checkTimeout() {
+    if (reader != null && !timedOut && System.nanoTime() - readStart > timeoutNanos) {
+      timedOut = true;
+      check.cancel(false);
+      FileUtil.safeClose(in);
+      interruptedBefore = reader.isInterrupted();
+      reader.interrupt();
+    }
+  }
+
+  private synchronized void begin() throws HttpTimeoutException {
+    if (timedOut) {
+      throw new HttpTimeoutException("Read timed out");
+    }
+    reader = Thread.currentThread();
+    readStart = System.nanoTime();
+  }
+
+  private synchronized boolean end() {
+    reader = null;
+    if (timedOut && !interruptedBefore) {
+      // Clear the interruption of the watchdog
+      Thread.interrupted();
+    }
+    return timedOut;
+  }
+
+  @Override
+  public int read() throws IOException {
+    begin();
+    boolean failed = true;
+    try {
+      int val = super.read();
+      failed = false;
+      return val;
+    } finally {
+      if (end() && failed) {
+        throw new HttpTimeoutException("Read timed out");
+      }
+    }
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    begin();
+    boolean failed = true;
+    try {
+      int val = super.read(b, off, len);
+      failed = false;
+      return val;
+    } finally {
+      if (end() && failed) {
+        throw new HttpTimeoutException("Read timed out");
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    check.cancel(false);
+    super.close();
+  }
+}
@@ -17,13 +17,25 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.Authenticator;
+import java.net.CookieHandler;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
+import java.net.PasswordAuthentication;
+import java.net.ProxySelector;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
@@ -42,6 +54,61 @@ public class NetworkUtil {
 
   private NetworkUtil() {}
 
+  // Lazy initialization of the client shared by all the pooled requests
+  private static final class ClientHolder {
+    private static final HttpClient CLIENT =
+        HttpClient.newBuilder()
+            .version(Version.HTTP_2)
+            .followRedirects(Redirect.NORMAL)
+            .connectTimeout(Duration.ofMillis(getUrlConnectionTimeout()))
+            .proxy(ProxySelector.getDefault())
+            .authenticator(new DefaultAuthenticator())
+            .cookieHandler(new DefaultCookieHandler())
+            .build();
+  }
+
+  /**
+   * Delegate to the current default authenticator (e.g. the proxy authentication), like {@link
+   * HttpURLConnection}, because it can be changed after the creation of the client.
+   */
+  private static final class DefaultAuthenticator extends Authenticator {
+    @Override
+    protected PasswordAuthentication getPasswordAuthentication() {
+      Authenticator authenticator = Authenticator.getDefault();
+      if (authenticator == null || authenticator == this) {
+        return null;
+      }
+      return Authenticator.requestPasswordAuthentication(
+          authenticator,
+          getRequestingHost(),
+          getRequestingSite(),
+          getRequestingPort(),
+          getRequestingProtocol(),
+          getRequestingPrompt(),
+          getRequestingScheme(),
+          getRequestingURL(),
+          getRequestorType());
+    }
+  }
+
+  /** Delegate to the current default cookie handler, like {@link HttpURLConnection}. */
+  private static final class DefaultCookieHandler extends CookieHandler {
+    @Override
+    public Map<String, List<String>> get(URI uri, Map<String, List<String>> requestHeaders)
+        throws IOException {
+      CookieHandler handler = CookieHandler.getDefault();
+      return handler == null ? Collections.emptyMap() : handler.get(uri, requestHeaders);
+    }
+
+    @Override
+    public void put(URI uri, Map<String, List<String>> responseHeaders) throws IOException {
+      CookieHandler handler = CookieHandler.getDefault();
+      if (handler != null) {
+        handler.put(uri, responseHeaders);
+      }
+    }
+  }
+
   public static int getUrlConnectionTimeout() {
     return StringUtil.getInt(System.getProperty("UrlConnectionTimeout"), 5000);
   }
@@ -87,6 +154,71 @@ public static HttpResponse getHttpResponse(
     return prepareAuthConnection(request, urlParameters, authMethod);
   }
 
+  /**
+   * Same as {@link #getHttpResponse(String, URLParameters, AuthMethod)}, but the http GET requests
+   * without authentication are sent with a shared client which multiplexes the requests over
+   * HTTP/2 when the server supports it, or otherwise reuses persistent HTTP/1.1 connections.
+   *
+   * <p>Note: the connection is released when the stream of the response is closed.
+   */
+  public static HttpResponse getPooledHttpResponse(
+      String url, URLParameters urlParameters, AuthMethod authMethod) throws IOException {
+    if ((authMethod == null || OAuth2ServiceFactory.noAuth.equals(authMethod))
+        && !urlParameters.isHttpPost()
+        && url.startsWith("http")) { // NON-NLS
+      return sendPooledRequest(url, urlParameters);
+    }
+    return getHttpResponse(url, urlParameters, authMethod);
+  }
+
+  private static HttpClientResponse sendPooledRequest(String url, URLParameters urlParameters)
+      throws IOException {
+    HttpRequest.Builder builder;
+    try {
+      builder = HttpRequest.newBuilder(new URI(url)).GET();
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      throw new IOException(e);
+    }
+    if (!url.startsWith("https")) { // NON-NLS
+      // Avoid the h2c upgrade which is not well-supported by the servers
+      builder.version(Version.HTTP_1_1);
+    }
+    for (Entry<String, String> element : urlParameters.getUnmodifiableHeaders().entrySet()) {
+      try {
+        builder.header(element.getKey(), element.getValue());
+      } catch (IllegalArgumentException e) {
+        LOGGER.debug("Cannot set the restricted header {}", element.getKey());
+      }
+    }
+    builder.header("User-Agent", AppProperties.WEASIS_USER_AGENT); // NON-NLS
+    builder.header("Weasis-User", AppProperties.WEASIS_USER); // NON-NLS
+    if (urlParameters.getReadTimeout() > 0) {
+      // Only the time to receive the headers, the body is bounded by the stream of the response
+      builder.timeout(Duration.ofMillis(urlParameters.getReadTimeout()));
+    }
+
+    HttpClientResponse response;
+    try {
+      response =
+          new HttpClientResponse(
+              ClientHolder.CLIENT.send(builder.build(), BodyHandlers.ofInputStream()),
+              urlParameters.getReadTimeout());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new StreamIOException(e);
+    } catch (IOException e) {
+      throw new StreamIOException(e);
+    }
+
+    int code = response.getResponseCode();
+    if (code < HttpURLConnection.HTTP_OK || code >= HttpURLConnection.HTTP_MULT_CHOICE) {
+      LOGGER.warn("http Status {} - {}", code, url);
+      response.close();
+      throw new StreamIOException(response.getResponseMessage());
+    }
+    return response;
+  }
+
   public static ClosableURLConnection getUrlConnection(String url, URLParameters urlParameters)
       throws IOException {
     return prepareConnection(new URL(url).openConnection(), urlParameters);
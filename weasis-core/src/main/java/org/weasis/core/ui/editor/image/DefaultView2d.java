@@ -1023,7 +1023,7 @@ private void propertyChange(final SynchEvent synch) {
       if (command.equals(ActionW.WINDOW.cmd()) || command.equals(ActionW.LEVEL.cmd())) {
         if (manager.setParamValue(
             WindowOp.OP_NAME, command, ((Number) entry.getValue()).doubleValue())) {
-          imageLayer.updateDisplayOperations();
+          imageLayer.updateDisplayOperationsLater();
         }
       } else if (command.equals(ActionW.ROTATION.cmd())) {
         Object old = actionsInView.put(ActionW.ROTATION.cmd(), entry.getValue());
@@ -1088,7 +1088,7 @@ private void propertyChange(final SynchEvent synch) {
         }
       } else if (command.equals(ActionW.LUT.cmd())) {
         if (manager.setParamValue(PseudoColorOp.OP_NAME, PseudoColorOp.P_LUT, entry.getValue())) {
-          imageLayer.updateDisplayOperations();
+          imageLayer.updateDisplayOperationsLater();
         }
       } else if (command.equals(ActionW.INVERT_LUT.cmd())) {
         if (manager.setParamValue(WindowOp.OP_NAME, command, entry.getValue())) {
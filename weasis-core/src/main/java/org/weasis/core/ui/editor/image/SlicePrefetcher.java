@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.ui.editor.image;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Future;
+import org.weasis.core.api.gui.util.ActionW;
+import org.weasis.core.api.gui.util.Filter;
+import org.weasis.core.api.media.data.ImageElement;
+import org.weasis.core.api.media.data.ImageLoader.Priority;
+import org.weasis.core.api.media.data.MediaSeries;
+import org.weasis.core.api.media.data.NativeCache;
+import org.weasis.opencv.data.PlanarImage;
+
+/**
+ * Loads in background the next images of the series displayed in a view, according to the
+ * scrolling direction and speed. The pending loadings are cancelled when the direction is reversed
+ * or when jumping to another position.
+ *
+ * @param <E> the type of image
+ */
+public class SlicePrefetcher<E extends ImageElement> {
+  private static final int MIN_WINDOW = 2;
+  private static final int MAX_WINDOW = 48;
+  // Scrolling time (in seconds) covered by the prefetching window
+  private static final double LOOKAHEAD_TIME = 0.75;
+
+  private final List<Future<PlanarImage>> pending = new ArrayList<>();
+  private MediaSeries<E> series;
+  private int lastIndex = -1;
+  private long lastTime;
+  private int direction = 1;
+  private int window = MIN_WINDOW;
+  // Number of slices per second
+  private double speed;
+
+  /**
+   * @param view the view displaying the series
+   * @param index the index of the displayed image
+   * @param cineRate the cine speed (frames per second) or 0 when the cine is not running
+   */
+  @SuppressWarnings("unchecked")
+  public synchronized void update(ViewCanvas<E> view, int index, double cineRate) {
+    MediaSeries<E> s = view == null ? null : view.getSeries();
+    if (s == null || index < 0) {
+      cancel();
+      series = null;
+      return;
+    }
+
+    long now = System.nanoTime();
+    if (s != series) {
+      cancel();
+      series = s;
+      direction = 1;
+      speed = 0.0;
+    } else {
+      int delta = index - lastIndex;
+      if (delta == 0) {
+        return;
+      }
+      int dir = Integer.signum(delta);
+      if (dir != direction || Math.abs(delta) > window) {
+        // Reversed direction or jump: the pending images are not relevant anymore
+        cancel();
+        speed = 0.0;
+      }
+      direction = dir;
+      double elapsed = (now - lastTime) / 1.0e9;
+      if (elapsed > 0.0) {
+        double instantSpeed = Math.abs(delta) / elapsed;
+        speed = speed <= 0.0 ? instantSpeed : 0.7 * speed + 0.3 * instantSpeed;
+      }
+    }
+    lastIndex = index;
+    lastTime = now;
+    if (cineRate > 0.0) {
+      speed = cineRate;
+    }
+
+    Filter<E> filter = (Filter<E>) view.getActionValue(ActionW.FILTERED_SERIES.cmd());
+    Comparator<E> sort = view.getCurrentSortComparator();
+    int size = s.size(filter);
+    if (size == 0) {
+      // All the images are filtered out, nothing to load
+      return;
+    }
+    window = getWindowSize(s.getMedia(index, filter, sort));
+    pending.removeIf(Future::isDone);
+    for (int i = 1; i <= window; i++) {
+      int k = index + direction * i;
+      if (cineRate > 0.0) {
+        // Cine loops over the series
+        k = Math.floorMod(k, size);
+      } else if (k < 0 || k >= size) {
+        break;
+      }
+      E img = s.getMedia(k, filter, sort);
+      if (img != null) {
+        Future<PlanarImage> f = img.preloadImage(Priority.NEIGHBOR);
+        if (f != null) {
+          pending.add(f);
+        }
+      }
+    }
+  }
+
+  private int getWindowSize(E current) {
+    int n = (int) Math.ceil(speed * LOOKAHEAD_TIME);
+    n = Math.max(MIN_WINDOW, Math.min(n, MAX_WINDOW));
+    NativeCache<ImageElement, PlanarImage> cache = ImageElement.getImageCache();
+    // Do not count the probe as an access in the eviction policy
+    PlanarImage img = current == null ? null : cache.peek(current);
+    long sliceSize = img == null ? 0 : img.physicalBytes();
+    if (sliceSize > 0) {
+      // The cache evicts at least 5% of its memory when full
+      long budget = Math.max(cache.getAvailableNativeMemory(), cache.getMaxNativeMemory() / 20);
+      n = (int) Math.min(n, budget / sliceSize);
+    }
+    return n;
+  }
+
+  /** Cancels the loading of the images which have not started yet. */
+  public synchronized void cancel() {
+    for (Future<PlanarImage> f : pending) {
+      // Do not interrupt the running tasks, the decoded images will be put in the cache
+      if (f instanceof Runnable r && ImageElement.IMAGE_LOADER.remove(r)) {
+        f.cancel(false);
+      }
+    }
+    pending.clear();
+  }
+}
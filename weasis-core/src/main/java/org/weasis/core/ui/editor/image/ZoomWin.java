@@ -310,12 +310,7 @@ protected PlanarImage getSourceImage() {
     }
 
     // return the image before the zoom operation from the parent view
-    ImageOpNode node =
-        view2d.getImageLayer().getDisplayOpManager().getNode(AffineTransformOp.OP_NAME);
-    if (node != null) {
-      return (PlanarImage) node.getParam(Param.INPUT_IMG);
-    }
-    return view2d.getImageLayer().getDisplayOpManager().getLastNodeOutputImage();
+    return view2d.getImageLayer().getAffineInputImage();
   }
 
   public void setFreezeImage(SyncType type) {
@@ -11,18 +11,31 @@
 
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.SwingUtilities;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.weasis.core.api.gui.util.GuiExecutor;
 import org.weasis.core.api.image.AffineTransformOp;
 import org.weasis.core.api.image.ImageOpEvent;
 import org.weasis.core.api.image.ImageOpNode;
+import org.weasis.core.api.image.ImageOpNode.Param;
 import org.weasis.core.api.image.OpEventListener;
 import org.weasis.core.api.image.OpManager;
 import org.weasis.core.api.image.SimpleOpManager;
@@ -34,11 +47,13 @@
 import org.weasis.core.api.image.util.Unit;
 import org.weasis.core.api.media.data.ImageElement;
 import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.core.ui.editor.image.Canvas;
 import org.weasis.core.ui.model.layer.Layer;
 import org.weasis.core.ui.model.layer.LayerType;
 import org.weasis.core.ui.model.utils.ImageLayerChangeListener;
 import org.weasis.core.ui.model.utils.imp.DefaultUUID;
+import org.weasis.opencv.data.ImageCV;
 import org.weasis.opencv.data.PlanarImage;
 import org.weasis.opencv.op.ImageConversion;
 import org.weasis.opencv.op.lut.WlPresentation;
@@ -53,6 +68,16 @@
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RenderedImageLayer.class);
 
+  private static final ExecutorService RENDER_EXECUTOR =
+      ThreadUtil.buildNewFixedThreadExecutor(
+          Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+          "Image Renderer"); // NON-NLS
+
+  // Regions of the large images processed for the display
+  private static final int REGION_MIN_SIZE = 2048;
+  private static final int REGION_TILE_SIZE = 512;
+  private static final int REGION_INTERPOLATION_MARGIN = 4;
+
   private final SimpleOpManager disOpManager;
   private final List<ImageLayerChangeListener<E>> listenerList;
   private final List<OpEventListener> opListeners;
@@ -64,6 +89,22 @@
   private boolean enableDispOperations = true;
   private Point offset;
 
+  // Renderings off the EDT: only the latest request is pending and a result is displayed only if
+  // it is more recent than the current display image.
+  private final AtomicReference<RenderRequest> pendingRender = new AtomicReference<>();
+  private final AtomicBoolean rendering = new AtomicBoolean();
+  private final AtomicLong renderGeneration = new AtomicLong();
+  private volatile long displayGeneration;
+
+  // Region of the source processed for the display image (null for the whole image) and the input
+  // of the affine transform for the whole image, computed on demand when a region is displayed
+  private Rectangle displayRegion;
+  private PlanarImage fullAffineInput;
+
+  // Conversion of the display image for painting, kept until the display image changes
+  private BufferedImage displayBuffer;
+  private PlanarImage bufferSource;
+
   public RenderedImageLayer() {
     this(null);
   }
@@ -234,9 +275,11 @@ public void drawImage(Graphics2D g2d) {
         g2d.setRenderingHint(
             RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
       }
-      g2d.drawImage(ImageConversion.toBufferedImage(displayImage), 0, 0, null);
+      g2d.drawImage(getDisplayBuffer(), 0, 0, null);
     } catch (Exception e) {
       LOGGER.error("Cannot draw the image", e);
+      displayBuffer = null;
+      bufferSource = null;
       if ("java.io.IOException: closed".equals(e.getMessage())) { // NON-NLS
         // Issue when the stream has been closed of a tiled image (problem that readAsRendered do
         // not read data
@@ -254,6 +297,15 @@ public void drawImage(Graphics2D g2d) {
     g2d.setClip(clip);
   }
 
+  private BufferedImage getDisplayBuffer() {
+    PlanarImage img = displayImage;
+    if (displayBuffer == null || bufferSource != img) {
+      displayBuffer = ImageConversion.toBufferedImage(img);
+      bufferSource = img;
+    }
+    return displayBuffer;
+  }
+
   public void drawImageForPrinter(Graphics2D g2d, double viewScale, Canvas canvas) {
     // Get the clipping rectangle
     if (!visible || displayImage == null) {
@@ -396,8 +448,13 @@ public void drawImageForPrinter(Graphics2D g2d, double viewScale, Canvas canvas)
   }
 
   public void dispose() {
+    pendingRender.set(null);
+    displayGeneration = renderGeneration.incrementAndGet();
     sourceImage = null;
     displayImage = null;
+    setDisplayRegion(null);
+    displayBuffer = null;
+    bufferSource = null;
     listenerList.clear();
     opListeners.clear();
   }
@@ -455,11 +512,250 @@ public void updateDisplayOperations() {
       if (source != null && source.width() < 1) {
         disOpManager.setFirstNode(getSourceRenderedImage());
       }
-      displayImage = disOpManager.process();
+      // Discard the results of the previous renderings
+      displayGeneration = renderGeneration.incrementAndGet();
+      Rectangle region = getVisibleRegion(disOpManager);
+      displayImage = processRegion(disOpManager, region);
+      setDisplayRegion(region);
+      fireImageChanged();
+    }
+  }
+
+  /**
+   * Update the display image off the EDT, typically while dragging the window/level. The current
+   * display image is painted until the new one is ready. When the parameters change faster than
+   * the rendering, the intermediate states are skipped.
+   *
+   * <p>The operations are rendered synchronously when not called from the EDT or when there is no
+   * display image yet.
+   */
+  public void updateDisplayOperationsLater() {
+    PlanarImage source = disOpManager.getFirstNodeInputImage();
+    if (!SwingUtilities.isEventDispatchThread()
+        || displayImage == null
+        || source == null
+        || source.width() < 1
+        || !isEnableDispOperations()) {
+      updateDisplayOperations();
+      return;
+    }
+    // The parameters are copied on the EDT, so the rendering thread never reads them while changing
+    SimpleOpManager operations = new SimpleOpManager(disOpManager.getName());
+    for (ImageOpNode op : disOpManager.getOperations()) {
+      operations.addImageOperationAction(op.copy());
+    }
+    operations.setFirstNode(source);
+    pendingRender.set(new RenderRequest(operations, renderGeneration.incrementAndGet()));
+    if (rendering.compareAndSet(false, true)) {
+      RENDER_EXECUTOR.execute(this::render);
+    }
+  }
+
+  private void render() {
+    try {
+      RenderRequest request;
+      while ((request = pendingRender.getAndSet(null)) != null) {
+        SimpleOpManager operations = request.operations();
+        long generation = request.generation();
+        Rectangle region = getVisibleRegion(operations);
+        PlanarImage img = processRegion(operations, region);
+        GuiExecutor.execute(() -> applyRendering(operations, img, region, generation));
+      }
+    } catch (Exception e) {
+      LOGGER.error("Cannot render the image", e);
+    } finally {
+      rendering.set(false);
+      // A request may have been set after the loop and before resetting the flag
+      if (pendingRender.get() != null && rendering.compareAndSet(false, true)) {
+        RENDER_EXECUTOR.execute(this::render);
+      }
+    }
+  }
+
+  private void applyRendering(
+      SimpleOpManager operations, PlanarImage img, Rectangle region, long generation) {
+    if (generation > displayGeneration && sourceImage != null && img != null) {
+      displayGeneration = generation;
+      publishNodeIO(operations);
+      displayImage = img;
+      setDisplayRegion(region);
       fireImageChanged();
     }
   }
 
+  /**
+   * Copy the images produced by the rendering thread into the live display operations, so their
+   * readers (e.g. the magnifier) see the images of the current display.
+   */
+  private void publishNodeIO(SimpleOpManager operations) {
+    List<ImageOpNode> rendered = operations.getOperations();
+    List<ImageOpNode> live = disOpManager.getOperations();
+    if (rendered.size() != live.size()) {
+      return;
+    }
+    for (int i = 0; i < live.size(); i++) {
+      if (!Objects.equals(live.get(i).getName(), rendered.get(i).getName())) {
+        return;
+      }
+    }
+    for (int i = 0; i < live.size(); i++) {
+      ImageOpNode op = live.get(i);
+      if (i > 0) {
+        op.setParam(Param.INPUT_IMG, rendered.get(i).getParam(Param.INPUT_IMG));
+      }
+      op.setParam(Param.OUTPUT_IMG, rendered.get(i).getParam(Param.OUTPUT_IMG));
+    }
+  }
+
+  private void setDisplayRegion(Rectangle region) {
+    displayRegion = region;
+    fullAffineInput = null;
+  }
+
+  /**
+   * Returns the image before the final affine transform of the display operations, in the
+   * coordinates of the whole source image. When only a region of the source has been processed for
+   * the display, the operations are applied on demand to the whole image.
+   *
+   * @return the input image of the affine transform or the output of the display operations
+   */
+  public PlanarImage getAffineInputImage() {
+    ImageOpNode affine = disOpManager.getNode(AffineTransformOp.OP_NAME);
+    if (affine == null) {
+      return disOpManager.getLastNodeOutputImage();
+    }
+    if (displayRegion == null) {
+      return (PlanarImage) affine.getParam(Param.INPUT_IMG);
+    }
+    if (fullAffineInput == null) {
+      SimpleOpManager operations = new SimpleOpManager(disOpManager.getName());
+      for (ImageOpNode op : disOpManager.getOperations()) {
+        if (op == affine) {
+          break;
+        }
+        operations.addImageOperationAction(op.copy());
+      }
+      PlanarImage source = disOpManager.getFirstNodeInputImage();
+      if (operations.getFirstNode() == null) {
+        return source;
+      }
+      operations.setFirstNode(source);
+      fullAffineInput = operations.process();
+    }
+    return fullAffineInput;
+  }
+
+  private record RenderRequest(SimpleOpManager operations, long generation) {}
+
+  /**
+   * Process the display operations only on the part of the source image which is visible through
+   * the final affine transform. The region is aligned on a grid of tiles, so panning a little does
+   * not change it, and it is enlarged by the margin required by the operations (e.g. a convolution
+   * kernel). The whole image is processed when it is small or when an operation depends on the
+   * position of the pixels.
+   *
+   * <p>The processed region is not cached per zoom: each update, including a pan, processes the
+   * region again, because the operations do not expose a state telling whether a previous output
+   * is still valid. The images of the nodes are those of the region, see {@link
+   * #getAffineInputImage()} for the whole image.
+   *
+   * @param region the region of the source to process, or null for the whole image
+   */
+  private static PlanarImage processRegion(SimpleOpManager manager, Rectangle region) {
+    if (region == null) {
+      return manager.process();
+    }
+    ImageOpNode affine = manager.getLastNode();
+    PlanarImage source = manager.getFirstNodeInputImage();
+    @SuppressWarnings("unchecked")
+    List<Double> matrix = (List<Double>) affine.getParam(AffineTransformOp.P_AFFINE_MATRIX);
+    // The translation is adapted to the origin of the region
+    List<Double> shifted = new ArrayList<>(matrix);
+    shifted.set(2, matrix.get(2) + matrix.get(0) * region.x + matrix.get(1) * region.y);
+    shifted.set(5, matrix.get(5) + matrix.get(3) * region.x + matrix.get(4) * region.y);
+    // The sub-matrix of a mapped image keeps the mapping alive
+    Mat view = source.toMat().submat(new Rect(region.x, region.y, region.width, region.height));
+    try {
+      manager.setFirstNode(ImageCV.toImageCV(view));
+      affine.setParam(AffineTransformOp.P_AFFINE_MATRIX, shifted);
+      return manager.process();
+    } finally {
+      manager.setFirstNode(source);
+      affine.setParam(AffineTransformOp.P_AFFINE_MATRIX, matrix);
+    }
+  }
+
+  private static Rectangle getVisibleRegion(SimpleOpManager manager) {
+    PlanarImage source = manager.getFirstNodeInputImage();
+    ImageOpNode affine = manager.getLastNode();
+    if (source == null
+        || !(affine instanceof AffineTransformOp)
+        || !affine.isEnabled()
+        || (long) source.width() * source.height() <= (long) REGION_MIN_SIZE * REGION_MIN_SIZE) {
+      return null;
+    }
+    Rectangle2D bound = (Rectangle2D) affine.getParam(AffineTransformOp.P_DST_BOUNDS);
+    Object m = affine.getParam(AffineTransformOp.P_AFFINE_MATRIX);
+    if (bound == null
+        || bound.isEmpty()
+        || !(m instanceof List<?> matrix)
+        || matrix.size() != 6
+        || (long) source.width() * source.height() <= 4L * bound.getWidth() * bound.getHeight()) {
+      return null;
+    }
+
+    int margin = REGION_INTERPOLATION_MARGIN;
+    List<ImageOpNode> operations = manager.getOperations();
+    for (int i = 0; i < operations.size() - 1; i++) {
+      ImageOpNode op = operations.get(i);
+      if (op.isEnabled()) {
+        int opMargin = op.getRegionMargin();
+        if (opMargin < 0) {
+          return null;
+        }
+        margin += opMargin;
+      }
+    }
+
+    double[] v = new double[6];
+    for (int i = 0; i < v.length; i++) {
+      v[i] = ((Number) matrix.get(i)).doubleValue();
+    }
+    // OpenCV order: [m00, m01, m02, m10, m11, m12]
+    AffineTransform transform = new AffineTransform(v[0], v[3], v[1], v[4], v[2], v[5]);
+    Rectangle2D srcBound;
+    try {
+      srcBound =
+          transform
+              .createInverse()
+              .createTransformedShape(
+                  new Rectangle2D.Double(0, 0, bound.getWidth(), bound.getHeight()))
+              .getBounds2D();
+    } catch (NoninvertibleTransformException e) {
+      return null;
+    }
+
+    int x1 = Math.max(0, floorTile(srcBound.getMinX() - margin));
+    int y1 = Math.max(0, floorTile(srcBound.getMinY() - margin));
+    int x2 = Math.min(source.width(), ceilTile(srcBound.getMaxX() + margin));
+    int y2 = Math.min(source.height(), ceilTile(srcBound.getMaxY() + margin));
+    if (x2 <= x1
+        || y2 <= y1
+        || (x1 == 0 && y1 == 0 && x2 == source.width() && y2 == source.height())) {
+      return null;
+    }
+    return new Rectangle(x1, y1, x2 - x1, y2 - y1);
+  }
+
+  private static int floorTile(double value) {
+    return (int) Math.floor(value / REGION_TILE_SIZE) * REGION_TILE_SIZE;
+  }
+
+  private static int ceilTile(double value) {
+    double tile = Math.ceil(value / REGION_TILE_SIZE) * REGION_TILE_SIZE;
+    return (int) Math.min(Integer.MAX_VALUE, tile);
+  }
+
   @Override
   public MeasurementsAdapter getMeasurementAdapter(Unit displayUnit) {
     if (hasContent()) {
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.media.data;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.weasis.opencv.data.PlanarImage;
+
+class NativeCacheTest {
+
+  static class TestCache extends NativeCache<String, PlanarImage> {
+    final List<String> removed = new ArrayList<>();
+
+    TestCache(long maxNativeMemory) {
+      super(maxNativeMemory);
+    }
+
+    @Override
+    protected void afterEntryRemove(String key, PlanarImage val) {
+      removed.add(key);
+    }
+  }
+
+  private static PlanarImage image(long size) {
+    PlanarImage img = mock(PlanarImage.class);
+    when(img.physicalBytes()).thenReturn(size);
+    return img;
+  }
+
+  @Test
+  void testMemoryAccounting() {
+    TestCache cache = new TestCache(1000);
+    cache.put("a", image(100)); // NON-NLS
+    cache.put("b", image(200)); // NON-NLS
+    assertEquals(300, cache.getUsedNativeMemory());
+    cache.put("a", image(50)); // NON-NLS
+    assertEquals(250, cache.getUsedNativeMemory());
+    cache.remove("b"); // NON-NLS
+    assertEquals(50, cache.getUsedNativeMemory());
+    assertEquals(List.of("b"), cache.removed); // NON-NLS
+  }
+
+  @Test
+  void testMappedMemoryAccounting() {
+    TestCache cache = new TestCache(1000);
+    MappedImage mapped = mock(MappedImage.class);
+    when(mapped.physicalBytes()).thenReturn(800L);
+    cache.put("a", image(100)); // NON-NLS
+    cache.put("m", mapped); // NON-NLS
+    assertEquals(100, cache.getUsedNativeMemory());
+    assertEquals(800, cache.getUsedMappedMemory());
+    cache.remove("m"); // NON-NLS
+    assertEquals(0, cache.getUsedMappedMemory());
+  }
+
+  @Test
+  void testStatistics() {
+    TestCache cache = new TestCache(1000);
+    cache.put("a", image(100)); // NON-NLS
+    assertNotNull(cache.get("a")); // NON-NLS
+    assertNull(cache.get("b")); // NON-NLS
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+    // A peek is not an access
+    assertNotNull(cache.peek("a")); // NON-NLS
+    assertNull(cache.peek("b")); // NON-NLS
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  void testLruEviction() throws InterruptedException {
+    TestCache cache = new TestCache(1000);
+    putAndWait(cache, "a", 30); // NON-NLS
+    putAndWait(cache, "b", 30); // NON-NLS
+    putAndWait(cache, "c", 950); // NON-NLS
+    cache.get("a"); // NON-NLS
+    cache.put("d", image(10)); // NON-NLS
+
+    assertEquals(List.of("b"), cache.removed); // NON-NLS
+    assertTrue(cache.containsKey("a")); // NON-NLS
+    assertEquals(1, cache.getEvictionCount());
+    assertTrue(cache.isMemoryAvailable());
+  }
+
+  @Test
+  void testPinnedEviction() throws InterruptedException {
+    TestCache cache = new TestCache(1000);
+    cache.setEviction(NativeCache.Eviction.PINNED);
+    cache.setPinnedFilter(k -> k.startsWith("pin")); // NON-NLS
+    putAndWait(cache, "pin1", 30); // NON-NLS
+    putAndWait(cache, "b", 30); // NON-NLS
+    putAndWait(cache, "c", 950); // NON-NLS
+    cache.put("d", image(10)); // NON-NLS
+
+    assertEquals(List.of("b"), cache.removed); // NON-NLS
+    assertTrue(cache.containsKey("pin1")); // NON-NLS
+  }
+
+  @Test
+  void testPinnedEvictionWhenOnlyPinned() throws InterruptedException {
+    TestCache cache = new TestCache(1000);
+    cache.setEviction(NativeCache.Eviction.PINNED);
+    cache.setPinnedFilter(k -> k.startsWith("pin")); // NON-NLS
+    putAndWait(cache, "pin1", 30); // NON-NLS
+    putAndWait(cache, "pin2", 975); // NON-NLS
+    cache.put("d", image(10)); // NON-NLS
+
+    // Nothing else can be freed
+    assertEquals(List.of("pin1"), cache.removed); // NON-NLS
+  }
+
+  @Test
+  void testTinyLfuEviction() {
+    TestCache cache = new TestCache(1000);
+    cache.setEviction(NativeCache.Eviction.TINY_LFU);
+    cache.put("hot", image(100)); // NON-NLS
+    for (int i = 0; i < 20; i++) {
+      cache.get("hot"); // NON-NLS
+    }
+    // A scan of entries read only once does not flush the frequent one
+    for (int i = 0; i < 200; i++) {
+      cache.put("scan" + i, image(100)); // NON-NLS
+    }
+    assertTrue(cache.containsKey("hot")); // NON-NLS
+    assertTrue(cache.containsKey("scan199")); // NON-NLS
+    assertTrue(cache.getEvictionCount() > 0);
+  }
+
+  private static void putAndWait(TestCache cache, String key, long size)
+      throws InterruptedException {
+    cache.put(key, image(size));
+    // Guarantee a distinct access time
+    Thread.sleep(2);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.core.api.media.data;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.weasis.core.api.media.data.TagW.TagType;
+
+class SeriesTest {
+  private static final TagW SERIES_ID = new TagW("SeriesTestId", TagType.STRING); // NON-NLS
+  private static final TagW MEDIA_UID = new TagW("SeriesTestMediaUID", TagType.STRING); // NON-NLS
+  private static final TagW MEDIA_NUMBER = new TagW("SeriesTestNumber", TagType.INTEGER); // NON-NLS
+
+  private Series<MediaElement> series;
+
+  private static MediaElement media(String uid, Integer number) {
+    MediaElement media = mock(MediaElement.class);
+    when(media.getTagValue(MEDIA_UID)).thenReturn(uid);
+    when(media.getTagValue(MEDIA_NUMBER)).thenReturn(number);
+    return media;
+  }
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void buildSeries() {
+    series =
+        mock(
+            Series.class,
+            withSettings()
+                .useConstructor(SERIES_ID, "1.2.3", new TagView(SERIES_ID)) // NON-NLS
+                .defaultAnswer(CALLS_REAL_METHODS));
+  }
+
+  @Test
+  void lazyIndex() {
+    series.add(media("a", 1)); // NON-NLS
+    series.add(media("b", null)); // NON-NLS
+    assertTrue(series.hasMediaContains(MEDIA_UID, "a")); // NON-NLS
+    assertTrue(series.hasMediaContains(MEDIA_UID, "b")); // NON-NLS
+    assertFalse(series.hasMediaContains(MEDIA_UID, "c")); // NON-NLS
+    assertTrue(series.hasMediaContains(MEDIA_NUMBER, 1));
+    assertFalse(series.hasMediaContains(MEDIA_NUMBER, 2));
+    assertFalse(series.hasMediaContains(MEDIA_UID, null));
+    assertFalse(series.hasMediaContains(null, "a")); // NON-NLS
+  }
+
+  @Test
+  void indexUpdatedByAdd() {
+    // Build the index of the tag before adding the medias
+    assertFalse(series.hasMediaContains(MEDIA_UID, "a")); // NON-NLS
+    assertFalse(series.hasMediaContains(MEDIA_NUMBER, 1));
+
+    series.add(media("a", 1)); // NON-NLS
+    series.add(0, media("b", 2)); // NON-NLS
+    series.addAll(List.of(media("c", 3), media("d", 4))); // NON-NLS
+    series.addAll(1, List.of(media("e", 5))); // NON-NLS
+
+    for (String uid : List.of("a", "b", "c", "d", "e")) { // NON-NLS
+      assertTrue(series.hasMediaContains(MEDIA_UID, uid), uid);
+    }
+    for (int i = 1; i <= 5; i++) {
+      assertTrue(series.hasMediaContains(MEDIA_NUMBER, i));
+    }
+    assertFalse(series.hasMediaContains(MEDIA_UID, "f")); // NON-NLS
+    assertEquals(5, series.size(null));
+  }
+
+  @Test
+  void indexClearedByDispose() {
+    series.add(media("a", 1)); // NON-NLS
+    assertTrue(series.hasMediaContains(MEDIA_UID, "a")); // NON-NLS
+    series.dispose();
+    assertFalse(series.hasMediaContains(MEDIA_UID, "a")); // NON-NLS
+
+    // The index is built again from the new medias
+    series.add(media("b", 2)); // NON-NLS
+    assertFalse(series.hasMediaContains(MEDIA_UID, "a")); // NON-NLS
+    assertTrue(series.hasMediaContains(MEDIA_UID, "b")); // NON-NLS
+  }
+}
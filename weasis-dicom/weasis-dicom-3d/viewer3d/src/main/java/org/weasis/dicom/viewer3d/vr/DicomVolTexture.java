@@ -60,6 +60,8 @@ public class DicomVolTexture extends VolumeTexture implements MediaSeriesGroup {
   private final VolumeGeometry volumeGeometry;
   private final PropertyChangeSupport changeSupport;
   private final SimpleOpManager manager;
+  // The operations are not thread-safe, each thread processing slices has its own copy
+  private final ThreadLocal<SimpleOpManager> threadManager;
   private final Vector3d scale;
 
   private String pixelValueUnit;
@@ -120,8 +122,10 @@ public DicomVolTexture(
       node.setParam(ZoomOp.P_RATIO_Y, scale.y);
       node.setParam(ZoomOp.P_INTERPOLATION, Interpolation.BILINEAR);
       manager.addImageOperationAction(node);
+      this.threadManager = ThreadLocal.withInitial(manager::copy);
     } else {
       this.manager = null;
+      this.threadManager = null;
     }
   }
 
@@ -143,9 +147,10 @@ public PlanarImage getModalityLutImage(DicomImageElement image) {
     if (image != null) {
       output = image.getModalityLutImage(null, null);
       if (manager != null) {
-        manager.setFirstNode(output);
-        output = manager.process();
-        manager.clearNodeIOCache();
+        SimpleOpManager m = threadManager.get();
+        m.setFirstNode(output);
+        output = m.process();
+        m.clearNodeIOCache();
       } else {
         if (width != output.width() || height != output.height()) {
           output = ImageCV.toImageCV(output.toMat().submat(new Rect(0, 0, width, height)));
@@ -366,16 +371,20 @@ public List<SpecialElementRegion> getSegmentations() {
   }
 
   public Mat getEmptyImage() {
-    int type;
+    return Mat.zeros(new Size(width, height), getCvType());
+  }
+
+  /**
+   * @return the OpenCV type of the slices uploaded in the texture
+   */
+  public int getCvType() {
     if (pixelFormat == PixelFormat.RGB8) {
-      type = CvType.CV_8UC3;
+      return CvType.CV_8UC3;
     } else if (pixelFormat == PixelFormat.RGBA8) {
-      type = CvType.CV_8UC4;
+      return CvType.CV_8UC4;
     } else if (pixelFormat == PixelFormat.BYTE) {
-      type = CvType.CV_8UC1;
-    } else {
-      type = CvType.CV_16UC1;
+      return CvType.CV_8UC1;
     }
-    return Mat.zeros(new Size(width, height), type);
+    return CvType.CV_16UC1;
   }
 }
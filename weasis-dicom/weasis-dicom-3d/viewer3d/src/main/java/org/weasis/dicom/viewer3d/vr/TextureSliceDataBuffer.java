@@ -64,6 +64,55 @@ public static TextureSliceDataBuffer toImageData(PlanarImage image) {
     }
   }
 
+  /**
+   * Allocate the buffer of several slices, which can be filled concurrently with {@link
+   * #putSlice(int, Mat)}.
+   *
+   * @param cvType the OpenCV type of the slices
+   * @param width the width of the slices
+   * @param height the height of the slices
+   * @param depth the number of slices
+   * @return the buffer of the slices
+   */
+  public static TextureSliceDataBuffer allocate(int cvType, int width, int height, int depth) {
+    int channels = CvType.channels(cvType);
+    int depthType = CvType.depth(cvType);
+    long length = (long) width * height * channels * depth;
+    // Allow to be closed in another thread
+    Arena arena = Arena.ofShared();
+    if (depthType == CvType.CV_8U) {
+      ByteBuffer buf = arena.allocate(length).asByteBuffer().order(ByteOrder.nativeOrder());
+      return new TextureSliceDataBuffer(buf, arena);
+    } else if (depthType == CvType.CV_16U || depthType == CvType.CV_16S) {
+      ShortBuffer buf =
+          arena.allocate(length * 2L).asByteBuffer().order(ByteOrder.nativeOrder()).asShortBuffer();
+      return new TextureSliceDataBuffer(buf, arena);
+    }
+    arena.close();
+    throw new IllegalArgumentException("Not supported dataType for LUT transformation:" + cvType);
+  }
+
+  /**
+   * Copy a slice at its position in the buffer. Different slices can be copied concurrently.
+   *
+   * @param index the index of the slice in the buffer
+   * @param slice the slice having the type and the size of the buffer allocation
+   */
+  public void putSlice(int index, Mat slice) {
+    int length = (int) slice.total() * slice.channels();
+    if (buffer instanceof ByteBuffer buf) {
+      byte[] data = new byte[length];
+      slice.get(0, 0, data);
+      buf.duplicate().position(index * length).put(data);
+    } else if (buffer instanceof ShortBuffer buf) {
+      short[] data = new short[length];
+      slice.get(0, 0, data);
+      buf.duplicate().position(index * length).put(data);
+    } else {
+      throw new IllegalStateException("Not supported buffer: " + buffer);
+    }
+  }
+
   public static TextureSliceDataBuffer toImageData(List<Mat> slices) {
     if (slices.isEmpty()) {
       throw new IllegalStateException("Cannot process when no slice!");
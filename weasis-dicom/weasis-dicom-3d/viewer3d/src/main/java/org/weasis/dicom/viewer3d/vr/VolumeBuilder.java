@@ -20,6 +20,10 @@
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.swing.JProgressBar;
 import jogamp.opengl.glu.error.Error;
 import org.dcm4che3.data.Tag;
@@ -33,6 +37,7 @@
 import org.weasis.core.api.gui.util.GuiExecutor;
 import org.weasis.core.api.gui.util.GuiUtils;
 import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.core.ui.editor.image.ViewCanvas;
 import org.weasis.core.ui.model.graphic.imp.seg.SegContour;
 import org.weasis.core.ui.model.graphic.imp.seg.SegGraphic;
@@ -127,27 +132,24 @@ public TextureLoader(VolumeBuilder volumeBuilder) {
       this.volumeBuilder = volumeBuilder;
     }
 
-    public void publishVolumeInOpenGL(List<Mat> slices, int offset) {
-      if (!slices.isEmpty()) {
-        GLContext glContext = OpenglUtils.getDefaultGlContext();
-        glContext.makeCurrent();
-        GL4 gl4 = glContext.getGL().getGL4();
-        gl4.glBindTexture(GL2ES2.GL_TEXTURE_3D, volumeBuilder.volTexture.getId());
-        GLPixelStorageModes storageModes = new GLPixelStorageModes();
-        storageModes.setPackAlignment(gl4, 1); // buffer has not ending row space
-
-        TextureSliceDataBuffer textureSliceData = setTexImage3DBuffer(gl4, slices, offset);
-        textureSliceData.releaseMemory();
-
-        storageModes.restore(gl4);
-        gl4.glFinish();
-        glContext.release();
-      }
+    public void publishVolumeInOpenGL(TextureSliceDataBuffer textureSliceData, Chunk chunk) {
+      GLContext glContext = OpenglUtils.getDefaultGlContext();
+      glContext.makeCurrent();
+      GL4 gl4 = glContext.getGL().getGL4();
+      gl4.glBindTexture(GL2ES2.GL_TEXTURE_3D, volumeBuilder.volTexture.getId());
+      GLPixelStorageModes storageModes = new GLPixelStorageModes();
+      storageModes.setPackAlignment(gl4, 1); // buffer has not ending row space
+
+      setTexImage3DBuffer(gl4, textureSliceData, chunk);
+
+      storageModes.restore(gl4);
+      gl4.glFinish();
+      glContext.release();
     }
 
-    private TextureSliceDataBuffer setTexImage3DBuffer(GL4 gl4, List<Mat> slices, int offset) {
+    private void setTexImage3DBuffer(
+        GL4 gl4, TextureSliceDataBuffer textureSliceData, Chunk chunk) {
       DicomVolTexture volTexture = volumeBuilder.volTexture;
-      TextureSliceDataBuffer textureSliceData = TextureSliceDataBuffer.toImageData(slices);
       if (volTexture.getId() <= 0) {
         volTexture.init(gl4);
       }
@@ -157,10 +159,10 @@ private TextureSliceDataBuffer setTexImage3DBuffer(GL4 gl4, List<Mat> slices, in
           0,
           0,
           0,
-          offset,
+          chunk.offset,
           volTexture.getWidth(),
           volTexture.getHeight(),
-          slices.size(),
+          chunk.size(),
           volTexture.getFormat(),
           volTexture.getType(),
           textureSliceData.buffer());
@@ -173,7 +175,6 @@ private TextureSliceDataBuffer setTexImage3DBuffer(GL4 gl4, List<Mat> slices, in
         volumeBuilder.hasError = true;
         volumeBuilder.stop();
       }
-      return textureSliceData;
     }
 
     @Override
@@ -207,145 +208,77 @@ public void run() {
         bar = null;
       }
 
-      int sliceOffset = 0;
-      long maxMemory = Runtime.getRuntime().maxMemory() / 3;
-      long sumMemory = 0L;
-
-      ArrayList<Mat> slices = new ArrayList<>(size);
-
       Instant timeStarted = Instant.now();
-      double lastPos = 0;
-
       List<DicomImageElement> list = volTexture.getVolumeImages();
-      for (int i = 0; i < list.size(); i++) {
-        if (isInterrupted()) {
-          return;
+      int cvType = volTexture.getCvType();
+      long sliceBytes =
+          (long) volTexture.getWidth() * volTexture.getHeight() * CvType.ELEM_SIZE(cvType);
+      // Two chunks are in memory: one being uploaded and the next one being decoded
+      long maxMemory = Runtime.getRuntime().maxMemory() / 6;
+      int chunkSize =
+          (int) Math.clamp(maxMemory / Math.max(1L, sliceBytes), 1L, Math.max(1, list.size()));
+      int nbThreads = Math.clamp(Runtime.getRuntime().availableProcessors() - 1, 1, chunkSize);
+      ExecutorService decoder =
+          ThreadUtil.buildNewFixedThreadExecutor(nbThreads, "Texture 3D decoder"); // NON-NLS
+
+      List<SpecialElementRegion> segmentations = segList;
+      Chunk chunk = null;
+      Chunk next = null;
+      try {
+        if (!list.isEmpty()) {
+          chunk = submitChunk(decoder, list, 0, chunkSize, cvType, segmentations);
         }
-        DicomImageElement imageElement = list.get(i);
-        Instant start = Instant.now();
-
-        // Force to get min/max values.
-        if (!imageElement.isImageAvailable()) {
-          imageElement.getImage();
-        }
-
-        int minValue = (int) imageElement.getMinValue(null);
-        int maxValue = (int) imageElement.getMaxValue(null);
-
-        int minInValue = Math.min(maxValue, minValue);
-        int maxInValue = Math.max(maxValue, minValue);
-        if (minInValue < volTexture.getLevelMin()) {
-          volTexture.setLevelMin(minInValue);
-        }
-        if (maxInValue > volTexture.getLevelMax()) {
-          volTexture.setLevelMax(maxInValue);
-        }
-
-        double[] sp = (double[]) imageElement.getTagValue(TagW.SlicePosition);
-        if (sp != null) {
-          Vector3d scale = volTexture.getScale();
-          double pos = sp[0] * scale.x + sp[1] * scale.y + sp[2] * scale.z;
-          if (i > 0) {
-            double space = pos - lastPos;
-            VolumeGeometry geometry = volTexture.getVolumeGeometry();
-            geometry.setLastDepthSpacing(space);
-            double[] pixelSpacing = GeometryUtils.getPixelSpacing(imageElement);
-            if (pixelSpacing != null && pixelSpacing.length > 1) {
-              double[] spacing = new double[2];
-              spacing[0] = pixelSpacing[0] / scale.x;
-              spacing[1] = pixelSpacing[1] / scale.y;
-              geometry.setLastPixelSpacing(spacing);
-            }
-            volTexture.setTexelSize(geometry.getDimensionMFactor());
+        double lastPos = 0;
+        while (chunk != null) {
+          if (chunk.end < list.size()) {
+            next = submitChunk(decoder, list, chunk.end, chunkSize, cvType, segmentations);
           }
-          lastPos = pos;
-        }
-
-        double[] or = TagD.getTagValue(imageElement, Tag.ImageOrientationPatient, double[].class);
-        if (i == 0 && or != null && or.length == 6) {
-          volTexture.setPixelSpacingUnit(imageElement.getPixelSpacingUnit());
-          volTexture.getVolumeGeometry().setOrientationPatient(or);
-        }
-
-        LOGGER.debug(
-            "Time preparation of {}: {} ms", i, Duration.between(start, Instant.now()).toMillis());
-
-        PlanarImage imageMLUT;
-
-        if (segList != null && !segList.isEmpty()) {
-          Mat mask = volTexture.getEmptyImage();
-          for (SpecialElementRegion seg : segList) {
-            if (seg.isVisible() && seg.containsSopInstanceUIDReference(imageElement)) {
-              Collection<SegContour> contours = seg.getContours(imageElement);
-              if (!contours.isEmpty()) {
-                for (SegContour c : contours) {
-                  SegGraphic graphic = c.getSegGraphic();
-                  if (graphic != null) {
-                    List<MatOfPoint> pts =
-                        ImageProcessor.transformShapeToContour(graphic.getShape(), true);
-                    // TODO check the limit value
-                    int density = c.getAttributes().getId();
-                    Imgproc.fillPoly(mask, pts, new Scalar(density));
-                  }
-                }
-              }
+          // The slices are consumed in order, the following ones are decoded meanwhile
+          for (int i = chunk.offset; i < chunk.end; i++) {
+            int[] minMax = chunk.slices.get(i - chunk.offset).get();
+            DicomImageElement imageElement = list.get(i);
+            updateLevels(volTexture, minMax);
+            lastPos = updateGeometry(volTexture, imageElement, i, lastPos);
+            if (bar != null) {
+              GuiExecutor.execute(
+                  () -> {
+                    bar.setValue(bar.getValue() + 1);
+                    view.getJComponent().repaint();
+                  });
             }
           }
-          int nbPixels = Core.countNonZero(mask);
-          imageMLUT = ImageCV.toImageCV(mask);
-          //          PlanarImage src = volTexture.getModalityLutImage(imageElement);
-          //          imageMLUT = new ImageCV();
-          //          Core.bitwise_and(src.toImageCV(), mask, imageMLUT.toImageCV());
-        } else {
-          start = Instant.now();
-          imageMLUT = volTexture.getModalityLutImage(imageElement);
-          LOGGER.debug(
-              "Time to get Modality LUT image  {}: {} ms",
-              i,
-              Duration.between(start, Instant.now()).toMillis());
-        }
 
-        start = Instant.now();
-        imageMLUT = getSuitableImage(imageMLUT);
-        LOGGER.debug(
-            "Time to get suitable image  {}: {} ms",
-            i,
-            Duration.between(start, Instant.now()).toMillis());
-
-        sumMemory += imageMLUT.physicalBytes();
-        if (sumMemory > maxMemory) {
-          start = Instant.now();
-          publishVolumeInOpenGL(slices, sliceOffset);
+          Instant start = Instant.now();
+          publishVolumeInOpenGL(chunk.data, chunk);
           LOGGER.debug(
               "Time to load volume ({} to {}) in OpenGL: {} ms",
-              sliceOffset,
-              sliceOffset + slices.size() - 1,
+              chunk.offset,
+              chunk.end - 1,
               Duration.between(start, Instant.now()).toMillis());
-
-          sliceOffset += slices.size();
-          slices.clear();
-          sumMemory = imageMLUT.physicalBytes();
-
-          volTexture.notifyPartiallyLoaded();
-        }
-        slices.add(imageMLUT.toMat());
-        if (bar != null) {
-          GuiExecutor.execute(
-              () -> {
-                bar.setValue(bar.getValue() + 1);
-                view.getJComponent().repaint();
-              });
+          chunk.data.releaseMemory();
+          if (volumeBuilder.hasError) {
+            return;
+          }
+          chunk = next;
+          next = null;
+          if (chunk != null) {
+            volTexture.notifyPartiallyLoaded();
+          }
         }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e) {
+        LOGGER.error("Cannot build the 3D texture", e.getCause());
+        volumeBuilder.hasError = true;
+        volumeBuilder.stop();
+        return;
+      } finally {
+        decoder.shutdownNow();
+        cancel(decoder, chunk);
+        cancel(decoder, next);
       }
 
-      Instant start = Instant.now();
-      publishVolumeInOpenGL(slices, sliceOffset);
-      LOGGER.debug(
-          "Time to load volume ({} to {}) in OpenGL: {} ms",
-          sliceOffset,
-          sliceOffset + slices.size() - 1,
-          Duration.between(start, Instant.now()).toMillis());
-
       LOGGER.info(
           "Loading 3D texture time: {} ms",
           Duration.between(timeStarted, Instant.now()).toMillis());
@@ -356,5 +289,142 @@ public void run() {
         volTexture.notifyFullyLoaded();
       }
     }
+
+    private Chunk submitChunk(
+        ExecutorService decoder,
+        List<DicomImageElement> list,
+        int offset,
+        int chunkSize,
+        int cvType,
+        List<SpecialElementRegion> segList) {
+      DicomVolTexture volTexture = volumeBuilder.volTexture;
+      int end = Math.min(list.size(), offset + chunkSize);
+      TextureSliceDataBuffer data =
+          TextureSliceDataBuffer.allocate(
+              cvType, volTexture.getWidth(), volTexture.getHeight(), end - offset);
+      List<Future<int[]>> slices = new ArrayList<>(end - offset);
+      for (int i = offset; i < end; i++) {
+        DicomImageElement imageElement = list.get(i);
+        int index = i - offset;
+        slices.add(decoder.submit(() -> decodeSlice(imageElement, data, index, segList)));
+      }
+      return new Chunk(offset, end, data, slices);
+    }
+
+    private static void cancel(ExecutorService decoder, Chunk chunk) {
+      if (chunk != null && chunk.data.scope().scope().isAlive()) {
+        chunk.slices.forEach(f -> f.cancel(true));
+        try {
+          // Do not release the memory while a worker is still writing in it
+          if (decoder.awaitTermination(30, TimeUnit.SECONDS)) {
+            chunk.data.releaseMemory();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+
+    /**
+     * Decode a slice, apply the modality LUT and copy it into its slot of the chunk buffer.
+     *
+     * @return the min and max values of the slice
+     */
+    private int[] decodeSlice(
+        DicomImageElement imageElement,
+        TextureSliceDataBuffer data,
+        int index,
+        List<SpecialElementRegion> segList) {
+      DicomVolTexture volTexture = volumeBuilder.volTexture;
+      Instant start = Instant.now();
+      // Force to get min/max values.
+      if (!imageElement.isImageAvailable()) {
+        imageElement.getImage();
+      }
+      int minValue = (int) imageElement.getMinValue(null);
+      int maxValue = (int) imageElement.getMaxValue(null);
+
+      PlanarImage imageMLUT;
+      if (segList != null && !segList.isEmpty()) {
+        Mat mask = volTexture.getEmptyImage();
+        for (SpecialElementRegion seg : segList) {
+          if (seg.isVisible() && seg.containsSopInstanceUIDReference(imageElement)) {
+            Collection<SegContour> contours = seg.getContours(imageElement);
+            if (!contours.isEmpty()) {
+              for (SegContour c : contours) {
+                SegGraphic graphic = c.getSegGraphic();
+                if (graphic != null) {
+                  List<MatOfPoint> pts =
+                      ImageProcessor.transformShapeToContour(graphic.getShape(), true);
+                  // TODO check the limit value
+                  int density = c.getAttributes().getId();
+                  Imgproc.fillPoly(mask, pts, new Scalar(density));
+                }
+              }
+            }
+          }
+        }
+        imageMLUT = ImageCV.toImageCV(mask);
+        //          PlanarImage src = volTexture.getModalityLutImage(imageElement);
+        //          imageMLUT = new ImageCV();
+        //          Core.bitwise_and(src.toImageCV(), mask, imageMLUT.toImageCV());
+      } else {
+        imageMLUT = volTexture.getModalityLutImage(imageElement);
+      }
+      imageMLUT = getSuitableImage(imageMLUT);
+      data.putSlice(index, imageMLUT.toMat());
+      LOGGER.debug(
+          "Time to decode the slice {}: {} ms",
+          imageElement,
+          Duration.between(start, Instant.now()).toMillis());
+      return new int[] {Math.min(maxValue, minValue), Math.max(maxValue, minValue)};
+    }
+
+    private static void updateLevels(DicomVolTexture volTexture, int[] minMax) {
+      if (minMax[0] < volTexture.getLevelMin()) {
+        volTexture.setLevelMin(minMax[0]);
+      }
+      if (minMax[1] > volTexture.getLevelMax()) {
+        volTexture.setLevelMax(minMax[1]);
+      }
+    }
+
+    private static double updateGeometry(
+        DicomVolTexture volTexture, DicomImageElement imageElement, int i, double lastPos) {
+      double pos = lastPos;
+      double[] sp = (double[]) imageElement.getTagValue(TagW.SlicePosition);
+      if (sp != null) {
+        Vector3d scale = volTexture.getScale();
+        pos = sp[0] * scale.x + sp[1] * scale.y + sp[2] * scale.z;
+        if (i > 0) {
+          double space = pos - lastPos;
+          VolumeGeometry geometry = volTexture.getVolumeGeometry();
+          geometry.setLastDepthSpacing(space);
+          double[] pixelSpacing = GeometryUtils.getPixelSpacing(imageElement);
+          if (pixelSpacing != null && pixelSpacing.length > 1) {
+            double[] spacing = new double[2];
+            spacing[0] = pixelSpacing[0] / scale.x;
+            spacing[1] = pixelSpacing[1] / scale.y;
+            geometry.setLastPixelSpacing(spacing);
+          }
+          volTexture.setTexelSize(geometry.getDimensionMFactor());
+        }
+      }
+
+      double[] or = TagD.getTagValue(imageElement, Tag.ImageOrientationPatient, double[].class);
+      if (i == 0 && or != null && or.length == 6) {
+        volTexture.setPixelSpacingUnit(imageElement.getPixelSpacingUnit());
+        volTexture.getVolumeGeometry().setOrientationPatient(or);
+      }
+      return pos;
+    }
+  }
+
+  /** Range of consecutive slices decoded into one buffer and uploaded at once. */
+  private record Chunk(
+      int offset, int end, TextureSliceDataBuffer data, List<Future<int[]>> slices) {
+    int size() {
+      return end - offset;
+    }
   }
 }
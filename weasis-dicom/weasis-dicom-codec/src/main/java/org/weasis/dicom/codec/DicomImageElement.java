@@ -409,6 +409,19 @@ public LutShape getDefaultShape(WlPresentation wlp) {
     return (defaultPreset != null) ? defaultPreset.getLutShape() : super.getDefaultShape(null);
   }
 
+  @Override
+  public String getContentKey() {
+    // The frame index is required for the multiframe instances. The transfer syntax and the file
+    // length distinguish another encoding of the same instance (e.g. a lossy compression).
+    String sopUID = TagD.getTagValue(this, Tag.SOPInstanceUID, String.class);
+    if (sopUID == null) {
+      return super.getContentKey();
+    }
+    String tsuid = TagD.getTagValue(this, Tag.TransferSyntaxUID, String.class);
+    long length = mediaIO.getFileCache().getOriginalFile().map(File::length).orElse(0L);
+    return sopUID + "|" + getKey() + "|" + tsuid + "|" + length;
+  }
+
   @Override
   public double getDefaultWindow(WlPresentation wlp) {
     PresetWindowLevel defaultPreset = getDefaultPreset(wlp);
@@ -17,13 +17,16 @@
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
@@ -51,7 +54,9 @@
 import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.media.data.Codec;
 import org.weasis.core.api.media.data.FileCache;
+import org.weasis.core.api.media.data.ImageElement;
 import org.weasis.core.api.media.data.MediaElement;
+import org.weasis.core.api.media.data.NativeCache;
 import org.weasis.core.api.media.data.SimpleTaggable;
 import org.weasis.core.api.media.data.TagView;
 import org.weasis.core.api.media.data.TagW;
@@ -97,6 +102,10 @@ public enum Reading {
   }
 
   private static final AtomicInteger instanceID = new AtomicInteger(1);
+  // Maximum number of open readers by multi-frame instance (for loading frames concurrently)
+  private static final int MAX_READER_SESSIONS = 2;
+  private static final boolean MAPPED_PIXEL_DATA =
+      Boolean.parseBoolean(System.getProperty("weasis.dicom.mapped.pixel", "true")); // NON-NLS
   public static final TagManager tagManager = new TagManager();
 
   static {
@@ -305,6 +314,12 @@ public void removeElement(Reference<? extends DicomMetaData> soft) {
   private boolean hasPixel = false;
 
   private final FileCache fileCache;
+  private final Deque<ReaderSession> readerSessions = new ArrayDeque<>();
+  private MappedPixelData mappedPixelData;
+  private boolean mappedPixelDataChecked = false;
+  private final AtomicInteger sessionGeneration = new AtomicInteger();
+  // The cached header has been read without the pixel data (see setHeader())
+  private volatile boolean partialHeader = false;
 
   public DicomMediaIO(URI uri) {
     this.uri = Objects.requireNonNull(uri);
@@ -491,6 +506,8 @@ private void writeInstanceTags(DicomMetaData md) {
         TagD.get(Tag.SOPInstanceUID), header.getString(Tag.SOPInstanceUID, String.valueOf(instNb)));
     if (fmi != null) {
       setTagNoNull(TagD.get(Tag.TransferSyntaxUID), fmi.getString(Tag.TransferSyntaxUID));
+    } else if (partialHeader) {
+      setTagNoNull(TagD.get(Tag.TransferSyntaxUID), md.getTransferSyntaxUID());
     }
 
     String concatenationUID = header.getString(Tag.ConcatenationUID);
@@ -627,6 +644,53 @@ public FileCache getFileCache() {
     return fileCache;
   }
 
+  /**
+   * Set the header read from another source than a local file, for instance from an entry of an
+   * archive. The local file is requested only for reading the pixel data.
+   *
+   * @param header the attributes up to the pixel data
+   * @param hasPixelData true if the instance contains pixel data
+   * @param fileProvider the provider of the local file, see {@link FileCache#setFileProvider}
+   * @param length the length of the file
+   */
+  public synchronized void setHeader(
+      DicomMetaData header, boolean hasPixelData, Callable<File> fileProvider, long length) {
+    Attributes dcm = Objects.requireNonNull(header).getDicomObject();
+    this.hasPixel = hasPixelData;
+    this.numberOfFrame = dcm.getInt(Tag.NumberOfFrames, 0);
+    if (numberOfFrame <= 0 && hasPixel) {
+      this.numberOfFrame = 1;
+    }
+    this.partialHeader = true;
+    fileCache.setFileProvider(new HeaderFileProvider(fileProvider), length);
+    HEADER_CACHE.put(this, header);
+  }
+
+  /** Provider of the file of a header set by setHeader(), closed as the wrapped provider. */
+  private final class HeaderFileProvider implements Callable<File>, AutoCloseable {
+    private final Callable<File> fileProvider;
+
+    private HeaderFileProvider(Callable<File> fileProvider) {
+      this.fileProvider = Objects.requireNonNull(fileProvider);
+    }
+
+    @Override
+    public File call() throws Exception {
+      File file = fileProvider.call();
+      // Read again the header from the file
+      partialHeader = false;
+      HEADER_CACHE.remove(DicomMediaIO.this);
+      return file;
+    }
+
+    @Override
+    public void close() throws Exception {
+      if (fileProvider instanceof AutoCloseable closeable) {
+        closeable.close();
+      }
+    }
+  }
+
   @Override
   public boolean buildFile(File output) {
     // When object is in memory, write it
@@ -662,20 +726,34 @@ public PlanarImage getImageFragment(MediaElement media, int frame, boolean noEmb
             "Start reading dicom image frame: {} sopUID: {}",
             frame,
             TagD.getTagValue(this, Tag.SOPInstanceUID));
+        Path path = original.get().toPath();
+        MappedPixelData mapped = getMappedPixelData();
+        if (mapped != null) {
+          // Uncompressed pixel data: no copy, the file pages are loaded on demand by the OS
+          return MappedImageCV.map(
+              path,
+              mapped.offset() + frame * mapped.frameLength(),
+              mapped.rows(),
+              mapped.columns(),
+              mapped.cvType());
+        }
+        if (numberOfFrame > 1) {
+          // Keep the reader open for reading the other frames
+          ReaderSession session = acquireReaderSession(path);
+          boolean reusable = false;
+          try {
+            PlanarImage img = readFrame(session.reader, session.desc, frame, noEmbeddedOverlay);
+            reusable = true;
+            return img;
+          } finally {
+            releaseReaderSession(session, reusable);
+          }
+        }
+
         DicomImageReader reader = new DicomImageReader(Transcoder.dicomImageReaderSpi);
-        try (DicomFileInputStream inputStream = new DicomFileInputStream(original.get().toPath())) {
+        try (DicomFileInputStream inputStream = new DicomFileInputStream(path)) {
           reader.setInput(inputStream);
-          ImageDescriptor desc = reader.getImageDescriptor();
-          PlanarImage img = reader.getPlanarImage(frame, null);
-          if (img.width() != desc.getColumns() || img.height() != desc.getRows()) {
-            LOGGER.error(
-                "The native image size ({}x{}) does not match with the DICOM attributes({}x{})",
-                img.width(),
-                img.height(),
-                desc.getColumns(),
-                desc.getRows());
-          }
-          return noEmbeddedOverlay ? ImageRendering.getImageWithoutEmbeddedOverlay(img, desc) : img;
+          return readFrame(reader, reader.getImageDescriptor(), frame, noEmbeddedOverlay);
         } finally {
           reader.dispose();
         }
@@ -684,6 +762,128 @@ public PlanarImage getImageFragment(MediaElement media, int frame, boolean noEmb
     return null;
   }
 
+  private synchronized MappedPixelData getMappedPixelData() {
+    if (!mappedPixelDataChecked) {
+      mappedPixelDataChecked = true;
+      try {
+        mappedPixelData = buildMappedPixelData();
+      } catch (Exception e) {
+        LOGGER.warn("Cannot map the pixel data of {}", uri, e);
+      }
+    }
+    return mappedPixelData;
+  }
+
+  private MappedPixelData buildMappedPixelData() {
+    // Only local and uncompressed files which are not temporary (downloaded files can be deleted)
+    if (!MAPPED_PIXEL_DATA
+        || !fileCache.isLocalFile()
+        || fileCache.getOriginalTempFile() != null
+        || fileCache.isRequireTransformation()
+        || MappedImageCV.isApplicationFile(Path.of(uri))) {
+      return null;
+    }
+    DicomMetaData md = getDicomMetaData();
+    if (md == null) {
+      return null;
+    }
+    String tsuid = md.getTransferSyntaxUID();
+    if (!UID.ExplicitVRLittleEndian.equals(tsuid) && !UID.ImplicitVRLittleEndian.equals(tsuid)) {
+      return null;
+    }
+    Attributes dcm = md.getDicomObject();
+    ImageDescriptor desc = md.getImageDescriptor();
+    if (!(dcm.getValue(Tag.PixelData) instanceof BulkData bulkData)
+        || desc == null
+        || desc.getSamples() != 1
+        || !dcm.getString(Tag.PhotometricInterpretation, "").startsWith("MONOCHROME") // NON-NLS
+        || !desc.getEmbeddedOverlay().isEmpty()) {
+      return null;
+    }
+
+    int bitsAllocated = desc.getBitsAllocated();
+    int type;
+    if (bitsAllocated == 8 && !desc.isSigned()) {
+      type = CvType.CV_8UC1;
+    } else if (bitsAllocated == 16) {
+      type = desc.isSigned() ? CvType.CV_16SC1 : CvType.CV_16UC1;
+    } else {
+      return null;
+    }
+    // Signed values require the sign extension done by the reader
+    if (desc.isSigned() && desc.getBitsStored() < bitsAllocated) {
+      return null;
+    }
+    long frameLength = (long) desc.getRows() * desc.getColumns() * (bitsAllocated / 8);
+    if (frameLength <= 0 || bulkData.length() < frameLength * numberOfFrame) {
+      return null;
+    }
+    return new MappedPixelData(
+        bulkData.offset(), frameLength, desc.getRows(), desc.getColumns(), type);
+  }
+
+  private static PlanarImage readFrame(
+      DicomImageReader reader, ImageDescriptor desc, int frame, boolean noEmbeddedOverlay)
+      throws IOException {
+    PlanarImage img = reader.getPlanarImage(frame, null);
+    if (img.width() != desc.getColumns() || img.height() != desc.getRows()) {
+      LOGGER.error(
+          "The native image size ({}x{}) does not match with the DICOM attributes({}x{})",
+          img.width(),
+          img.height(),
+          desc.getColumns(),
+          desc.getRows());
+    }
+    return noEmbeddedOverlay ? ImageRendering.getImageWithoutEmbeddedOverlay(img, desc) : img;
+  }
+
+  private ReaderSession acquireReaderSession(Path path) throws IOException {
+    synchronized (readerSessions) {
+      ReaderSession session;
+      while ((session = readerSessions.poll()) != null) {
+        if (session.path.equals(path)) {
+          return session;
+        }
+        session.close();
+      }
+    }
+    return new ReaderSession(path, sessionGeneration.get());
+  }
+
+  private void releaseReaderSession(ReaderSession session, boolean reusable) {
+    synchronized (readerSessions) {
+      if (reusable
+          && session.generation == sessionGeneration.get()
+          && readerSessions.size() < MAX_READER_SESSIONS) {
+        readerSessions.push(session);
+        return;
+      }
+    }
+    session.close();
+  }
+
+  private void closeReaderSessions() {
+    synchronized (readerSessions) {
+      // The sessions in use will be closed when released
+      sessionGeneration.incrementAndGet();
+      readerSessions.forEach(ReaderSession::close);
+      readerSessions.clear();
+    }
+  }
+
+  private boolean hasFrameInCache() {
+    DicomImageElement[] elements = image;
+    if (elements != null && elements.length > 1) {
+      NativeCache<ImageElement, PlanarImage> cache = ImageElement.getImageCache();
+      for (DicomImageElement element : elements) {
+        if (cache.containsKey(element)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   private static Mat getMatBuffer(ExtendSegmentedInputImageStream extParams) throws IOException {
     try (RandomAccessFile raf = new RandomAccessFile(extParams.getFile(), "r")) {
 
@@ -859,6 +1059,10 @@ public Map<TagW, Object> getMediaFragmentTags(Object key) {
   @Override
   public void close() {
     HEADER_CACHE.remove(this);
+    // Multi-frame: keep the reader open while other frames are in the cache
+    if (!hasFrameInCache()) {
+      closeReaderSessions();
+    }
   }
 
   @Override
@@ -908,6 +1112,10 @@ public Attributes getDicomObject() {
   @Override
   public DicomMetaData getDicomMetaData() {
     try {
+      if (partialHeader) {
+        // Only the header of the local file references the pixel data
+        fileCache.getOriginalFile();
+      }
       return readMetaData();
     } catch (Exception e) {
       if (LOGGER.isDebugEnabled()) {
@@ -973,6 +1181,45 @@ public static boolean isHiddenModality(String modality) {
     return false;
   }
 
+  /** Layout of the uncompressed pixel data in the file. */
+  private record MappedPixelData(
+      long offset, long frameLength, int rows, int columns, int cvType) {}
+
+  /**
+   * Reader of a multi-frame instance which keeps the parsed header, the image descriptor and the
+   * frame offsets for reading the frames by random access.
+   */
+  private static final class ReaderSession {
+    private final Path path;
+    private final int generation;
+    private final DicomImageReader reader;
+    private final DicomFileInputStream inputStream;
+    private final ImageDescriptor desc;
+
+    ReaderSession(Path path, int generation) throws IOException {
+      this.path = path;
+      this.generation = generation;
+      this.reader = new DicomImageReader(Transcoder.dicomImageReaderSpi);
+      this.inputStream = new DicomFileInputStream(path);
+      try {
+        reader.setInput(inputStream);
+        this.desc = reader.getImageDescriptor();
+      } catch (Exception e) {
+        close();
+        throw e;
+      }
+    }
+
+    void close() {
+      reader.dispose();
+      try {
+        inputStream.close();
+      } catch (IOException e) {
+        LOGGER.warn("Cannot close the DICOM stream: {}", path, e);
+      }
+    }
+  }
+
   public static class ResultContainer {
 
     private final DicomImageElement[] image;
@@ -12,7 +12,9 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.dcm4che3.data.Tag;
 import org.slf4j.Logger;
@@ -41,6 +43,12 @@ public class DicomSeries extends Series<DicomImageElement> {
 
   private static PreloadingTask preloadingTask;
 
+  private static final int MAX_POSITION_INDEXES = 8;
+
+  // Indexes of the slice positions by sort order, guarded by this
+  private final Map<Comparator<DicomImageElement>, SlicePositionIndex> positionIndexes =
+      new HashMap<>(4);
+
   public DicomSeries(String subseriesInstanceUID) {
     this(subseriesInstanceUID, null, defaultTagView);
   }
@@ -180,32 +188,19 @@ public DicomImageElement getNearestImage(
       int offset,
       Filter<DicomImageElement> filter,
       Comparator<DicomImageElement> sort) {
-    Iterable<DicomImageElement> mediaList = getMedias(filter, sort);
-    DicomImageElement nearest = null;
-    int index = 0;
-    int bestIndex = -1;
-    synchronized (this) {
-      double bestDiff = Double.MAX_VALUE;
-      for (DicomImageElement dcm : mediaList) {
-        double[] val = (double[]) dcm.getTagValue(TagW.SlicePosition);
-        if (val != null) {
-          double diff = Math.abs(location - (val[0] + val[1] + val[2]));
-          if (diff < bestDiff) {
-            bestDiff = diff;
-            nearest = dcm;
-            bestIndex = index;
-            if (MathUtil.isEqualToZero(diff)) {
-              break;
-            }
-          }
-        }
-        index++;
+    if (filter != null) {
+      int bestIndex = getNearestFilteredIndex(location, filter, sort);
+      if (offset > 0) {
+        return getMedia(bestIndex + offset, filter, sort);
       }
+      return bestIndex < 0 ? null : getMedia(bestIndex, filter, sort);
     }
+    SlicePositionIndex index = getSlicePositionIndex(sort);
+    int bestIndex = index.getNearestIndex(location);
     if (offset > 0) {
-      return getMedia(bestIndex + offset, filter, sort);
+      return index.getElement(bestIndex + offset);
     }
-    return nearest;
+    return index.getElement(bestIndex);
   }
 
   @Override
@@ -214,6 +209,19 @@ public int getNearestImageIndex(
       int offset,
       Filter<DicomImageElement> filter,
       Comparator<DicomImageElement> sort) {
+    int bestIndex =
+        filter == null
+            ? getSlicePositionIndex(sort).getNearestIndex(location)
+            : getNearestFilteredIndex(location, filter, sort);
+    return (offset > 0) ? (bestIndex + offset) : bestIndex;
+  }
+
+  /**
+   * The result of a filter can change (e.g. KO selection), so the filtered images are scanned
+   * instead of being indexed.
+   */
+  private int getNearestFilteredIndex(
+      double location, Filter<DicomImageElement> filter, Comparator<DicomImageElement> sort) {
     Iterable<DicomImageElement> mediaList = getMedias(filter, sort);
     int index = 0;
     int bestIndex = -1;
@@ -234,20 +242,37 @@ public int getNearestImageIndex(
         index++;
       }
     }
+    return bestIndex;
+  }
 
-    return (offset > 0) ? (bestIndex + offset) : bestIndex;
+  private SlicePositionIndex getSlicePositionIndex(Comparator<DicomImageElement> sort) {
+    synchronized (this) {
+      SlicePositionIndex index = positionIndexes.get(sort);
+      if (index == null) {
+        if (positionIndexes.size() >= MAX_POSITION_INDEXES) {
+          positionIndexes.clear();
+        }
+        // Read in the same lock as the cache, which is cleared after adding an image
+        index = SlicePositionIndex.build(getMedias(null, sort));
+        positionIndexes.put(sort, index);
+      }
+      return index;
+    }
+  }
+
+  @Override
+  protected void resetSortedMediasMap() {
+    super.resetSortedMediasMap();
+    synchronized (this) {
+      positionIndexes.clear();
+    }
   }
 
   @Override
   public boolean hasMediaContains(TagW tag, Object val) {
     if (val != null) {
-      synchronized (this) {
-        for (DicomImageElement media : medias) {
-          Object val2 = media.getTagValue(tag);
-          if (val.equals(val2)) {
-            return true;
-          }
-        }
+      if (super.hasMediaContains(tag, val)) {
+        return true;
       }
       if (medias.isEmpty()) {
         List<? extends DicomSpecialElement> list = getAllDicomSpecialElement();
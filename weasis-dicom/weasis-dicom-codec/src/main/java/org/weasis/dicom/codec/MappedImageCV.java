@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.codec;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Range;
+import org.opencv.core.Rect;
+import org.weasis.core.api.gui.util.AppProperties;
+import org.weasis.core.api.media.data.MappedImage;
+import org.weasis.opencv.data.ImageCV;
+
+/**
+ * Image header on a memory-mapped region of a file, without copying the pixel data. The mapping
+ * belongs to an automatic arena: the file is unmapped by the garbage collector once neither the
+ * image nor a sub-matrix built from it is referenced. {@link #release()} (called when the image is
+ * removed from the cache) releases only the header, as the pixel data may still be read through
+ * another reference.
+ */
+final class MappedImageCV extends ImageCV implements MappedImage {
+  // Keeps the mapping alive as long as the image is referenced
+  private final MemorySegment segment;
+
+  private MappedImageCV(MemorySegment segment, int rows, int cols, int type) {
+    super();
+    this.segment = segment;
+    Mat header = new Mat(rows, cols, type, segment.asByteBuffer());
+    header.assignTo(this);
+    header.release();
+  }
+
+  /**
+   * @param path the file path
+   * @param offset the position of the pixel data in the file
+   * @param rows the number of rows
+   * @param cols the number of columns
+   * @param type the OpenCV type matching the pixel data layout
+   * @return the image mapping the file region
+   * @throws IOException if the file cannot be mapped
+   */
+  static MappedImageCV map(Path path, long offset, int rows, int cols, int type)
+      throws IOException {
+    long length = (long) rows * cols * CvType.ELEM_SIZE(type);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MemorySegment segment = channel.map(MapMode.READ_ONLY, offset, length, Arena.ofAuto());
+      return new MappedImageCV(segment, rows, cols, type);
+    }
+  }
+
+  /**
+   * @param path the file path
+   * @return true if the file is in a directory managed by the application (temporary files or
+   *     persistent caches), where it can be deleted while it is mapped
+   */
+  static boolean isApplicationFile(Path path) {
+    Path file = path.toAbsolutePath().normalize();
+    return file.startsWith(AppProperties.APP_TEMP_DIR.toPath().toAbsolutePath().normalize())
+        || file.startsWith(Path.of(AppProperties.WEASIS_PATH, "cache").toAbsolutePath()); // NON-NLS
+  }
+
+  @Override
+  public Mat submat(int rowStart, int rowEnd, int colStart, int colEnd) {
+    return new MappedView(segment, super.submat(rowStart, rowEnd, colStart, colEnd));
+  }
+
+  @Override
+  public Mat submat(Range rowRange, Range colRange) {
+    return new MappedView(segment, super.submat(rowRange, colRange));
+  }
+
+  @Override
+  public Mat submat(Rect roi) {
+    return new MappedView(segment, super.submat(roi));
+  }
+
+  @Override
+  public Mat rowRange(int startRow, int endRow) {
+    return new MappedView(segment, super.rowRange(startRow, endRow));
+  }
+
+  @Override
+  public Mat colRange(int startCol, int endCol) {
+    return new MappedView(segment, super.colRange(startCol, endCol));
+  }
+
+  @Override
+  public Mat row(int y) {
+    return new MappedView(segment, super.row(y));
+  }
+
+  @Override
+  public Mat col(int x) {
+    return new MappedView(segment, super.col(x));
+  }
+
+  /** Sub-matrix sharing the mapped pixel data, which keeps the mapping alive. */
+  private static final class MappedView extends ImageCV {
+    // Only referenced to keep the mapping alive
+    private final MemorySegment segment;
+
+    private MappedView(MemorySegment segment, Mat view) {
+      super();
+      this.segment = segment;
+      view.assignTo(this);
+      view.release();
+    }
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.codec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.weasis.core.api.media.data.TagW;
+
+/**
+ * Index of the slice positions of an ordered list of images. The positions (the sum of the
+ * components of {@link TagW#SlicePosition}) are sorted to find the nearest image by a binary
+ * search. The result is the same as a scan of the list: when several images are at the same
+ * distance, the first one in the list is returned.
+ */
+final class SlicePositionIndex {
+
+  // Images in the order of the list
+  private final DicomImageElement[] elements;
+  // Positions sorted in ascending order, then by index in the list
+  private final double[] positions;
+  // Index in the list of each sorted position
+  private final int[] indexes;
+
+  /**
+   * @param positions the position of each image in the order of the list, NaN when the image has
+   *     no position
+   * @param elements the images in the order of the list, may be null
+   */
+  SlicePositionIndex(double[] positions, DicomImageElement[] elements) {
+    this.elements = elements;
+    Integer[] order =
+        IntStream.range(0, positions.length)
+            .filter(i -> !Double.isNaN(positions[i]))
+            .boxed()
+            .toArray(Integer[]::new);
+    // Stable sort, the images at the same position stay in the order of the list
+    Arrays.sort(order, (a, b) -> Double.compare(positions[a], positions[b]));
+    this.positions = new double[order.length];
+    this.indexes = new int[order.length];
+    for (int i = 0; i < order.length; i++) {
+      this.indexes[i] = order[i];
+      this.positions[i] = positions[order[i]];
+    }
+  }
+
+  static SlicePositionIndex build(Iterable<DicomImageElement> mediaList) {
+    List<DicomImageElement> list = new ArrayList<>();
+    mediaList.forEach(list::add);
+    double[] positions = new double[list.size()];
+    for (int i = 0; i < positions.length; i++) {
+      double[] val = (double[]) list.get(i).getTagValue(TagW.SlicePosition);
+      positions[i] = val == null ? Double.NaN : val[0] + val[1] + val[2];
+    }
+    return new SlicePositionIndex(positions, list.toArray(new DicomImageElement[0]));
+  }
+
+  /**
+   * @param location the slice position
+   * @return the index in the list of the nearest image, or -1 if no image has a position
+   */
+  int getNearestIndex(double location) {
+    int n = positions.length;
+    if (n == 0 || Double.isNaN(location)) {
+      return -1;
+    }
+    // First position greater than the location, it is the first of its group
+    int upper = firstIndex(location, true);
+    if (upper == 0) {
+      return indexes[0];
+    }
+    // First position of the group below or equal to the location
+    int lower = firstIndex(positions[upper - 1], false);
+    if (upper == n) {
+      return indexes[lower];
+    }
+    double lowerDiff = Math.abs(location - positions[lower]);
+    double upperDiff = Math.abs(location - positions[upper]);
+    if (lowerDiff < upperDiff) {
+      return indexes[lower];
+    }
+    if (upperDiff < lowerDiff) {
+      return indexes[upper];
+    }
+    return Math.min(indexes[lower], indexes[upper]);
+  }
+
+  /**
+   * @param index the index in the list
+   * @return the image at this index, or null if out of range
+   */
+  DicomImageElement getElement(int index) {
+    if (elements == null || index < 0 || index >= elements.length) {
+      return null;
+    }
+    return elements[index];
+  }
+
+  private int firstIndex(double value, boolean strictlyGreater) {
+    int low = 0;
+    int high = positions.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      boolean after = strictlyGreater ? positions[mid] > value : positions[mid] >= value;
+      if (after) {
+        high = mid;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return low;
+  }
+}
@@ -23,6 +23,7 @@
 import org.weasis.core.api.image.ImageOpEvent;
 import org.weasis.core.api.image.ImageOpEvent.OpEvent;
 import org.weasis.core.api.media.data.ImageElement;
+import org.weasis.core.util.LangUtil;
 import org.weasis.dicom.codec.DicomMediaIO;
 import org.weasis.dicom.codec.PRSpecialElement;
 import org.weasis.opencv.data.PlanarImage;
@@ -47,6 +48,12 @@ public OverlayOp copy() {
     return new OverlayOp(this);
   }
 
+  @Override
+  public int getRegionMargin() {
+    // The overlays are in the coordinates of the whole image
+    return LangUtil.getNULLtoFalse((Boolean) params.get(P_SHOW)) ? -1 : 0;
+  }
+
   @Override
   public void handleImageOpEvent(ImageOpEvent event) {
     OpEvent type = event.getEventType();
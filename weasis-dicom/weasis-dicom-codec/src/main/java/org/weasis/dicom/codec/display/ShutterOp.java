@@ -64,6 +64,12 @@ public ShutterOp copy() {
     return new ShutterOp(this);
   }
 
+  @Override
+  public int getRegionMargin() {
+    // The shutter shape is in the coordinates of the whole image
+    return LangUtil.getNULLtoFalse((Boolean) params.get(P_SHOW)) ? -1 : 0;
+  }
+
   @Override
   public void handleImageOpEvent(ImageOpEvent event) {
     OpEvent type = event.getEventType();
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.codec;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.weasis.core.api.gui.util.AppProperties;
+
+class MappedImageCVTest {
+  private static final int HEADER = 132;
+  private static final int ROWS = 3;
+  private static final int COLS = 4;
+
+  private static boolean nativeLibrary;
+
+  @TempDir Path tempDir;
+
+  @BeforeAll
+  static void loadNativeLibrary() {
+    try {
+      System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+      nativeLibrary = true;
+    } catch (UnsatisfiedLinkError e) {
+      nativeLibrary = false;
+    }
+  }
+
+  private Path writeFrames(int nbFrames) throws IOException {
+    ByteBuffer buffer =
+        ByteBuffer.allocate(HEADER + nbFrames * ROWS * COLS * 2).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.position(HEADER);
+    for (int i = 0; i < nbFrames * ROWS * COLS; i++) {
+      buffer.putShort((short) (i * 100));
+    }
+    Path file = tempDir.resolve("frames.raw"); // NON-NLS
+    Files.write(file, buffer.array());
+    return file;
+  }
+
+  @Test
+  void mapFrame() throws IOException {
+    Assumptions.assumeTrue(nativeLibrary, "OpenCV native library not available"); // NON-NLS
+    Path file = writeFrames(2);
+    long frameLength = ROWS * COLS * 2L;
+    MappedImageCV img = MappedImageCV.map(file, HEADER + frameLength, ROWS, COLS, CvType.CV_16UC1);
+    assertEquals(COLS, img.width());
+    assertEquals(ROWS, img.height());
+    short[] data = new short[ROWS * COLS];
+    img.get(0, 0, data);
+    for (int i = 0; i < data.length; i++) {
+      assertEquals((ROWS * COLS + i) * 100, Short.toUnsignedInt(data[i]));
+    }
+    img.release();
+    // Releasing twice is allowed
+    img.release();
+  }
+
+  @Test
+  void evictWhileReadingSubmat() throws Exception {
+    Assumptions.assumeTrue(nativeLibrary, "OpenCV native library not available"); // NON-NLS
+    Path file = writeFrames(1);
+    MappedImageCV img = MappedImageCV.map(file, HEADER, ROWS, COLS, CvType.CV_16UC1);
+    Mat view = img.submat(new Rect(1, 1, COLS - 1, ROWS - 1));
+    short[] expected = new short[(ROWS - 1) * (COLS - 1)];
+    view.get(0, 0, expected);
+
+    AtomicBoolean reading = new AtomicBoolean(true);
+    AtomicInteger mismatches = new AtomicInteger();
+    Thread reader =
+        new Thread(
+            () -> {
+              short[] values = new short[expected.length];
+              while (reading.get()) {
+                view.get(0, 0, values);
+                if (!Arrays.equals(expected, values)) {
+                  mismatches.incrementAndGet();
+                }
+              }
+            });
+    reader.start();
+    try {
+      // Eviction from the cache: the image is released and no longer referenced
+      img.release();
+      img = null;
+      for (int i = 0; i < 5; i++) {
+        System.gc();
+        Thread.sleep(20);
+      }
+    } finally {
+      reading.set(false);
+      reader.join();
+    }
+    assertEquals(0, mismatches.get());
+    short[] values = new short[expected.length];
+    view.get(0, 0, values);
+    assertArrayEquals(expected, values);
+    assertEquals((COLS + 1) * 100, Short.toUnsignedInt(values[0]));
+    view.release();
+  }
+
+  @Test
+  void mapOutOfFile() throws IOException {
+    Assumptions.assumeTrue(nativeLibrary, "OpenCV native library not available"); // NON-NLS
+    Path file = writeFrames(1);
+    assertThrows(
+        IOException.class, () -> MappedImageCV.map(file, HEADER, ROWS * 4, COLS, CvType.CV_16UC1));
+  }
+
+  @Test
+  void isApplicationFile() {
+    assertTrue(
+        MappedImageCV.isApplicationFile(AppProperties.APP_TEMP_DIR.toPath().resolve("a.dcm")));
+    assertTrue(
+        MappedImageCV.isApplicationFile(
+            Path.of(AppProperties.WEASIS_PATH, "cache", "dicom", "a.dcm"))); // NON-NLS
+    assertFalse(MappedImageCV.isApplicationFile(tempDir.resolve("a.dcm")));
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.codec;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class SlicePositionIndexTest {
+
+  /** Reference implementation: scan of the list, the first nearest position wins */
+  private static int scan(double[] positions, double location) {
+    int bestIndex = -1;
+    double bestDiff = Double.MAX_VALUE;
+    for (int i = 0; i < positions.length; i++) {
+      if (!Double.isNaN(positions[i])) {
+        double diff = Math.abs(location - positions[i]);
+        if (diff < bestDiff) {
+          bestDiff = diff;
+          bestIndex = i;
+        }
+      }
+    }
+    return bestIndex;
+  }
+
+  @Test
+  void getNearestIndex() {
+    double[] positions = {12.5, Double.NaN, -3.0, 5.0, 5.0, 0.0, 10.0, -3.0, Double.NaN, 7.5};
+    SlicePositionIndex index = new SlicePositionIndex(positions, null);
+    for (double location = -10.0; location <= 20.0; location += 0.25) {
+      assertEquals(scan(positions, location), index.getNearestIndex(location), "at " + location);
+    }
+    // Midway between 0.0 (index 5) and 5.0 (index 3), the first in the list wins
+    assertEquals(3, index.getNearestIndex(2.5));
+    // Midway between -3.0 (index 2) and 0.0 (index 5)
+    assertEquals(2, index.getNearestIndex(-1.5));
+    assertEquals(3, index.getNearestIndex(5.0));
+    assertEquals(2, index.getNearestIndex(-100.0));
+    assertEquals(0, index.getNearestIndex(100.0));
+  }
+
+  @Test
+  void getNearestIndexWithoutPosition() {
+    SlicePositionIndex index = new SlicePositionIndex(new double[] {Double.NaN, Double.NaN}, null);
+    assertEquals(-1, index.getNearestIndex(0.0));
+    assertEquals(-1, new SlicePositionIndex(new double[0], null).getNearestIndex(1.0));
+    assertNull(index.getElement(0));
+  }
+}
@@ -29,6 +29,7 @@
 import java.util.Properties;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
@@ -137,6 +138,10 @@ public class DicomModel implements TreeModel, DataExplorerModel {
       Arrays.asList(TreeModelNode.ROOT, patient, study, series);
 
   private final Tree<MediaSeriesGroup> model;
+  // Nodes of each level by their identifier (patient, study and series UIDs)
+  private final Map<TagW, Map<Object, MediaSeriesGroup>> uidIndex = new ConcurrentHashMap<>();
+  // Nodes by their parent and their identifier, the same UID can be under several parents
+  private final Map<ChildKey, MediaSeriesGroup> childIndex = new ConcurrentHashMap<>();
   private PropertyChangeSupport propertyChange = null;
   private final SplittingRules splittingRules;
 
@@ -169,6 +174,18 @@ public Collection<MediaSeriesGroup> getChildren(MediaSeriesGroup node) {
 
   @Override
   public MediaSeriesGroup getHierarchyNode(MediaSeriesGroup parent, Object valueID) {
+    TagW childTagID = parent == null ? null : getChildTagID(parent.getTagID());
+    if (childTagID != null && valueID != null) {
+      MediaSeriesGroup node = childIndex.get(new ChildKey(parent, valueID));
+      if (node == null || node.matchIdValue(valueID)) {
+        return node;
+      }
+      // Stale key: the identifier of the node has changed since it has been indexed
+      childIndex.remove(new ChildKey(parent, valueID), node);
+      if (model.getTree(node) != null) {
+        index(parent, node);
+      }
+    }
     if (parent != null || valueID != null) {
       for (MediaSeriesGroup node : getChildren(parent)) {
         if (node.matchIdValue(valueID)) {
@@ -262,39 +279,99 @@ public void mergeStudyUID(String oldStudyUID, String studyUID) {
 
   public MediaSeriesGroup getStudyNode(String studyUID) {
     Objects.requireNonNull(studyUID);
-    for (MediaSeriesGroup pt : getChildren(MediaSeriesGroupNode.rootNode)) {
-      for (MediaSeriesGroup st : getChildren(pt)) {
-        if (st.matchIdValue(studyUID)) {
-          return st;
-        }
+    return getIndexedNode(study.tagElement(), studyUID);
+  }
+
+  public MediaSeriesGroup getSeriesNode(String seriesUID) {
+    Objects.requireNonNull(seriesUID);
+    return getIndexedNode(series.tagElement(), seriesUID);
+  }
+
+  private MediaSeriesGroup getIndexedNode(TagW tagID, Object valueID) {
+    Map<Object, MediaSeriesGroup> nodes = uidIndex.get(tagID);
+    MediaSeriesGroup node = nodes == null ? null : nodes.get(valueID);
+    if (node != null && !node.matchIdValue(valueID)) {
+      // Stale key: the identifier of the node has changed since it has been indexed
+      nodes.remove(valueID, node);
+      if (model.getTree(node) != null) {
+        index(getTreeParent(node), node);
+      }
+      return null;
+    }
+    return node;
+  }
+
+  private static TagW getChildTagID(TagW tagID) {
+    for (int i = 0; i < modelStructure.size() - 1; i++) {
+      if (modelStructure.get(i).tagElement().equals(tagID)) {
+        return modelStructure.get(i + 1).tagElement();
       }
     }
     return null;
   }
 
-  public MediaSeriesGroup getSeriesNode(String seriesUID) {
-    Objects.requireNonNull(seriesUID);
-    for (MediaSeriesGroup pt : getChildren(MediaSeriesGroupNode.rootNode)) {
-      for (MediaSeriesGroup st : getChildren(pt)) {
-        for (MediaSeriesGroup item : getChildren(st)) {
-          if (item.matchIdValue(seriesUID)) {
-            return item;
-          }
+  private MediaSeriesGroup getTreeParent(MediaSeriesGroup node) {
+    Tree<MediaSeriesGroup> tree = model.getTree(node);
+    Tree<MediaSeriesGroup> parent = tree == null ? null : tree.getParent();
+    return parent == null ? null : parent.getHead();
+  }
+
+  private void index(MediaSeriesGroup parent, MediaSeriesGroup node) {
+    Object id = node.getTagValue(node.getTagID());
+    if (id != null) {
+      uidIndex.computeIfAbsent(node.getTagID(), k -> new ConcurrentHashMap<>()).put(id, node);
+      if (parent != null) {
+        childIndex.put(new ChildKey(parent, id), node);
+      }
+    }
+  }
+
+  private void unindex(MediaSeriesGroup node) {
+    // The descendants are not reachable anymore from the tree
+    for (MediaSeriesGroup child : getChildren(node)) {
+      unindex(child);
+    }
+    Object id = node.getTagValue(node.getTagID());
+    MediaSeriesGroup parent = getTreeParent(node);
+    if (id == null || parent == null || !childIndex.remove(new ChildKey(parent, id), node)) {
+      childIndex.values().removeIf(n -> n == node);
+    }
+    Map<Object, MediaSeriesGroup> nodes = uidIndex.get(node.getTagID());
+    if (nodes != null && (id == null || !nodes.remove(id, node))) {
+      nodes.values().removeIf(n -> n == node);
+    }
+    if (nodes != null && id != null) {
+      // Another node with the same identifier under another parent
+      for (Map.Entry<ChildKey, MediaSeriesGroup> entry : childIndex.entrySet()) {
+        MediaSeriesGroup other = entry.getValue();
+        if (other != node
+            && id.equals(entry.getKey().id())
+            && other.getTagID().equals(node.getTagID())) {
+          nodes.putIfAbsent(id, other);
+          break;
         }
       }
     }
-    return null;
   }
 
+  /** Key of a node in the index of the children: its parent and its identifier */
+  private record ChildKey(MediaSeriesGroup parent, Object id) {}
+
   @Override
   public void addHierarchyNode(MediaSeriesGroup root, MediaSeriesGroup leaf) {
+    boolean newRoot = model.getTree(root) == null;
     model.addLeaf(root, leaf);
+    if (newRoot) {
+      index(getTreeParent(root), root);
+    }
+    index(root, leaf);
   }
 
   @Override
   public void removeHierarchyNode(MediaSeriesGroup root, MediaSeriesGroup leaf) {
     Tree<MediaSeriesGroup> tree = model.getTree(root);
     if (tree != null) {
+      unindex(leaf);
       tree.removeLeaf(leaf);
     }
   }
@@ -331,6 +408,8 @@ public void dispose() {
       }
     }
     model.clear();
+    uidIndex.clear();
+    childIndex.clear();
   }
 
   @Override
@@ -101,6 +101,11 @@ public void importDICOM(DicomModel dicomModel, JProgressBar info) {
 
   public static void loadDicomZip(File file, DicomModel dicomModel, OpeningViewer openingViewer) {
     if (file != null && file.canRead()) {
+      if (!isEncrypted(file)) {
+        // Read the entries directly from the archive, without extracting them
+        DicomModel.LOADING_EXECUTOR.execute(new LoadZipDicom(file, dicomModel, openingViewer));
+        return;
+      }
       File dir =
           FileUtil.createTempDir(
               AppProperties.buildAccessibleTempDirectory("tmp", "zip")); // NON-NLS
@@ -146,6 +151,15 @@ public static void loadDicomZip(File file, DicomModel dicomModel, OpeningViewer
     }
   }
 
+  private static boolean isEncrypted(File file) {
+    try (ZipFile zipFile = new ZipFile(file)) {
+      return zipFile.isEncrypted();
+    } catch (IOException e) {
+      LOGGER.error("Cannot read the ZIP file {}", file, e);
+      return false;
+    }
+  }
+
   public static void loadDicomZip(String uri, DicomModel dicomModel) {
     if (StringUtil.hasText(uri)) {
       File tempFile = null;
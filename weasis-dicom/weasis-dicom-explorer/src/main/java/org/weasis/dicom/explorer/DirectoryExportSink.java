@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.explorer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+import org.weasis.core.util.FileUtil;
+
+/** Export the files into a folder. */
+public final class DirectoryExportSink implements ExportSink {
+
+  private final File directory;
+
+  public DirectoryExportSink(File directory) {
+    this.directory = Objects.requireNonNull(directory);
+  }
+
+  @Override
+  public File getDirectory() {
+    return directory;
+  }
+
+  @Override
+  public void add(File source, String path, boolean compressible) throws IOException {
+    File target = new File(directory, path);
+    if (target.equals(source)) {
+      // Already written at the right place
+      return;
+    }
+    File parent = target.getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    if (!FileUtil.nioCopyFile(source, target)) {
+      throw new IOException("Cannot copy " + source + " to " + target);
+    }
+  }
+
+  @Override
+  public void close() {
+    // Nothing to release
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.explorer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Destination of the exported files. The paths of the entries are relative to {@link
+ * #getDirectory()}, which is also the folder of the DICOMDIR. The implementations must be
+ * thread-safe.
+ */
+public interface ExportSink extends Closeable {
+
+  /**
+   * @return the folder where the files can be written, they are part of the export when the sink
+   *     is closed
+   */
+  File getDirectory();
+
+  /**
+   * Add a file to the export.
+   *
+   * @param source the file to add, either an external file which is copied or a file written in
+   *     {@link #getDirectory()}
+   * @param path the relative path of the entry
+   * @param compressible false when the content is already compressed (e.g. JPEG pixel data)
+   * @throws IOException when the file cannot be written in the destination
+   */
+  void add(File source, String path, boolean compressible) throws IOException;
+}
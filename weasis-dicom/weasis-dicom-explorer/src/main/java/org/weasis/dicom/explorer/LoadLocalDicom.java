@@ -10,9 +10,30 @@
 package org.weasis.dicom.explorer;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.ObservableEvent;
 import org.weasis.core.api.explorer.model.DataExplorerModel;
 import org.weasis.core.api.gui.util.AppProperties;
@@ -23,6 +44,7 @@
 import org.weasis.core.api.media.data.SeriesEvent;
 import org.weasis.core.api.media.data.SeriesThumbnail;
 import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.core.ui.model.GraphicModel;
 import org.weasis.core.ui.serialize.XmlSerializer;
 import org.weasis.core.util.FileUtil;
@@ -32,6 +54,9 @@
 import org.weasis.dicom.explorer.HangingProtocols.OpeningViewer;
 
 public class LoadLocalDicom extends LoadDicom {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoadLocalDicom.class);
+
+  private static final int BATCH_SIZE = 64;
 
   private final File[] files;
   private final boolean recursive;
@@ -61,55 +86,182 @@ protected Boolean doInBackground() throws Exception {
     return true;
   }
 
+  /**
+   * Import the DICOM files and the content of the folders. The folders are walked by a producer
+   * thread, the headers (up to the pixel data) are read by a pool of parsers and the results are
+   * added to the model by the current thread in batches.
+   *
+   * @param file the files and folders to import
+   * @param firstLevel true if the content of the folders is imported even when not recursive
+   */
   protected void addSelectionAndNotify(File[] file, boolean firstLevel) {
     if (file == null || file.length < 1) {
       return;
     }
 
-    ArrayList<SeriesThumbnail> thumbs = new ArrayList<>();
-    ArrayList<File> folders = new ArrayList<>();
-    for (File value : file) {
-      if (isCancelled()) {
-        return;
+    int nbParsers = Math.max(1, Runtime.getRuntime().availableProcessors());
+    BlockingQueue<DicomMediaIO> results = new LinkedBlockingQueue<>();
+    // Limit the number of headers read but not yet added to the model
+    Semaphore inFlight = new Semaphore(nbParsers * 4 + BATCH_SIZE);
+    AtomicInteger pending = new AtomicInteger();
+    AtomicBoolean walking = new AtomicBoolean(true);
+    ExecutorService parsers =
+        ThreadUtil.buildNewFixedThreadExecutor(nbParsers, "DICOM Parser"); // NON-NLS
+    Thread producer =
+        ThreadUtil.getThreadFactory("DICOM Folder Walker") // NON-NLS
+            .newThread(
+                () -> {
+                  try {
+                    walkFiles(file, firstLevel, parsers, results, inFlight, pending);
+                  } finally {
+                    walking.set(false);
+                  }
+                });
+    producer.start();
+
+    try {
+      List<DicomMediaIO> batch = new ArrayList<>(BATCH_SIZE);
+      while (!isCancelled()) {
+        DicomMediaIO first = results.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          if (!walking.get() && pending.get() == 0 && results.isEmpty()) {
+            break;
+          }
+          continue;
+        }
+        batch.add(first);
+        results.drainTo(batch, BATCH_SIZE - 1);
+        commit(batch);
+        inFlight.release(batch.size());
+        batch.clear();
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      producer.interrupt();
+      parsers.shutdownNow();
+    }
+  }
+
+  private void walkFiles(
+      File[] file,
+      boolean firstLevel,
+      ExecutorService parsers,
+      BlockingQueue<DicomMediaIO> results,
+      Semaphore inFlight,
+      AtomicInteger pending) {
+    // The same file can be reached several times (e.g. links or overlapping selection)
+    Set<Object> visited = new HashSet<>();
+    FileVisitor<Path> visitor =
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(Path path, BasicFileAttributes attrs)
+              throws IOException {
+            if (isCancelled() || Thread.currentThread().isInterrupted()) {
+              return FileVisitResult.TERMINATE;
+            }
+            if (attrs.isRegularFile()) {
+              Object fileKey = attrs.fileKey();
+              if (visited.add(fileKey == null ? path.toAbsolutePath().normalize() : fileKey)) {
+                try {
+                  inFlight.acquire();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  return FileVisitResult.TERMINATE;
+                }
+                pending.incrementAndGet();
+                try {
+                  parsers.execute(() -> parseFile(path.toFile(), results, inFlight, pending));
+                } catch (RejectedExecutionException e) {
+                  pending.decrementAndGet();
+                  return FileVisitResult.TERMINATE;
+                }
+              }
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path path, IOException e) {
+            LOGGER.warn("Cannot read {}: {}", path, e.getMessage());
+            return FileVisitResult.CONTINUE;
+          }
+        };
+
+    for (File value : file) {
       if (value == null) {
         continue;
       }
-
-      if (value.isDirectory()) {
-        if (firstLevel || recursive) {
-          folders.add(value);
+      try {
+        int depth;
+        if (value.isDirectory()) {
+          if (!firstLevel && !recursive) {
+            continue;
+          }
+          // The content of the first level folders is always imported
+          depth = recursive ? Integer.MAX_VALUE : 1;
+        } else {
+          depth = 0;
         }
-      } else if (value.canRead()
+        Files.walkFileTree(
+            value.toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), depth, visitor);
+      } catch (IOException e) {
+        LOGGER.error("Cannot walk {}", value, e);
+      }
+      if (isCancelled() || Thread.currentThread().isInterrupted()) {
+        return;
+      }
+    }
+  }
+
+  private void parseFile(
+      File value, BlockingQueue<DicomMediaIO> results, Semaphore inFlight, AtomicInteger pending) {
+    boolean queued = false;
+    try {
+      if (value.canRead()
               && FileUtil.isFileExtensionMatching(value, DicomCodec.FILE_EXTENSIONS)
           || MimeInspector.isMatchingMimeTypeFromMagicNumber(value, DicomMediaIO.DICOM_MIMETYPE)) {
+        // Read the header up to the pixel data
         DicomMediaIO loader = new DicomMediaIO(value);
         Reading reading = loader.getReadingStatus();
         if (reading == Reading.READABLE) {
-          if (value.getPath().startsWith(AppProperties.APP_TEMP_DIR.getPath())) {
-            loader.getFileCache().setOriginalTempFile(value);
-          }
-          // Issue: must handle adding image to viewer and building thumbnail (middle image)
-          SeriesThumbnail t = buildDicomStructure(loader);
-          if (t != null) {
-            thumbs.add(t);
-          }
-
           File gpxFile = new File(value.getPath() + ".xml");
           GraphicModel graphicModel = XmlSerializer.readPresentationModel(gpxFile);
           if (graphicModel != null) {
             loader.setTag(TagW.PresentationModel, graphicModel);
           }
+          queued = results.offer(loader);
         } else if (reading == Reading.ERROR) {
           errors.incrementAndGet();
         }
       }
+    } catch (Exception e) {
+      LOGGER.error("Cannot read {}", value, e);
+      errors.incrementAndGet();
+    } finally {
+      if (!queued) {
+        inFlight.release();
+      }
+      // Decremented after queuing, so the committer cannot see an empty queue and no pending task
+      pending.decrementAndGet();
     }
-    updateSeriesThumbnail(thumbs, dicomModel);
+  }
 
-    for (File folder : folders) {
-      addSelectionAndNotify(folder.listFiles(), false);
+  private void commit(List<DicomMediaIO> batch) {
+    List<SeriesThumbnail> thumbs = new ArrayList<>();
+    for (DicomMediaIO loader : batch) {
+      File file = loader.getFileCache().getOriginalFile().orElse(null);
+      if (file != null && file.getPath().startsWith(AppProperties.APP_TEMP_DIR.getPath())) {
+        loader.getFileCache().setOriginalTempFile(file);
+      }
+      // Issue: must handle adding image to viewer and building thumbnail (middle image)
+      SeriesThumbnail t = buildDicomStructure(loader);
+      if (t != null) {
+        thumbs.add(t);
+      }
     }
+    // One update of the new series for the whole batch
+    updateSeriesThumbnail(thumbs, dicomModel);
   }
 
   public static void updateSeriesThumbnail(List<SeriesThumbnail> thumbs, DicomModel dicomModel) {
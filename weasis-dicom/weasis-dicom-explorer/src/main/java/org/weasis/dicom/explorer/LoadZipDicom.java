@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.explorer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.img.DicomMetaData;
+import org.dcm4che3.io.DicomInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.explorer.model.DataExplorerModel;
+import org.weasis.core.api.gui.util.AppProperties;
+import org.weasis.core.api.media.data.MediaSeriesGroup;
+import org.weasis.core.api.media.data.Series;
+import org.weasis.core.api.media.data.SeriesThumbnail;
+import org.weasis.core.api.media.data.TagW;
+import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.core.ui.model.GraphicModel;
+import org.weasis.core.ui.serialize.XmlSerializer;
+import org.weasis.core.util.FileUtil;
+import org.weasis.dicom.codec.DicomCodec;
+import org.weasis.dicom.codec.DicomMediaIO;
+import org.weasis.dicom.codec.DicomMediaIO.Reading;
+import org.weasis.dicom.codec.TagD;
+import org.weasis.dicom.codec.TagD.Level;
+import org.weasis.dicom.explorer.HangingProtocols.OpeningViewer;
+
+/**
+ * Import the DICOM files of a ZIP archive without extracting it. The headers are read in parallel
+ * from the entries listed in the central directory, and an entry is extracted only when its pixel
+ * data are read.
+ */
+public class LoadZipDicom extends LoadDicom {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoadZipDicom.class);
+
+  private static final int BATCH_SIZE = 64;
+  // Preamble (128 bytes) and DICM prefix
+  private static final int PREFIX_LENGTH = 132;
+
+  private final File archive;
+  // Open as long as an entry can be extracted for a media
+  private final SharedZipFile sharedZip;
+
+  public LoadZipDicom(File archive, DataExplorerModel explorerModel, OpeningViewer openingMode) {
+    super(explorerModel, false, new PluginOpeningStrategy(openingMode));
+    this.archive = Objects.requireNonNull(archive);
+    this.sharedZip = new SharedZipFile(archive);
+  }
+
+  @Override
+  protected Boolean doInBackground() throws Exception {
+    startLoadingEvent();
+    openingStrategy.prepareImport();
+    ZipFile zip;
+    try {
+      zip = sharedZip.acquire();
+    } catch (IOException e) {
+      LOGGER.error("Cannot read the ZIP file {}", archive, e);
+      return true;
+    }
+    File dir =
+        FileUtil.createTempDir(AppProperties.buildAccessibleTempDirectory("tmp", "zip")); // NON-NLS
+    int nbParsers = Math.max(1, Runtime.getRuntime().availableProcessors());
+    // Limit the number of headers read but not yet added to the model
+    Semaphore inFlight = new Semaphore(nbParsers * 4 + BATCH_SIZE);
+    ExecutorService parsers =
+        ThreadUtil.buildNewFixedThreadExecutor(nbParsers, "DICOM ZIP Parser"); // NON-NLS
+    CompletionService<DicomMediaIO> service = new ExecutorCompletionService<>(parsers);
+    int remaining = 0;
+    try {
+      for (ZipEntry entry : zip.stream().filter(e -> !e.isDirectory()).toList()) {
+        // Add the parsed entries to the model until a new one can be submitted
+        while (!inFlight.tryAcquire()) {
+          remaining -= commitResults(service, remaining, inFlight);
+        }
+        if (isCancelled()) {
+          inFlight.release();
+          break;
+        }
+        service.submit(() -> parseEntry(zip, entry, dir));
+        remaining++;
+      }
+      while (remaining > 0 && !isCancelled()) {
+        remaining -= commitResults(service, remaining, inFlight);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      parsers.shutdown();
+      try {
+        // The pending tasks stop when cancelled, release the entries not added to the model
+        for (; remaining > 0; remaining--) {
+          disposeResult(service.take());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        parsers.shutdownNow();
+      }
+      sharedZip.release();
+    }
+    return true;
+  }
+
+  /**
+   * Add to the model the next parsed entries, at least one and up to {@code BATCH_SIZE}.
+   *
+   * @return the number of results taken from the service
+   */
+  private int commitResults(
+      CompletionService<DicomMediaIO> service, int remaining, Semaphore inFlight)
+      throws InterruptedException {
+    List<DicomMediaIO> batch = new ArrayList<>(BATCH_SIZE);
+    addResult(service.take(), batch);
+    int taken = 1;
+    Future<DicomMediaIO> next;
+    while (taken < BATCH_SIZE && taken < remaining && (next = service.poll()) != null) {
+      addResult(next, batch);
+      taken++;
+    }
+    if (!batch.isEmpty()) {
+      commit(batch);
+    }
+    inFlight.release(taken);
+    return taken;
+  }
+
+  private void addResult(Future<DicomMediaIO> result, List<DicomMediaIO> batch)
+      throws InterruptedException {
+    try {
+      DicomMediaIO reader = result.get();
+      if (reader != null) {
+        batch.add(reader);
+      }
+    } catch (ExecutionException e) {
+      LOGGER.error("Cannot read DICOM from {}", archive, e.getCause());
+      errors.incrementAndGet();
+    }
+  }
+
+  private static void disposeResult(Future<DicomMediaIO> result) throws InterruptedException {
+    try {
+      DicomMediaIO reader = result.get();
+      if (reader != null) {
+        reader.getFileCache().dispose();
+      }
+    } catch (ExecutionException e) {
+      // Already reported or no entry to release
+    }
+  }
+
+  /**
+   * Read the header of an entry up to the pixel data.
+   *
+   * @return the reader of the entry, or null if the entry is not a readable DICOM file
+   */
+  private DicomMediaIO parseEntry(ZipFile zip, ZipEntry entry, File dir)
+      throws IOException, URISyntaxException {
+    if (isCancelled()) {
+      return null;
+    }
+    String name = entry.getName();
+    boolean dicomExtension =
+        FileUtil.isFileExtensionMatching(new File(name), DicomCodec.FILE_EXTENSIONS);
+    DicomMetaData header;
+    boolean hasPixelData;
+    try (InputStream in =
+        new BufferedInputStream(zip.getInputStream(entry), FileUtil.FILE_BUFFER)) {
+      if (!dicomExtension && !hasDicomPrefix(in)) {
+        return null;
+      }
+      try (DicomInputStream dis = new DicomInputStream(in)) {
+        Attributes dataset = dis.readDatasetUntilPixelData();
+        hasPixelData =
+            dis.tag() == Tag.PixelData
+                || dataset.contains(Tag.FloatPixelData)
+                || dataset.contains(Tag.DoubleFloatPixelData);
+        header = new DicomMetaData(dataset, dis.getTransferSyntax());
+      }
+    }
+
+    DicomMediaIO loader =
+        new DicomMediaIO(new URI("jar", archive.toURI() + "!/" + name, null)); // NON-NLS
+    loader.setHeader(header, hasPixelData, new EntryProvider(name, dir), entry.getSize());
+    Reading reading = loader.getReadingStatus();
+    if (reading == Reading.READABLE) {
+      GraphicModel graphicModel = readPresentationModel(zip, name + ".xml", dir);
+      if (graphicModel != null) {
+        loader.setTag(TagW.PresentationModel, graphicModel);
+      }
+      return loader;
+    } else if (reading == Reading.ERROR) {
+      errors.incrementAndGet();
+    }
+    loader.getFileCache().dispose();
+    return null;
+  }
+
+  private static boolean hasDicomPrefix(InputStream in) throws IOException {
+    in.mark(PREFIX_LENGTH);
+    byte[] prefix = in.readNBytes(PREFIX_LENGTH);
+    in.reset();
+    return prefix.length == PREFIX_LENGTH
+        && prefix[128] == 'D'
+        && prefix[129] == 'I'
+        && prefix[130] == 'C'
+        && prefix[131] == 'M';
+  }
+
+  private static GraphicModel readPresentationModel(ZipFile zip, String name, File dir) {
+    ZipEntry entry = zip.getEntry(name);
+    if (entry == null) {
+      return null;
+    }
+    File gpxFile = null;
+    try (InputStream in = zip.getInputStream(entry)) {
+      gpxFile = Files.createTempFile(dir.toPath(), "gpx_", ".xml").toFile(); // NON-NLS
+      Files.copy(in, gpxFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      return XmlSerializer.readPresentationModel(gpxFile);
+    } catch (IOException e) {
+      LOGGER.error("Cannot read {}", name, e);
+      return null;
+    } finally {
+      FileUtil.delete(gpxFile);
+    }
+  }
+
+  /**
+   * Extract an entry when its pixel data are read, the file is deleted with the media. The archive
+   * is kept open until the entry is extracted or the media is disposed.
+   */
+  private final class EntryProvider implements Callable<File>, Closeable {
+    private final String name;
+    private final File dir;
+    private final ZipFile zip;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private EntryProvider(String name, File dir) throws IOException {
+      this.name = name;
+      this.dir = dir;
+      this.zip = sharedZip.acquire();
+    }
+
+    @Override
+    public File call() throws IOException {
+      if (closed.get()) {
+        throw new IOException("Archive closed for " + name); // NON-NLS
+      }
+      ZipEntry entry = zip.getEntry(name);
+      if (entry == null) {
+        throw new IOException("No entry " + name + " in " + archive); // NON-NLS
+      }
+      File file = Files.createTempFile(dir.toPath(), "dcm_", ".dcm").toFile(); // NON-NLS
+      try (InputStream in = zip.getInputStream(entry)) {
+        Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } catch (IOException e) {
+        FileUtil.delete(file);
+        throw e;
+      }
+      return file;
+    }
+
+    @Override
+    public void close() {
+      if (closed.compareAndSet(false, true)) {
+        sharedZip.release();
+      }
+    }
+  }
+
+  /** ZIP archive opened once and closed when the last reference is released. */
+  static final class SharedZipFile {
+    private final File archive;
+    private ZipFile zip;
+    private int references;
+
+    SharedZipFile(File archive) {
+      this.archive = Objects.requireNonNull(archive);
+    }
+
+    synchronized ZipFile acquire() throws IOException {
+      if (zip == null) {
+        zip = new ZipFile(archive);
+      }
+      references++;
+      return zip;
+    }
+
+    synchronized void release() {
+      if (references > 0 && --references == 0) {
+        try {
+          zip.close();
+        } catch (IOException e) {
+          LOGGER.warn("Cannot close the ZIP file {}", archive, e);
+        }
+        zip = null;
+      }
+    }
+  }
+
+  private void commit(List<DicomMediaIO> batch) {
+    List<SeriesThumbnail> thumbs = new ArrayList<>();
+    for (DicomMediaIO loader : batch) {
+      boolean duplicate = isImported(loader);
+      SeriesThumbnail t = buildDicomStructure(loader);
+      if (t != null) {
+        thumbs.add(t);
+      }
+      if (duplicate) {
+        // No media holds the entry
+        loader.getFileCache().dispose();
+      }
+    }
+    // One update of the new series for the whole batch
+    LoadLocalDicom.updateSeriesThumbnail(thumbs, dicomModel);
+  }
+
+  /** Return true if the instance is already in the model, then the reader is not used. */
+  private boolean isImported(DicomMediaIO loader) {
+    String studyUID = (String) loader.getTagValue(TagD.getUID(Level.STUDY));
+    String seriesUID = (String) loader.getTagValue(TagD.get(Tag.SeriesInstanceUID));
+    MediaSeriesGroup study = dicomModel.getStudyNode(studyUID);
+    if (study != null && dicomModel.getHierarchyNode(study, seriesUID) instanceof Series<?> s) {
+      Object sopUID = TagD.getTagValue(loader, Tag.SOPInstanceUID, String.class);
+      return isSOPInstanceUIDExist(study, s, sopUID);
+    }
+    return false;
+  }
+}
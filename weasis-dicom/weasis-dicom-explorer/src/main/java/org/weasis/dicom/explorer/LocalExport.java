@@ -17,13 +17,19 @@
 import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.swing.BorderFactory;
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.JButton;
@@ -47,6 +53,7 @@
 import org.dcm4che3.data.UID;
 import org.dcm4che3.data.VR;
 import org.dcm4che3.imageio.codec.TransferSyntaxType;
+import org.dcm4che3.img.DicomMetaData;
 import org.dcm4che3.img.util.DicomUtils;
 import org.dcm4che3.media.DicomDirWriter;
 import org.dcm4che3.media.RecordType;
@@ -58,7 +65,6 @@
 import org.weasis.core.api.explorer.ObservableEvent;
 import org.weasis.core.api.gui.util.AbstractItemDialogPage;
 import org.weasis.core.api.gui.util.ActionW;
-import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.gui.util.FileFormatFilter;
 import org.weasis.core.api.gui.util.GuiUtils;
 import org.weasis.core.api.gui.util.WinUtil;
@@ -70,6 +76,7 @@
 import org.weasis.core.api.media.data.Series;
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.api.util.FontItem;
+import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.core.ui.model.GraphicModel;
 import org.weasis.core.ui.serialize.XmlSerializer;
 import org.weasis.core.util.FileUtil;
@@ -108,6 +115,9 @@ public class LocalExport extends AbstractItemDialogPage implements ExportDicom {
   public static final String DICOM_NEW_UID = "exp.dicom.new.uid"; // NON-NLS
   public static final String CD_COMPATIBLE = "exp.cd";
 
+  private static final int EXPORT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+  private static final int MAX_PENDING_INSTANCES = EXPORT_THREADS * 2;
+
   public enum Format {
     DICOM("DICOM", "dcm"),
     DICOM_ZIP("DICOM ZIP", "zip"), // NON-NLS
@@ -470,17 +480,10 @@ protected Boolean doInBackground() throws Exception {
               } else if (format == Format.DICOM_ZIP) {
                 pref.setProperty(INC_DICOMDIR, Boolean.TRUE.toString());
                 pref.setProperty(CD_COMPATIBLE, Boolean.TRUE.toString());
-                File writeDir =
-                    FileUtil.createTempDir(
-                        AppProperties.buildAccessibleTempDirectory(
-                            "tmp", Format.DICOM_ZIP.extension)); // NON-NLS
-                writeDicom(this, writeDir, model, pref);
-                try {
-                  FileUtil.zip(writeDir, exportDir);
-                } catch (Exception e) {
+                try (ExportSink sink = new ZipExportSink(exportDir)) {
+                  writeDicom(this, sink, model, pref);
+                } catch (IOException e) {
                   LOGGER.error("Cannot export DICOM ZIP file: {}", exportDir, e);
-                } finally {
-                  FileUtil.recursiveDelete(writeDir);
                 }
               } else {
                 writeOther(this, exportDir, model, format, pref);
@@ -624,12 +627,21 @@ private static Attributes getUIDs(DefaultAttributeEditor editor, MediaElement dc
         Tag.SeriesInstanceUID, VR.UI, TagD.getTagValue(dcm, Tag.SeriesInstanceUID, String.class));
     uidTags.setString(
         Tag.SOPInstanceUID, VR.UI, TagD.getTagValue(dcm, Tag.SOPInstanceUID, String.class));
-    editor.apply(uidTags, null);
+    // The editor is shared with the instances written in parallel
+    synchronized (editor) {
+      editor.apply(uidTags, null);
+    }
     return uidTags;
   }
 
   protected void writeDicom(
       ExplorerTask task, File exportDir, CheckTreeModel model, Properties pref) throws IOException {
+    writeDicom(task, new DirectoryExportSink(exportDir), model, pref);
+  }
+
+  protected void writeDicom(
+      ExplorerTask task, ExportSink sink, CheckTreeModel model, Properties pref)
+      throws IOException {
     boolean keepNames;
     boolean writeDicomdir;
     boolean cdCompatible;
@@ -646,7 +658,9 @@ protected void writeDicom(
     if (realTsuid && DicomUtils.isNative(tsuid.getTransferSyntaxUID())) {
       onlyRaw = false;
     }
+    // The editor keeps the generated UIDs, so the same one is applied to all the instances
     DefaultAttributeEditor editor = new DefaultAttributeEditor(newUID, null);
+    List<AttributeEditor> editors = getAttributeEditors(editor);
 
     writeDicomdir = Boolean.parseBoolean(pref.getProperty(INC_DICOMDIR, Boolean.TRUE.toString()));
     keepNames =
@@ -654,7 +668,12 @@ protected void writeDicom(
             && Boolean.parseBoolean(pref.getProperty(KEEP_INFO_DIR, Boolean.TRUE.toString()));
     cdCompatible = Boolean.parseBoolean(pref.getProperty(CD_COMPATIBLE, Boolean.FALSE.toString()));
 
+    File exportDir = sink.getDirectory();
     DicomDirWriter writer = null;
+    // The instances are written in parallel and added to the DICOMDIR in the order of the tree
+    ExecutorService executor =
+        ThreadUtil.buildNewFixedThreadExecutor(EXPORT_THREADS, "DICOM Export"); // NON-NLS
+    Deque<PendingInstance> pending = new ArrayDeque<>();
     try {
       if (writeDicomdir) {
         File dcmdirFile = new File(exportDir, "DICOMDIR");
@@ -666,6 +685,7 @@ protected void writeDicom(
         TreePath[] paths = model.getCheckingPaths();
         for (TreePath treePath : paths) {
           if (task.isCancelled()) {
+            pending.forEach(p -> p.result().cancel(true));
             return;
           }
 
@@ -685,19 +705,12 @@ protected void writeDicom(
             }
 
             String path = buildPath(img, keepNames, cdCompatible, node, uidTags);
-            File destinationDir = new File(exportDir, path);
-            destinationDir.mkdirs();
-
-            List<AttributeEditor> dicomEditors = getAttributeEditors(editor);
-            File destinationFile = new File(destinationDir, iuid);
-
+            String filePath = path + File.separator + iuid;
             DicomExportParameters dicomExportParameters =
-                new DicomExportParameters(
-                    tsuid, onlyRaw, dicomEditors, jpegQuality, compressionRatio);
-            Attributes attributes = img.saveToFile(destinationFile, dicomExportParameters);
-            if (attributes != null) {
-              writeInDicomDir(writer, attributes, node, iuid, destinationFile);
-            }
+                new DicomExportParameters(tsuid, onlyRaw, editors, jpegQuality, compressionRatio);
+            Future<Attributes> result =
+                executor.submit(() -> writeInstance(sink, img, filePath, dicomExportParameters));
+            pending.add(new PendingInstance(result, node, iuid, new File(exportDir, filePath)));
           } else if (node.getUserObject() instanceof DicomElement dcm) {
             Attributes uidTags = getUIDs(editor, (MediaElement) dcm);
             String iuid = uidTags.getString(Tag.SOPInstanceUID);
@@ -706,22 +719,19 @@ protected void writeDicom(
             }
 
             String path = buildPath((MediaElement) dcm, keepNames, cdCompatible, node, uidTags);
-            File destinationDir = new File(exportDir, path);
-            destinationDir.mkdirs();
-
-            File destinationFile = new File(destinationDir, iuid);
+            String filePath = path + File.separator + iuid;
             DicomExportParameters dicomExportParameters =
-                new DicomExportParameters(
-                    null, onlyRaw, getAttributeEditors(editor), jpegQuality, compressionRatio);
-            Attributes attributes = dcm.saveToFile(destinationFile, dicomExportParameters);
-            if (attributes != null) {
-              writeInDicomDir(writer, attributes, node, iuid, destinationFile);
-            }
+                new DicomExportParameters(null, onlyRaw, editors, jpegQuality, compressionRatio);
+            Future<Attributes> result =
+                executor.submit(() -> writeInstance(sink, dcm, filePath, dicomExportParameters));
+            pending.add(new PendingInstance(result, node, iuid, new File(exportDir, filePath)));
           } else if (node.getUserObject() instanceof Series) {
             MediaSeries<?> s = (MediaSeries<?>) node.getUserObject();
             if (LangUtil.getNULLtoFalse((Boolean) s.getTagValue(TagW.ObjectToSave))) {
               Series<?> series = (Series<?>) s.getTagValue(CheckTreeModel.SourceSeriesForPR);
               if (series != null) {
+                // Keep the order of the DICOMDIR records
+                commitInstances(writer, pending, 0);
                 String seriesInstanceUID = UIDUtils.createUID();
                 for (MediaElement dcm : series.getMedias(null, null)) {
                   GraphicModel grModel = (GraphicModel) dcm.getTagValue(TagW.PresentationModel);
@@ -735,13 +745,20 @@ protected void writeDicom(
               }
             }
           }
+          // Limit the number of instances in progress (and the temporary files)
+          commitInstances(writer, pending, MAX_PENDING_INSTANCES);
         }
+        commitInstances(writer, pending, 0);
       }
     } catch (IOException e) {
       throw e;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     } catch (Exception e) {
       LOGGER.error("Cannot export DICOM", e);
     } finally {
+      // The running tasks must not write into the sink after it is closed
+      shutdownAndAwait(executor);
       if (writer != null) {
         // Commit DICOMDIR changes and close the file
         writer.close();
@@ -749,13 +766,102 @@ protected void writeDicom(
     }
   }
 
+  private record PendingInstance(
+      Future<Attributes> result, DefaultMutableTreeNode node, String iuid, File file) {}
+
+  /**
+   * Wait for the oldest instances and add them to the DICOMDIR.
+   *
+   * @param writer the DICOMDIR writer, may be null
+   * @param pending the instances in progress, in the order of the tree
+   * @param maxPending the number of instances which can stay in progress
+   */
+  private static void commitInstances(
+      DicomDirWriter writer, Deque<PendingInstance> pending, int maxPending)
+      throws IOException, InterruptedException {
+    while (pending.size() > maxPending) {
+      PendingInstance instance = pending.poll();
+      Attributes attributes;
+      try {
+        attributes = instance.result().get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException ioException) {
+          throw ioException;
+        }
+        LOGGER.error("Cannot export {}", instance.file(), e.getCause());
+        continue;
+      }
+      if (attributes != null) {
+        writeInDicomDir(writer, attributes, instance.node(), instance.iuid(), instance.file());
+      }
+    }
+  }
+
+  /**
+   * Write an instance into the sink. When the instance is not modified, the original file is
+   * directly added to the sink.
+   *
+   * @return the attributes of the instance for the DICOMDIR, or null if it cannot be written
+   */
+  private static Attributes writeInstance(
+      ExportSink sink, DicomElement dcm, String path, DicomExportParameters params)
+      throws IOException {
+    if (dcm instanceof DicomImageElement img && isUnmodified(params)) {
+      DicomMetaData metaData = img.getMediaReader().getDicomMetaData();
+      File original =
+          img.getFileCache().isElementInMemory()
+              ? null
+              : img.getFileCache().getOriginalFile().orElse(null);
+      if (metaData != null && original != null && original.canRead()) {
+        sink.add(original, path, DicomUtils.isNative(metaData.getTransferSyntaxUID()));
+        return new Attributes(metaData.getDicomObject());
+      }
+    }
+
+    File file = new File(sink.getDirectory(), path);
+    file.getParentFile().mkdirs();
+    Attributes attributes = dcm.saveToFile(file, params);
+    if (attributes != null) {
+      sink.add(file, path, true);
+    }
+    return attributes;
+  }
+
+  private static boolean isUnmodified(DicomExportParameters params) {
+    return (params.dicomEditors() == null || params.dicomEditors().isEmpty())
+        && (params.syntax() == null || params.syntax().getTransferSyntaxUID() == null);
+  }
+
   private static List<AttributeEditor> getAttributeEditors(DefaultAttributeEditor editor) {
     if (editor.isGenerateUIDs() || editor.getTagToOverride() != null) {
-      return List.of(editor);
+      // The map of the generated UIDs of the editor is not thread-safe
+      AttributeEditor synchronizedEditor =
+          (data, context) -> {
+            synchronized (editor) {
+              editor.apply(data, context);
+            }
+          };
+      return List.of(synchronizedEditor);
     }
     return Collections.emptyList();
   }
 
+  /** Cancel the remaining tasks and wait for the running ones. */
+  private static void shutdownAndAwait(ExecutorService executor) {
+    executor.shutdownNow();
+    boolean interrupted = false;
+    while (!executor.isTerminated()) {
+      try {
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   public static Attributes buildAndWritePR(
       MediaElement img,
       boolean keepNames,
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.explorer;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import org.weasis.core.util.FileUtil;
+
+/**
+ * Minimal writer of a ZIP archive, with the ZIP64 extensions. Unlike {@link
+ * java.util.zip.ZipOutputStream}, the data of an entry is written as is: the entries can be
+ * compressed by several threads and only appended sequentially. Not thread-safe.
+ */
+final class ZipArchiveWriter implements Closeable {
+  private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+  private static final int ZIP64_COUNT_LIMIT = 0xFFFF;
+  private static final int ZIP64_EXTRA_ID = 0x0001;
+  private static final int VERSION = 20;
+  private static final int VERSION_ZIP64 = 45;
+  // The names are encoded in UTF-8
+  private static final int FLAGS = 0x0800;
+
+  private record Entry(
+      byte[] name,
+      int method,
+      int dosTime,
+      long crc,
+      long compressedSize,
+      long size,
+      long offset) {}
+
+  private final OutputStream out;
+  private final List<Entry> entries = new ArrayList<>();
+  private long offset;
+
+  ZipArchiveWriter(Path file) throws IOException {
+    this.out = new BufferedOutputStream(Files.newOutputStream(file), FileUtil.FILE_BUFFER);
+  }
+
+  /**
+   * Append an entry to the archive.
+   *
+   * @param name the name of the entry
+   * @param method {@link ZipEntry#STORED} or {@link ZipEntry#DEFLATED}
+   * @param lastModified the modification time in milliseconds
+   * @param crc the CRC-32 of the uncompressed data
+   * @param size the size of the uncompressed data
+   * @param compressedSize the size of the data to write
+   * @param data the data of the entry, raw deflate data when the method is DEFLATED
+   * @throws IOException when the data cannot be written or has not the expected size
+   */
+  void addEntry(
+      String name,
+      int method,
+      long lastModified,
+      long crc,
+      long size,
+      long compressedSize,
+      InputStream data)
+      throws IOException {
+    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+    Entry entry =
+        new Entry(bytes, method, dosTime(lastModified), crc, compressedSize, size, offset);
+    boolean zip64 = size >= ZIP64_LIMIT || compressedSize >= ZIP64_LIMIT;
+    ByteBuffer header = allocate(30 + bytes.length + (zip64 ? 20 : 0));
+    header.putInt(0x04034b50);
+    header.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION));
+    header.putShort((short) FLAGS);
+    header.putShort((short) method);
+    header.putInt(entry.dosTime());
+    header.putInt((int) crc);
+    header.putInt(zip64 ? -1 : (int) compressedSize);
+    header.putInt(zip64 ? -1 : (int) size);
+    header.putShort((short) bytes.length);
+    header.putShort((short) (zip64 ? 20 : 0));
+    header.put(bytes);
+    if (zip64) {
+      header.putShort((short) ZIP64_EXTRA_ID);
+      header.putShort((short) 16);
+      header.putLong(size);
+      header.putLong(compressedSize);
+    }
+    write(header);
+
+    long length = data.transferTo(out);
+    offset += length;
+    if (length != compressedSize) {
+      throw new IOException("Unexpected size of the ZIP entry " + name); // NON-NLS
+    }
+    entries.add(entry);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try (out) {
+      long start = offset;
+      for (Entry e : entries) {
+        writeCentralHeader(e);
+      }
+      writeEnd(start, offset - start);
+      out.flush();
+    }
+  }
+
+  private void writeCentralHeader(Entry e) throws IOException {
+    boolean sizes64 = e.size() >= ZIP64_LIMIT || e.compressedSize() >= ZIP64_LIMIT;
+    boolean offset64 = e.offset() >= ZIP64_LIMIT;
+    int extra = (sizes64 ? 16 : 0) + (offset64 ? 8 : 0);
+    int extraLength = extra > 0 ? 4 + extra : 0;
+    short version = (short) (extra > 0 ? VERSION_ZIP64 : VERSION);
+    ByteBuffer header = allocate(46 + e.name().length + extraLength);
+    header.putInt(0x02014b50);
+    header.putShort(version);
+    header.putShort(version);
+    header.putShort((short) FLAGS);
+    header.putShort((short) e.method());
+    header.putInt(e.dosTime());
+    header.putInt((int) e.crc());
+    header.putInt(sizes64 ? -1 : (int) e.compressedSize());
+    header.putInt(sizes64 ? -1 : (int) e.size());
+    header.putShort((short) e.name().length);
+    header.putShort((short) extraLength);
+    header.putShort((short) 0); // comment length
+    header.putShort((short) 0); // disk number
+    header.putShort((short) 0); // internal attributes
+    header.putInt(0); // external attributes
+    header.putInt(offset64 ? -1 : (int) e.offset());
+    header.put(e.name());
+    if (extra > 0) {
+      // The order of the values is defined by the specification
+      header.putShort((short) ZIP64_EXTRA_ID);
+      header.putShort((short) extra);
+      if (sizes64) {
+        header.putLong(e.size());
+        header.putLong(e.compressedSize());
+      }
+      if (offset64) {
+        header.putLong(e.offset());
+      }
+    }
+    write(header);
+  }
+
+  private void writeEnd(long start, long length) throws IOException {
+    int count = entries.size();
+    boolean zip64 = count >= ZIP64_COUNT_LIMIT || start >= ZIP64_LIMIT || length >= ZIP64_LIMIT;
+    if (zip64) {
+      long zip64End = offset;
+      ByteBuffer end64 = allocate(56 + 20);
+      end64.putInt(0x06064b50);
+      end64.putLong(44L); // size of the remaining record
+      end64.putShort((short) VERSION_ZIP64);
+      end64.putShort((short) VERSION_ZIP64);
+      end64.putInt(0); // disk number
+      end64.putInt(0); // disk of the central directory
+      end64.putLong(count);
+      end64.putLong(count);
+      end64.putLong(length);
+      end64.putLong(start);
+      // Locator of the ZIP64 end record
+      end64.putInt(0x07064b50);
+      end64.putInt(0);
+      end64.putLong(zip64End);
+      end64.putInt(1);
+      write(end64);
+    }
+    ByteBuffer end = allocate(22);
+    end.putInt(0x06054b50);
+    end.putShort((short) 0);
+    end.putShort((short) 0);
+    end.putShort((short) (zip64 ? ZIP64_COUNT_LIMIT : count));
+    end.putShort((short) (zip64 ? ZIP64_COUNT_LIMIT : count));
+    end.putInt(zip64 ? -1 : (int) length);
+    end.putInt(zip64 ? -1 : (int) start);
+    end.putShort((short) 0); // comment length
+    write(end);
+  }
+
+  private static ByteBuffer allocate(int capacity) {
+    return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private void write(ByteBuffer buffer) throws IOException {
+    out.write(buffer.array(), 0, buffer.position());
+    offset += buffer.position();
+  }
+
+  private static int dosTime(long time) {
+    LocalDateTime d = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+    if (d.getYear() < 1980) {
+      // 1980-01-01 00:00:00, the minimum of the MS-DOS format
+      return (1 << 21) | (1 << 16);
+    }
+    return (d.getYear() - 1980) << 25
+        | d.getMonthValue() << 21
+        | d.getDayOfMonth() << 16
+        | d.getHour() << 11
+        | d.getMinute() << 5
+        | d.getSecond() >> 1;
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.explorer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+import org.weasis.core.api.gui.util.AppProperties;
+import org.weasis.core.util.FileUtil;
+
+/**
+ * Export the files into a ZIP archive. The files are streamed into the archive without being
+ * copied first. Only the files that must be written as files (e.g. the DICOMDIR or a transcoded
+ * instance) use a temporary folder, and they are removed as soon as they are in the archive.
+ *
+ * <p>The entries are compressed by the calling threads, and only the compressed data is appended
+ * to the archive under the lock.
+ */
+public final class ZipExportSink implements ExportSink {
+  // Larger compressed entries are buffered in a temporary file
+  private static final long MEMORY_BUFFER_LIMIT = 16L * 1024 * 1024;
+
+  private final File directory;
+  // Guarded by this
+  private final ZipArchiveWriter zip;
+  private final Set<String> entries = new HashSet<>();
+
+  public ZipExportSink(File zipFile) throws IOException {
+    this.zip = new ZipArchiveWriter(zipFile.toPath());
+    this.directory =
+        FileUtil.createTempDir(AppProperties.buildAccessibleTempDirectory("tmp", "zip")); // NON-NLS
+  }
+
+  @Override
+  public File getDirectory() {
+    return directory;
+  }
+
+  @Override
+  public void add(File source, String path, boolean compressible) throws IOException {
+    String name = path.replace(File.separatorChar, '/');
+    try {
+      synchronized (this) {
+        // A duplicated entry would make an invalid archive
+        if (!entries.add(name)) {
+          return;
+        }
+      }
+      // Do not try to compress again the compressed pixel data
+      if (compressible) {
+        addDeflated(source, name);
+      } else {
+        addStored(source, name, checksum(source));
+      }
+    } finally {
+      if (isStaged(source)) {
+        FileUtil.delete(source);
+      }
+    }
+  }
+
+  private void addStored(File source, String name, long crc) throws IOException {
+    long size = source.length();
+    synchronized (this) {
+      try (InputStream in = Files.newInputStream(source.toPath())) {
+        zip.addEntry(name, ZipEntry.STORED, source.lastModified(), crc, size, size, in);
+      }
+    }
+  }
+
+  private void addDeflated(File source, String name) throws IOException {
+    CRC32 crc = new CRC32();
+    // Raw deflate data, as required by the ZIP format
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    ByteArrayOutputStream memory =
+        source.length() <= MEMORY_BUFFER_LIMIT ? new ByteArrayOutputStream() : null;
+    Path buffer = null;
+    try {
+      OutputStream out;
+      if (memory == null) {
+        buffer =
+            Files.createTempFile(AppProperties.APP_TEMP_DIR.toPath(), "zip", ".tmp"); // NON-NLS
+        out = new BufferedOutputStream(Files.newOutputStream(buffer), FileUtil.FILE_BUFFER);
+      } else {
+        out = memory;
+      }
+      long size;
+      try (InputStream in = new CheckedInputStream(Files.newInputStream(source.toPath()), crc);
+          DeflaterOutputStream deflaterStream =
+              new DeflaterOutputStream(out, deflater, FileUtil.FILE_BUFFER)) {
+        size = in.transferTo(deflaterStream);
+      }
+      long compressedSize = deflater.getBytesWritten();
+      if (compressedSize >= size) {
+        addStored(source, name, crc.getValue());
+        return;
+      }
+      synchronized (this) {
+        try (InputStream data =
+            memory == null
+                ? Files.newInputStream(buffer)
+                : new ByteArrayInputStream(memory.toByteArray())) {
+          zip.addEntry(
+              name,
+              ZipEntry.DEFLATED,
+              source.lastModified(),
+              crc.getValue(),
+              size,
+              compressedSize,
+              data);
+        }
+      }
+    } finally {
+      deflater.end();
+      if (buffer != null) {
+        Files.deleteIfExists(buffer);
+      }
+    }
+  }
+
+  private static long checksum(File source) throws IOException {
+    CRC32 crc = new CRC32();
+    try (InputStream in = new CheckedInputStream(Files.newInputStream(source.toPath()), crc)) {
+      in.transferTo(OutputStream.nullOutputStream());
+    }
+    return crc.getValue();
+  }
+
+  private boolean isStaged(File file) {
+    return file.toPath().startsWith(directory.toPath());
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      // Add the remaining files written in the temporary folder (DICOMDIR, PR...)
+      Path root = directory.toPath();
+      List<Path> files;
+      try (Stream<Path> stream = Files.walk(root)) {
+        files = stream.filter(Files::isRegularFile).toList();
+      }
+      for (Path p : files) {
+        add(p.toFile(), root.relativize(p).toString(), true);
+      }
+    } finally {
+      try {
+        synchronized (this) {
+          zip.close();
+        }
+      } finally {
+        FileUtil.recursiveDelete(directory);
+      }
+    }
+  }
+}
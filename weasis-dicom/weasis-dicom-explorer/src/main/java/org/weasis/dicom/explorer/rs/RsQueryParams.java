@@ -12,10 +12,12 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
 import javax.swing.JOptionPane;
 import org.dcm4che3.data.Tag;
@@ -64,6 +66,9 @@ public class RsQueryParams extends ExplorerTask<Boolean, String> {
   protected final RsQueryResult arcConfig;
 
   protected final PluginOpeningStrategy openingStrategy;
+  // Series handed to the download manager, guarded by this
+  private final Set<LoadSeries> publishedSeries = new HashSet<>();
+  private WadoParameters thumbnailParameters;
 
   public RsQueryParams(
       DicomModel dicomModel,
@@ -167,19 +172,9 @@ protected Boolean doInBackground() throws Exception {
     fillPatientList();
 
     if (!seriesMap.isEmpty()) {
-      openingStrategy.prepareImport();
-      WadoParameters wp = new WadoParameters("", true, true);
-      getRetrieveHeaders().forEach(wp::addHttpTag);
-      wp.addHttpTag("Accept", "image/jpeg"); // NON-NLS
-
+      // The series whose instances have not been queried with their study
       for (final LoadSeries loadSeries : seriesMap.values()) {
-        String modality = TagD.getTagValue(loadSeries.getDicomSeries(), Tag.Modality, String.class);
-        boolean ps = ("PR".equals(modality) || "KO".equals(modality)); // NON-NLS
-        if (!ps) {
-          loadSeries.startDownloadImageReference(wp);
-        }
-        loadSeries.setPOpeningStrategy(openingStrategy);
-        DownloadManager.addLoadSeries(loadSeries, dicomModel, loadSeries.isStartDownloading());
+        publishSeries(loadSeries);
       }
 
       // Sort tasks from the download priority order (low number has a higher priority), TASKS
@@ -191,6 +186,31 @@ protected Boolean doInBackground() throws Exception {
     return true;
   }
 
+  /**
+   * Hand a series to the download manager once its instances are known, so it is displayed in the
+   * explorer without waiting for the other queries. A series is published only once.
+   *
+   * @param loadSeries the task loading the series
+   */
+  public synchronized void publishSeries(LoadSeries loadSeries) {
+    if (loadSeries == null || isCancelled() || !publishedSeries.add(loadSeries)) {
+      return;
+    }
+    if (thumbnailParameters == null) {
+      openingStrategy.prepareImport();
+      thumbnailParameters = new WadoParameters("", true, true);
+      getRetrieveHeaders().forEach(thumbnailParameters::addHttpTag);
+      thumbnailParameters.addHttpTag("Accept", "image/jpeg"); // NON-NLS
+    }
+    String modality = TagD.getTagValue(loadSeries.getDicomSeries(), Tag.Modality, String.class);
+    boolean ps = ("PR".equals(modality) || "KO".equals(modality)); // NON-NLS
+    if (!ps) {
+      loadSeries.startDownloadImageReference(thumbnailParameters);
+    }
+    loadSeries.setPOpeningStrategy(openingStrategy);
+    DownloadManager.addLoadSeries(loadSeries, dicomModel, loadSeries.isStartDownloading());
+  }
+
   private void fillPatientList() {
     try {
       String requestType = getRequestType();
@@ -17,9 +17,15 @@
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.img.util.DicomUtils;
@@ -35,6 +41,7 @@
 import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.api.util.HttpResponse;
 import org.weasis.core.api.util.NetworkUtil;
+import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.core.api.util.URLParameters;
 import org.weasis.core.util.LangUtil;
 import org.weasis.core.util.StringUtil;
@@ -66,6 +73,9 @@ public class RsQueryResult extends AbstractQueryResult {
   public static final String INSTANCE_QUERY = multiParams("00080018,00200013,00081190");
   public static final String QIDO_REQUEST = "QIDO-RS request: {}"; // NON-NLS
 
+  /** The maximum number of simultaneous QIDO-RS requests */
+  public static final String CONCURRENT_QUERIES = "dicom.qido.concurrent.queries";
+
   private final RsQueryParams rsQueryParams;
   private final WadoParameters wadoParameters;
   private final boolean defaultStartDownloading;
@@ -90,6 +100,15 @@ public RsQueryResult(RsQueryParams rsQueryParams, AuthMethod authMethod) {
             .getBooleanProperty(DicomExplorerPrefView.DOWNLOAD_IMMEDIATELY, true);
   }
 
+  private static final class QueryExecutor {
+    private static final ExecutorService INSTANCE =
+        ThreadUtil.buildNewFixedThreadExecutor(
+            Math.max(
+                1,
+                GuiUtils.getUICore().getSystemPreferences().getIntProperty(CONCURRENT_QUERIES, 6)),
+            "QIDO-RS Query"); // NON-NLS
+  }
+
   private static String multiParams(String query) {
     return MULTIPLE_PARAMS ? query.replace(",", "&includefield=") : query; // NON-NLS
   }
@@ -100,50 +119,70 @@ public WadoParameters getWadoParameters() {
   }
 
   public void buildFromPatientID(List<String> patientIDs) {
+    QueryBatch queries = new QueryBatch();
     for (String patientID : LangUtil.emptyIfNull(patientIDs)) {
       if (!StringUtil.hasText(patientID)) {
         continue;
       }
+      queries.submit(() -> queryPatient(patientID, queries));
+    }
+    queries.await();
+  }
 
-      // IssuerOfPatientID filter ( syntax like in HL7 with extension^^^root)
-      int beginIndex = patientID.indexOf("^^^");
-
-      StringBuilder buf = new StringBuilder(rsQueryParams.getBaseUrl());
-      buf.append("/studies?00100020="); // NON-NLS
-      String patientVal = beginIndex <= 0 ? patientID : patientID.substring(0, beginIndex);
-      try {
-        buf.append(URLEncoder.encode(patientVal, StandardCharsets.UTF_8.toString()));
-        if (beginIndex > 0) {
-          buf.append("&00100021=");
-          buf.append(patientID.substring(beginIndex + 3));
-        }
-        buf.append(STUDY_QUERY);
-        buf.append(rsQueryParams.getProperties().getProperty(RsQueryParams.P_QUERY_EXT, ""));
+  private void queryPatient(String patientID, QueryBatch queries) {
+    // IssuerOfPatientID filter ( syntax like in HL7 with extension^^^root)
+    int beginIndex = patientID.indexOf("^^^");
+
+    StringBuilder buf = new StringBuilder(rsQueryParams.getBaseUrl());
+    buf.append("/studies?00100020="); // NON-NLS
+    String patientVal = beginIndex <= 0 ? patientID : patientID.substring(0, beginIndex);
+    try {
+      buf.append(URLEncoder.encode(patientVal, StandardCharsets.UTF_8.toString()));
+      if (beginIndex > 0) {
+        buf.append("&00100021=");
+        buf.append(patientID.substring(beginIndex + 3));
+      }
+      buf.append(STUDY_QUERY);
+      buf.append(rsQueryParams.getProperties().getProperty(RsQueryParams.P_QUERY_EXT, ""));
 
-        LOGGER.debug(QIDO_REQUEST, buf);
-        List<Attributes> studies =
-            parseJSON(
-                buf.toString(), authMethod, new URLParameters(rsQueryParams.getQueryHeaders()));
-        if (!studies.isEmpty()) {
-          studies.sort(getStudyComparator());
-          applyAllFilters(studies);
-        }
-      } catch (Exception e) {
-        LOGGER.error("QIDO-RS with PatientID {}", patientID, e);
+      LOGGER.debug(QIDO_REQUEST, buf);
+      // The filters require all the studies
+      List<Attributes> studies =
+          parseJSON(buf.toString(), authMethod, new URLParameters(rsQueryParams.getQueryHeaders()));
+      if (!studies.isEmpty()) {
+        studies.sort(getStudyComparator());
+        applyAllFilters(studies, queries);
       }
+    } catch (Exception e) {
+      LOGGER.error("QIDO-RS with PatientID {}", patientID, e);
     }
   }
 
   public static List<Attributes> parseJSON(
       String url, AuthMethod authMethod, URLParameters urlParameters) throws Exception {
     List<Attributes> items = new ArrayList<>();
+    parseJSON(url, authMethod, urlParameters, (fmi, dataset) -> items.add(dataset));
+    return items;
+  }
+
+  /**
+   * Read the datasets of a QIDO-RS response. Each dataset is passed to the callback as soon as it
+   * is parsed, so the results can be processed while receiving the next ones.
+   *
+   * @param url the QIDO-RS request
+   * @param authMethod the authentication method or null
+   * @param urlParameters the parameters of the request
+   * @param callback the callback receiving each dataset
+   */
+  public static void parseJSON(
+      String url, AuthMethod authMethod, URLParameters urlParameters, Callback callback)
+      throws Exception {
     try (HttpResponse response = NetworkUtil.getHttpResponse(url, urlParameters, authMethod);
         InputStreamReader instream =
             new InputStreamReader(response.getInputStream(), StandardCharsets.UTF_8)) {
       int code = response.getResponseCode();
       if (code == HttpURLConnection.HTTP_OK || code == HttpURLConnection.HTTP_PARTIAL) {
         JSONReader reader = new JSONReader(Json.createParser(instream));
-        Callback callback = (fmi, dataset) -> items.add(dataset);
         reader.readDatasets(callback);
       }
       if (code == HttpURLConnection.HTTP_ENTITY_TOO_LARGE) {
@@ -154,10 +193,44 @@ public static List<Attributes> parseJSON(
         authMethod.getToken();
       }
     }
-    return items;
   }
 
-  private void applyAllFilters(List<Attributes> studies) {
+  /**
+   * Queries of one build invocation, run in the shared pool. A query never waits for the queries it
+   * submits, so the pool cannot be exhausted by the nested levels (study, series and instances).
+   */
+  private static final class QueryBatch {
+    private final Queue<Future<?>> pendingQueries = new ConcurrentLinkedQueue<>();
+
+    void submit(Runnable query) {
+      pendingQueries.add(QueryExecutor.INSTANCE.submit(query));
+    }
+
+    /** Wait for the completion of all the queries, including the ones submitted while waiting. */
+    void await() {
+      Future<?> future;
+      while ((future = pendingQueries.poll()) != null) {
+        try {
+          future.get();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          cancel();
+          return;
+        } catch (ExecutionException e) {
+          LOGGER.error("QIDO-RS query", e.getCause());
+        }
+      }
+    }
+
+    private void cancel() {
+      Future<?> future;
+      while ((future = pendingQueries.poll()) != null) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private void applyAllFilters(List<Attributes> studies, QueryBatch queries) {
     if (StringUtil.hasText(rsQueryParams.getLowerDateTime())) {
       Date lowerDateTime = null;
       try {
@@ -248,7 +321,7 @@ private void applyAllFilters(List<Attributes> studies) {
     }
 
     for (Attributes studyDataSet : studies) {
-      fillSeries(studyDataSet, defaultStartDownloading);
+      queries.submit(() -> fillSeries(studyDataSet, defaultStartDownloading, queries));
     }
   }
 
@@ -290,6 +363,7 @@ public void buildFromStudyInstanceUID(List<String> studyInstanceUIDs) {
   }
 
   public void buildFromStudyInstanceUID(List<String> studyInstanceUIDs, boolean startDownloading) {
+    QueryBatch queries = new QueryBatch();
     for (String studyInstanceUID : LangUtil.emptyIfNull(studyInstanceUIDs)) {
       if (!StringUtil.hasText(studyInstanceUID)) {
         continue;
@@ -299,22 +373,26 @@ public void buildFromStudyInstanceUID(List<String> studyInstanceUIDs, boolean st
       buf.append(studyInstanceUID);
       buf.append(STUDY_QUERY);
       buf.append(rsQueryParams.getProperties().getProperty(RsQueryParams.P_QUERY_EXT, ""));
-
-      try {
-        LOGGER.debug(QIDO_REQUEST, buf);
-        List<Attributes> studies =
-            parseJSON(
-                buf.toString(), authMethod, new URLParameters(rsQueryParams.getQueryHeaders()));
-        for (Attributes studyDataSet : studies) {
-          fillSeries(studyDataSet, startDownloading);
-        }
-      } catch (Exception e) {
-        LOGGER.error("QIDO-RS with studyUID {}", studyInstanceUID, e);
-      }
+      queries.submit(
+          () -> {
+            try {
+              LOGGER.debug(QIDO_REQUEST, buf);
+              parseJSON(
+                  buf.toString(),
+                  authMethod,
+                  new URLParameters(rsQueryParams.getQueryHeaders()),
+                  (fmi, studyDataSet) ->
+                      queries.submit(() -> fillSeries(studyDataSet, startDownloading, queries)));
+            } catch (Exception e) {
+              LOGGER.error("QIDO-RS with studyUID {}", studyInstanceUID, e);
+            }
+          });
     }
+    queries.await();
   }
 
   public void buildFromStudyAccessionNumber(List<String> accessionNumbers) {
+    QueryBatch queries = new QueryBatch();
     for (String accessionNumber : LangUtil.emptyIfNull(accessionNumbers)) {
       if (!StringUtil.hasText(accessionNumber)) {
         continue;
@@ -324,26 +402,31 @@ public void buildFromStudyAccessionNumber(List<String> accessionNumbers) {
       buf.append(accessionNumber);
       buf.append(STUDY_QUERY);
       buf.append(rsQueryParams.getProperties().getProperty(RsQueryParams.P_QUERY_EXT, ""));
-
-      try {
-        LOGGER.debug(QIDO_REQUEST, buf);
-        List<Attributes> studies =
-            parseJSON(
-                buf.toString(), authMethod, new URLParameters(rsQueryParams.getQueryHeaders()));
-        for (Attributes studyDataSet : studies) {
-          fillSeries(studyDataSet, defaultStartDownloading);
-        }
-      } catch (Exception e) {
-        LOGGER.error("QIDO-RS with AccessionNumber {}", accessionNumber, e);
-      }
+      queries.submit(
+          () -> {
+            try {
+              LOGGER.debug(QIDO_REQUEST, buf);
+              parseJSON(
+                  buf.toString(),
+                  authMethod,
+                  new URLParameters(rsQueryParams.getQueryHeaders()),
+                  (fmi, studyDataSet) ->
+                      queries.submit(
+                          () -> fillSeries(studyDataSet, defaultStartDownloading, queries)));
+            } catch (Exception e) {
+              LOGGER.error("QIDO-RS with AccessionNumber {}", accessionNumber, e);
+            }
+          });
     }
+    queries.await();
   }
 
   public void buildFromSeriesInstanceUID(List<String> seriesInstanceUIDs) {
     boolean wholeStudy =
         LangUtil.getEmptytoFalse(
             rsQueryParams.getProperties().getProperty(RsQueryParams.P_SHOW_WHOLE_STUDY));
-    Set<String> studyHashSet = new LinkedHashSet<>();
+    Set<String> studyHashSet = ConcurrentHashMap.newKeySet();
+    QueryBatch queries = new QueryBatch();
 
     for (String seriesInstanceUID : LangUtil.emptyIfNull(seriesInstanceUIDs)) {
       if (!StringUtil.hasText(seriesInstanceUID)) {
@@ -356,33 +439,36 @@ public void buildFromSeriesInstanceUID(List<String> seriesInstanceUIDs) {
       buf.append(STUDY_QUERY);
       buf.append(",0008103E,00080060,00081190,00200011"); // NON-NLS
       buf.append(rsQueryParams.getProperties().getProperty(RsQueryParams.P_QUERY_EXT, ""));
-
-      try {
-        LOGGER.debug(QIDO_REQUEST, buf);
-        List<Attributes> series =
-            parseJSON(
-                buf.toString(), authMethod, new URLParameters(rsQueryParams.getQueryHeaders()));
-        if (!series.isEmpty()) {
-          Attributes dataset = series.get(0);
-          MediaSeriesGroup patient = getPatient(dataset, rsQueryParams.getDicomModel());
-          MediaSeriesGroup study = getStudy(patient, dataset, rsQueryParams.getDicomModel());
-          for (Attributes seriesDataset : series) {
-            Series<?> dicomSeries = getSeries(study, seriesDataset, defaultStartDownloading);
-            fillInstance(seriesDataset, dicomSeries);
-          }
-          studyHashSet.add(dataset.getString(Tag.StudyInstanceUID));
-        }
-      } catch (Exception e) {
-        LOGGER.error("QIDO-RS with seriesUID {}", seriesInstanceUID, e);
-      }
+      queries.submit(
+          () -> {
+            try {
+              LOGGER.debug(QIDO_REQUEST, buf);
+              parseJSON(
+                  buf.toString(),
+                  authMethod,
+                  new URLParameters(rsQueryParams.getQueryHeaders()),
+                  (fmi, seriesDataset) -> {
+                    DicomSeries dicomSeries =
+                        buildSeries(seriesDataset, seriesDataset, defaultStartDownloading);
+                    queries.submit(() -> fillInstance(seriesDataset, dicomSeries));
+                    studyHashSet.add(seriesDataset.getString(Tag.StudyInstanceUID));
+                  });
+            } catch (Exception e) {
+              LOGGER.error("QIDO-RS with seriesUID {}", seriesInstanceUID, e);
+            }
+          });
     }
+    queries.await();
 
     if (wholeStudy) {
-      buildFromStudyInstanceUID(new ArrayList<>(studyHashSet), false);
+      List<String> studyUIDs = new ArrayList<>(studyHashSet);
+      studyUIDs.removeIf(Objects::isNull);
+      buildFromStudyInstanceUID(studyUIDs, false);
     }
   }
 
   public void buildFromSopInstanceUID(List<String> sopInstanceUIDs) {
+    QueryBatch queries = new QueryBatch();
     for (String sopInstanceUID : LangUtil.emptyIfNull(sopInstanceUIDs)) {
       if (!StringUtil.hasText(sopInstanceUID)) {
         continue;
@@ -395,33 +481,36 @@ public void buildFromSopInstanceUID(List<String> sopInstanceUIDs) {
       buf.append(",0008103E,00080060,0020000E,00200011"); // NON-NLS
       buf.append(",00200013,00081190");
       buf.append(rsQueryParams.getProperties().getProperty(RsQueryParams.P_QUERY_EXT, ""));
-
-      try {
-        LOGGER.debug(QIDO_REQUEST, buf);
-        List<Attributes> instances =
-            parseJSON(
-                buf.toString(), authMethod, new URLParameters(rsQueryParams.getQueryHeaders()));
-        if (!instances.isEmpty()) {
-          Attributes dataset = instances.get(0);
-          MediaSeriesGroup patient = getPatient(dataset, rsQueryParams.getDicomModel());
-          MediaSeriesGroup study = getStudy(patient, dataset, rsQueryParams.getDicomModel());
-          Series<?> dicomSeries = getSeries(study, dataset, defaultStartDownloading);
-          String seriesRetrieveURL = TagD.getTagValue(dicomSeries, Tag.RetrieveURL, String.class);
-          SeriesInstanceList seriesInstanceList =
-              (SeriesInstanceList) dicomSeries.getTagValue(TagW.WadoInstanceReferenceList);
-          if (seriesInstanceList != null) {
-            for (Attributes instanceDataSet : instances) {
-              addSopInstance(instanceDataSet, seriesInstanceList, seriesRetrieveURL);
+      queries.submit(
+          () -> {
+            try {
+              LOGGER.debug(QIDO_REQUEST, buf);
+              parseJSON(
+                  buf.toString(),
+                  authMethod,
+                  new URLParameters(rsQueryParams.getQueryHeaders()),
+                  (fmi, instanceDataSet) -> {
+                    DicomSeries dicomSeries =
+                        buildSeries(instanceDataSet, instanceDataSet, defaultStartDownloading);
+                    String seriesRetrieveURL =
+                        TagD.getTagValue(dicomSeries, Tag.RetrieveURL, String.class);
+                    SeriesInstanceList seriesInstanceList =
+                        (SeriesInstanceList)
+                            dicomSeries.getTagValue(TagW.WadoInstanceReferenceList);
+                    if (seriesInstanceList != null) {
+                      addSopInstance(instanceDataSet, seriesInstanceList, seriesRetrieveURL);
+                    }
+                  });
+            } catch (Exception e) {
+              LOGGER.error("QIDO-RS with sopInstanceUID {}", sopInstanceUID, e);
             }
-          }
-        }
-      } catch (Exception e) {
-        LOGGER.error("QIDO-RS with sopInstanceUID {}", sopInstanceUID, e);
-      }
+          });
     }
+    queries.await();
   }
 
-  private void fillSeries(Attributes studyDataSet, boolean startDownloading) {
+  private void fillSeries(
+      Attributes studyDataSet, boolean startDownloading, QueryBatch queries) {
     String studyInstanceUID = studyDataSet.getString(Tag.StudyInstanceUID);
     if (StringUtil.hasText(studyInstanceUID)) {
       StringBuilder buf = new StringBuilder(rsQueryParams.getBaseUrl());
@@ -433,18 +522,20 @@ private void fillSeries(Attributes studyDataSet, boolean startDownloading) {
 
       try {
         LOGGER.debug(QIDO_REQUEST, buf);
-        List<Attributes> series =
-            parseJSON(
-                buf.toString(), authMethod, new URLParameters(rsQueryParams.getQueryHeaders()));
-        if (!series.isEmpty()) {
-          // Get patient from each study in case IssuerOfPatientID is different
-          MediaSeriesGroup patient = getPatient(studyDataSet, rsQueryParams.getDicomModel());
-          MediaSeriesGroup study = getStudy(patient, studyDataSet, rsQueryParams.getDicomModel());
-          for (Attributes seriesDataset : series) {
-            Series<?> dicomSeries = getSeries(study, seriesDataset, startDownloading);
-            fillInstance(seriesDataset, dicomSeries);
-          }
-        }
+        // Get patient from each study in case IssuerOfPatientID is different
+        parseJSON(
+            buf.toString(),
+            authMethod,
+            new URLParameters(rsQueryParams.getQueryHeaders()),
+            (fmi, seriesDataset) -> {
+              DicomSeries dicomSeries = buildSeries(studyDataSet, seriesDataset, startDownloading);
+              queries.submit(
+                  () -> {
+                    fillInstance(seriesDataset, dicomSeries);
+                    // Download the series without waiting for the other queries
+                    rsQueryParams.publishSeries(getLoadSeries(dicomSeries));
+                  });
+            });
       } catch (Exception e) {
         LOGGER.error("QIDO-RS all series with studyUID {}", studyInstanceUID, e);
       }
@@ -453,7 +544,9 @@ private void fillSeries(Attributes studyDataSet, boolean startDownloading) {
 
   private void fillInstance(Attributes seriesDataset, Series<?> dicomSeries) {
     String seriesInstanceUID = seriesDataset.getString(Tag.SeriesInstanceUID);
-    if (StringUtil.hasText(seriesInstanceUID)) {
+    SeriesInstanceList seriesInstanceList =
+        (SeriesInstanceList) dicomSeries.getTagValue(TagW.WadoInstanceReferenceList);
+    if (StringUtil.hasText(seriesInstanceUID) && seriesInstanceList != null) {
       String seriesRetrieveURL = TagD.getTagValue(dicomSeries, Tag.RetrieveURL, String.class);
       StringBuilder buf = new StringBuilder(seriesRetrieveURL);
       buf.append("/instances?includefield="); // NON-NLS
@@ -462,18 +555,12 @@ private void fillInstance(Attributes seriesDataset, Series<?> dicomSeries) {
 
       try {
         LOGGER.debug(QIDO_REQUEST, buf);
-        List<Attributes> instances =
-            parseJSON(
-                buf.toString(), authMethod, new URLParameters(rsQueryParams.getQueryHeaders()));
-        if (!instances.isEmpty()) {
-          SeriesInstanceList seriesInstanceList =
-              (SeriesInstanceList) dicomSeries.getTagValue(TagW.WadoInstanceReferenceList);
-          if (seriesInstanceList != null) {
-            for (Attributes instanceDataSet : instances) {
-              addSopInstance(instanceDataSet, seriesInstanceList, seriesRetrieveURL);
-            }
-          }
-        }
+        parseJSON(
+            buf.toString(),
+            authMethod,
+            new URLParameters(rsQueryParams.getQueryHeaders()),
+            (fmi, instanceDataSet) ->
+                addSopInstance(instanceDataSet, seriesInstanceList, seriesRetrieveURL));
       } catch (Exception e) {
         LOGGER.error("QIDO-RS all instances with seriesUID {}", seriesInstanceUID, e);
       }
@@ -486,15 +573,18 @@ public static void addSopInstance(
     Integer frame =
         DicomUtils.getIntegerFromDicomElement(instanceDataSet, Tag.InstanceNumber, null);
 
-    SopInstance sop = seriesInstanceList.getSopInstance(sopUID, frame);
-    if (sop == null) {
-      sop = new SopInstance(sopUID, frame);
-      String rurl = instanceDataSet.getString(Tag.RetrieveURL);
-      if (!StringUtil.hasText(rurl)) {
-        rurl = seriesRetrieveURL + "/instances/" + sopUID; // NON-NLS
+    // The same series can be filled by concurrent queries
+    synchronized (seriesInstanceList) {
+      SopInstance sop = seriesInstanceList.getSopInstance(sopUID, frame);
+      if (sop == null) {
+        sop = new SopInstance(sopUID, frame);
+        String rurl = instanceDataSet.getString(Tag.RetrieveURL);
+        if (!StringUtil.hasText(rurl)) {
+          rurl = seriesRetrieveURL + "/instances/" + sopUID; // NON-NLS
+        }
+        sop.setDirectDownloadFile(rurl);
+        seriesInstanceList.addSopInstance(sop);
       }
-      sop.setDirectDownloadFile(rurl);
-      seriesInstanceList.addSopInstance(sop);
     }
   }
 
@@ -555,6 +645,28 @@ public static MediaSeriesGroup getStudy(
     return study;
   }
 
+  /**
+   * Get or create the patient, the study and the series of a dataset. The nodes are created under
+   * a lock because the datasets are received by concurrent queries.
+   *
+   * @param studyDataset the dataset containing the patient and the study attributes
+   * @param seriesDataset the dataset containing the series attributes
+   * @param startDownloading true to start downloading the new series
+   * @return the series
+   */
+  private synchronized DicomSeries buildSeries(
+      Attributes studyDataset, Attributes seriesDataset, boolean startDownloading) {
+    DicomModel model = rsQueryParams.getDicomModel();
+    MediaSeriesGroup patient = getPatient(studyDataset, model);
+    MediaSeriesGroup study = getStudy(patient, studyDataset, model);
+    return getSeries(study, seriesDataset, startDownloading);
+  }
+
+  private synchronized LoadSeries getLoadSeries(DicomSeries dicomSeries) {
+    String seriesUID = TagD.getTagValue(dicomSeries, Tag.SeriesInstanceUID, String.class);
+    return seriesUID == null ? null : rsQueryParams.getSeriesMap().get(seriesUID);
+  }
+
   private DicomSeries getSeries(
       MediaSeriesGroup study, final Attributes seriesDataset, boolean startDownloading) {
     if (seriesDataset == null) {
@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.explorer.wado;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.gui.util.AppProperties;
+import org.weasis.core.api.gui.util.GuiUtils;
+import org.weasis.core.util.FileUtil;
+import org.weasis.core.util.StringUtil;
+
+/**
+ * Persistent cache of the downloaded DICOM instances, shared between the sessions. The files are
+ * named by the hash of the SOP Instance UID and of the parameters changing the content of the file
+ * (e.g. the requested transfer syntax). The index contains the size and the checksum of each file
+ * and the least recently used files are removed when the quota is exceeded.
+ *
+ * <p>The cache contains patient data, so it is disabled by default (see {@link #CACHE_SIZE}). It is
+ * owned by one instance of the application at a time, the other instances running at the same time
+ * do not use it. The files given to the current session are never removed before the next session,
+ * because they can be read at any time by the images.
+ */
+public final class DownloadCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DownloadCache.class);
+
+  /** The maximum size of the cache in MB, 0 (default) to disable the cache */
+  public static final String CACHE_SIZE = "download.cache.size";
+
+  private static final String INDEX_FILE = "index.txt"; // NON-NLS
+  private static final String LOCK_FILE = "cache.lock"; // NON-NLS
+  private static final String SEPARATOR = "\t";
+
+  private final File directory;
+  private final long maxSize;
+  // Held until the end of the session, null when the cache is not enabled
+  private final FileLock lock;
+  // Guarded by this
+  private final Map<String, Entry> index = new HashMap<>();
+  // Keys of the files given to the current session, guarded by this
+  private final Set<String> inUse = new HashSet<>();
+  private long size;
+  private boolean modified;
+
+  private DownloadCache() {
+    long mb = GuiUtils.getUICore().getSystemPreferences().getLongProperty(CACHE_SIZE, 0L);
+    this.maxSize = Math.max(0L, mb) * 1024L * 1024L;
+    this.directory =
+        new File(AppProperties.WEASIS_PATH, "cache" + File.separator + "dicom"); // NON-NLS
+    this.lock = maxSize > 0 ? acquireLock(directory) : null;
+    if (lock != null) {
+      loadIndex();
+    }
+  }
+
+  private static final class Holder {
+    private static final DownloadCache INSTANCE = new DownloadCache();
+  }
+
+  public static DownloadCache getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  private static FileLock acquireLock(File directory) {
+    try {
+      Files.createDirectories(directory.toPath());
+      FileChannel channel =
+          FileChannel.open(
+              new File(directory, LOCK_FILE).toPath(),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE);
+      FileLock fileLock = channel.tryLock();
+      if (fileLock == null) {
+        channel.close();
+        LOGGER.info("The DICOM cache is used by another instance, it is disabled");
+      }
+      return fileLock;
+    } catch (IOException | OverlappingFileLockException e) {
+      LOGGER.error("Cannot lock the DICOM cache", e);
+      return null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return lock != null;
+  }
+
+  /**
+   * @param sopUID the SOP Instance UID
+   * @param variant the parameters changing the content of the file (e.g. the requested transfer
+   *     syntax UID), or null for the original file
+   * @return the cached file of the instance, or null if not available or corrupted
+   */
+  public File get(String sopUID, String variant) {
+    if (!isEnabled() || sopUID == null) {
+      return null;
+    }
+    String key = buildKey(sopUID, variant);
+    Entry entry;
+    synchronized (this) {
+      entry = index.get(key);
+      if (entry == null) {
+        return null;
+      }
+      // Cannot be removed while the checksum is computed
+      inUse.add(key);
+    }
+    File file = new File(directory, entry.name);
+    if (!entry.verified) {
+      boolean valid = file.length() == entry.length && computeChecksum(file) == entry.checksum;
+      synchronized (this) {
+        if (!valid) {
+          LOGGER.warn("Corrupted file in the DICOM cache: {}", file);
+          inUse.remove(key);
+          if (index.get(key) == entry) {
+            removeEntry(key, entry);
+          }
+          return null;
+        }
+        entry.verified = true;
+      }
+    }
+    synchronized (this) {
+      entry.lastAccess = System.currentTimeMillis();
+      modified = true;
+    }
+    return file;
+  }
+
+  public boolean contains(String sopUID, String variant) {
+    return get(sopUID, variant) != null;
+  }
+
+  /**
+   * Move a downloaded file into the cache.
+   *
+   * @param sopUID the SOP Instance UID
+   * @param variant the parameters changing the content of the file (e.g. the requested transfer
+   *     syntax UID), or null for the original file
+   * @param file the downloaded file
+   * @return the file in the cache, or null when the file cannot be cached
+   */
+  public File put(String sopUID, String variant, File file) {
+    if (!isEnabled() || sopUID == null || file == null || file.length() > maxSize) {
+      return null;
+    }
+    // The content does not change when the file is moved
+    long length = file.length();
+    long checksum = computeChecksum(file);
+    String key = buildKey(sopUID, variant);
+    File target = new File(directory, key);
+    synchronized (this) {
+      Entry old = index.get(key);
+      if (old != null) {
+        if (inUse.contains(key)) {
+          // Already read by the session
+          return null;
+        }
+        removeEntry(key, old);
+      }
+      try {
+        Files.createDirectories(directory.toPath());
+        Files.move(file.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } catch (IOException e) {
+        LOGGER.error("Cannot write {} in the DICOM cache", file, e);
+        return null;
+      }
+      Entry entry = new Entry(key, length, checksum);
+      entry.verified = true;
+      entry.lastAccess = System.currentTimeMillis();
+      index.put(key, entry);
+      inUse.add(key);
+      size += entry.length;
+      modified = true;
+      evict();
+    }
+    return target;
+  }
+
+  /**
+   * Remove an instance which cannot be read. The file is kept until the end of the session when it
+   * is used.
+   */
+  public synchronized void remove(String sopUID, String variant) {
+    String key = buildKey(sopUID, variant);
+    Entry entry = index.get(key);
+    if (entry != null) {
+      removeEntry(key, entry);
+    }
+  }
+
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /** Write the index when it has been modified. */
+  public synchronized void flush() {
+    if (!modified || !isEnabled()) {
+      return;
+    }
+    Path tmp = new File(directory, INDEX_FILE + ".tmp").toPath(); // NON-NLS
+    try {
+      Files.createDirectories(directory.toPath());
+      try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+        for (Entry e : index.values()) {
+          writer.write(
+              String.join(
+                  SEPARATOR,
+                  e.name,
+                  Long.toString(e.length),
+                  Long.toString(e.checksum),
+                  Long.toString(e.lastAccess)));
+          writer.newLine();
+        }
+      }
+      Files.move(
+          tmp,
+          new File(directory, INDEX_FILE).toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+      modified = false;
+    } catch (IOException e) {
+      LOGGER.error("Cannot write the index of the DICOM cache", e);
+    }
+  }
+
+  private void loadIndex() {
+    File file = new File(directory, INDEX_FILE);
+    if (file.canRead()) {
+      try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          String[] values = line.split(SEPARATOR);
+          if (values.length == 4) {
+            Entry entry =
+                new Entry(values[0], Long.parseLong(values[1]), Long.parseLong(values[2]));
+            entry.lastAccess = Long.parseLong(values[3]);
+            File f = new File(directory, entry.name);
+            // Quick check, the checksum is verified at the first access
+            if (f.length() == entry.length) {
+              index.put(entry.name, entry);
+              size += entry.length;
+            }
+          }
+        }
+      } catch (Exception e) {
+        LOGGER.error("Cannot read the index of the DICOM cache", e);
+        index.clear();
+        size = 0;
+      }
+    }
+
+    // Remove the files which are not indexed (e.g. after a crash)
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File f : files) {
+        String name = f.getName();
+        if (!index.containsKey(name) && !name.startsWith(INDEX_FILE) && !LOCK_FILE.equals(name)) {
+          FileUtil.delete(f);
+        }
+      }
+    }
+    evict();
+    LOGGER.info("DICOM cache: {} instances, {} MB", index.size(), size / (1024 * 1024));
+  }
+
+  private void evict() {
+    if (size <= maxSize) {
+      return;
+    }
+    List<Entry> entries = new ArrayList<>(index.values());
+    entries.sort(Comparator.comparingLong(e -> e.lastAccess));
+    // Free 10% more to avoid evicting at each download
+    long limit = maxSize - maxSize / 10;
+    for (Entry e : entries) {
+      if (size <= limit) {
+        break;
+      }
+      if (!inUse.contains(e.name)) {
+        removeEntry(e.name, e);
+      }
+    }
+    if (size > maxSize) {
+      LOGGER.debug("DICOM cache above the quota, the files of the session are kept");
+    }
+  }
+
+  private void removeEntry(String key, Entry entry) {
+    index.remove(key);
+    size -= entry.length;
+    modified = true;
+    // A file used by the session is deleted as not indexed at the next start
+    if (!inUse.contains(key)) {
+      FileUtil.delete(new File(directory, entry.name));
+    }
+  }
+
+  static String buildKey(String sopUID, String variant) {
+    String value = sopUID + "|" + (StringUtil.hasText(variant) ? variant : "*");
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256"); // NON-NLS
+      return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.US_ASCII)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static long computeChecksum(File file) {
+    CRC32 crc = new CRC32();
+    byte[] buf = new byte[FileUtil.FILE_BUFFER];
+    try (InputStream in = Files.newInputStream(file.toPath())) {
+      int n;
+      while ((n = in.read(buf)) > 0) {
+        crc.update(buf, 0, n);
+      }
+    } catch (IOException e) {
+      LOGGER.error("Cannot read {}", file, e);
+      return -1L;
+    }
+    return crc.getValue();
+  }
+
+  private static final class Entry {
+    private final String name;
+    private final long length;
+    private final long checksum;
+    private long lastAccess;
+    private boolean verified;
+
+    Entry(String name, long length, long checksum) {
+      this.name = name;
+      this.length = length;
+      this.checksum = checksum;
+    }
+  }
+}
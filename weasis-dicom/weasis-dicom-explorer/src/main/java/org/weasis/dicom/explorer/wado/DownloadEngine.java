@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.explorer.wado;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.weasis.core.api.gui.util.GuiUtils;
+import org.weasis.core.api.service.WProperties;
+import org.weasis.core.api.util.ThreadUtil;
+import org.weasis.core.util.StreamIOException;
+import org.weasis.dicom.explorer.DicomSorter;
+
+/**
+ * Download pool shared by all the {@link LoadSeries}. The pending downloads are ordered by the
+ * {@link DownloadPriority} of their series and the number of simultaneous downloads is adapted
+ * (additive increase, multiplicative decrease) according to the throughput, the latency and the
+ * errors.
+ */
+public final class DownloadEngine {
+  private static final Logger LOGGER = LoggerFactory.getLogger(DownloadEngine.class);
+
+  public static final String MAX_CONCURRENT_DOWNLOADS = "download.concurrent.max";
+
+  private static final int MIN_LIMIT = 1;
+  // Time to first byte above which the server or the network is considered as congested
+  private static final double LATENCY_TOLERANCE = 2.0;
+  // Minimum throughput gain to keep increasing the number of simultaneous downloads
+  private static final double THROUGHPUT_GAIN = 1.05;
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  private static final AtomicLong SEQUENCE = new AtomicLong();
+
+  private final ThreadPoolExecutor executor;
+  private final int maxLimit;
+
+  // Guarded by this
+  private int limit;
+  private int completed;
+  private long epochStart;
+  private long epochBytes;
+  private double epochThroughput;
+  private double baseLatency;
+
+  private DownloadEngine() {
+    WProperties prefs = GuiUtils.getUICore().getSystemPreferences();
+    int perSeries = prefs.getIntProperty(LoadSeries.CONCURRENT_DOWNLOADS_IN_SERIES, 4);
+    int series = prefs.getIntProperty(DownloadManager.CONCURRENT_SERIES, 3);
+    this.maxLimit = Math.max(MIN_LIMIT, prefs.getIntProperty(MAX_CONCURRENT_DOWNLOADS, 32));
+    this.limit = Math.clamp((long) perSeries * series, MIN_LIMIT, maxLimit);
+    this.executor =
+        new ThreadPoolExecutor(
+            limit,
+            maxLimit,
+            30L,
+            TimeUnit.SECONDS,
+            new PriorityBlockingQueue<>(),
+            ThreadUtil.getThreadFactory("Image Downloader")); // NON-NLS
+    this.executor.allowCoreThreadTimeOut(true);
+    this.epochStart = System.nanoTime();
+  }
+
+  private static final class Holder {
+    private static final DownloadEngine INSTANCE = new DownloadEngine();
+  }
+
+  public static DownloadEngine getInstance() {
+    return Holder.INSTANCE;
+  }
+
+  /**
+   * Submit the downloads of a series and wait for their completion. When the current thread is
+   * interrupted, the remaining downloads are cancelled.
+   *
+   * @param series the series owning the downloads
+   * @param tasks the downloads in the expected order
+   * @throws InterruptedException if the current thread was interrupted while waiting
+   */
+  public void invokeAll(LoadSeries series, Collection<? extends Callable<Boolean>> tasks)
+      throws InterruptedException {
+    List<Future<Boolean>> futures = new ArrayList<>(tasks.size());
+    try {
+      for (Callable<Boolean> task : tasks) {
+        DownloadTask t = new DownloadTask(series, task);
+        futures.add(t);
+        executor.execute(t);
+      }
+      for (Future<Boolean> f : futures) {
+        try {
+          f.get();
+        } catch (ExecutionException e) {
+          LOGGER.error("Downloading", e.getCause());
+        }
+      }
+    } finally {
+      for (Future<Boolean> f : futures) {
+        if (!f.isDone()) {
+          executor.remove((Runnable) f);
+          f.cancel(true);
+        }
+      }
+    }
+  }
+
+  /**
+   * Report the completion of a download.
+   *
+   * @param latency the time to first byte in nanoseconds
+   * @param bytes the number of bytes received
+   */
+  public synchronized void onSuccess(long latency, long bytes) {
+    // Minimum latency slowly following the current one
+    baseLatency =
+        baseLatency <= 0.0
+            ? latency
+            : Math.min(latency, baseLatency + 0.01 * (latency - baseLatency));
+    epochBytes += Math.max(0, bytes);
+    if (latency > LATENCY_TOLERANCE * baseLatency) {
+      // Queuing on the server side or congestion of the network
+      decrease();
+      return;
+    }
+    if (++completed >= limit) {
+      double elapsed = (System.nanoTime() - epochStart) / 1.0e9;
+      double throughput = elapsed > 0.0 ? epochBytes / elapsed : 0.0;
+      if (throughput >= THROUGHPUT_GAIN * epochThroughput && limit < maxLimit) {
+        setLimit(limit + 1);
+      }
+      epochThroughput = throughput;
+      newEpoch();
+    }
+  }
+
+  /**
+   * Report a download failed because of a timeout, a network error or an overloaded server (see
+   * {@link #isOverloaded(int)} and {@link #isNetworkError(IOException)}). The other errors (e.g.
+   * an instance not found) must not be reported as they do not depend on the load.
+   */
+  public synchronized void onError() {
+    decrease();
+  }
+
+  /**
+   * @param code the HTTP response code
+   * @return true if the server refuses the request because of its load
+   */
+  public static boolean isOverloaded(int code) {
+    return code == HTTP_TOO_MANY_REQUESTS || code == HttpURLConnection.HTTP_UNAVAILABLE;
+  }
+
+  /**
+   * @param e the exception of the download
+   * @return true for a timeout or an error of the connection or of the stream
+   */
+  public static boolean isNetworkError(IOException e) {
+    return e instanceof StreamIOException
+        || e instanceof HttpTimeoutException
+        || e instanceof SocketTimeoutException
+        || e instanceof ConnectException;
+  }
+
+  private void decrease() {
+    // Only one decrease for a set of simultaneous downloads
+    if (completed >= 0) {
+      setLimit(Math.max(MIN_LIMIT, limit / 2));
+      epochThroughput = 0.0;
+      newEpoch();
+      completed = -limit;
+    }
+  }
+
+  private void newEpoch() {
+    completed = 0;
+    epochBytes = 0;
+    epochStart = System.nanoTime();
+  }
+
+  private void setLimit(int value) {
+    if (value != limit) {
+      LOGGER.debug("Simultaneous downloads: {} -> {}", limit, value);
+      limit = value;
+      executor.setCorePoolSize(value);
+    }
+  }
+
+  public synchronized int getLimit() {
+    return limit;
+  }
+
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  private static final class DownloadTask extends FutureTask<Boolean>
+      implements Comparable<DownloadTask> {
+    private final long sequence = SEQUENCE.getAndIncrement();
+    private final DownloadPriority priority;
+    // The order of a queued task must not change, so the priority is read at the creation
+    private final int rank;
+
+    DownloadTask(LoadSeries series, Callable<Boolean> callable) {
+      super(callable);
+      this.priority = series.getPriority();
+      this.rank = priority == null ? Integer.MAX_VALUE : priority.getPriority();
+    }
+
+    @Override
+    public int compareTo(DownloadTask o) {
+      int rep = Integer.compare(rank, o.rank);
+      if (rep == 0 && priority != o.priority && priority != null && o.priority != null) {
+        rep = compareGroups(priority, o.priority);
+      }
+      return rep != 0 ? rep : Long.compare(sequence, o.sequence);
+    }
+
+    private static int compareGroups(DownloadPriority p1, DownloadPriority p2) {
+      int rep = 0;
+      if (p1.getPatient() != p2.getPatient()) {
+        rep = DicomSorter.PATIENT_COMPARATOR.compare(p1.getPatient(), p2.getPatient());
+      }
+      if (rep == 0 && p1.getStudy() != p2.getStudy()) {
+        rep = DicomSorter.STUDY_COMPARATOR.compare(p1.getStudy(), p2.getStudy());
+      }
+      if (rep == 0 && p1.getSeries() != p2.getSeries()) {
+        rep = DicomSorter.SERIES_COMPARATOR.compare(p1.getSeries(), p2.getSeries());
+      }
+      return rep;
+    }
+  }
+}
@@ -30,6 +30,7 @@
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -37,7 +38,6 @@
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -67,12 +67,10 @@
 import org.weasis.core.api.media.data.Thumbnail;
 import org.weasis.core.api.model.PerformanceModel;
 import org.weasis.core.api.service.AuditLog;
-import org.weasis.core.api.util.AuthResponse;
 import org.weasis.core.api.util.ClosableURLConnection;
 import org.weasis.core.api.util.HttpResponse;
 import org.weasis.core.api.util.NetworkUtil;
 import org.weasis.core.api.util.ResourceUtil.ResourceIconPath;
-import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.core.api.util.URLParameters;
 import org.weasis.core.ui.model.GraphicModel;
 import org.weasis.core.ui.model.ReferencedImage;
@@ -106,6 +104,9 @@ public class LoadSeries extends ExplorerTask<Boolean, String> implements SeriesI
   public static final TagW DOWNLOAD_TIME = new TagW("DownloadTime", TagType.TIME);
   public static final TagW DOWNLOAD_ERRORS = new TagW("DownloadErrors", TagType.INTEGER);
 
+  public static final String WADO_RS_SERIES = "download.wado.rs.series";
+  private static final String INSTANCES_PATH = "/instances/"; // NON-NLS
+
   public static final String LOAD_TYPE_DICOMDIR = "DICOMDIR";
   public static final String LOAD_TYPE_URL = "URL";
   public static final String LOAD_TYPE_LOCAL = "local"; // NON-NLS
@@ -451,6 +452,58 @@ private boolean isSOPInstanceUIDExist(
     return false;
   }
 
+  /**
+   * @return the parameters changing the content of the downloaded files: the requested transfer
+   *     syntax and the values of the tags overridden by the manifest
+   */
+  private String getCacheVariant() {
+    String tsuid = (String) dicomSeries.getTagValue(TagW.WadoTransferSyntaxUID);
+    WadoParameters wado = (WadoParameters) dicomSeries.getTagValue(TagW.WadoParameters);
+    int[] overrideList = wado == null ? null : wado.getOverrideDicomTagIDList();
+    if (overrideList == null) {
+      return tsuid;
+    }
+    MediaSeriesGroup study = dicomModel.getParent(dicomSeries, DicomModel.study);
+    MediaSeriesGroup patient = dicomModel.getParent(dicomSeries, DicomModel.patient);
+    StringBuilder buf = new StringBuilder(tsuid == null ? "*" : tsuid);
+    for (int tag : overrideList) {
+      TagW tagElement = patient == null ? null : patient.getTagElement(tag);
+      Object value = null;
+      if (tagElement != null) {
+        value = patient.getTagValue(tagElement);
+      } else if (study != null) {
+        value = study.getTagValue(study.getTagElement(tag));
+      }
+      if (value != null && value.getClass().isArray()) {
+        value = Arrays.deepToString(new Object[] {value});
+      }
+      buf.append('|').append(Integer.toHexString(tag)).append('=').append(value);
+    }
+    return buf.toString();
+  }
+
+  /**
+   * Move a downloaded file into the persistent cache, or into the cache of the session when the
+   * persistent cache is disabled or when the instance is unknown.
+   */
+  private File moveDownloadedFile(File tempFile, String sopUID) {
+    File file = DownloadCache.getInstance().put(sopUID, getCacheVariant(), tempFile);
+    if (file != null) {
+      return file;
+    }
+    File renameFile = new File(DicomMediaIO.DICOM_EXPORT_DIR, tempFile.getName());
+    return tempFile.renameTo(renameFile) ? renameFile : tempFile;
+  }
+
+  // Solves missing tmp folder problem (on Windows).
+  private static File getDicomTmpDir() {
+    if (!DICOM_TMP_DIR.exists()) {
+      LOGGER.info("DICOM tmp dir not found. Re-creating it!");
+      AppProperties.buildAccessibleTempDirectory("downloading"); // NON-NLS
+    }
+    return DICOM_TMP_DIR;
+  }
+
   private void incrementProgressBarValue() {
     GuiExecutor.execute(() -> progressBar.setValue(progressBar.getValue() + 1));
   }
@@ -468,9 +521,9 @@ private Boolean startDownload() {
 
     List<SopInstance> sopList = seriesInstanceList.getSortedList();
 
-    ExecutorService imageDownloader =
-        ThreadUtil.buildNewFixedThreadExecutor(concurrentDownloads, "Image Downloader"); // NON-NLS
-    ArrayList<Callable<Boolean>> tasks = new ArrayList<>(sopList.size());
+    ArrayList<Download> tasks = new ArrayList<>(sopList.size());
+    ArrayList<Download> cachedTasks = new ArrayList<>();
+    DownloadCache downloadCache = DownloadCache.getInstance();
     int[] dindex = generateDownloadOrder(sopList.size());
     GuiExecutor.execute(
         () -> {
@@ -496,6 +549,13 @@ private Boolean startDownload() {
         continue;
       }
 
+      // Read the instance from the persistent cache when it has already been downloaded
+      File cachedFile = downloadCache.get(instance.getSopInstanceUID(), getCacheVariant());
+      if (cachedFile != null) {
+        cachedTasks.add(new Download(cachedFile, instance.getSopInstanceUID()));
+        continue;
+      }
+
       String studyUID = "";
       String seriesUID = "";
       if (!wado.isRequireOnlySOPInstanceUID()) {
@@ -530,21 +590,118 @@ private Boolean startDownload() {
       String url = request.toString();
 
       LOGGER.debug("Download DICOM instance {} index {}.", url, k);
-      Download ref = new Download(url);
+      Download ref = new Download(url, instance.getSopInstanceUID());
       tasks.add(ref);
     }
 
+    dicomSeries.setTag(DOWNLOAD_START_TIME, System.currentTimeMillis());
+    String seriesURL = getSeriesRetrieveURL(wado, tasks, sopList.size());
+    if (seriesURL != null) {
+      Set<String> expected = new HashSet<>(tasks.size());
+      for (Download task : tasks) {
+        expected.add(task.sopInstanceUID);
+      }
+      Set<String> received = downloadSeries(seriesURL, study, expected);
+      if (isCancelled()) {
+        return true;
+      }
+      // Download individually the missing instances
+      tasks.removeIf(t -> received.contains(t.sopInstanceUID));
+    }
+
+    tasks.addAll(0, cachedTasks);
     try {
-      dicomSeries.setTag(DOWNLOAD_START_TIME, System.currentTimeMillis());
-      imageDownloader.invokeAll(tasks);
+      DownloadEngine.getInstance().invokeAll(this, tasks);
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
+    } finally {
+      downloadCache.flush();
     }
-
-    imageDownloader.shutdown();
     return true;
   }
 
+  /**
+   * @return the WADO-RS URL of the series when all the instances to download can be retrieved in a
+   *     single multipart response, otherwise null
+   */
+  private String getSeriesRetrieveURL(WadoParameters wado, List<Download> tasks, int nbInstances) {
+    if (!wado.isWadoRS()
+        || wado.getOverrideDicomTagIDList() != null
+        || tasks.size() < 2
+        // Do not retrieve again most of the instances
+        || tasks.size() < nbInstances / 2
+        || !GuiUtils.getUICore().getSystemPreferences().getBooleanProperty(WADO_RS_SERIES, true)) {
+      return null;
+    }
+    String params = wado.getAdditionnalParameters();
+    String first = tasks.getFirst().url;
+    int index = first.lastIndexOf(INSTANCES_PATH);
+    if (index <= 0) {
+      return null;
+    }
+    String seriesURL = first.substring(0, index);
+    for (Download task : tasks) {
+      if (!task.url.equals(seriesURL + INSTANCES_PATH + task.sopInstanceUID + params)) {
+        return null;
+      }
+    }
+    return seriesURL + params;
+  }
+
+  /**
+   * Retrieve all the instances of a WADO-RS series in one multipart response. Each part is written
+   * into the cache and added to the series as soon as it is received. The parts which are not
+   * expected (unknown instance, already received or already in the series) are ignored.
+   *
+   * @param expected the SOP Instance UIDs of the instances to download
+   * @return the SOP Instance UIDs received
+   */
+  private Set<String> downloadSeries(
+      String seriesURL, MediaSeriesGroup study, Set<String> expected) {
+    Set<String> received = new HashSet<>();
+    LOGGER.debug("Download DICOM series {}.", seriesURL);
+    try (HttpResponse response =
+        NetworkUtil.getPooledHttpResponse(seriesURL, urlParams, authMethod)) {
+      Multipart.Handler handler =
+          (multipartReader, partNumber, headers) -> {
+            if (isCancelled()) {
+              throw new InterruptedIOException("Series download cancelled");
+            }
+            File tempFile = File.createTempFile("image_", ".dcm", getDicomTmpDir());
+            try (InputStream in = multipartReader.newPartInputStream()) {
+              FileUtil.writeStream(new SeriesProgressMonitor(dicomSeries, in), tempFile, false);
+            }
+            DicomMediaIO dicomReader = new DicomMediaIO(tempFile);
+            String sopUID = TagD.getTagValue(dicomReader, Tag.SOPInstanceUID, String.class);
+            if (sopUID == null
+                || !expected.contains(sopUID)
+                || !received.add(sopUID)
+                || isSOPInstanceUIDExist(study, dicomSeries, sopUID)) {
+              LOGGER.debug("Ignore the part {} of {} (SOP UID: {})", partNumber, seriesURL, sopUID);
+              FileUtil.delete(tempFile);
+              return;
+            }
+            File file = moveDownloadedFile(tempFile, sopUID);
+            if (file != tempFile) {
+              dicomReader = new DicomMediaIO(file);
+            }
+            Download part = new Download(seriesURL, sopUID);
+            part.updateGroups(dicomReader);
+            part.complete(file, dicomReader);
+          };
+      Multipart.parseMultipartRelated(
+          response.getHeaderField("Content-Type"), // NON-NLS
+          response.getInputStream(),
+          handler);
+    } catch (Exception e) {
+      if (!isCancelled()) {
+        LOGGER.warn("Cannot retrieve the whole series {}, download by instance", seriesURL, e);
+      }
+    }
+    LOGGER.info("{} instances received from {}", received.size(), seriesURL);
+    return received;
+  }
+
   private static Map<String, String> getHttpTags(WadoParameters wadoParams) {
     boolean hasWadoTags = wadoParams != null && wadoParams.getHttpTaglist() != null;
     boolean hasWadoLogin = wadoParams != null && wadoParams.getWebLogin() != null;
@@ -801,10 +958,21 @@ private int[] generateDownloadOrder(final int size) {
   class Download implements Callable<Boolean> {
 
     private final String url; // download URL
+    private final String sopInstanceUID;
+    private final File cachedFile;
     private Status status; // current status of download
 
-    public Download(String url) {
+    public Download(String url, String sopInstanceUID) {
       this.url = url;
+      this.sopInstanceUID = sopInstanceUID;
+      this.cachedFile = null;
+      this.status = Status.DOWNLOADING;
+    }
+
+    public Download(File cachedFile, String sopInstanceUID) {
+      this.url = cachedFile.toURI().toString();
+      this.sopInstanceUID = sopInstanceUID;
+      this.cachedFile = cachedFile;
       this.status = Status.DOWNLOADING;
     }
 
@@ -836,34 +1004,44 @@ private HttpResponse replaceToDefaultTSUID() throws IOException {
     public Boolean call() {
       try {
         process();
-      } catch (StreamIOException es) {
-        hasError = true; // network issue (allow retrying)
-        error();
-        LOGGER.error("Downloading", es);
-      } catch (IOException | URISyntaxException e) {
+      } catch (IOException e) {
+        if (isStopped()) {
+          // Cancelled: the interruption can have been cleared by the read watchdog of the stream
+          Thread.currentThread().interrupt();
+        } else if (DownloadEngine.isNetworkError(e)) {
+          hasError = true; // network issue (allow retrying)
+          DownloadEngine.getInstance().onError();
+          error();
+          LOGGER.error("Downloading", e);
+        } else {
+          error();
+          LOGGER.error("Downloading", e);
+        }
+      } catch (URISyntaxException e) {
         error();
         LOGGER.error("Downloading", e);
       }
       return Boolean.TRUE;
     }
 
-    // Solves missing tmp folder problem (on Windows).
-    private File getDicomTmpDir() {
-      if (!DICOM_TMP_DIR.exists()) {
-        LOGGER.info("DICOM tmp dir not found. Re-creating it!");
-        AppProperties.buildAccessibleTempDirectory("downloading"); // NON-NLS
-      }
-      return DICOM_TMP_DIR;
-    }
-
     /** Download file. */
     private boolean process() throws IOException, URISyntaxException {
+      if (cachedFile != null) {
+        DicomMediaIO dicomReader = new DicomMediaIO(cachedFile);
+        updateGroups(dicomReader);
+        return complete(cachedFile, dicomReader);
+      }
       boolean cache = true;
       File tempFile = null;
       DicomMediaIO dicomReader = null;
-      HttpResponse urlcon = NetworkUtil.getHttpResponse(url, urlParams, authMethod);
+      long start = System.nanoTime();
+      HttpResponse urlcon = NetworkUtil.getPooledHttpResponse(url, urlParams, authMethod);
+      long latency = System.nanoTime() - start;
       int code = urlcon.getResponseCode();
       if (code >= HttpURLConnection.HTTP_BAD_REQUEST) {
+        if (DownloadEngine.isOverloaded(code)) {
+          DownloadEngine.getInstance().onError();
+        }
         if (authMethod != null && code == HttpURLConnection.HTTP_UNAUTHORIZED) {
           authMethod.resetToken();
           authMethod.getToken();
@@ -893,10 +1071,8 @@ private boolean process() throws IOException, URISyntaxException {
               return false;
             }
 
-            File renameFile = new File(DicomMediaIO.DICOM_EXPORT_DIR, tempFile.getName());
-            if (tempFile.renameTo(renameFile)) {
-              tempFile = renameFile;
-            }
+            DownloadEngine.getInstance().onSuccess(latency, tempFile.length());
+            tempFile = moveDownloadedFile(tempFile, url.startsWith("http") ? sopInstanceUID : null);
           } else {
             tempFile = new File(NetworkUtil.getURI(url));
           }
@@ -904,31 +1080,35 @@ private boolean process() throws IOException, URISyntaxException {
           FileUtil.safeClose(stream);
 
           dicomReader = new DicomMediaIO(tempFile);
-          if (dicomReader.isReadableDicom() && dicomSeries.size(null) == 0) {
-            // Override the group (patient, study and series) by the dicom fields except the UID of
-            // the group
-            MediaSeriesGroup patient = dicomModel.getParent(dicomSeries, DicomModel.patient);
-            dicomReader.writeMetaData(patient);
-            MediaSeriesGroup study = dicomModel.getParent(dicomSeries, DicomModel.study);
-            dicomReader.writeMetaData(study);
-            dicomReader.writeMetaData(dicomSeries);
-            GuiExecutor.invokeAndWait(
-                () -> {
-                  Thumbnail thumb = (Thumbnail) dicomSeries.getTagValue(TagW.Thumbnail);
-                  if (thumb != null) {
-                    thumb.repaint();
-                  }
-                  dicomModel.firePropertyChange(
-                      new ObservableEvent(
-                          ObservableEvent.BasicAction.UPDATE_PARENT,
-                          dicomModel,
-                          null,
-                          dicomSeries));
-                });
-          }
+          updateGroups(dicomReader);
         }
       }
+      return complete(tempFile, dicomReader);
+    }
+
+    private void updateGroups(DicomMediaIO dicomReader) {
+      if (dicomReader.isReadableDicom() && dicomSeries.size(null) == 0) {
+        // Override the group (patient, study and series) by the dicom fields except the UID of
+        // the group
+        MediaSeriesGroup patient = dicomModel.getParent(dicomSeries, DicomModel.patient);
+        dicomReader.writeMetaData(patient);
+        MediaSeriesGroup study = dicomModel.getParent(dicomSeries, DicomModel.study);
+        dicomReader.writeMetaData(study);
+        dicomReader.writeMetaData(dicomSeries);
+        GuiExecutor.invokeAndWait(
+            () -> {
+              Thumbnail thumb = (Thumbnail) dicomSeries.getTagValue(TagW.Thumbnail);
+              if (thumb != null) {
+                thumb.repaint();
+              }
+              dicomModel.firePropertyChange(
+                  new ObservableEvent(
+                      ObservableEvent.BasicAction.UPDATE_PARENT, dicomModel, null, dicomSeries));
+            });
+      }
+    }
 
+    private boolean complete(File tempFile, DicomMediaIO dicomReader) {
       // Change status to complete if this point was reached because downloading has finished.
       if (status == Status.DOWNLOADING) {
         status = Status.COMPLETE;
@@ -944,6 +1124,7 @@ private boolean process() throws IOException, URISyntaxException {
             GuiExecutor.invokeAndWait(() -> updateUI(reader));
           } else if (reading == Reading.ERROR) {
             errors.incrementAndGet();
+            DownloadCache.getInstance().remove(sopInstanceUID, getCacheVariant());
           }
         }
       }
@@ -975,18 +1156,10 @@ private int downloadInFileCache(HttpResponse response, File tempFile) throws IOE
                 }
               };
 
-          if (response instanceof ClosableURLConnection urlConnection) {
-            Multipart.parseMultipartRelated(
-                urlConnection.getUrlConnection().getContentType(),
-                response.getInputStream(),
-                handler);
-          } else {
-            AuthResponse authResponse = (AuthResponse) response;
-            Multipart.parseMultipartRelated(
-                authResponse.getResponse().getHeader("Content-Type"), // NON-NLS
-                response.getInputStream(),
-                handler);
-          }
+          Multipart.parseMultipartRelated(
+              response.getHeaderField("Content-Type"), // NON-NLS
+              response.getInputStream(),
+              handler);
           bytesTransferred = readBytes[0];
         } else {
           bytesTransferred =
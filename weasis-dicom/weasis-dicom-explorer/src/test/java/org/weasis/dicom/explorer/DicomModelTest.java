@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.explorer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Objects;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.weasis.core.api.explorer.model.TreeModelNode;
+import org.weasis.core.api.media.data.MediaSeriesGroup;
+import org.weasis.core.api.media.data.MediaSeriesGroupNode;
+import org.weasis.core.api.media.data.TagW;
+
+class DicomModelTest {
+
+  private DicomModel model;
+  private MediaSeriesGroup patient;
+  private MediaSeriesGroup study;
+  private MediaSeriesGroup series;
+
+  /** Node whose identifier can change after being added to the model */
+  static class MutableNode extends MediaSeriesGroupNode {
+    private Object id;
+
+    MutableNode(TreeModelNode level, Object id) {
+      super(level.tagElement(), id, level.tagView());
+      this.id = id;
+    }
+
+    void setId(Object id) {
+      this.id = id;
+    }
+
+    @Override
+    public Object getTagValue(TagW tag) {
+      return Objects.equals(tag, getTagID()) ? id : super.getTagValue(tag);
+    }
+
+    @Override
+    public boolean matchIdValue(Object valueID) {
+      return Objects.equals(id, valueID);
+    }
+  }
+
+  private static MediaSeriesGroup node(TreeModelNode level, String id) {
+    return new MediaSeriesGroupNode(level.tagElement(), id, level.tagView());
+  }
+
+  @BeforeEach
+  void buildModel() {
+    model = new DicomModel();
+    patient = node(DicomModel.patient, "P1"); // NON-NLS
+    study = node(DicomModel.study, "1.2.1"); // NON-NLS
+    series = node(DicomModel.series, "1.2.1.1"); // NON-NLS
+    model.addHierarchyNode(MediaSeriesGroupNode.rootNode, patient);
+    model.addHierarchyNode(patient, study);
+    model.addHierarchyNode(study, series);
+  }
+
+  @AfterEach
+  void disposeModel() {
+    model.dispose();
+  }
+
+  @Test
+  void indexedLookup() {
+    assertSame(patient, model.getHierarchyNode(MediaSeriesGroupNode.rootNode, "P1")); // NON-NLS
+    assertSame(study, model.getHierarchyNode(patient, "1.2.1")); // NON-NLS
+    assertSame(series, model.getHierarchyNode(study, "1.2.1.1")); // NON-NLS
+    assertSame(study, model.getStudyNode("1.2.1")); // NON-NLS
+    assertSame(series, model.getSeriesNode("1.2.1.1")); // NON-NLS
+
+    assertNull(model.getHierarchyNode(patient, "1.2.2")); // NON-NLS
+    assertNull(model.getStudyNode("1.2.2")); // NON-NLS
+    assertNull(model.getSeriesNode("1.2.1.2")); // NON-NLS
+    assertNull(model.getHierarchyNode(null, "1.2.1")); // NON-NLS
+    assertNull(model.getHierarchyNode(patient, null));
+  }
+
+  @Test
+  void lookupChecksTheParent() {
+    MediaSeriesGroup patient2 = node(DicomModel.patient, "P2"); // NON-NLS
+    MediaSeriesGroup study2 = node(DicomModel.study, "1.2.2"); // NON-NLS
+    model.addHierarchyNode(MediaSeriesGroupNode.rootNode, patient2);
+    model.addHierarchyNode(patient2, study2);
+
+    assertSame(study2, model.getHierarchyNode(patient2, "1.2.2")); // NON-NLS
+    // Indexed but not a child of this patient
+    assertNull(model.getHierarchyNode(patient, "1.2.2")); // NON-NLS
+    assertNull(model.getHierarchyNode(patient2, "1.2.1")); // NON-NLS
+    assertNull(model.getHierarchyNode(study2, "1.2.1.1")); // NON-NLS
+  }
+
+  @Test
+  void sameUidUnderSeveralParents() {
+    // Same study under two patients (e.g. inconsistent patient attributes)
+    MediaSeriesGroup patient2 = node(DicomModel.patient, "P2"); // NON-NLS
+    MediaSeriesGroup study2 = node(DicomModel.study, "1.2.1"); // NON-NLS
+    model.addHierarchyNode(MediaSeriesGroupNode.rootNode, patient2);
+    model.addHierarchyNode(patient2, study2);
+
+    // Each patient returns its existing child, whatever the last indexed node
+    for (int i = 0; i < 2; i++) {
+      assertSame(study, model.getHierarchyNode(patient, "1.2.1")); // NON-NLS
+      assertSame(study2, model.getHierarchyNode(patient2, "1.2.1")); // NON-NLS
+    }
+    assertNotNull(model.getStudyNode("1.2.1")); // NON-NLS
+
+    // The other node remains indexed after removing one of them
+    model.removeHierarchyNode(patient2, study2);
+    assertSame(study, model.getStudyNode("1.2.1")); // NON-NLS
+    assertSame(study, model.getHierarchyNode(patient, "1.2.1")); // NON-NLS
+    assertNull(model.getHierarchyNode(patient2, "1.2.1")); // NON-NLS
+  }
+
+  @Test
+  void removeUnindexesTheDescendants() {
+    model.removeHierarchyNode(MediaSeriesGroupNode.rootNode, patient);
+    assertNull(model.getHierarchyNode(MediaSeriesGroupNode.rootNode, "P1")); // NON-NLS
+    assertNull(model.getStudyNode("1.2.1")); // NON-NLS
+    assertNull(model.getSeriesNode("1.2.1.1")); // NON-NLS
+
+    // A node with the same identifier can be added again
+    MediaSeriesGroup study2 = node(DicomModel.study, "1.2.1"); // NON-NLS
+    model.addHierarchyNode(patient, study2);
+    assertSame(study2, model.getStudyNode("1.2.1")); // NON-NLS
+    assertSame(study2, model.getHierarchyNode(patient, "1.2.1")); // NON-NLS
+  }
+
+  @Test
+  void moveToAnotherParent() {
+    MediaSeriesGroup study2 = node(DicomModel.study, "1.2.2"); // NON-NLS
+    model.addHierarchyNode(patient, study2);
+    model.removeHierarchyNode(study, series);
+    model.addHierarchyNode(study2, series);
+
+    assertSame(series, model.getSeriesNode("1.2.1.1")); // NON-NLS
+    assertSame(series, model.getHierarchyNode(study2, "1.2.1.1")); // NON-NLS
+    assertNull(model.getHierarchyNode(study, "1.2.1.1")); // NON-NLS
+  }
+
+  @Test
+  void staleKey() {
+    MutableNode study2 = new MutableNode(DicomModel.study, "1.2.2"); // NON-NLS
+    model.addHierarchyNode(patient, study2);
+    study2.setId("1.2.3"); // NON-NLS
+
+    // The old key does not return a node with another identifier
+    assertNull(model.getStudyNode("1.2.2")); // NON-NLS
+    assertNull(model.getHierarchyNode(patient, "1.2.2")); // NON-NLS
+    // The node is indexed again with its new identifier
+    assertSame(study2, model.getStudyNode("1.2.3")); // NON-NLS
+    assertSame(study2, model.getHierarchyNode(patient, "1.2.3")); // NON-NLS
+
+    // Remove a node whose identifier has changed since it has been indexed
+    study2.setId("1.2.4"); // NON-NLS
+    model.removeHierarchyNode(patient, study2);
+    assertNull(model.getStudyNode("1.2.3")); // NON-NLS
+    assertNull(model.getStudyNode("1.2.4")); // NON-NLS
+    assertSame(study, model.getStudyNode("1.2.1")); // NON-NLS
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.explorer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ZipExportSinkTest {
+
+  @TempDir Path tempDir;
+
+  private static Map<String, byte[]> readArchive(File file) throws IOException {
+    Map<String, byte[]> content = new HashMap<>();
+    try (ZipFile zip = new ZipFile(file)) {
+      for (ZipEntry entry : zip.stream().toList()) {
+        try (var in = zip.getInputStream(entry)) {
+          assertNull(content.put(entry.getName(), in.readAllBytes()), entry.getName());
+        }
+      }
+    }
+    return content;
+  }
+
+  @Test
+  void parallelEntries() throws Exception {
+    Random random = new Random(3L);
+    Map<String, byte[]> expected = new HashMap<>();
+    List<File> sources = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      // Compressible and random (not compressible) contents
+      byte[] data;
+      if (i % 2 == 0) {
+        data = ("instance " + i + " ").repeat(200 * i + 1).getBytes(StandardCharsets.UTF_8);
+      } else {
+        data = new byte[1000 * i];
+        random.nextBytes(data);
+      }
+      File source = tempDir.resolve("src" + i).toFile(); // NON-NLS
+      Files.write(source.toPath(), data);
+      sources.add(source);
+      expected.put("STUDY/SERIES/" + i, data); // NON-NLS
+    }
+
+    File zipFile = tempDir.resolve("export.zip").toFile(); // NON-NLS
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try (ZipExportSink sink = new ZipExportSink(zipFile)) {
+      List<Future<?>> results = new ArrayList<>();
+      for (int i = 0; i < sources.size(); i++) {
+        File source = sources.get(i);
+        String path = "STUDY" + File.separator + "SERIES" + File.separator + i; // NON-NLS
+        boolean compressible = i % 3 != 0;
+        // A duplicated entry is ignored
+        for (int k = 0; k < 2; k++) {
+          results.add(
+              executor.submit(
+                  () -> {
+                    sink.add(source, path, compressible);
+                    return null;
+                  }));
+        }
+      }
+      for (Future<?> result : results) {
+        result.get();
+      }
+
+      // File written in the folder of the sink, added when closing
+      File dicomdir = new File(sink.getDirectory(), "DICOMDIR"); // NON-NLS
+      Files.writeString(dicomdir.toPath(), "DICOMDIR content"); // NON-NLS
+      expected.put("DICOMDIR", "DICOMDIR content".getBytes(StandardCharsets.UTF_8)); // NON-NLS
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Map<String, byte[]> content = readArchive(zipFile);
+    assertEquals(expected.keySet(), content.keySet());
+    for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+      assertArrayEquals(entry.getValue(), content.get(entry.getKey()), entry.getKey());
+    }
+    // The external files are not removed
+    sources.forEach(f -> assertTrue(f.exists()));
+  }
+
+  @Test
+  void emptyArchive() throws IOException {
+    File zipFile = tempDir.resolve("empty.zip").toFile(); // NON-NLS
+    File directory;
+    try (ZipExportSink sink = new ZipExportSink(zipFile)) {
+      directory = sink.getDirectory();
+    }
+    assertTrue(readArchive(zipFile).isEmpty());
+    assertFalse(directory.exists());
+  }
+}
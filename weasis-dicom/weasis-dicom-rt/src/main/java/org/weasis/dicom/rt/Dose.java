@@ -11,12 +11,12 @@
 
 import static org.opencv.core.Core.addWeighted;
 import static org.opencv.core.Core.minMaxLoc;
-import static org.opencv.core.Core.multiply;
 
 import java.awt.*;
 import java.awt.geom.Point2D;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.DoubleStream;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Sequence;
@@ -36,6 +36,7 @@
 import org.weasis.dicom.codec.*;
 import org.weasis.dicom.codec.geometry.GeometryOfSlice;
 import org.weasis.opencv.data.ImageCV;
+import org.weasis.opencv.data.PlanarImage;
 import org.weasis.opencv.op.ImageConversion;
 import org.weasis.opencv.seg.Segment;
 
@@ -56,6 +57,8 @@ public class Dose extends RtSpecialElement implements SpecialElementRegion {
   private final String doseType;
   private final String doseSummationType;
   private final double[] gridFrameOffsetVector;
+  // Z coordinate (in patient coordinates) of each dose plane
+  private final double[] dosePlanesZ;
   private final double doseGridScaling;
   private double doseMax;
 
@@ -64,7 +67,11 @@ public class Dose extends RtSpecialElement implements SpecialElementRegion {
 
   private final Map<Integer, IsoDoseRegion> isoDoseSet = new LinkedHashMap<>();
 
-  private final Map<Integer, Dvh> dvhMap = new HashMap<>();
+  // Computed concurrently for each structure
+  private final Map<Integer, Dvh> dvhMap = new ConcurrentHashMap<>();
+
+  // Dose planes in cGy shared by the DVH computation of all the structures
+  private final Map<Double, Mat> scaledDosePlanes = new ConcurrentHashMap<>();
 
   // Dose LUTs
   private AbstractMap.SimpleImmutableEntry<double[], double[]> doseMmLUT;
@@ -85,10 +92,24 @@ public Dose(DicomMediaIO mediaIO) {
     this.doseType = dcmItems.getString(Tag.DoseType);
     this.doseSummationType = dcmItems.getString(Tag.DoseSummationType);
     this.gridFrameOffsetVector = dcmItems.getDoubles(Tag.GridFrameOffsetVector);
+    this.dosePlanesZ = buildDosePlanesZ(imagePositionPatient, gridFrameOffsetVector);
     this.doseGridScaling = dcmItems.getDouble(Tag.DoseGridScaling, 0.0);
     initDvh(dcmItems.getSequence(Tag.DVHSequence));
   }
 
+  private static double[] buildDosePlanesZ(double[] position, double[] offsets) {
+    if (position == null || position.length < 3 || offsets == null) {
+      return new double[0];
+    }
+    // Add initial image patient position Z to the offset vector to determine the Z coordinate of
+    // each dose plane
+    double[] z = new double[offsets.length];
+    for (int i = 0; i < z.length; i++) {
+      z[i] = offsets[i] + position[2];
+    }
+    return z;
+  }
+
   private void initDvh(Sequence dvhSeq) {
     if (dvhSeq != null) {
       for (Attributes dvhAttributes : dvhSeq) {
@@ -363,30 +384,32 @@ public void initDoseSet(double rxDose, RtSet rtSet) {
       // 111/255f,
       //           opacity), "", rxDose)));
       Map<String, Set<SegContour>> map = refMap.computeIfAbsent(seriesUID, _ -> new HashMap<>());
+      List<IsoDoseRegion> reverseValues = new ArrayList<>(isoDoseSet.values());
+      Collections.reverse(reverseValues);
+      GeometryOfSlice geometry = rtSet.getPatientImage().getImage().getDispSliceGeometry();
+
+      // Go through whole imaging grid (CT), the slices are processed in parallel and the dose plane
+      // of each slice is computed once for all the levels
+      List<SliceIsoDoses> slices =
+          rtSet.getSeries().copyOfMedias(null, null).parallelStream()
+              .map(image -> buildIsoDoseContours(image, reverseValues, geometry))
+              .toList();
+
       Set<KeyDouble> zSet = new LinkedHashSet<>();
-      // Go through whole imaging grid (CT)
-      for (DicomImageElement image : rtSet.getSeries().getMedias(null, null)) {
+      for (SliceIsoDoses slice : slices) {
+        zSet.add(slice.z());
         Set<SegContour> contours = new LinkedHashSet<>();
-        // Image slice UID and position
-        String sopUID = TagD.getTagValue(image, Tag.SOPInstanceUID, String.class);
-        KeyDouble z = new KeyDouble(image.getSliceGeometry().getTLHC().z);
-
-        List<IsoDoseRegion> reverseValues = new ArrayList<>(isoDoseSet.values());
-        Collections.reverse(reverseValues);
-        for (IsoDoseRegion doseRegion : reverseValues) {
-          zSet.add(z);
-          double isoDoseThreshold = doseRegion.getAbsoluteDose();
-
-          StructContour isoContour = getIsoDoseContour(z, isoDoseThreshold, doseRegion, rtSet);
-          if (isoContour == null) {
-            continue;
+        for (int i = 0; i < reverseValues.size(); i++) {
+          StructContour isoContour = slice.contours().get(i);
+          if (isoContour != null) {
+            reverseValues.get(i).addPixels(isoContour);
+            contours.add(isoContour);
           }
-          contours.add(isoContour);
         }
         if (contours.isEmpty()) {
-          map.remove(sopUID);
+          map.remove(slice.sopUID());
         } else {
-          map.put(sopUID, contours);
+          map.put(slice.sopUID(), contours);
         }
       }
 
@@ -436,89 +459,134 @@ void initPlan(RtSet rtSet) {
   }
 
   public MediaElement getDosePlaneBySlice(double slicePosition) {
-    MediaElement dosePlane = null;
+    PlaneLocation location = locateDosePlane(slicePosition);
+    // The interpolated planes are only available as matrix, see getScaledDosePlane()
+    if (location != null && location.isExact()) {
+      return series.getMedia(location.upper(), null, null);
+    }
+    return null;
+  }
 
+  /**
+   * @param slicePosition the slice position
+   * @return the dose plane at this position or the two closest planes to interpolate, or null if
+   *     the position is outside the dose grid
+   */
+  private PlaneLocation locateDosePlane(double slicePosition) {
     // If dose contains a multi-frame dose pixel array
-    if (this.gridFrameOffsetVector.length > 0) {
+    if (dosePlanesZ.length == 0) {
+      return null;
+    }
 
-      // Initial dose grid position Z (in patient coordinates)
-      double imagePatientPositionZ = this.imagePositionPatient[2];
+    // Check whether the requested plane is within the dose grid boundaries
+    double min = Double.MAX_VALUE;
+    double max = -Double.MAX_VALUE;
+    for (double z : dosePlanesZ) {
+      min = Math.min(min, z);
+      max = Math.max(max, z);
+    }
+    if (slicePosition < min || slicePosition > max) {
+      return null;
+    }
 
-      // Add initial image patient position Z to the offset vector to determine the Z coordinate of
-      // each dose
-      // plane
-      double[] dosePlanesZ = new double[this.gridFrameOffsetVector.length];
-      for (int i = 0; i < dosePlanesZ.length; i++) {
-        dosePlanesZ[i] = this.gridFrameOffsetVector[i] + imagePatientPositionZ;
-      }
+    // Calculate the absolute distance vector between dose planes and requested slice position
+    double[] absoluteDistance = new double[dosePlanesZ.length];
+    for (int i = 0; i < absoluteDistance.length; i++) {
+      absoluteDistance[i] = Math.abs(dosePlanesZ[i] - slicePosition);
+    }
 
-      // Check whether the requested plane is within the dose grid boundaries
-      if (Arrays.stream(dosePlanesZ).min().getAsDouble() <= slicePosition
-          && slicePosition <= Arrays.stream(dosePlanesZ).max().getAsDouble()) {
+    // Check to see if the requested plane exists in the array (or is close enough)
+    double minDistance = Arrays.stream(absoluteDistance).min().getAsDouble();
+    // First minimum distance - upper boundary
+    int upperBoundaryIndex = firstIndexOf(absoluteDistance, minDistance, 0.001);
+    if (minDistance < this.doseSlicePositionThreshold || dosePlanesZ.length < 2) {
+      return new PlaneLocation(upperBoundaryIndex, -1, 1.0);
+    }
 
-        // Calculate the absolute distance vector between dose planes and requested slice position
-        double[] absoluteDistance = new double[dosePlanesZ.length];
-        for (int i = 0; i < absoluteDistance.length; i++) {
-          absoluteDistance[i] = Math.abs(dosePlanesZ[i] - slicePosition);
-        }
+    // There is no dose plane for such slice position, so interpolate between planes
+    // Prepare modified absolute distance vector to find the second minimum
+    double[] modifiedAbsoluteDistance = Arrays.copyOf(absoluteDistance, absoluteDistance.length);
+    modifiedAbsoluteDistance[upperBoundaryIndex] =
+        Arrays.stream(absoluteDistance).max().getAsDouble();
 
-        // Check to see if the requested plane exists in the array (or is close enough)
-        int doseSlicePosition = -1;
-        double minDistance = Arrays.stream(absoluteDistance).min().getAsDouble();
-        if (minDistance < this.doseSlicePositionThreshold) {
-          doseSlicePosition = firstIndexOf(absoluteDistance, minDistance, 0.001);
-        }
+    // Second minimum distance - lower boundary
+    minDistance = Arrays.stream(modifiedAbsoluteDistance).min().getAsDouble();
+    int lowerBoundaryIndex = firstIndexOf(modifiedAbsoluteDistance, minDistance, 0.001);
 
-        // Dose slice position found return the plane
-        if (doseSlicePosition != -1) {
-          dosePlane = series.getMedia(doseSlicePosition, null, null);
-        }
-        // There is no dose plane for such slice position, so interpolate between planes
-        else {
-
-          // First minimum distance - upper boundary
-          int upperBoundaryIndex = firstIndexOf(absoluteDistance, minDistance, 0.001);
-
-          // Prepare modified absolute distance vector to find the second minimum
-          double[] modifiedAbsoluteDistance =
-              Arrays.copyOf(absoluteDistance, absoluteDistance.length);
-          modifiedAbsoluteDistance[upperBoundaryIndex] =
-              Arrays.stream(absoluteDistance).max().getAsDouble();
-
-          // Second minimum distance - lower boundary
-          minDistance = Arrays.stream(modifiedAbsoluteDistance).min().getAsDouble();
-          int lowerBoundaryIndex = firstIndexOf(modifiedAbsoluteDistance, minDistance, 0.001);
-
-          // Fractional distance of dose plane between upper and lower boundary (from bottom to top)
-          // E.g. if = 1, the plane is at the upper plane, = 0, it is at the lower plane.
-          double fractionalDistance =
-              (slicePosition - dosePlanesZ[lowerBoundaryIndex])
-                  / (dosePlanesZ[upperBoundaryIndex] - dosePlanesZ[lowerBoundaryIndex]);
-
-          dosePlane =
-              this.interpolateDosePlanes(
-                  upperBoundaryIndex, lowerBoundaryIndex, fractionalDistance);
-        }
-      }
+    // Fractional distance of dose plane between upper and lower boundary (from bottom to top)
+    // E.g. if = 1, the plane is at the upper plane, = 0, it is at the lower plane.
+    double fractionalDistance =
+        (slicePosition - dosePlanesZ[lowerBoundaryIndex])
+            / (dosePlanesZ[upperBoundaryIndex] - dosePlanesZ[lowerBoundaryIndex]);
+    return new PlaneLocation(upperBoundaryIndex, lowerBoundaryIndex, fractionalDistance);
+  }
+
+  private record PlaneLocation(int upper, int lower, double fraction) {
+    boolean isExact() {
+      return lower < 0;
     }
+  }
 
-    return dosePlane;
+  /**
+   * Get the dose plane in cGy. The plane is computed once (including the interpolation between
+   * the dose frames) and kept until {@link #releaseScaledDosePlanes()}.
+   *
+   * @param slicePosition the slice position
+   * @return the dose plane (CV_32FC1) or null if there is no dose plane at this position
+   */
+  public Mat getScaledDosePlane(double slicePosition) {
+    return scaledDosePlanes.computeIfAbsent(slicePosition, this::buildScaledDosePlane);
   }
 
-  public Mat getMaskedDosePlaneHist(double slicePosition, Mat mask, int maxDose) {
+  private Mat buildScaledDosePlane(double slicePosition) {
+    PlaneLocation location = locateDosePlane(slicePosition);
+    if (location == null) {
+      return null;
+    }
+    Mat upperPlane = getDoseFrame(location.upper());
+    if (upperPlane == null) {
+      return null;
+    }
+    double scaling = this.doseGridScaling * 100;
+    Mat doseMatrix = new Mat();
+    if (location.isExact()) {
+      // Convert and scale in one pass
+      upperPlane.convertTo(doseMatrix, CvType.CV_32FC1, scaling);
+    } else {
+      Mat lowerPlane = getDoseFrame(location.lower());
+      if (lowerPlane == null) {
+        return null;
+      }
+      // A simple linear interpolation (lerp)
+      double fraction = location.fraction();
+      addWeighted(
+          lowerPlane,
+          scaling * (1.0 - fraction),
+          upperPlane,
+          scaling * fraction,
+          0.0,
+          doseMatrix,
+          CvType.CV_32F);
+    }
+    return doseMatrix;
+  }
 
-    DicomImageElement dosePlane = (DicomImageElement) this.getDosePlaneBySlice(slicePosition);
+  private Mat getDoseFrame(int index) {
+    DicomImageElement frame = series.getMedia(index, null, null);
+    PlanarImage image = frame == null ? null : frame.getImage();
+    return image == null ? null : image.toMat();
+  }
 
-    int rows = dosePlane.getImage().toMat().rows();
-    int cols = dosePlane.getImage().toMat().cols();
+  public void releaseScaledDosePlanes() {
+    scaledDosePlanes.values().forEach(ImageConversion::releaseMat);
+    scaledDosePlanes.clear();
+  }
 
-    // Calculate dose matrix for OpenCV
-    Mat src = new Mat(rows, cols, CvType.CV_32FC1);
-    dosePlane.getImage().toMat().convertTo(src, CvType.CV_32FC1);
-    Scalar scalar = new Scalar(this.doseGridScaling * 100);
-    Mat doseMatrix = new Mat(rows, cols, CvType.CV_32FC1);
-    multiply(src, scalar, doseMatrix);
-    ImageConversion.releaseMat(src);
+  public Mat getMaskedDosePlaneHist(double slicePosition, Mat mask, int maxDose) {
+    Mat doseMatrix = getScaledDosePlane(slicePosition);
+    if (doseMatrix == null) {
+      return null;
+    }
     List<Mat> doseMatrixVector = new ArrayList<>();
     doseMatrixVector.add(doseMatrix);
 
@@ -532,39 +600,73 @@ public Mat getMaskedDosePlaneHist(double slicePosition, Mat mask, int maxDose) {
     MatOfInt channels = new MatOfInt(0);
 
     // Ned to change the structure dose mask type vor OpenCV histogram calculation
-    Mat maskSrc = new Mat(mask.rows(), mask.cols(), CvType.CV_8U);
-    mask.convertTo(maskSrc, CvType.CV_8U);
+    Mat maskSrc = mask;
+    if (mask.type() != CvType.CV_8U) {
+      maskSrc = new Mat(mask.rows(), mask.cols(), CvType.CV_8U);
+      mask.convertTo(maskSrc, CvType.CV_8U);
+    }
 
     Imgproc.calcHist(doseMatrixVector, channels, maskSrc, hist, histSize, histRange);
-    ImageConversion.releaseMat(maskSrc);
-    ImageConversion.releaseMat(doseMatrix);
+    if (maskSrc != mask) {
+      ImageConversion.releaseMat(maskSrc);
+    }
     return hist;
   }
 
   public StructContour getIsoDoseContour(
       KeyDouble slicePosition, double isoDoseThreshold, IsoDoseRegion region, RtSet rtSet) {
-    if (region.getMeasurableLayer() == null) {
-      //  region.setMeasurableLayer(getMeasurableLayer(img, contour));
+    Mat dosePlane = getScaledDosePlane(slicePosition.getValue());
+    if (dosePlane == null) {
+      return null;
     }
+    GeometryOfSlice geometry = rtSet.getPatientImage().getImage().getDispSliceGeometry();
+    StructContour segContour =
+        buildIsoDoseContour(slicePosition, dosePlane, isoDoseThreshold, region, geometry);
+    if (segContour != null) {
+      region.addPixels(segContour);
+    }
+    return segContour;
+  }
 
-    // Convert from threshold in cCy to raw pixel value threshold
-    double rawThreshold = (isoDoseThreshold / 100) / this.doseGridScaling;
-    DicomImageElement dosePlane =
-        (DicomImageElement) this.getDosePlaneBySlice(slicePosition.getValue());
-
-    int rows = dosePlane.getImage().toMat().rows();
-    int cols = dosePlane.getImage().toMat().cols();
-
-    Mat src = new Mat(rows, cols, CvType.CV_32FC1);
-    Mat thr = new Mat(rows, cols, CvType.CV_32FC1);
+  private SliceIsoDoses buildIsoDoseContours(
+      DicomImageElement image, List<IsoDoseRegion> regions, GeometryOfSlice geometry) {
+    // Image slice UID and position
+    String sopUID = TagD.getTagValue(image, Tag.SOPInstanceUID, String.class);
+    KeyDouble z = new KeyDouble(image.getSliceGeometry().getTLHC().z);
+    List<StructContour> contours = new ArrayList<>(regions.size());
+    Mat dosePlane = getScaledDosePlane(z.getValue());
+    double maxDose = dosePlane == null ? 0.0 : minMaxLoc(dosePlane).maxVal;
+    for (IsoDoseRegion doseRegion : regions) {
+      double isoDoseThreshold = doseRegion.getAbsoluteDose();
+      // No contour above the maximum dose of the plane
+      if (dosePlane == null || maxDose <= isoDoseThreshold) {
+        contours.add(null);
+      } else {
+        contours.add(buildIsoDoseContour(z, dosePlane, isoDoseThreshold, doseRegion, geometry));
+      }
+    }
+    return new SliceIsoDoses(sopUID, z, contours);
+  }
 
-    dosePlane.getImage().toMat().convertTo(src, CvType.CV_32FC1);
+  /**
+   * @param contours the contour of each level (null when there is no contour)
+   */
+  private record SliceIsoDoses(String sopUID, KeyDouble z, List<StructContour> contours) {}
+
+  private StructContour buildIsoDoseContour(
+      KeyDouble slicePosition,
+      Mat dosePlane,
+      double isoDoseThreshold,
+      IsoDoseRegion region,
+      GeometryOfSlice geometry) {
+    Vector3d voxelSpacing = geometry.getVoxelSpacing();
+    if (voxelSpacing.x < 0.00001 || voxelSpacing.y < 0.00001) {
+      return null;
+    }
 
-    Imgproc.threshold(src, thr, rawThreshold, 255, Imgproc.THRESH_BINARY);
-    ImageConversion.releaseMat(src);
-    Mat thrSrc = new Mat(rows, cols, CvType.CV_8U);
-    thr.convertTo(thrSrc, CvType.CV_8U);
-    ImageConversion.releaseMat(thr);
+    // The dose plane and the threshold are in cGy
+    Mat thrSrc = new Mat();
+    Core.compare(dosePlane, new Scalar(isoDoseThreshold), thrSrc, Core.CMP_GT);
 
     List<Segment> segmentList = SegContour.buildSegmentList(ImageCV.toImageCV(thrSrc));
     if (segmentList.isEmpty()) {
@@ -575,19 +677,12 @@ public StructContour getIsoDoseContour(
     int nbPixels = Core.countNonZero(thrSrc);
     ImageConversion.releaseMat(thrSrc);
 
-    GeometryOfSlice geometry = rtSet.getPatientImage().getImage().getDispSliceGeometry();
-    Vector3d voxelSpacing = geometry.getVoxelSpacing();
-    if (voxelSpacing.x < 0.00001 || voxelSpacing.y < 0.00001) {
-      return null;
-    }
-
     double z = slicePosition.getValue();
     transformGeometry(geometry, z, segmentList);
 
     StructContour segContour =
         new StructContour(String.valueOf(slicePosition.getKey()), segmentList, nbPixels);
     segContour.setPositionZ(z);
-    region.addPixels(segContour);
     segContour.setAttributes(region);
     return segContour;
   }
@@ -638,28 +733,6 @@ public void initialiseDoseGridToImageGrid(Image patientImage) {
     this.dosePixLUT = new AbstractMap.SimpleImmutableEntry<>(x, y);
   }
 
-  private MediaElement interpolateDosePlanes(
-      int upperBoundaryIndex, int lowerBoundaryIndex, double fractionalDistance) {
-    MediaElement dosePlane = null;
-
-    DicomImageElement upperPlane = series.getMedia(upperBoundaryIndex, null, null);
-    DicomImageElement lowerPlane = series.getMedia(lowerBoundaryIndex, null, null);
-
-    // A simple linear interpolation (lerp)
-    Mat dosePlaneMat = new Mat();
-    addWeighted(
-        lowerPlane.getImage().toMat(),
-        1.0 - fractionalDistance,
-        upperPlane.getImage().toMat(),
-        fractionalDistance,
-        0.0,
-        dosePlaneMat);
-
-    // TODO: dosePlaneMat should be an image for new dosePlane MediaElement
-
-    return dosePlane;
-  }
-
   private static int firstIndexOf(double[] array, double valueToFind, double tolerance) {
     for (int i = 0; i < array.length; i++) {
       if (Math.abs(array[i] - valueToFind) < tolerance) {
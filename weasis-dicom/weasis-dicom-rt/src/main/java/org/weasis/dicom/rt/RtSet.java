@@ -9,11 +9,9 @@
  */
 package org.weasis.dicom.rt;
 
-import static org.opencv.core.Core.add;
-import static org.opencv.core.Core.multiply;
-
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -28,10 +26,6 @@
 import org.joml.Vector3d;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfPoint2f;
-import org.opencv.core.Point;
-import org.opencv.core.Scalar;
-import org.opencv.imgproc.Imgproc;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.weasis.core.api.media.data.MediaElement;
@@ -41,6 +35,7 @@
 import org.weasis.core.util.StringUtil;
 import org.weasis.dicom.codec.DicomImageElement;
 import org.weasis.dicom.codec.DicomSeries;
+import org.weasis.opencv.op.ImageConversion;
 
 /**
  * RtSet is a collection of linked DICOM-RT entities that form the whole treatment case (Plans,
@@ -123,8 +118,12 @@ public void reloadRtCase(boolean forceRecalculateDvh) {
         // Re-init DVHs
         for (Dose dose : plan.getDoses()) {
           if (dose.getDoseMax() > 0) {
-            getFirstStructure().getSegAttributes().values().parallelStream()
-                .forEach(region -> computeDvh(plan, dose, region));
+            try {
+              getFirstStructure().getSegAttributes().values().parallelStream()
+                  .forEach(region -> computeDvh(plan, dose, region));
+            } finally {
+              dose.releaseScaledDosePlanes();
+            }
           }
         }
       }
@@ -396,7 +395,7 @@ public Dvh initCalculatedDvh(StructRegion region, Dose dose) {
     dvh.setDvhDoseScaling(1.0);
 
     // Calculate differential DVH
-    Mat difHistogram = calculateDifferentialDvh(region, dose);
+    double[] difHistogram = calculateDifferentialDvh(region, dose);
 
     // Convert differential DVH to cumulative DVH
     double[] cumHistogram = convertDifferentialToCumulativeDvh(difHistogram);
@@ -406,90 +405,88 @@ public Dvh initCalculatedDvh(StructRegion region, Dose dose) {
     return dvh;
   }
 
-  private Mat calculateDifferentialDvh(StructRegion region, Dose dose) {
+  private double[] calculateDifferentialDvh(StructRegion region, Dose dose) {
     if (region.getPlanes() == null || region.getPlanes().isEmpty()) {
       return null;
     }
     DicomImageElement doseImage = dose.getSeries().getMedia(MEDIA_POSITION.FIRST, null, null);
     Vector3d doseImageSpacing = doseImage.getSliceGeometry().getVoxelSpacing();
-    double maxDose = dose.getDoseMax() * dose.getDoseGridScaling() * 100;
-
-    double volume = 0.0;
-
-    // Prepare empty histogram (vector of bins in cGy) for structure
-    Mat histogram = new Mat((int) maxDose, 1, CvType.CV_32FC1, new Scalar(0.0));
-
-    // Go through all structure plane slices
-    for (Entry<KeyDouble, List<StructContour>> entry : region.getPlanes().entrySet()) {
-      KeyDouble z = entry.getKey();
-
-      // Calculate the area for each contour in the current plane
-      AbstractMap.SimpleImmutableEntry<Integer, Double> maxContour =
-          region.calculateLargestContour(entry.getValue());
-      int maxContourIndex = maxContour.getKey();
-
-      // If dose plane does not exist for z, continue with next plane
-      MediaElement dosePlane = dose.getDosePlaneBySlice(z.getValue());
-      if (dosePlane == null) {
-        continue;
-      }
-
-      // Calculate histogram for each contour on the plane
-      for (int c = 0; c < entry.getValue().size(); c++) {
-
-        SegContour contour = entry.getValue().get(c);
+    int maxDose = (int) (dose.getDoseMax() * dose.getDoseGridScaling() * 100);
+    if (maxDose < 1) {
+      return null;
+    }
 
-        Mat contourMask = calculateContourMask(dose.getDoseMmLUT(), contour);
-        Mat hist = dose.getMaskedDosePlaneHist(z.getValue(), contourMask, (int) maxDose);
+    // Histogram (vector of bins in cGy) of the voxels in the structure, the planes are computed in
+    // parallel and the dose planes are shared by all the structures
+    double[] histogram =
+        region.getPlanes().entrySet().parallelStream()
+            .map(entry -> calculatePlaneHistogram(region, dose, entry, maxDose))
+            .filter(Objects::nonNull)
+            .reduce(
+                new double[maxDose],
+                (h1, h2) -> {
+                  double[] sum = new double[maxDose];
+                  for (int i = 0; i < maxDose; i++) {
+                    sum[i] = h1[i] + h2[i];
+                  }
+                  return sum;
+                });
+
+    // Rescale the histogram to reflect the volume in cm^3
+    double voxelVolume =
+        doseImageSpacing.x * doseImageSpacing.y * region.getThickness() / 1000.0;
+    for (int i = 0; i < histogram.length; i++) {
+      histogram[i] *= voxelVolume;
+    }
 
-        double vol = 0;
-        for (int i = 0; i < hist.rows(); i++) {
-          vol +=
-              hist.get(i, 0)[0] * (doseImageSpacing.x * doseImageSpacing.y * region.getThickness());
-        }
+    // TODO: Remove the zero bins from the end of histogram
 
-        // If this is the largest contour
-        if (c == maxContourIndex) {
-          volume += vol;
-          add(histogram, hist, histogram);
-        }
-        // TODO: Otherwise add or subtract depending on contour location
-        else {
+    return histogram;
+  }
 
-        }
-      }
+  private double[] calculatePlaneHistogram(
+      StructRegion region, Dose dose, Entry<KeyDouble, List<StructContour>> entry, int maxDose) {
+    List<StructContour> contours = entry.getValue();
+    if (contours == null || contours.isEmpty()) {
+      return null;
     }
-
-    // Volume units are given in cm^3
-    volume /= 1000;
-
-    // Rescale the histogram to reflect the total volume
-    double sumHistogram = 0.0;
-    for (int i = 0; i < histogram.rows(); i++) {
-      sumHistogram += histogram.get(i, 0)[0];
+    // If dose plane does not exist for z, continue with next plane
+    double z = entry.getKey().getValue();
+    if (dose.getScaledDosePlane(z) == null) {
+      return null;
     }
-    Scalar scalar = new Scalar(volume / (sumHistogram == 0.0 ? 1.0 : sumHistogram));
-    multiply(histogram, scalar, histogram);
 
-    // TODO: Remove the zero bins from the end of histogram
+    // Only the largest contour is taken into account
+    // TODO: Otherwise add or subtract depending on contour location
+    int maxContourIndex = region.calculateLargestContour(contours).getKey();
+    Mat contourMask = calculateContourMask(dose.getDoseMmLUT(), contours.get(maxContourIndex));
+    Mat hist = dose.getMaskedDosePlaneHist(z, contourMask, maxDose);
+    ImageConversion.releaseMat(contourMask);
+    if (hist == null) {
+      return null;
+    }
+    float[] values = new float[maxDose];
+    hist.get(0, 0, values);
+    ImageConversion.releaseMat(hist);
 
+    double[] histogram = new double[maxDose];
+    for (int i = 0; i < maxDose; i++) {
+      histogram[i] = values[i];
+    }
     return histogram;
   }
 
-  private double[] convertDifferentialToCumulativeDvh(Mat difHistogram) {
+  private double[] convertDifferentialToCumulativeDvh(double[] difHistogram) {
     if (difHistogram == null) {
       return new double[0];
     }
-    int size = difHistogram.rows();
-    double[] cumDvh = new double[size];
-
-    for (int i = 0; i < size; i++) {
-      cumDvh[i] = 0;
-      for (int j = i; j < size; j++) {
-        cumDvh[i] += difHistogram.get(j, 0)[0];
-      }
+    // Suffix sum: volume receiving at least the dose of each bin
+    double[] cumDvh = new double[difHistogram.length];
+    double sum = 0.0;
+    for (int i = difHistogram.length - 1; i >= 0; i--) {
+      sum += difHistogram[i];
+      cumDvh[i] = sum;
     }
-
     return cumDvh;
   }
 
@@ -582,37 +579,64 @@ private double[][] multiplyMatrix(double[][] rotation, double[][] data) {
   private Mat calculateContourMask(
       AbstractMap.SimpleImmutableEntry<double[], double[]> doseMmLUT, SegContour contour) {
 
-    int cols = doseMmLUT.getKey().length;
-    int rows = doseMmLUT.getValue().length;
+    double[] lutX = doseMmLUT.getKey();
+    double[] lutY = doseMmLUT.getValue();
+    int cols = lutX.length;
+    int rows = lutY.length;
+    byte[] mask = new byte[rows * cols];
 
-    List<Point> list = new ArrayList<>();
+    double[] points = null;
     if (contour instanceof StructContour structContour) {
-      double[] points = structContour.getPoints();
-      if (points != null && points.length % 3 == 0 && points.length > 1) {
-        for (int i = 0; i < points.length; i = i + 3) {
-          list.add(new Point(points[i], points[i + 1]));
-        }
-      }
+      points = structContour.getPoints();
     }
-    MatOfPoint2f mop = new MatOfPoint2f();
-    mop.fromList(list);
-
-    Mat binaryMask = new Mat(rows, cols, CvType.CV_32FC1);
-
-    for (int i = 0; i < rows; i++) {
-      for (int j = 0; j < cols; j++) {
-        double distance =
-            Imgproc.pointPolygonTest(
-                mop, new Point(doseMmLUT.getKey()[j], doseMmLUT.getValue()[i]), false);
-        // TODO: Include the border line as well?
-        if (distance > 0) {
-          binaryMask.put(i, j, 255);
-        } else {
-          binaryMask.put(i, j, 0);
+    if (points != null && points.length % 3 == 0 && points.length > 3) {
+      int n = points.length / 3;
+      double minY = Double.MAX_VALUE;
+      double maxY = -Double.MAX_VALUE;
+      for (int k = 0; k < n; k++) {
+        minY = Math.min(minY, points[k * 3 + 1]);
+        maxY = Math.max(maxY, points[k * 3 + 1]);
+      }
+
+      // Scanline: a pixel center is strictly inside the polygon when the number of edge crossings
+      // on its left is odd
+      double[] crossings = new double[n];
+      for (int i = 0; i < rows; i++) {
+        double y = lutY[i];
+        if (y <= minY || y >= maxY) {
+          continue;
+        }
+        int nb = 0;
+        for (int k = 0, prev = n - 1; k < n; prev = k++) {
+          double y1 = points[prev * 3 + 1];
+          double y2 = points[k * 3 + 1];
+          if ((y1 > y) != (y2 > y)) {
+            double x1 = points[prev * 3];
+            double x2 = points[k * 3];
+            crossings[nb++] = x1 + (y - y1) * (x2 - x1) / (y2 - y1);
+          }
+        }
+        if (nb < 2) {
+          continue;
+        }
+        Arrays.sort(crossings, 0, nb);
+        int offset = i * cols;
+        for (int j = 0; j < cols; j++) {
+          double x = lutX[j];
+          if (x <= crossings[0] || x >= crossings[nb - 1]) {
+            continue;
+          }
+          int index = Arrays.binarySearch(crossings, 0, nb, x);
+          // TODO: Include the border line as well?
+          if (index < 0 && (-index - 1) % 2 == 1) {
+            mask[offset + j] = (byte) 255;
+          }
         }
       }
     }
 
+    Mat binaryMask = new Mat(rows, cols, CvType.CV_8UC1);
+    binaryMask.put(0, 0, mask);
     return binaryMask;
   }
 }
@@ -128,7 +128,7 @@ protected boolean exportAction(List<String> files, DicomProgress dicomProgress)
               ContentType.APPLICATION_DICOM,
               AppProperties.WEASIS_NAME,
               node.getHeaders())) {
-        DicomState state = stowRS.uploadDicom(files, true, authMethod);
+        DicomState state = stowRS.uploadDicom(files, true, authMethod, dicomProgress);
         if (state.getStatus() != Status.Success && state.getStatus() != Status.Cancel) {
           showErrorMessage(null, null, state);
           return false;
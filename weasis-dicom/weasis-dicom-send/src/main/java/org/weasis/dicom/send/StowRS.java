@@ -10,24 +10,37 @@
 package org.weasis.dicom.send;
 
 import com.github.scribejava.core.httpclient.multipart.MultipartPayload;
+import com.github.scribejava.core.model.OAuth2AccessToken;
 import com.github.scribejava.core.model.OAuthRequest;
 import com.github.scribejava.core.model.Verb;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.xml.parsers.ParserConfigurationException;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Sequence;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.io.SAXReader;
 import org.dcm4che3.net.Status;
 import org.slf4j.Logger;
@@ -40,6 +53,7 @@
 import org.weasis.core.api.util.ClosableURLConnection;
 import org.weasis.core.api.util.HttpResponse;
 import org.weasis.core.api.util.NetworkUtil;
+import org.weasis.core.api.util.ThreadUtil;
 import org.weasis.core.api.util.URLParameters;
 import org.weasis.core.util.FileUtil;
 import org.weasis.dicom.param.DicomProgress;
@@ -52,6 +66,19 @@
 public class StowRS extends DicomStowRS {
   private static final Logger LOGGER = LoggerFactory.getLogger(StowRS.class);
 
+  /** Maximum size of the instances sent in one request */
+  static final long MAX_BATCH_BYTES = 64L * 1024 * 1024;
+  /** Maximum number of instances sent in one request */
+  static final int MAX_BATCH_INSTANCES = 200;
+  // Number of requests sent concurrently
+  private static final int UPLOAD_THREADS = 3;
+  private static final int MAX_ATTEMPTS = 3;
+  private static final long RETRY_DELAY_MS = 1000;
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+  // Serialize the refresh of the token between the concurrent requests
+  private final ReadWriteLock tokenLock = new ReentrantReadWriteLock();
+
   /**
    * @param requestURL the URL of the STOW service
    * @param contentType the value of the type in the Content-Type HTTP property
@@ -63,14 +90,13 @@ public StowRS(
     super(requestURL, contentType, agentName, headers);
   }
 
-  private OAuthRequest prepareAuthConnection(List<String> filesOrFolders, boolean recursive) {
+  private OAuthRequest prepareAuthConnection(MultipartPayload multipart) {
     OAuthRequest authRequest = new OAuthRequest(Verb.POST, getRequestURL());
-    MultipartPayload multipart = getMultipartPayload(filesOrFolders, recursive);
     authRequest.setMultipartPayload(multipart);
     return authRequest;
   }
 
-  private MultipartPayload getMultipartPayload(List<String> filesOrFolders, boolean recursive) {
+  private MultipartPayload getMultipartPayload(List<File> files) {
     Map<String, String> headers = new HashMap<>();
     headers.put(
         "Content-Type", // NON-NLS
@@ -81,20 +107,47 @@ private MultipartPayload getMultipartPayload(List<String> filesOrFolders, boolea
     headers.put("Accept", Multipart.ContentType.XML.toString()); // NON-NLS
 
     MultipartPayload multipart = new MultipartPayload(MULTIPART_BOUNDARY, headers);
+    for (File file : files) {
+      addMultipartFile(multipart, file);
+    }
+    return multipart;
+  }
 
+  private static List<File> getFiles(List<String> filesOrFolders, boolean recursive) {
+    List<File> files = new ArrayList<>();
     for (String entry : filesOrFolders) {
       File file = new File(entry);
       if (file.isDirectory()) {
-        List<File> fileList = new ArrayList<>();
-        FileUtil.getAllFilesInDirectory(file, fileList, recursive);
-        for (File f : fileList) {
-          addMultipartFile(multipart, f);
-        }
+        FileUtil.getAllFilesInDirectory(file, files, recursive);
       } else {
-        addMultipartFile(multipart, file);
+        files.add(file);
       }
     }
-    return multipart;
+    return files;
+  }
+
+  /**
+   * Split the files into batches which do not exceed the maximum number of instances and the
+   * maximum size, except a single file larger than the maximum size which has its own batch.
+   */
+  static List<List<File>> buildBatches(List<File> files, long maxBytes, int maxInstances) {
+    List<List<File>> batches = new ArrayList<>();
+    List<File> batch = new ArrayList<>();
+    long size = 0;
+    for (File file : files) {
+      long length = file.length();
+      if (!batch.isEmpty() && (size + length > maxBytes || batch.size() >= maxInstances)) {
+        batches.add(batch);
+        batch = new ArrayList<>();
+        size = 0;
+      }
+      batch.add(file);
+      size += length;
+    }
+    if (!batch.isEmpty()) {
+      batches.add(batch);
+    }
+    return batches;
   }
 
   private void addMultipartFile(MultipartPayload multipart, File file) {
@@ -117,91 +170,324 @@ public long length() {
 
   public DicomState uploadDicom(
       List<String> filesOrFolders, boolean recursive, AuthMethod authMethod) {
-    DicomState state = new DicomState(new DicomProgress());
-    Attributes error = null;
-    int nbFile = 0;
-    boolean auth = authMethod != null && !OAuth2ServiceFactory.noAuth.equals(authMethod);
+    return uploadDicom(filesOrFolders, recursive, authMethod, new DicomProgress());
+  }
 
-    String url = getRequestURL();
-    OAuthRequest authRequest = null;
-    if (auth) {
-      authRequest = prepareAuthConnection(filesOrFolders, recursive);
-      nbFile = authRequest.getMultipartPayload().getBodyParts().size();
-    }
-
-    try (HttpResponse httpCon =
-        NetworkUtil.getHttpResponse(
-            url, new URLParameters(getHeaders(), true), authMethod, authRequest)) {
-      if (auth) {
-        int code = httpCon.getResponseCode();
-        if (code >= HttpURLConnection.HTTP_OK && code < HttpURLConnection.HTTP_BAD_REQUEST) {
-          error = getResponseOutput(httpCon);
-        } else if (code == HttpURLConnection.HTTP_UNAUTHORIZED) {
-          authMethod.resetToken();
-          authMethod.getToken();
+  /**
+   * Upload the files by batches. The batches are sent concurrently, and a batch is sent again when
+   * the request fails or when the server rejects some instances for a transient reason (only the
+   * rejected instances are sent again).
+   *
+   * @param filesOrFolders the files or the folders to upload
+   * @param recursive true to upload the files of the sub-folders
+   * @param authMethod the authentication method, or null
+   * @param progress the progress of the upload, which can also cancel it
+   * @return the state of the upload
+   */
+  public DicomState uploadDicom(
+      List<String> filesOrFolders,
+      boolean recursive,
+      AuthMethod authMethod,
+      DicomProgress progress) {
+    DicomState state = new DicomState(Objects.requireNonNull(progress));
+    List<File> files = getFiles(filesOrFolders, recursive);
+    List<List<File>> batches = buildBatches(files, MAX_BATCH_BYTES, MAX_BATCH_INSTANCES);
+    Upload upload = new Upload(progress, files.size());
+    long start = System.nanoTime();
+
+    if (!batches.isEmpty()) {
+      ExecutorService executor =
+          ThreadUtil.buildNewFixedThreadExecutor(
+              Math.min(UPLOAD_THREADS, batches.size()), "STOW-RS Upload"); // NON-NLS
+      try {
+        List<Future<?>> results = new ArrayList<>(batches.size());
+        for (List<File> batch : batches) {
+          results.add(executor.submit(() -> sendBatch(batch, authMethod, upload)));
         }
-      } else if (httpCon instanceof ClosableURLConnection urlConnection
-          && urlConnection.getUrlConnection() instanceof HttpURLConnection http) {
-        MultipartPayload multipartPayload = getMultipartPayload(filesOrFolders, recursive);
-        nbFile = multipartPayload.getBodyParts().size();
-        BasicHttpClient.addBody(http, multipartPayload, true);
-        int code = httpCon.getResponseCode();
-        if (code >= HttpURLConnection.HTTP_OK && code < HttpURLConnection.HTTP_BAD_REQUEST) {
-          error = getResponseOutput(httpCon);
+        for (Future<?> result : results) {
+          result.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return DicomState.buildMessage(state, "STOW-RS upload interrupted", null); // NON-NLS
+      } catch (ExecutionException e) {
+        LOGGER.error("STOW-RS: error when posting data", e.getCause());
+        return DicomState.buildMessage(state, e.getCause().getMessage(), null);
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    double seconds = Math.max((System.nanoTime() - start) / 1.0e9, 0.001);
+    double megaBytes = upload.bytes.get() / (1024.0 * 1024.0);
+    LOGGER.info(
+        "STOW-RS: {} instance(s) sent, {} MB in {} s ({} MB/s)",
+        upload.completed.get(),
+        String.format("%.1f", megaBytes), // NON-NLS
+        String.format("%.1f", seconds), // NON-NLS
+        String.format("%.2f", megaBytes / seconds)); // NON-NLS
+
+    if (progress.isCancel()) {
+      state.setStatus(Status.Cancel);
+      return DicomState.buildMessage(state, "STOW-RS upload canceled", null); // NON-NLS
+    }
+    return buildErrorMessage(upload, state);
+  }
+
+  private void sendBatch(List<File> batch, AuthMethod authMethod, Upload upload) {
+    List<File> pending = batch;
+    // The payload reads the files when the request is sent, it can be posted again as is
+    MultipartPayload payload = getMultipartPayload(pending);
+    // Read only when the server rejects some instances, then restricted to the pending files
+    Map<String, File> filesByUid = null;
+    boolean tokenRefreshed = false;
+    for (int attempt = 1; !upload.isCanceled(); attempt++) {
+      boolean lastAttempt = attempt >= MAX_ATTEMPTS;
+      Attributes response;
+      try {
+        response = post(payload, authMethod);
+      } catch (UnauthorizedException e) {
+        if (tokenRefreshed) {
+          LOGGER.error("STOW-RS: cannot send {} file(s)", pending.size(), e);
+          upload.fail(pending, e.getMessage());
+          return;
+        }
+        // Send again once with the new token, which is not counted as an attempt
+        tokenRefreshed = true;
+        attempt--;
+        continue;
+      } catch (IOException e) {
+        if (lastAttempt) {
+          LOGGER.error("STOW-RS: cannot send {} file(s)", pending.size(), e);
+          upload.fail(pending, e.getMessage());
+          return;
+        }
+        LOGGER.warn("STOW-RS: attempt {} failed, send the batch again", attempt, e);
+        waitBeforeRetry(attempt);
+        continue;
+      } catch (HttpServerErrorException e) {
+        LOGGER.error("STOW-RS: files rejected by the server", e);
+        upload.fail(pending, e.getMessage());
+        return;
+      }
+
+      Sequence failedSeq = response == null ? null : response.getSequence(Tag.FailedSOPSequence);
+      if (failedSeq == null || failedSeq.isEmpty()) {
+        upload.complete(pending);
+        return;
+      }
+
+      if (filesByUid == null) {
+        filesByUid = getFilesBySopInstanceUID(pending);
+      }
+      Map<String, File> retry = new LinkedHashMap<>();
+      for (Attributes item : failedSeq) {
+        String uid = item.getString(Tag.ReferencedSOPInstanceUID);
+        int reason = item.getInt(Tag.FailureReason, 0);
+        File file = uid == null ? null : filesByUid.remove(uid);
+        if (file != null && !lastAttempt && isTransientFailure(reason)) {
+          retry.put(uid, file);
+        } else {
+          upload.fail(
+              Objects.requireNonNullElse(uid, "Unknown SopUID") // NON-NLS
+                  + " -> "
+                  + item.getString(Tag.FailureReason));
+        }
+      }
+      // The instances which are not in the failed sequence are stored
+      upload.complete(filesByUid.values());
+      if (retry.isEmpty()) {
+        return;
+      }
+      LOGGER.warn("STOW-RS: send again {} rejected instance(s)", retry.size());
+      filesByUid = retry;
+      pending = new ArrayList<>(retry.values());
+      payload = getMultipartPayload(pending);
+      waitBeforeRetry(attempt);
+    }
+  }
+
+  private Attributes post(MultipartPayload payload, AuthMethod authMethod) throws IOException {
+    boolean auth = authMethod != null && !OAuth2ServiceFactory.noAuth.equals(authMethod);
+    OAuthRequest authRequest = auth ? prepareAuthConnection(payload) : null;
+    OAuth2AccessToken token;
+    // The token cannot be refreshed while a request is sent
+    tokenLock.readLock().lock();
+    try {
+      token = auth ? authMethod.getToken() : null;
+      try (HttpResponse httpCon =
+          NetworkUtil.getHttpResponse(
+              getRequestURL(), new URLParameters(getHeaders(), true), authMethod, authRequest)) {
+        if (!auth) {
+          if (httpCon instanceof ClosableURLConnection urlConnection
+              && urlConnection.getUrlConnection() instanceof HttpURLConnection http) {
+            BasicHttpClient.addBody(http, payload, true);
+          } else {
+            throw new IllegalStateException("HttpResponse type: not implemented");
+          }
+        }
+        if (!auth || httpCon.getResponseCode() != HttpURLConnection.HTTP_UNAUTHORIZED) {
+          return getResponseOutput(httpCon);
         }
-      } else {
-        throw new IllegalStateException("HttpResponse type: not implemented");
       }
-      return buildErrorMessage(error, state, nbFile);
+    } catch (ParserConfigurationException | SAXException e) {
+      throw new IOException("Cannot read the STOW-RS response", e);
+    } catch (IllegalStateException e) {
+      // Only this batch cannot be sent
+      throw new HttpServerErrorException(e.getMessage(), e);
+    } catch (IOException | RuntimeException e) {
+      throw e;
     } catch (Exception e) {
-      LOGGER.error("STOW-RS: error when posting data", e);
-      return DicomState.buildMessage(state, e.getMessage(), null);
+      throw new IOException(e);
+    } finally {
+      tokenLock.readLock().unlock();
+    }
+
+    // Send again with a new token
+    refreshToken(authMethod, token);
+    throw new UnauthorizedException("STOW-RS: HTTP Status-Code 401: Unauthorized");
+  }
+
+  /**
+   * Get a new token when the expired one is still the current token. The concurrent requests
+   * rejected with the same token refresh it only once.
+   */
+  private void refreshToken(AuthMethod authMethod, OAuth2AccessToken expired) {
+    tokenLock.writeLock().lock();
+    try {
+      if (authMethod.getToken() == expired) {
+        authMethod.resetToken();
+        authMethod.getToken();
+      }
+    } finally {
+      tokenLock.writeLock().unlock();
+    }
+  }
+
+  /** Out of resources and processing failures can succeed when the instance is sent again. */
+  private static boolean isTransientFailure(int reason) {
+    return reason == Status.ProcessingFailure || (reason & 0xFF00) == Status.OutOfResources;
+  }
+
+  private static void waitBeforeRetry(int attempt) {
+    try {
+      TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MS * (1L << (attempt - 1)));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
   }
 
-  private DicomState buildErrorMessage(Attributes error, DicomState state, int nbFile) {
+  private static Map<String, File> getFilesBySopInstanceUID(List<File> files) {
+    Map<String, File> map = new HashMap<>();
+    for (File file : files) {
+      try (DicomInputStream dis = new DicomInputStream(file)) {
+        Attributes fmi = dis.readFileMetaInformation();
+        String uid = fmi == null ? null : fmi.getString(Tag.MediaStorageSOPInstanceUID);
+        if (uid == null) {
+          uid = dis.readDatasetUntilPixelData().getString(Tag.SOPInstanceUID);
+        }
+        if (uid != null) {
+          map.put(uid, file);
+        }
+      } catch (IOException e) {
+        LOGGER.warn("Cannot read the SOP Instance UID of {}", file, e);
+      }
+    }
+    return map;
+  }
+
+  private DicomState buildErrorMessage(Upload upload, DicomState state) {
     String message;
-    if (error == null) {
+    List<String> failures = upload.getFailures();
+    if (failures.isEmpty()) {
       state.setStatus(Status.Success);
       message = "all the files has been transferred"; // NON-NLS
     } else {
-      message = "one or more files has not been transferred"; // NON-NLS
       state.setStatus(Status.OneOrMoreFailures);
-      DicomProgress p = state.getProgress();
-      if (p != null) {
-        Sequence seq = error.getSequence(Tag.FailedSOPSequence);
-        if (seq != null && !seq.isEmpty()) {
-          Attributes cmd = Optional.ofNullable(p.getAttributes()).orElseGet(Attributes::new);
-          cmd.setInt(Tag.Status, VR.US, Status.OneOrMoreFailures);
-          cmd.setInt(Tag.NumberOfCompletedSuboperations, VR.US, nbFile);
-          cmd.setInt(Tag.NumberOfFailedSuboperations, VR.US, seq.size());
-          cmd.setInt(Tag.NumberOfWarningSuboperations, VR.US, 0);
-          cmd.setInt(Tag.NumberOfRemainingSuboperations, VR.US, 0);
-          p.setAttributes(cmd);
-          message =
-              seq.stream()
-                  .map(
-                      s ->
-                          s.getString(Tag.ReferencedSOPInstanceUID, "Unknown SopUID") // NON-NLS
-                              + " -> "
-                              + s.getString(Tag.FailureReason))
-                  .collect(Collectors.joining(", "));
-          LOGGER.error("STOW-RS error: {}", message);
-          return DicomState.buildMessage(
-              state, null, new RuntimeException("Failed instances: " + message));
-        }
-      }
+      message = String.join(", ", failures);
       LOGGER.error("STOW-RS error: {}", message);
+      return DicomState.buildMessage(
+          state, null, new RuntimeException("Failed instances: " + message));
     }
     return DicomState.buildMessage(state, message, null);
   }
 
+  /** The request has been rejected with an expired token, which has been refreshed. */
+  private static final class UnauthorizedException extends IOException {
+    UnauthorizedException(String message) {
+      super(message);
+    }
+  }
+
+  /** Counters of an upload, shared by the threads sending the batches. */
+  private static final class Upload {
+    private final DicomProgress progress;
+    private final int total;
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    // Guarded by this
+    private final List<String> failures = new ArrayList<>();
+
+    Upload(DicomProgress progress, int total) {
+      this.progress = progress;
+      this.total = total;
+    }
+
+    void complete(Collection<File> files) {
+      completed.addAndGet(files.size());
+      bytes.addAndGet(files.stream().mapToLong(File::length).sum());
+      updateProgress();
+    }
+
+    void fail(List<File> files, String reason) {
+      failed.addAndGet(files.size());
+      synchronized (this) {
+        failures.add(files.size() + " file(s): " + reason); // NON-NLS
+      }
+      updateProgress();
+    }
+
+    void fail(String reason) {
+      failed.incrementAndGet();
+      synchronized (this) {
+        failures.add(reason);
+      }
+      updateProgress();
+    }
+
+    boolean isCanceled() {
+      return progress.isCancel() || Thread.currentThread().isInterrupted();
+    }
+
+    synchronized List<String> getFailures() {
+      return new ArrayList<>(failures);
+    }
+
+    private synchronized void updateProgress() {
+      int nbFailed = failed.get();
+      int nbCompleted = completed.get();
+      Attributes cmd = Optional.ofNullable(progress.getAttributes()).orElseGet(Attributes::new);
+      cmd.setInt(Tag.Status, VR.US, nbFailed == 0 ? Status.Pending : Status.OneOrMoreFailures);
+      cmd.setInt(Tag.NumberOfCompletedSuboperations, VR.US, nbCompleted);
+      cmd.setInt(Tag.NumberOfFailedSuboperations, VR.US, nbFailed);
+      cmd.setInt(Tag.NumberOfWarningSuboperations, VR.US, 0);
+      cmd.setInt(
+          Tag.NumberOfRemainingSuboperations, VR.US, Math.max(0, total - nbCompleted - nbFailed));
+      progress.setAttributes(cmd);
+    }
+  }
+
   private Attributes getResponseOutput(HttpResponse httpPost)
       throws IOException, ParserConfigurationException, SAXException {
     int code = httpPost.getResponseCode();
     if (code == HttpURLConnection.HTTP_OK) {
-      LOGGER.info(
+      LOGGER.debug(
           "STOW-RS server response message: HTTP Status-Code 200: OK for all the image set");
+      // Read the response until the end to reuse the persistent connection
+      try (InputStream in = httpPost.getInputStream()) {
+        in.transferTo(OutputStream.nullOutputStream());
+      }
     } else if (code == HttpURLConnection.HTTP_ACCEPTED || code == HttpURLConnection.HTTP_CONFLICT) {
       LOGGER.warn(
           "STOW-RS server response message: HTTP Status-Code {}: {}",
@@ -209,12 +495,21 @@ private Attributes getResponseOutput(HttpResponse httpPost)
           httpPost.getResponseMessage());
       // See
       // http://dicom.nema.org/medical/dicom/current/output/chtml/part18/sect_6.6.html#table_6.6.1-1
-      return SAXReader.parse(httpPost.getInputStream());
+      try (InputStream in = httpPost.getInputStream()) {
+        return SAXReader.parse(in);
+      }
     } else {
-      throw new HttpServerErrorException(
+      String message =
           String.format(
               "STOW-RS server response message: HTTP Status-Code %d: %s",
-              code, httpPost.getResponseMessage()));
+              code, httpPost.getResponseMessage());
+      if (code == HttpURLConnection.HTTP_CLIENT_TIMEOUT
+          || code == HTTP_TOO_MANY_REQUESTS
+          || code >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+        // The request can be sent again
+        throw new IOException(message);
+      }
+      throw new HttpServerErrorException(message);
     }
     return null;
   }
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.send;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StowRSTest {
+
+  @TempDir Path tempDir;
+
+  private List<File> buildFiles(int... sizes) throws IOException {
+    List<File> files = new ArrayList<>();
+    for (int i = 0; i < sizes.length; i++) {
+      Path file = tempDir.resolve("file" + i); // NON-NLS
+      Files.write(file, new byte[sizes[i]]);
+      files.add(file.toFile());
+    }
+    return files;
+  }
+
+  private static List<Integer> batchSizes(List<List<File>> batches) {
+    return batches.stream().map(List::size).toList();
+  }
+
+  @Test
+  void noFile() {
+    assertTrue(StowRS.buildBatches(List.of(), 100, 10).isEmpty());
+  }
+
+  @Test
+  void splitBySize() throws IOException {
+    List<File> files = buildFiles(40, 40, 20, 30, 70, 100);
+    List<List<File>> batches = StowRS.buildBatches(files, 100, 10);
+    // The limit is included
+    assertEquals(List.of(3, 2, 1), batchSizes(batches));
+    assertEquals(files, batches.stream().flatMap(List::stream).toList());
+  }
+
+  @Test
+  void splitByCount() throws IOException {
+    List<File> files = buildFiles(1, 1, 1, 1, 1, 1, 1);
+    List<List<File>> batches = StowRS.buildBatches(files, 100, 3);
+    assertEquals(List.of(3, 3, 1), batchSizes(batches));
+    assertEquals(files, batches.stream().flatMap(List::stream).toList());
+  }
+
+  @Test
+  void fileLargerThanTheLimit() throws IOException {
+    List<File> files = buildFiles(10, 250, 10, 10);
+    List<List<File>> batches = StowRS.buildBatches(files, 100, 10);
+    // A large file has its own batch
+    assertEquals(List.of(1, 1, 2), batchSizes(batches));
+    assertEquals(List.of(files.get(1)), batches.get(1));
+  }
+}
@@ -85,6 +85,7 @@
 import org.weasis.core.ui.editor.image.ImageViewerPlugin;
 import org.weasis.core.ui.editor.image.MeasureToolBar;
 import org.weasis.core.ui.editor.image.MouseActions;
+import org.weasis.core.ui.editor.image.SlicePrefetcher;
 import org.weasis.core.ui.editor.image.SynchCineEvent;
 import org.weasis.core.ui.editor.image.SynchData;
 import org.weasis.core.ui.editor.image.SynchData.Mode;
@@ -251,6 +252,7 @@ public void itemStateChanged(Object object) {
   protected SliderCineListener getMoveTroughSliceAction(
       double speed, TIME time, double mouseSensitivity) {
     return new SliderCineListener(ActionW.SCROLL_SERIES, 1, 2, 1, speed, time, mouseSensitivity) {
+      private final SlicePrefetcher<DicomImageElement> prefetcher = new SlicePrefetcher<>();
 
       @Override
       public void stateChanged(BoundedRangeModel model) {
@@ -283,6 +285,8 @@ public void stateChanged(BoundedRangeModel model) {
             if (image != null && !image.isImageAvailable()) {
               image.getImage();
             }
+            // Load in background the next images in the scrolling direction
+            prefetcher.update(view2d, index, isCining() ? getSpeed() : 0.0);
           }
         }
         if (image != null) {
@@ -266,7 +266,7 @@ public void propertyChange(PropertyChangeEvent evt) {
               }
               node.setParam(ActionW.PRESET.cmd(), preset);
             }
-            imageLayer.updateDisplayOperations();
+            imageLayer.updateDisplayOperationsLater();
           }
         } else if (command.equals(ActionW.DEFAULT_PRESET.cmd())) {
           disOp.setParamValue(WindowOp.OP_NAME, ActionW.DEFAULT_PRESET.cmd(), val);
@@ -275,7 +275,7 @@ public void propertyChange(PropertyChangeEvent evt) {
           if (node != null) {
             node.setParam(ActionW.LUT_SHAPE.cmd(), val);
           }
-          imageLayer.updateDisplayOperations();
+          imageLayer.updateDisplayOperationsLater();
         } else if (command.equals(ActionW.SORT_STACK.cmd())) {
           actionsInView.put(ActionW.SORT_STACK.cmd(), val);
           sortStack(getCurrentSortComparator());
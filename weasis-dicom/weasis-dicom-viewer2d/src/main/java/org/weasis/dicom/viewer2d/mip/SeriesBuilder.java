@@ -10,6 +10,7 @@
 package org.weasis.dicom.viewer2d.mip;
 
 import java.io.File;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -23,6 +24,7 @@
 import org.dcm4che3.util.UIDUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.weasis.core.api.gui.task.TaskInterruptionException;
 import org.weasis.core.api.gui.util.ActionW;
 import org.weasis.core.api.gui.util.AppProperties;
 import org.weasis.core.api.gui.util.ComboItemListener;
@@ -45,6 +47,7 @@
 import org.weasis.dicom.viewer2d.mip.MipView.Type;
 import org.weasis.dicom.viewer2d.mpr.RawImageIO;
 import org.weasis.opencv.data.FileRawImage;
+import org.weasis.opencv.data.ImageCV;
 import org.weasis.opencv.data.PlanarImage;
 
 public class SeriesBuilder {
@@ -78,9 +81,6 @@ public static void applyMipParameters(
         curImg = sequence.get().getSliderValue() - 1;
       }
 
-      int minImg = fullSeries ? extend : curImg;
-      int maxImg = fullSeries ? series.size(filter) - extend : curImg;
-
       DicomImageElement img =
           series.getMedia(MediaSeries.MEDIA_POSITION.MIDDLE, filter, sortFilter);
       final Attributes attributes = img.getMediaReader().getDicomObject();
@@ -88,105 +88,183 @@ public static void applyMipParameters(
       adaptWindowLevel(view, cpTags);
       String seriesUID = UIDUtils.createUID();
 
-      for (int index = minImg; index <= maxImg; index++) {
-        Iterator<DicomImageElement> iter = medias.iterator();
-        final List<ImageElement> sources = new ArrayList<>();
-        int startIndex = index - extend;
-        if (startIndex < 0) {
-          startIndex = 0;
-        }
-        int stopIndex = index + extend;
-        int k = 0;
-        while (iter.hasNext()) {
-          DicomImageElement dcm = iter.next();
-          if (k >= startIndex) {
-            sources.add(dcm);
-          }
+      if (fullSeries) {
+        File dir = new File(MIP_CACHE_DIR, seriesUID);
+        dir.mkdirs();
+        buildFullSeries(medias, dicoms, mipType, extend, img, cpTags, seriesUID, dir);
+        return;
+      }
 
-          if (k >= stopIndex) {
-            break;
-          }
-          k++;
+      Iterator<DicomImageElement> iter = medias.iterator();
+      final List<ImageElement> sources = new ArrayList<>();
+      int startIndex = Math.max(0, curImg - extend);
+      int stopIndex = curImg + extend;
+      int k = 0;
+      while (iter.hasNext()) {
+        DicomImageElement dcm = iter.next();
+        if (k >= startIndex) {
+          sources.add(dcm);
         }
 
-        if (sources.size() > 1) {
-          curImage = addCollectionOperation(mipType, sources);
-        } else {
-          curImage = null;
+        if (k >= stopIndex) {
+          break;
         }
+        k++;
+      }
 
+      if (sources.size() > 1) {
+        curImage = addCollectionOperation(mipType, sources);
         if (curImage != null) {
-          DicomImageElement imgRef = (DicomImageElement) sources.get(sources.size() / 2);
-          FileRawImage raw = null;
-          try {
-            File dir = MIP_CACHE_DIR;
-            if (fullSeries) {
-              dir = new File(MIP_CACHE_DIR, seriesUID);
-              dir.mkdirs();
-            }
-            raw = new FileRawImage(File.createTempFile("mip_", ".wcv", dir)); // NON-NLS
-            if (!raw.write(curImage)) {
-              raw = null;
-            }
-          } catch (Exception e) {
-            if (raw != null) {
-              FileUtil.delete(raw.file());
-              raw = null;
-            }
-            LOGGER.error("Writing MIP", e);
+          DicomImageElement dcm =
+              buildImage(curImage, sources, img, cpTags, seriesUID, curImg, MIP_CACHE_DIR);
+          if (dcm != null) {
+            dicoms.add(dcm);
           }
-          if (raw == null) {
+        }
+      }
+    }
+  }
+
+  /**
+   * Build the projections of all the slabs of the series by reading each image only once. The
+   * projections are written in the cache as soon as they are computed.
+   */
+  private static void buildFullSeries(
+      Iterable<DicomImageElement> medias,
+      List<DicomImageElement> dicoms,
+      Type mipType,
+      int extend,
+      DicomImageElement img,
+      Attributes cpTags,
+      String seriesUID,
+      File dir) {
+    int slabSize = 2 * extend + 1;
+    ArrayDeque<DicomImageElement> window = new ArrayDeque<>(slabSize);
+    PlanarImage firstImage = null;
+    int k = 0;
+    try (SlabProjection projection = new SlabProjection(mipType, slabSize)) {
+      for (DicomImageElement dcm : medias) {
+        if (Thread.currentThread().isInterrupted()) {
+          throw new TaskInterruptionException("MIP building has been interrupted"); // NON-NLS
+        }
+        PlanarImage image = dcm.getImage(null, false);
+        if (image == null) {
+          continue;
+        }
+        if (firstImage == null) {
+          firstImage = image;
+        } else if (image.width() != firstImage.width()
+            || image.height() != firstImage.height()
+            || image.type() != firstImage.type()) {
+          LOGGER.warn("Skip image with a different size or type from the MIP: {}", dcm);
+          continue;
+        }
+        if (window.size() == slabSize) {
+          window.removeFirst();
+        }
+        window.addLast(dcm);
+        // Copy the image as the cached images can be released before leaving the slab
+        ImageCV result = projection.add(image.toMat().clone());
+        if (result != null) {
+          DicomImageElement mip =
+              buildImage(result, new ArrayList<>(window), img, cpTags, seriesUID, k - extend, dir);
+          result.release();
+          if (mip == null) {
             return;
           }
-          RawImageIO rawIO = new RawImageIO(raw, null);
-          rawIO.getFileCache().setOriginalTempFile(raw.file());
-          rawIO.setBaseAttributes(cpTags);
-
-          // Tags with same values for all the Series
-          rawIO.setTag(TagD.get(Tag.Columns), curImage.width());
-          rawIO.setTag(TagD.get(Tag.Rows), curImage.height());
-          rawIO.setTag(TagD.get(Tag.BitsAllocated), imgRef.getBitsAllocated());
-          rawIO.setTag(TagD.get(Tag.BitsStored), imgRef.getBitsStored());
+          dicoms.add(mip);
+        }
+        k++;
+      }
 
-          int lastIndex = sources.size() - 1;
-          double thickness =
-              DicomMediaUtils.getThickness(sources.getFirst(), sources.get(lastIndex));
-          if (thickness <= 0.0) {
-            thickness = sources.size();
-          }
-          rawIO.setTag(TagD.get(Tag.SliceThickness), thickness);
-          double[] loc = (double[]) imgRef.getTagValue(TagW.SlicePosition);
-          if (loc != null) {
-            rawIO.setTag(TagW.SlicePosition, loc);
-            rawIO.setTag(TagD.get(Tag.SliceLocation), loc[0] + loc[1] + loc[2]);
+      // Partial slab at the end of the series
+      int last = slabSize - 1;
+      if (last > 1 && k >= last) {
+        ImageCV result = projection.project(last);
+        if (result != null) {
+          List<ImageElement> sources = new ArrayList<>(window);
+          sources = sources.subList(sources.size() - last, sources.size());
+          DicomImageElement mip =
+              buildImage(result, sources, img, cpTags, seriesUID, k - extend, dir);
+          result.release();
+          if (mip != null) {
+            dicoms.add(mip);
           }
+        }
+      }
+    }
+  }
 
-          rawIO.setTag(TagD.get(Tag.SeriesInstanceUID), seriesUID);
-
-          // Mandatory tags
-          org.weasis.dicom.viewer2d.mpr.SeriesBuilder.copyMandatoryTags(img, rawIO);
-          TagW[] tagList2;
+  private static DicomImageElement buildImage(
+      PlanarImage curImage,
+      List<? extends ImageElement> sources,
+      DicomImageElement img,
+      Attributes cpTags,
+      String seriesUID,
+      int index,
+      File dir) {
+    DicomImageElement imgRef = (DicomImageElement) sources.get(sources.size() / 2);
+    FileRawImage raw = null;
+    try {
+      raw = new FileRawImage(File.createTempFile("mip_", ".wcv", dir)); // NON-NLS
+      if (!raw.write(curImage)) {
+        raw = null;
+      }
+    } catch (Exception e) {
+      if (raw != null) {
+        FileUtil.delete(raw.file());
+        raw = null;
+      }
+      LOGGER.error("Writing MIP", e);
+    }
+    if (raw == null) {
+      return null;
+    }
+    RawImageIO rawIO = new RawImageIO(raw, null);
+    rawIO.getFileCache().setOriginalTempFile(raw.file());
+    rawIO.setBaseAttributes(cpTags);
 
-          tagList2 =
-              TagD.getTagFromIDs(
-                  Tag.ImageOrientationPatient,
-                  Tag.ImagePositionPatient,
-                  Tag.PixelPaddingValue,
-                  Tag.PixelPaddingRangeLimit,
-                  Tag.PixelSpacing,
-                  Tag.ImagerPixelSpacing,
-                  Tag.NominalScannedPixelSpacing,
-                  Tag.PixelSpacingCalibrationDescription,
-                  Tag.PixelAspectRatio);
-          rawIO.copyTags(tagList2, imgRef, false);
+    // Tags with same values for all the Series
+    rawIO.setTag(TagD.get(Tag.Columns), curImage.width());
+    rawIO.setTag(TagD.get(Tag.Rows), curImage.height());
+    rawIO.setTag(TagD.get(Tag.BitsAllocated), imgRef.getBitsAllocated());
+    rawIO.setTag(TagD.get(Tag.BitsStored), imgRef.getBitsStored());
 
-          // Image specific tags
-          rawIO.setTag(TagD.get(Tag.SOPInstanceUID), UIDUtils.createUID());
-          rawIO.setTag(TagD.get(Tag.InstanceNumber), index + 1);
-          dicoms.add(org.weasis.dicom.viewer2d.mpr.SeriesBuilder.buildDicomImageElement(rawIO));
-        }
-      }
+    int lastIndex = sources.size() - 1;
+    double thickness = DicomMediaUtils.getThickness(sources.getFirst(), sources.get(lastIndex));
+    if (thickness <= 0.0) {
+      thickness = sources.size();
+    }
+    rawIO.setTag(TagD.get(Tag.SliceThickness), thickness);
+    double[] loc = (double[]) imgRef.getTagValue(TagW.SlicePosition);
+    if (loc != null) {
+      rawIO.setTag(TagW.SlicePosition, loc);
+      rawIO.setTag(TagD.get(Tag.SliceLocation), loc[0] + loc[1] + loc[2]);
     }
+
+    rawIO.setTag(TagD.get(Tag.SeriesInstanceUID), seriesUID);
+
+    // Mandatory tags
+    org.weasis.dicom.viewer2d.mpr.SeriesBuilder.copyMandatoryTags(img, rawIO);
+    TagW[] tagList2;
+
+    tagList2 =
+        TagD.getTagFromIDs(
+            Tag.ImageOrientationPatient,
+            Tag.ImagePositionPatient,
+            Tag.PixelPaddingValue,
+            Tag.PixelPaddingRangeLimit,
+            Tag.PixelSpacing,
+            Tag.ImagerPixelSpacing,
+            Tag.NominalScannedPixelSpacing,
+            Tag.PixelSpacingCalibrationDescription,
+            Tag.PixelAspectRatio);
+    rawIO.copyTags(tagList2, imgRef, false);
+
+    // Image specific tags
+    rawIO.setTag(TagD.get(Tag.SOPInstanceUID), UIDUtils.createUID());
+    rawIO.setTag(TagD.get(Tag.InstanceNumber), index + 1);
+    return org.weasis.dicom.viewer2d.mpr.SeriesBuilder.buildDicomImageElement(rawIO);
   }
 
   private static Attributes getBaseAttributes(Attributes attributes) {
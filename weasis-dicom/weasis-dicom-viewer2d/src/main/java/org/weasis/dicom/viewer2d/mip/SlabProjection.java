@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.viewer2d.mip;
+
+import java.util.Objects;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.weasis.dicom.viewer2d.mip.MipView.Type;
+import org.weasis.opencv.data.ImageCV;
+
+/**
+ * Projection of a slab sliding along a stack of images. Each image is added once and the
+ * projection of the last images is updated incrementally:
+ *
+ * <ul>
+ *   <li>MAX and MIN use the van Herk/Gil-Werman algorithm (prefix and suffix extrema by blocks of
+ *       the slab size), so two operations per image whatever the slab size
+ *   <li>MEAN uses a running sum in double precision (no drift along long stacks), one addition
+ *       and one subtraction per image
+ * </ul>
+ */
+final class SlabProjection implements AutoCloseable {
+
+  private final Type type;
+  private final int size;
+  // The last images, the index in the ring is also the position in the current block
+  private final Mat[] ring;
+  // Extrema from each position to the end of the previous block
+  private final Mat[] suffix;
+  private Mat prefix;
+  private Mat sum;
+  private int count;
+
+  SlabProjection(Type type, int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException("The slab must contain at least one image");
+    }
+    this.type = Objects.requireNonNull(type);
+    this.size = size;
+    this.ring = new Mat[size];
+    this.suffix = new Mat[size];
+  }
+
+  /**
+   * Add the next image of the stack.
+   *
+   * @param image the next image, the images must have the same size and type. The projection
+   *     takes the ownership of the image and releases it when it leaves the slab.
+   * @return the projection of the last images when the slab is full, otherwise null
+   */
+  ImageCV add(Mat image) {
+    int pos = count % size;
+    Mat old = ring[pos];
+    ring[pos] = image;
+    count++;
+    if (Type.MEAN.equals(type)) {
+      ImageCV result = addToMean(image, old);
+      release(old);
+      return result;
+    }
+    release(old);
+
+    if (pos == 0) {
+      release(prefix);
+      prefix = image.clone();
+    } else {
+      apply(prefix, image, prefix);
+    }
+
+    ImageCV result = null;
+    if (count >= size) {
+      result = new ImageCV();
+      if (pos == size - 1) {
+        prefix.copyTo(result);
+      } else {
+        apply(suffix[pos + 1], prefix, result);
+      }
+    }
+    if (pos == size - 1) {
+      // The block is complete, compute the suffix extrema for the next block
+      for (int k = size - 1; k >= 0; k--) {
+        release(suffix[k]);
+        if (k == size - 1) {
+          suffix[k] = ring[k].clone();
+        } else {
+          Mat m = new Mat();
+          apply(ring[k], suffix[k + 1], m);
+          suffix[k] = m;
+        }
+      }
+    }
+    return result;
+  }
+
+  private ImageCV addToMean(Mat image, Mat old) {
+    if (sum == null) {
+      sum = new Mat();
+      image.convertTo(sum, CvType.CV_64F);
+    } else {
+      Mat f = new Mat();
+      image.convertTo(f, CvType.CV_64F);
+      Core.add(sum, f, sum);
+      if (old != null) {
+        old.convertTo(f, CvType.CV_64F);
+        Core.subtract(sum, f, sum);
+      }
+      f.release();
+    }
+    if (count >= size) {
+      ImageCV result = new ImageCV();
+      sum.convertTo(result, image.type(), 1.0 / size);
+      return result;
+    }
+    return null;
+  }
+
+  /**
+   * Compute directly the projection of the last images, typically for a partial slab at the end of
+   * the stack.
+   *
+   * @param n the number of images (not more than the slab size)
+   * @return the projection or null if less than n images have been added
+   */
+  ImageCV project(int n) {
+    if (n < 1 || n > size || n > count) {
+      return null;
+    }
+    Mat first = ring[(count - n) % size];
+    ImageCV result = new ImageCV();
+    if (Type.MEAN.equals(type)) {
+      Mat acc = new Mat();
+      first.convertTo(acc, CvType.CV_64F);
+      Mat f = new Mat();
+      for (int i = count - n + 1; i < count; i++) {
+        ring[i % size].convertTo(f, CvType.CV_64F);
+        Core.add(acc, f, acc);
+      }
+      acc.convertTo(result, first.type(), 1.0 / n);
+      f.release();
+      acc.release();
+    } else {
+      first.copyTo(result);
+      for (int i = count - n + 1; i < count; i++) {
+        apply(result, ring[i % size], result);
+      }
+    }
+    return result;
+  }
+
+  private void apply(Mat src1, Mat src2, Mat dst) {
+    if (Type.MIN.equals(type)) {
+      Core.min(src1, src2, dst);
+    } else {
+      Core.max(src1, src2, dst);
+    }
+  }
+
+  private static void release(Mat mat) {
+    if (mat != null) {
+      mat.release();
+    }
+  }
+
+  @Override
+  public void close() {
+    for (int i = 0; i < size; i++) {
+      release(suffix[i]);
+      release(ring[i]);
+      suffix[i] = null;
+      ring[i] = null;
+    }
+    release(prefix);
+    release(sum);
+    prefix = null;
+    sum = null;
+  }
+}
@@ -216,6 +216,9 @@ public class MprContainer extends DicomViewerPlugin implements PropertyChangeLis
       new SeriesViewerUI(MprContainer.class, null, View2dContainer.UI.tools, null);
 
   private Thread process;
+  // Volume of the series displayed in the main view, only accessed from the EDT
+  private Volume volume;
+  private MediaSeries<DicomImageElement> volumeSeries;
   private String lastCommand;
 
   public MprContainer() {
@@ -358,10 +361,33 @@ private synchronized void stopCurrentProcess() {
   @Override
   public void close() {
     stopCurrentProcess();
+    setVolume(null, null);
     MprFactory.closeSeriesViewer(this);
     super.close();
   }
 
+  /**
+   * @return the volume built from the series, or null if not available
+   */
+  public Volume getVolume(MediaSeries<DicomImageElement> series) {
+    return series != null && series == volumeSeries ? volume : null;
+  }
+
+  /** Set the volume shared by the MPR views and release the previous one. Must be called in EDT. */
+  public void setVolume(MediaSeries<DicomImageElement> series, Volume volume) {
+    Volume old = this.volume;
+    this.volume = volume;
+    this.volumeSeries = volume == null ? null : series;
+    for (ViewCanvas<DicomImageElement> v : view2ds) {
+      if (v instanceof MprView mprView) {
+        mprView.setVolume(volume);
+      }
+    }
+    if (old != null && old != volume) {
+      old.close();
+    }
+  }
+
   @Override
   public void propertyChange(PropertyChangeEvent evt) {
     if (evt instanceof ObservableEvent event) {
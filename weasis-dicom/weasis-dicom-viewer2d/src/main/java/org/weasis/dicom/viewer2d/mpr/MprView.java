@@ -10,21 +10,48 @@
 package org.weasis.dicom.viewer2d.mpr;
 
 import java.awt.Graphics2D;
+import java.awt.GridLayout;
 import java.awt.event.MouseEvent;
+import java.awt.geom.Point2D;
 import java.beans.PropertyChangeEvent;
+import java.io.File;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JProgressBar;
+import javax.swing.JSeparator;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.util.UIDUtils;
+import org.joml.Vector3d;
 import org.weasis.core.api.gui.util.ActionW;
 import org.weasis.core.api.gui.util.ComboItemListener;
 import org.weasis.core.api.image.OpManager;
 import org.weasis.core.api.image.WindowOp;
 import org.weasis.core.api.media.data.SeriesComparator;
+import org.weasis.core.api.media.data.TagW;
 import org.weasis.core.ui.editor.image.ImageViewerEventManager;
 import org.weasis.core.ui.editor.image.ViewCanvas;
 import org.weasis.core.ui.model.layer.LayerItem;
+import org.weasis.core.ui.util.ColorLayerUI;
+import org.weasis.core.util.MathUtil;
+import org.weasis.core.util.StringUtil;
 import org.weasis.dicom.codec.DicomImageElement;
 import org.weasis.dicom.codec.SortSeriesStack;
+import org.weasis.dicom.codec.TagD;
+import org.weasis.dicom.codec.geometry.GeometryOfSlice;
+import org.weasis.dicom.codec.utils.DicomMediaUtils;
+import org.weasis.dicom.viewer2d.Messages;
 import org.weasis.dicom.viewer2d.View2d;
+import org.weasis.dicom.viewer2d.mpr.Volume.SlabMode;
+import org.weasis.opencv.data.FileRawImage;
+import org.weasis.opencv.data.ImageCV;
+import org.weasis.opencv.data.PlanarImage;
 
 public class MprView extends View2d {
 
@@ -37,6 +64,15 @@ public enum SliceOrientation {
   private SliceOrientation sliceOrientation;
   private JProgressBar progressBar;
 
+  // Oblique reslicing, only accessed from the EDT
+  private Volume volume;
+  private double slabThickness;
+  private SlabMode slabMode = SlabMode.MEAN;
+  private double rowAngle;
+  private double columnAngle;
+  private DicomImageElement referenceImage;
+  private DicomImageElement obliqueImage;
+
   public MprView(ImageViewerEventManager<DicomImageElement> eventManager) {
     super(eventManager);
     this.sliceOrientation = SliceOrientation.AXIAL;
@@ -75,15 +111,60 @@ public void setType(SliceOrientation sliceOrientation) {
   public JPopupMenu buildContextMenu(final MouseEvent evt) {
     ComboItemListener<SeriesComparator<?>> action =
         eventManager.getAction(ActionW.SORT_STACK).orElse(null);
+    JPopupMenu ctx;
     if (action != null && action.isActionEnabled()) {
       // Force to disable sort stack menu
       action.enableAction(false);
-      JPopupMenu ctx = super.buildContextMenu(evt);
+      ctx = super.buildContextMenu(evt);
       action.enableAction(true);
-      return ctx;
+    } else {
+      ctx = super.buildContextMenu(evt);
+    }
+
+    if (ctx != null && volume != null && getImage() != null) {
+      JMenuItem oblique = new JMenuItem(Messages.getString("oblique.plane") + StringUtil.ELLIPSIS);
+      oblique.addActionListener(e -> showObliqueDialog());
+      ctx.add(new JSeparator());
+      ctx.add(oblique);
     }
+    return ctx;
+  }
+
+  private void showObliqueDialog() {
+    JSpinner rowSpinner = new JSpinner(new SpinnerNumberModel(rowAngle, -90.0, 90.0, 1.0));
+    JSpinner columnSpinner = new JSpinner(new SpinnerNumberModel(columnAngle, -90.0, 90.0, 1.0));
+    JSpinner slabSpinner = new JSpinner(new SpinnerNumberModel(slabThickness, 0.0, 500.0, 1.0));
+    JComboBox<SlabMode> modeCombo = new JComboBox<>(SlabMode.values());
+    modeCombo.setSelectedItem(slabMode);
 
-    return super.buildContextMenu(evt);
+    JPanel panel = new JPanel(new GridLayout(4, 2, 10, 5));
+    panel.add(new JLabel(Messages.getString("row.tilt") + StringUtil.COLON));
+    panel.add(rowSpinner);
+    panel.add(new JLabel(Messages.getString("column.tilt") + StringUtil.COLON));
+    panel.add(columnSpinner);
+    panel.add(new JLabel(Messages.getString("slab.thickness") + StringUtil.COLON));
+    panel.add(slabSpinner);
+    panel.add(new JLabel(Messages.getString("slab.projection") + StringUtil.COLON));
+    panel.add(modeCombo);
+
+    ColorLayerUI layer = ColorLayerUI.createTransparentLayerUI(this);
+    int res =
+        JOptionPane.showConfirmDialog(
+            ColorLayerUI.getContentPane(layer),
+            panel,
+            Messages.getString("oblique.plane"),
+            JOptionPane.OK_CANCEL_OPTION);
+    if (layer != null) {
+      layer.hideUI();
+    }
+    if (res == JOptionPane.OK_OPTION) {
+      // The oblique image is computed once by rotateAxes()
+      slabThickness = Math.max(0.0, ((Number) slabSpinner.getValue()).doubleValue());
+      slabMode = (SlabMode) modeCombo.getSelectedItem();
+      rotateAxes(
+          ((Number) rowSpinner.getValue()).doubleValue(),
+          ((Number) columnSpinner.getValue()).doubleValue());
+    }
   }
 
   @Override
@@ -123,6 +204,167 @@ protected void drawOnTop(Graphics2D g2d) {
     }
   }
 
+  @Override
+  protected void setImage(DicomImageElement img) {
+    if (obliqueImage != null && img != obliqueImage) {
+      // Another image of the series is displayed
+      releaseObliqueImage();
+      referenceImage = null;
+      rowAngle = 0.0;
+      columnAngle = 0.0;
+    }
+    super.setImage(img);
+  }
+
+  public Volume getVolume() {
+    return volume;
+  }
+
+  public void setVolume(Volume volume) {
+    if (this.volume != volume && obliqueImage != null) {
+      DicomImageElement ref = referenceImage;
+      releaseObliqueImage();
+      referenceImage = null;
+      super.setImage(ref);
+    }
+    this.volume = volume;
+  }
+
+  /**
+   * Set the slab of the oblique plane.
+   *
+   * @param thickness the thickness in mm, 0 for a single plane
+   * @param mode the projection of the voxels through the slab
+   */
+  public void setSlab(double thickness, SlabMode mode) {
+    this.slabThickness = Math.max(0.0, thickness);
+    this.slabMode = mode == null ? SlabMode.MEAN : mode;
+    if (obliqueImage != null) {
+      updateObliqueImage();
+    }
+  }
+
+  /**
+   * Tilt the plane of the displayed image around its center and display the plane resliced from the
+   * volume. Null angles restore the image of the series.
+   *
+   * @param rowAngle the rotation in degrees around the column axis (tilting the rows)
+   * @param columnAngle the rotation in degrees around the row axis (tilting the columns)
+   */
+  public void rotateAxes(double rowAngle, double columnAngle) {
+    if (volume == null) {
+      return;
+    }
+    if (referenceImage == null) {
+      referenceImage = getImage();
+    }
+    this.rowAngle = rowAngle;
+    this.columnAngle = columnAngle;
+    updateObliqueImage();
+  }
+
+  private void updateObliqueImage() {
+    DicomImageElement ref = referenceImage;
+    GeometryOfSlice geometry = ref == null ? null : ref.getSliceGeometry();
+    if (geometry == null) {
+      return;
+    }
+    if (MathUtil.isEqualToZero(rowAngle)
+        && MathUtil.isEqualToZero(columnAngle)
+        && MathUtil.isEqualToZero(slabThickness)) {
+      referenceImage = null;
+      setImage(ref);
+      return;
+    }
+
+    Vector3d dim = geometry.getDimensions();
+    int width = (int) dim.y;
+    int height = (int) dim.x;
+    Vector3d center =
+        geometry.getPosition(new Point2D.Double((width - 1) / 2.0, (height - 1) / 2.0));
+    Vector3d row = new Vector3d(geometry.getRow()).normalize();
+    Vector3d column = new Vector3d(geometry.getColumn()).normalize();
+    Vector3d newRow = new Vector3d();
+    SeriesBuilder.rotate(row, new Vector3d(column), Math.toRadians(rowAngle), newRow);
+    Vector3d newColumn = new Vector3d();
+    SeriesBuilder.rotate(column, new Vector3d(newRow), Math.toRadians(columnAngle), newColumn);
+    Vector3d spacing = geometry.getVoxelSpacing();
+    double pixelSpacing = Math.min(spacing.x, spacing.y);
+
+    ImageCV img =
+        volume.reslice(
+            center, newRow, newColumn, width, height, pixelSpacing, slabThickness, slabMode);
+    Vector3d tlhc =
+        new Vector3d(center)
+            .fma(-(width - 1) / 2.0 * pixelSpacing, newRow)
+            .fma(-(height - 1) / 2.0 * pixelSpacing, newColumn);
+    DicomImageElement oblique =
+        buildObliqueImage(ref, img, tlhc, newRow, newColumn, pixelSpacing);
+    DicomImageElement old = obliqueImage;
+    obliqueImage = oblique;
+    super.setImage(oblique);
+    if (old != null) {
+      old.dispose();
+      old.removeImageFromCache();
+    }
+  }
+
+  private static DicomImageElement buildObliqueImage(
+      DicomImageElement ref,
+      ImageCV img,
+      Vector3d tlhc,
+      Vector3d row,
+      Vector3d column,
+      double pixelSpacing) {
+    String uid = UIDUtils.createUID();
+    RawImageIO rawIO =
+        new RawImageIO(new FileRawImage(new File(SeriesBuilder.MPR_CACHE_DIR, uid)), null);
+    rawIO.setBaseAttributes(new Attributes());
+    SeriesBuilder.copyMandatoryTags(ref, rawIO);
+    rawIO.copyTags(
+        TagD.getTagFromIDs(
+            Tag.SeriesInstanceUID,
+            Tag.FrameOfReferenceUID,
+            Tag.BitsAllocated,
+            Tag.BitsStored,
+            Tag.RescaleSlope,
+            Tag.RescaleIntercept,
+            Tag.RescaleType,
+            Tag.WindowCenter,
+            Tag.WindowWidth,
+            Tag.VOILUTFunction,
+            Tag.PixelPaddingValue,
+            Tag.PixelPaddingRangeLimit),
+        ref,
+        false);
+    rawIO.setTag(TagD.get(Tag.SOPInstanceUID), uid);
+    rawIO.setTag(TagD.get(Tag.Columns), img.width());
+    rawIO.setTag(TagD.get(Tag.Rows), img.height());
+    rawIO.setTag(TagD.get(Tag.PixelSpacing), new double[] {pixelSpacing, pixelSpacing});
+    rawIO.setTag(
+        TagD.get(Tag.ImageOrientationPatient),
+        new double[] {row.x, row.y, row.z, column.x, column.y, column.z});
+    rawIO.setTag(TagD.get(Tag.ImagePositionPatient), new double[] {tlhc.x, tlhc.y, tlhc.z});
+    rawIO.setTag(TagW.ImageCache, false);
+    DicomMediaUtils.computeSlicePositionVector(rawIO);
+
+    return new DicomImageElement(rawIO, 0) {
+      @Override
+      protected PlanarImage loadImage() {
+        return img;
+      }
+    };
+  }
+
+  private void releaseObliqueImage() {
+    DicomImageElement old = obliqueImage;
+    obliqueImage = null;
+    if (old != null) {
+      old.dispose();
+      old.removeImageFromCache();
+    }
+  }
+
   public void setProgressBar(JProgressBar bar) {
     this.progressBar = bar;
   }
@@ -28,6 +28,8 @@
 import org.joml.Vector3d;
 import org.opencv.core.Core;
 import org.opencv.imgproc.Imgproc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.weasis.core.api.explorer.ObservableEvent;
 import org.weasis.core.api.explorer.model.DataExplorerModel;
 import org.weasis.core.api.explorer.model.TreeModel;
@@ -59,6 +61,7 @@
 import org.weasis.opencv.op.ImageProcessor;
 
 public class SeriesBuilder {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SeriesBuilder.class);
 
   static TagW seriesReferences = new TagW("series.builder.refs", TagType.STRING, 2, 2);
   public static final File MPR_CACHE_DIR =
@@ -346,6 +349,8 @@ public static void createMissingSeries(
                   }
                 }
               }
+
+              buildVolume(thread, mprContainer, series, filter);
             }
           }
         }
@@ -353,6 +358,36 @@ public static void createMissingSeries(
     }
   }
 
+  /** Build once the volume of the series for reslicing the views along any plane. */
+  private static void buildVolume(
+      Thread thread,
+      MprContainer mprContainer,
+      MediaSeries<DicomImageElement> series,
+      Filter<DicomImageElement> filter) {
+    Volume[] current = new Volume[1];
+    GuiExecutor.invokeAndWait(() -> current[0] = mprContainer.getVolume(series));
+    if (current[0] != null) {
+      return;
+    }
+    Volume volume;
+    try {
+      volume = Volume.build(series.copyOfMedias(filter, SortSeriesStack.slicePosition), thread);
+    } catch (IOException | OutOfMemoryError e) {
+      LOGGER.warn("Cannot build the volume, oblique reslicing is not available", e);
+      return;
+    }
+    if (volume != null) {
+      GuiExecutor.execute(
+          () -> {
+            if (thread.isInterrupted()) {
+              volume.close();
+            } else {
+              mprContainer.setVolume(series, volume);
+            }
+          });
+    }
+  }
+
   private static DicomSeries buildDicomSeriesFromRaw(
       final FileRawImage[] newSeries,
       Dimension dim,
@@ -676,7 +711,7 @@ private static void writeRasterInRaw(
     }
   }
 
-  private static void rotate(Vector3d vSrc, Vector3d axis, double angle, Vector3d vDst) {
+  static void rotate(Vector3d vSrc, Vector3d axis, double angle, Vector3d vDst) {
     axis.normalize();
     vDst.x =
         axis.x * (axis.x * vSrc.x + axis.y * vSrc.y + axis.z * vSrc.z) * (1 - Math.cos(angle))
@@ -0,0 +1,383 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.viewer2d.mpr;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import javax.imageio.IIOException;
+import org.joml.Vector3d;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.weasis.dicom.codec.DicomImageElement;
+import org.weasis.dicom.codec.geometry.GeometryOfSlice;
+import org.weasis.opencv.data.ImageCV;
+import org.weasis.opencv.data.PlanarImage;
+
+/**
+ * Volume of voxels stored in a single native memory block, with the geometry of the patient
+ * coordinate system. The volume can be resliced along any plane with a trilinear interpolation.
+ */
+public final class Volume implements AutoCloseable {
+
+  public enum SlabMode {
+    MEAN,
+    MAX,
+    MIN
+  }
+
+  private final Arena arena;
+  private final MemorySegment data;
+  private final int width;
+  private final int height;
+  private final int depth;
+  private final int cvType;
+  private final int elemSize;
+  private final double background;
+
+  // Patient coordinates of the center of the first voxel and the unit vectors of the three axes
+  private final Vector3d origin;
+  private final Vector3d row;
+  private final Vector3d column;
+  private final Vector3d normal;
+  private final Vector3d spacing;
+
+  Volume(int width, int height, int depth, int cvType, GeometryOfSlice first, Vector3d last) {
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+    this.cvType = cvType;
+    this.elemSize = (int) CvType.ELEM_SIZE(cvType);
+    this.arena = Arena.ofShared();
+    this.data = arena.allocate((long) width * height * depth * elemSize, elemSize);
+    this.origin = new Vector3d(first.getTLHC());
+    this.row = new Vector3d(first.getRow()).normalize();
+    this.column = new Vector3d(first.getColumn()).normalize();
+    Vector3d voxelSpacing = first.getVoxelSpacing();
+    if (depth > 1) {
+      Vector3d dir = new Vector3d(last).sub(origin);
+      double sliceSpacing = dir.length() / (depth - 1);
+      this.normal = sliceSpacing > 0.0 ? dir.normalize() : first.getNormal();
+      this.spacing = new Vector3d(voxelSpacing.x, voxelSpacing.y, sliceSpacing);
+    } else {
+      this.normal = first.getNormal();
+      this.spacing = new Vector3d(voxelSpacing.x, voxelSpacing.y, first.getSliceThickness());
+    }
+    this.background = CvType.depth(cvType) == CvType.CV_16S ? Short.MIN_VALUE : 0.0;
+  }
+
+  /**
+   * Build the volume from the images of a stack.
+   *
+   * @param medias the images sorted by slice position
+   * @param thread the building thread, the building is stopped when interrupted
+   * @return the volume, or null if the thread has been interrupted
+   */
+  public static Volume build(Iterable<DicomImageElement> medias, Thread thread)
+      throws IOException {
+    List<DicomImageElement> list = new ArrayList<>();
+    medias.forEach(list::add);
+    if (list.isEmpty()) {
+      throw new IllegalArgumentException("Empty stack");
+    }
+    DicomImageElement first = list.getFirst();
+    GeometryOfSlice geometry = first.getSliceGeometry();
+    GeometryOfSlice lastGeometry = list.getLast().getSliceGeometry();
+    if (geometry == null || lastGeometry == null) {
+      throw new IIOException("Missing geometry of the slices");
+    }
+
+    Volume volume = null;
+    try {
+      for (int k = 0; k < list.size(); k++) {
+        if (thread.isInterrupted()) {
+          if (volume != null) {
+            volume.close();
+          }
+          return null;
+        }
+        PlanarImage image = list.get(k).getImage(null, false);
+        if (image == null || image.channels() != 1) {
+          throw new IIOException("Cannot read a grayscale image!");
+        }
+        if (volume == null) {
+          volume =
+              new Volume(
+                  image.width(),
+                  image.height(),
+                  list.size(),
+                  image.type(),
+                  geometry,
+                  lastGeometry.getTLHC());
+        }
+        volume.setSlice(k, image.toMat());
+      }
+    } catch (IOException | RuntimeException e) {
+      if (volume != null) {
+        volume.close();
+      }
+      throw e;
+    }
+    return volume;
+  }
+
+  private void setSlice(int k, Mat mat) throws IIOException {
+    if (mat.width() != width || mat.height() != height || mat.type() != cvType) {
+      throw new IIOException("The images of the stack must have the same size and type!");
+    }
+    int length = width * height;
+    Object buf =
+        switch (CvType.depth(cvType)) {
+          case CvType.CV_8U, CvType.CV_8S -> {
+            byte[] b = new byte[length];
+            mat.get(0, 0, b);
+            yield b;
+          }
+          case CvType.CV_16U, CvType.CV_16S -> {
+            short[] b = new short[length];
+            mat.get(0, 0, b);
+            yield b;
+          }
+          case CvType.CV_32S -> {
+            int[] b = new int[length];
+            mat.get(0, 0, b);
+            yield b;
+          }
+          case CvType.CV_32F -> {
+            float[] b = new float[length];
+            mat.get(0, 0, b);
+            yield b;
+          }
+          default ->
+              throw new IIOException("Unsupported image type: " + CvType.typeToString(cvType));
+        };
+    setSlice(k, buf);
+  }
+
+  /**
+   * @param k the index of the slice
+   * @param buffer the voxels of the slice, a byte, short, int or float array matching the type of
+   *     the volume
+   */
+  void setSlice(int k, Object buffer) {
+    ValueLayout layout =
+        switch (buffer) {
+          case byte[] _ -> ValueLayout.JAVA_BYTE;
+          case short[] _ -> ValueLayout.JAVA_SHORT;
+          case int[] _ -> ValueLayout.JAVA_INT;
+          case float[] _ -> ValueLayout.JAVA_FLOAT;
+          default -> throw new IllegalArgumentException("Unsupported buffer");
+        };
+    if (layout.byteSize() != elemSize) {
+      throw new IllegalArgumentException("The buffer does not match the type of the volume");
+    }
+    int length = width * height;
+    MemorySegment.copy(buffer, 0, data, layout, (long) k * length * elemSize, length);
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  public int getCvType() {
+    return cvType;
+  }
+
+  /**
+   * @return the spacing in mm between the centers of the voxels in the three directions
+   */
+  public Vector3d getSpacing() {
+    return new Vector3d(spacing);
+  }
+
+  /**
+   * @return the patient coordinates of the center of the volume
+   */
+  public Vector3d getCenter() {
+    return toPatient((width - 1) / 2.0, (height - 1) / 2.0, (depth - 1) / 2.0);
+  }
+
+  public Vector3d toPatient(double x, double y, double z) {
+    return new Vector3d(origin)
+        .fma(x * spacing.x, row)
+        .fma(y * spacing.y, column)
+        .fma(z * spacing.z, normal);
+  }
+
+  public Vector3d toVoxel(Vector3d p) {
+    Vector3d d = new Vector3d(p).sub(origin);
+    return new Vector3d(
+        d.dot(row) / spacing.x, d.dot(column) / spacing.y, d.dot(normal) / spacing.z);
+  }
+
+  public double getValue(int x, int y, int z) {
+    long index = ((long) z * height + y) * width + x;
+    return switch (CvType.depth(cvType)) {
+      case CvType.CV_8U -> Byte.toUnsignedInt(data.get(ValueLayout.JAVA_BYTE, index));
+      case CvType.CV_8S -> data.get(ValueLayout.JAVA_BYTE, index);
+      case CvType.CV_16U -> Short.toUnsignedInt(data.getAtIndex(ValueLayout.JAVA_SHORT, index));
+      case CvType.CV_16S -> data.getAtIndex(ValueLayout.JAVA_SHORT, index);
+      case CvType.CV_32S -> data.getAtIndex(ValueLayout.JAVA_INT, index);
+      default -> data.getAtIndex(ValueLayout.JAVA_FLOAT, index);
+    };
+  }
+
+  /**
+   * @return the value interpolated at the voxel coordinates, or NaN when outside the volume
+   */
+  public double interpolate(double x, double y, double z) {
+    if (x < 0.0 || y < 0.0 || z < 0.0 || x > width - 1 || y > height - 1 || z > depth - 1) {
+      return Double.NaN;
+    }
+    int x0 = Math.min((int) x, width - 1);
+    int y0 = Math.min((int) y, height - 1);
+    int z0 = Math.min((int) z, depth - 1);
+    int x1 = Math.min(x0 + 1, width - 1);
+    int y1 = Math.min(y0 + 1, height - 1);
+    int z1 = Math.min(z0 + 1, depth - 1);
+    double fx = x - x0;
+    double fy = y - y0;
+    double fz = z - z0;
+
+    double c00 = lerp(getValue(x0, y0, z0), getValue(x1, y0, z0), fx);
+    double c10 = lerp(getValue(x0, y1, z0), getValue(x1, y1, z0), fx);
+    double c01 = lerp(getValue(x0, y0, z1), getValue(x1, y0, z1), fx);
+    double c11 = lerp(getValue(x0, y1, z1), getValue(x1, y1, z1), fx);
+    return lerp(lerp(c00, c10, fy), lerp(c01, c11, fy), fz);
+  }
+
+  private static double lerp(double a, double b, double f) {
+    return a + (b - a) * f;
+  }
+
+  /**
+   * Reslice the volume along a plane.
+   *
+   * @param center the patient coordinates of the center of the plane
+   * @param rowDir the unit vector of the rows of the output image
+   * @param columnDir the unit vector of the columns of the output image
+   * @param outWidth the width of the output image
+   * @param outHeight the height of the output image
+   * @param pixelSpacing the pixel spacing of the output image in mm
+   * @param slabThickness the thickness of the slab in mm, or 0 for a single plane
+   * @param mode the projection of the slab
+   * @return the resliced image with the type of the volume
+   */
+  public ImageCV reslice(
+      Vector3d center,
+      Vector3d rowDir,
+      Vector3d columnDir,
+      int outWidth,
+      int outHeight,
+      double pixelSpacing,
+      double slabThickness,
+      SlabMode mode) {
+    float[] out =
+        resliceValues(
+            center, rowDir, columnDir, outWidth, outHeight, pixelSpacing, slabThickness, mode);
+    try (ImageCV fimg = new ImageCV(outHeight, outWidth, CvType.CV_32FC1)) {
+      fimg.put(0, 0, out);
+      ImageCV dst = new ImageCV();
+      fimg.convertTo(dst, cvType);
+      return dst;
+    }
+  }
+
+  /**
+   * Same as {@link #reslice}, but returns the values of the pixels of the output image row by row.
+   */
+  float[] resliceValues(
+      Vector3d center,
+      Vector3d rowDir,
+      Vector3d columnDir,
+      int outWidth,
+      int outHeight,
+      double pixelSpacing,
+      double slabThickness,
+      SlabMode mode) {
+    Vector3d u = new Vector3d(rowDir).normalize();
+    Vector3d v = new Vector3d(columnDir).normalize();
+    Vector3d n = new Vector3d(u).cross(v).normalize();
+
+    // Samples through the slab at the center of equal sub-intervals, the voxels partially covered
+    // at the slab edges contribute in proportion
+    double step = Math.min(spacing.x, Math.min(spacing.y, spacing.z));
+    int nbSamples = slabThickness > step ? (int) Math.ceil(slabThickness / step) : 1;
+    double[] offsets = new double[nbSamples];
+    for (int s = 0; s < nbSamples; s++) {
+      offsets[s] =
+          nbSamples == 1 ? 0.0 : -slabThickness / 2.0 + (s + 0.5) * slabThickness / nbSamples;
+    }
+
+    // The transformation is affine: compute the voxel increments for one pixel in x and y
+    Vector3d topLeft =
+        new Vector3d(center)
+            .fma(-(outWidth - 1) / 2.0 * pixelSpacing, u)
+            .fma(-(outHeight - 1) / 2.0 * pixelSpacing, v);
+    Vector3d base = toVoxel(topLeft);
+    Vector3d dx = toVoxel(new Vector3d(origin).fma(pixelSpacing, u));
+    Vector3d dy = toVoxel(new Vector3d(origin).fma(pixelSpacing, v));
+    Vector3d dn = toVoxel(new Vector3d(origin).add(n));
+
+    float[] out = new float[outWidth * outHeight];
+    IntStream.range(0, outHeight)
+        .parallel()
+        .forEach(
+            y -> {
+              for (int x = 0; x < outWidth; x++) {
+                double px = base.x + x * dx.x + y * dy.x;
+                double py = base.y + x * dx.y + y * dy.y;
+                double pz = base.z + x * dx.z + y * dy.z;
+                out[y * outWidth + x] = (float) project(px, py, pz, dn, offsets, mode);
+              }
+            });
+    return out;
+  }
+
+  private double project(
+      double x, double y, double z, Vector3d dn, double[] offsets, SlabMode mode) {
+    double result = mode == SlabMode.MAX ? -Double.MAX_VALUE : Double.MAX_VALUE;
+    double sum = 0.0;
+    int count = 0;
+    for (double t : offsets) {
+      double val = interpolate(x + t * dn.x, y + t * dn.y, z + t * dn.z);
+      if (Double.isNaN(val)) {
+        continue;
+      }
+      count++;
+      switch (mode) {
+        case MAX -> result = Math.max(result, val);
+        case MIN -> result = Math.min(result, val);
+        default -> sum += val;
+      }
+    }
+    if (count == 0) {
+      return background;
+    }
+    return mode == SlabMode.MEAN ? sum / count : result;
+  }
+
+  @Override
+  public void close() {
+    arena.close();
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.viewer2d.mip;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.weasis.dicom.viewer2d.mip.MipView.Type;
+import org.weasis.opencv.data.ImageCV;
+
+class SlabProjectionTest {
+  private static final int ROWS = 3;
+  private static final int COLS = 4;
+  private static final int LENGTH = ROWS * COLS;
+
+  private static boolean nativeLibrary;
+
+  @BeforeAll
+  static void loadNativeLibrary() {
+    try {
+      System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+      nativeLibrary = true;
+    } catch (UnsatisfiedLinkError e) {
+      nativeLibrary = false;
+    }
+  }
+
+  private static void assumeNativeLibrary() {
+    Assumptions.assumeTrue(nativeLibrary, "OpenCV native library not available"); // NON-NLS
+  }
+
+  private static float[][] buildStack(int nbImages, long seed) {
+    Random random = new Random(seed);
+    float[][] stack = new float[nbImages][LENGTH];
+    for (float[] image : stack) {
+      for (int i = 0; i < LENGTH; i++) {
+        image[i] = random.nextInt(4096);
+      }
+    }
+    return stack;
+  }
+
+  private static Mat toMat(float[] values, int cvType) {
+    Mat f = new Mat(ROWS, COLS, CvType.CV_32FC1);
+    f.put(0, 0, values);
+    Mat mat = new Mat();
+    f.convertTo(mat, cvType);
+    f.release();
+    return mat;
+  }
+
+  private static double[] toValues(Mat mat) {
+    Mat d = new Mat();
+    mat.convertTo(d, CvType.CV_64F);
+    double[] values = new double[LENGTH];
+    d.get(0, 0, values);
+    d.release();
+    return values;
+  }
+
+  /** Reference implementation: projection of the images [from, to[ pixel by pixel */
+  private static double[] naiveProjection(float[][] stack, int from, int to, Type type) {
+    double[] result = new double[LENGTH];
+    for (int i = 0; i < LENGTH; i++) {
+      double val = type == Type.MEAN ? 0.0 : stack[from][i];
+      for (int k = from; k < to; k++) {
+        switch (type) {
+          case MIN -> val = Math.min(val, stack[k][i]);
+          case MAX -> val = Math.max(val, stack[k][i]);
+          default -> val += stack[k][i];
+        }
+      }
+      result[i] = type == Type.MEAN ? val / (to - from) : val;
+    }
+    return result;
+  }
+
+  @ParameterizedTest
+  @EnumSource(
+      value = Type.class,
+      names = {"MIN", "MEAN", "MAX"})
+  void slidingProjection(Type type) {
+    assumeNativeLibrary();
+    float[][] stack = buildStack(23, 42L);
+    for (int size = 1; size <= 7; size++) {
+      try (SlabProjection projection = new SlabProjection(type, size)) {
+        for (int k = 0; k < stack.length; k++) {
+          ImageCV result = projection.add(toMat(stack[k], CvType.CV_16UC1));
+          if (k < size - 1) {
+            assertNull(result);
+            continue;
+          }
+          assertNotNull(result);
+          assertEquals(CvType.CV_16UC1, result.type());
+          double[] expected = naiveProjection(stack, k - size + 1, k + 1, type);
+          double[] actual = toValues(result);
+          // The mean is rounded to the integer type
+          double delta = type == Type.MEAN ? 0.5 : 0.0;
+          assertArrayEquals(expected, actual, delta, type + " size " + size + " image " + k);
+          result.release();
+        }
+
+        // Partial slab at the end of the stack
+        for (int n = 1; n <= size; n++) {
+          ImageCV result = projection.project(n);
+          double[] expected = naiveProjection(stack, stack.length - n, stack.length, type);
+          double delta = type == Type.MEAN ? 0.5 : 0.0;
+          assertArrayEquals(expected, toValues(result), delta, type + " partial " + n);
+          result.release();
+        }
+        assertNull(projection.project(size + 1));
+      }
+    }
+  }
+
+  @Test
+  void meanWithoutDrift() {
+    assumeNativeLibrary();
+    // Fractional values along a long stack: a running sum in single precision drifts
+    int size = 7;
+    int nbImages = 5000;
+    Random random = new Random(7L);
+    float[][] stack = new float[nbImages][LENGTH];
+    for (float[] image : stack) {
+      for (int i = 0; i < LENGTH; i++) {
+        image[i] = 1000.0f + random.nextFloat() * 3000.0f;
+      }
+    }
+    try (SlabProjection projection = new SlabProjection(Type.MEAN, size)) {
+      for (int k = 0; k < nbImages; k++) {
+        ImageCV result = projection.add(toMat(stack[k], CvType.CV_32FC1));
+        if (result != null) {
+          if (k == nbImages - 1) {
+            double[] expected = naiveProjection(stack, k - size + 1, k + 1, Type.MEAN);
+            assertArrayEquals(expected, toValues(result), 1.0e-3);
+          }
+          result.release();
+        }
+      }
+    }
+  }
+
+  @Test
+  void invalidSize() {
+    assertThrows(IllegalArgumentException.class, () -> new SlabProjection(Type.MAX, 0));
+  }
+}
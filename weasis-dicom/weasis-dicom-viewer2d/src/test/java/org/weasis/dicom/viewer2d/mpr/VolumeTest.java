@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.viewer2d.mpr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.joml.Vector3d;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.opencv.core.CvType;
+import org.weasis.dicom.codec.geometry.GeometryOfSlice;
+import org.weasis.dicom.viewer2d.mpr.Volume.SlabMode;
+
+class VolumeTest {
+  private static final int WIDTH = 6;
+  private static final int HEIGHT = 5;
+  private static final int DEPTH = 4;
+  private static final double SLICE_SPACING = 2.0;
+  private static final double DELTA = 1.0e-3;
+
+  private Volume volume;
+
+  /** Linear field, so the trilinear interpolation is exact */
+  private static double field(double x, double y, double z) {
+    return 10.0 + 3.0 * x + 5.0 * y + 7.0 * z;
+  }
+
+  @BeforeEach
+  void buildVolume() {
+    GeometryOfSlice first =
+        new GeometryOfSlice(
+            new Vector3d(1.0, 0.0, 0.0),
+            new Vector3d(0.0, 1.0, 0.0),
+            new Vector3d(0.0, 0.0, 0.0),
+            new Vector3d(1.0, 1.0, SLICE_SPACING),
+            SLICE_SPACING,
+            new Vector3d(HEIGHT, WIDTH, 1.0));
+    volume =
+        new Volume(
+            WIDTH,
+            HEIGHT,
+            DEPTH,
+            CvType.CV_16SC1,
+            first,
+            new Vector3d(0.0, 0.0, (DEPTH - 1) * SLICE_SPACING));
+    for (int z = 0; z < DEPTH; z++) {
+      short[] slice = new short[WIDTH * HEIGHT];
+      for (int y = 0; y < HEIGHT; y++) {
+        for (int x = 0; x < WIDTH; x++) {
+          slice[y * WIDTH + x] = (short) field(x, y, z);
+        }
+      }
+      volume.setSlice(z, slice);
+    }
+  }
+
+  @AfterEach
+  void closeVolume() {
+    volume.close();
+  }
+
+  @Test
+  void geometry() {
+    assertEquals(new Vector3d(1.0, 1.0, SLICE_SPACING), volume.getSpacing());
+    Vector3d p = volume.toPatient(2.0, 3.0, 1.5);
+    assertEquals(new Vector3d(2.0, 3.0, 3.0), p);
+    assertEquals(new Vector3d(2.0, 3.0, 1.5), volume.toVoxel(p));
+  }
+
+  @Test
+  void interpolate() {
+    for (int z = 0; z < DEPTH; z++) {
+      for (int y = 0; y < HEIGHT; y++) {
+        for (int x = 0; x < WIDTH; x++) {
+          assertEquals(field(x, y, z), volume.getValue(x, y, z));
+          assertEquals(field(x, y, z), volume.interpolate(x, y, z), DELTA);
+        }
+      }
+    }
+    assertEquals(field(1.25, 2.5, 0.75), volume.interpolate(1.25, 2.5, 0.75), DELTA);
+    assertEquals(field(4.9, 0.1, 2.99), volume.interpolate(4.9, 0.1, 2.99), DELTA);
+    assertEquals(
+        field(WIDTH - 1, HEIGHT - 1, DEPTH - 1),
+        volume.interpolate(WIDTH - 1, HEIGHT - 1, DEPTH - 1),
+        DELTA);
+
+    assertTrue(Double.isNaN(volume.interpolate(-0.01, 0.0, 0.0)));
+    assertTrue(Double.isNaN(volume.interpolate(0.0, HEIGHT - 0.99, 0.0)));
+    assertTrue(Double.isNaN(volume.interpolate(0.0, 0.0, DEPTH)));
+  }
+
+  @Test
+  void resliceAxialPlane() {
+    Vector3d center = volume.toPatient((WIDTH - 1) / 2.0, (HEIGHT - 1) / 2.0, 2.0);
+    float[] out =
+        volume.resliceValues(
+            center,
+            new Vector3d(1.0, 0.0, 0.0),
+            new Vector3d(0.0, 1.0, 0.0),
+            WIDTH,
+            HEIGHT,
+            1.0,
+            0.0,
+            SlabMode.MEAN);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        assertEquals(volume.getValue(x, y, 2), out[y * WIDTH + x], DELTA);
+      }
+    }
+  }
+
+  @Test
+  void resliceObliquePlane() {
+    double angle = Math.toRadians(30.0);
+    Vector3d row = new Vector3d(Math.cos(angle), 0.0, Math.sin(angle));
+    Vector3d column = new Vector3d(0.0, 1.0, 0.0);
+    Vector3d center = volume.getCenter();
+    int size = 5;
+    double pixelSpacing = 0.5;
+    float[] out =
+        volume.resliceValues(center, row, column, size, size, pixelSpacing, 0.0, SlabMode.MEAN);
+
+    Vector3d topLeft =
+        new Vector3d(center)
+            .fma(-(size - 1) / 2.0 * pixelSpacing, row)
+            .fma(-(size - 1) / 2.0 * pixelSpacing, column);
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        Vector3d p =
+            new Vector3d(topLeft).fma(x * pixelSpacing, row).fma(y * pixelSpacing, column);
+        Vector3d v = volume.toVoxel(p);
+        assertEquals(field(v.x, v.y, v.z), out[y * size + x], 0.01, "at " + x + "," + y);
+      }
+    }
+  }
+
+  @Test
+  void resliceOutside() {
+    Vector3d center = volume.toPatient(-10.0, -10.0, 1.0);
+    float[] out =
+        volume.resliceValues(
+            center,
+            new Vector3d(1.0, 0.0, 0.0),
+            new Vector3d(0.0, 1.0, 0.0),
+            2,
+            2,
+            1.0,
+            0.0,
+            SlabMode.MEAN);
+    for (float val : out) {
+      assertEquals(Short.MIN_VALUE, val);
+    }
+  }
+
+  @Test
+  void resliceSlab() {
+    // Slab of 2 mm (one slice interval) centered between the slices 1 and 2
+    Vector3d row = new Vector3d(1.0, 0.0, 0.0);
+    Vector3d column = new Vector3d(0.0, 1.0, 0.0);
+    Vector3d center = volume.toPatient((WIDTH - 1) / 2.0, (HEIGHT - 1) / 2.0, 1.5);
+    float[] mean =
+        volume.resliceValues(center, row, column, WIDTH, HEIGHT, 1.0, 2.0, SlabMode.MEAN);
+    float[] max = volume.resliceValues(center, row, column, WIDTH, HEIGHT, 1.0, 2.0, SlabMode.MAX);
+    float[] min = volume.resliceValues(center, row, column, WIDTH, HEIGHT, 1.0, 2.0, SlabMode.MIN);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        int i = y * WIDTH + x;
+        // Naive projection of the two samples at +/- 0.5 mm (+/- 0.25 slice)
+        double low = volume.interpolate(x, y, 1.25);
+        double high = volume.interpolate(x, y, 1.75);
+        assertEquals((low + high) / 2.0, mean[i], DELTA);
+        assertEquals(Math.max(low, high), max[i], DELTA);
+        assertEquals(Math.min(low, high), min[i], DELTA);
+        assertEquals(field(x, y, 1.5), mean[i], DELTA);
+      }
+    }
+  }
+}
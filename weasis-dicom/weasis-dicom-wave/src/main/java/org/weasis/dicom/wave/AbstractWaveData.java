@@ -16,11 +16,17 @@ public class AbstractWaveData implements WaveDataReadable {
   protected final DataBuffer data;
   protected final int nbOfChannels;
   protected final int nbSamplesPerChannel;
+  private final MinMaxPyramid[] pyramids;
 
   public AbstractWaveData(DataBuffer data, int nbOfChannels, int nbSamplesPerChannel) {
     this.data = data;
     this.nbOfChannels = nbOfChannels;
     this.nbSamplesPerChannel = nbSamplesPerChannel;
+    // Built once, the rendering of long signals does not need to read all the samples
+    this.pyramids = new MinMaxPyramid[nbOfChannels];
+    for (int i = 0; i < nbOfChannels; i++) {
+      pyramids[i] = new MinMaxPyramid(data, nbOfChannels, i, nbSamplesPerChannel);
+    }
   }
 
   @Override
@@ -49,4 +55,9 @@ public double getSample(int index, ChannelDefinition channel) {
   public int getRawSample(int index, ChannelDefinition channel) {
     return data.getElem(index * nbOfChannels + channel.getPosition());
   }
+
+  @Override
+  public int[] getRawMinMax(int from, int to, ChannelDefinition channel) {
+    return pyramids[channel.getPosition()].getMinMax(from, to);
+  }
 }
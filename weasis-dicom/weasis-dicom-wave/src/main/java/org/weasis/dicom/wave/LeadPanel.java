@@ -16,6 +16,7 @@
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Paint;
+import java.awt.Rectangle;
 import java.awt.Stroke;
 import java.awt.Toolkit;
 import java.awt.event.InputEvent;
@@ -280,17 +281,9 @@ private void updateSelection() {
     double time = (stopPos - startPos) / (double) view.getSamplesPerSecond();
     double diffuV = data.getSample(stopPos, channels) - data.getSample(startPos, channels);
 
-    int min = Integer.MAX_VALUE;
-    int max = Integer.MIN_VALUE;
-    for (int i = startPos; i <= stopPos; i++) {
-      int val = data.getRawSample(i, channels);
-      if (val < min) {
-        min = val;
-      }
-      if (val > max) {
-        max = val;
-      }
-    }
+    int[] minMax = data.getRawMinMax(startPos, stopPos + 1, channels);
+    int min = minMax == null ? 0 : minMax[0];
+    int max = minMax == null ? 0 : minMax[1];
 
     double amplitudeuV =
         (max - min) * channels.getAmplitudeUnitScalingFactor() + channels.getBaseline();
@@ -363,11 +356,26 @@ private void drawWaveData(Graphics2D g2, Dimension dim) {
     Stroke stroke = new BasicStroke(1.2f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
     g2.setStroke(stroke);
 
-    Path2D path = new Path2D.Double(Path2D.WIND_NON_ZERO, sampleNumber);
-    double x = 0.0;
-    double y = halfHeight - (data.getSample(sampleOffset, channels) / 1000 * cellHeight);
+    // Draw only the columns of the area to paint, with one more column on each side
+    Rectangle clip = g2.getClipBounds();
+    if (clip == null) {
+      clip = getVisibleRect();
+    }
+    int startX = Math.max(0, clip.x - 1);
+    int endX = Math.min(dim.width, clip.x + clip.width + 1);
+
+    if (ratioX < 1.0) {
+      g2.draw(buildMinMaxPath(startX, endX, halfHeight, cellHeight));
+      return;
+    }
+
+    int first = Math.max(0, (int) Math.floor(startX / ratioX));
+    int last = Math.min(sampleNumber - 1, (int) Math.ceil(endX / ratioX));
+    Path2D path = new Path2D.Double(Path2D.WIND_NON_ZERO, Math.max(1, last - first + 1));
+    double x = ratioX * first;
+    double y = halfHeight - (data.getSample(sampleOffset + first, channels) / 1000 * cellHeight);
     path.moveTo(x, y);
-    for (int i = 1; i < this.sampleNumber; i++) {
+    for (int i = first + 1; i <= last; i++) {
       x = ratioX * i;
       y = halfHeight - (data.getSample(sampleOffset + i, channels) / 1000 * cellHeight);
       path.lineTo(x, y);
@@ -375,6 +383,44 @@ private void drawWaveData(Graphics2D g2, Dimension dim) {
     g2.draw(path);
   }
 
+  /**
+   * When there are several samples per pixel, draw for each column of pixels a vertical line
+   * between the minimum and the maximum of its samples. The number of points depends only on the
+   * width of the columns [startX, endX[.
+   */
+  private Path2D buildMinMaxPath(int startX, int endX, double halfHeight, double cellHeight) {
+    double scale = channels.getAmplitudeUnitScalingFactor() / 1000 * cellHeight;
+    double baseline = halfHeight - channels.getBaseline() / 1000 * cellHeight;
+    Path2D path = new Path2D.Double(Path2D.WIND_NON_ZERO, Math.max(1, (endX - startX) * 2));
+    boolean first = true;
+    boolean ascending = true;
+    for (int px = startX; px < endX; px++) {
+      int from = sampleOffset + (int) Math.ceil(px / ratioX);
+      int to = sampleOffset + Math.min(sampleNumber, (int) Math.ceil((px + 1) / ratioX));
+      int[] minMax = data.getRawMinMax(from, to, channels);
+      if (minMax == null) {
+        continue;
+      }
+      double y1 = baseline - minMax[0] * scale;
+      double y2 = baseline - minMax[1] * scale;
+      // Alternate the direction to join the columns with the closest point
+      if (!ascending) {
+        double tmp = y1;
+        y1 = y2;
+        y2 = tmp;
+      }
+      if (first) {
+        path.moveTo(px, y1);
+        first = false;
+      } else {
+        path.lineTo(px, y1);
+      }
+      path.lineTo(px, y2);
+      ascending = !ascending;
+    }
+    return path;
+  }
+
   private void drawSelectedBackground(Graphics2D g2) {
     SignalMarker start = getSignalMarker(Measure.VERTICAL, SignalMarker.Type.START);
     SignalMarker stop = getSignalMarker(Measure.VERTICAL, SignalMarker.Type.STOP);
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.wave;
+
+import java.awt.image.DataBuffer;
+
+/**
+ * Multi-resolution summary of the raw samples of one channel. The first level keeps the minimum
+ * and the maximum of each block of {@link #FACTOR} samples, and each next level summarizes the
+ * blocks of the previous one. The minimum and the maximum of any range of samples are computed
+ * with a few blocks of each level, independently of the length of the range.
+ */
+final class MinMaxPyramid {
+
+  static final int FACTOR = 4;
+
+  private final DataBuffer data;
+  private final int nbOfChannels;
+  private final int position;
+  private final int nbSamples;
+  private final int[][] mins;
+  private final int[][] maxs;
+
+  MinMaxPyramid(DataBuffer data, int nbOfChannels, int position, int nbSamples) {
+    this.data = data;
+    this.nbOfChannels = nbOfChannels;
+    this.position = position;
+    this.nbSamples = nbSamples;
+
+    int nbLevels = 0;
+    for (int length = nbSamples; length > 1; length = ceilDiv(length, FACTOR)) {
+      nbLevels++;
+    }
+    this.mins = new int[nbLevels][];
+    this.maxs = new int[nbLevels][];
+
+    int previousLength = nbSamples;
+    for (int level = 0; level < nbLevels; level++) {
+      int length = ceilDiv(previousLength, FACTOR);
+      int[] min = new int[length];
+      int[] max = new int[length];
+      for (int i = 0; i < length; i++) {
+        int start = i * FACTOR;
+        int end = Math.min(start + FACTOR, previousLength);
+        int lo = Integer.MAX_VALUE;
+        int hi = Integer.MIN_VALUE;
+        for (int j = start; j < end; j++) {
+          lo = Math.min(lo, level == 0 ? getRawSample(j) : mins[level - 1][j]);
+          hi = Math.max(hi, level == 0 ? getRawSample(j) : maxs[level - 1][j]);
+        }
+        min[i] = lo;
+        max[i] = hi;
+      }
+      mins[level] = min;
+      maxs[level] = max;
+      previousLength = length;
+    }
+  }
+
+  private static int ceilDiv(int value, int divisor) {
+    return (value + divisor - 1) / divisor;
+  }
+
+  private int getRawSample(int index) {
+    return data.getElem(index * nbOfChannels + position);
+  }
+
+  /**
+   * @param from the index of the first sample (inclusive)
+   * @param to the index of the last sample (exclusive)
+   * @return the minimum and the maximum raw values of the range, or null if the range is empty
+   */
+  int[] getMinMax(int from, int to) {
+    int start = Math.max(0, from);
+    int end = Math.min(nbSamples, to);
+    if (start >= end) {
+      return null;
+    }
+    int[] minMax = {Integer.MAX_VALUE, Integer.MIN_VALUE};
+    // Index of the current level, -1 for the samples
+    int level = -1;
+    int blockSize = 1;
+    while (level + 1 < mins.length) {
+      int nextSize = blockSize * FACTOR;
+      int alignedStart = ceilDiv(start, nextSize) * nextSize;
+      int alignedEnd = (end / nextSize) * nextSize;
+      if (alignedStart >= alignedEnd) {
+        break;
+      }
+      // The edges which are not covered by the blocks of the next level
+      accumulate(level, start / blockSize, alignedStart / blockSize, minMax);
+      accumulate(level, alignedEnd / blockSize, end / blockSize, minMax);
+      start = alignedStart;
+      end = alignedEnd;
+      level++;
+      blockSize = nextSize;
+    }
+    accumulate(level, start / blockSize, ceilDiv(end, blockSize), minMax);
+    return minMax;
+  }
+
+  private void accumulate(int level, int from, int to, int[] minMax) {
+    for (int i = from; i < to; i++) {
+      if (level < 0) {
+        int val = getRawSample(i);
+        minMax[0] = Math.min(minMax[0], val);
+        minMax[1] = Math.max(minMax[1], val);
+      } else {
+        minMax[0] = Math.min(minMax[0], mins[level][i]);
+        minMax[1] = Math.max(minMax[1], maxs[level][i]);
+      }
+    }
+  }
+}
@@ -19,6 +19,14 @@ public interface WaveDataReadable {
 
   int getRawSample(int index, ChannelDefinition channel);
 
+  /**
+   * @param from the index of the first sample (inclusive)
+   * @param to the index of the last sample (exclusive)
+   * @param channel the channel
+   * @return the minimum and the maximum raw values of the range, or null if the range is empty
+   */
+  int[] getRawMinMax(int from, int to, ChannelDefinition channel);
+
   int getNbOfChannels();
 
   int getNbSamplesPerChannel();
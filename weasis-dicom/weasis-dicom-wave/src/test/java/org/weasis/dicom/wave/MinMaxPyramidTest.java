@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2024 Weasis Team and other contributors.
+ *
+ * This program and the accompanying materials are made available under the terms of the Eclipse
+ * Public License 2.0 which is available at https://www.eclipse.org/legal/epl-2.0, or the Apache
+ * License, Version 2.0 which is available at https://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+ */
+package org.weasis.dicom.wave;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferShort;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class MinMaxPyramidTest {
+  private static final int NB_CHANNELS = 3;
+
+  private static DataBuffer buildData(int nbSamples, long seed) {
+    Random random = new Random(seed);
+    short[] values = new short[nbSamples * NB_CHANNELS];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (short) (random.nextInt(65536) - 32768);
+    }
+    return new DataBufferShort(values, values.length);
+  }
+
+  /** Reference implementation: scan of all the samples of the range */
+  private static int[] bruteForce(DataBuffer data, int position, int nbSamples, int from, int to) {
+    int start = Math.max(0, from);
+    int end = Math.min(nbSamples, to);
+    if (start >= end) {
+      return null;
+    }
+    int[] minMax = {Integer.MAX_VALUE, Integer.MIN_VALUE};
+    for (int i = start; i < end; i++) {
+      int val = data.getElem(i * NB_CHANNELS + position);
+      minMax[0] = Math.min(minMax[0], val);
+      minMax[1] = Math.max(minMax[1], val);
+    }
+    return minMax;
+  }
+
+  @Test
+  void allRanges() {
+    // Lengths around the powers of the factor
+    for (int nbSamples : new int[] {1, 2, 3, 4, 5, 15, 16, 17, 63, 64, 65, 100}) {
+      DataBuffer data = buildData(nbSamples, nbSamples);
+      for (int position = 0; position < NB_CHANNELS; position++) {
+        MinMaxPyramid pyramid = new MinMaxPyramid(data, NB_CHANNELS, position, nbSamples);
+        for (int from = 0; from < nbSamples; from++) {
+          for (int to = from + 1; to <= nbSamples; to++) {
+            assertArrayEquals(
+                bruteForce(data, position, nbSamples, from, to),
+                pyramid.getMinMax(from, to),
+                nbSamples + " samples [" + from + ", " + to + "[");
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void randomRanges() {
+    int nbSamples = 50_000;
+    DataBuffer data = buildData(nbSamples, 11L);
+    MinMaxPyramid pyramid = new MinMaxPyramid(data, NB_CHANNELS, 1, nbSamples);
+    Random random = new Random(5L);
+    for (int k = 0; k < 2000; k++) {
+      int from = random.nextInt(nbSamples);
+      int to = from + 1 + random.nextInt(nbSamples - from);
+      assertArrayEquals(
+          bruteForce(data, 1, nbSamples, from, to),
+          pyramid.getMinMax(from, to),
+          "[" + from + ", " + to + "[");
+    }
+  }
+
+  @Test
+  void rangesOutOfTheSamples() {
+    int nbSamples = 37;
+    DataBuffer data = buildData(nbSamples, 2L);
+    MinMaxPyramid pyramid = new MinMaxPyramid(data, NB_CHANNELS, 2, nbSamples);
+    assertNull(pyramid.getMinMax(5, 5));
+    assertNull(pyramid.getMinMax(10, 3));
+    assertNull(pyramid.getMinMax(nbSamples, nbSamples + 10));
+    assertNull(pyramid.getMinMax(-10, 0));
+    // Clamped to the samples
+    assertArrayEquals(
+        bruteForce(data, 2, nbSamples, 0, nbSamples), pyramid.getMinMax(-5, nbSamples + 5));
+    assertArrayEquals(bruteForce(data, 2, nbSamples, 30, 37), pyramid.getMinMax(30, 100));
+  }
+}